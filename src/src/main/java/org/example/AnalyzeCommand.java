@@ -0,0 +1,56 @@
+package org.example;
+
+import java.io.File;
+
+public class AnalyzeCommand {
+
+    /**
+     * Executes the ANALYZE command to collect the statistics the planner estimates the cost of access paths
+     * with: the row count of the table and, for every column, its null fraction, distinct count, and for
+     * numeric columns its minimum, maximum and histogram. The statistics are stored next to the metadata of the
+     * table.
+     *
+     * @param session The session that runs the statement.
+     * @param tableName The name of the table.
+     * @throws Exception If no database is selected, the table does not exist or cannot be read.
+     */
+    public static void execute(Session session, String tableName) throws Exception {
+        // Add logging before analyzing the table
+        LogManager.logGeneral("ANALYZE command initiated", "Attempting to analyze table");
+
+        TableStatistics statistics = analyze(session, tableName);
+        System.out.println("Table " + tableName + " analyzed: " + statistics.getRowCount() + " rows.");
+        LogManager.logGeneral("ANALYZE command executed", "Statistics collected for table: " + tableName);
+    }
+
+    /**
+     * Collects and stores the statistics of a table, reading the snapshot of the running statement.
+     *
+     * @param session The session that runs the statement.
+     * @param tableName The name of the table.
+     * @return The statistics.
+     * @throws Exception If no database is selected, the table does not exist or cannot be read.
+     */
+    public static TableStatistics analyze(Session session, String tableName) throws Exception {
+        if (session.getActiveDatabase() == null) {
+            throw new Exception("No database selected.");
+        }
+
+        LockManager.lockTable(session, tableName, LockManager.Mode.SHARED);
+
+        // Check if the table file exists
+        File dbDir = new File("tinydb/databases/" + session.getActiveDatabase());
+        if (!new File(dbDir, tableName + ".tbl").exists()) {
+            throw new Exception("Table does not exist.");
+        }
+
+        TableSchema schema = Catalog.getInstance().getTable(dbDir, tableName);
+        int[] columns = new int[schema.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
+        }
+        TableStatistics statistics = TableStatistics.collect(schema, new SeqScan(session, schema, null, columns));
+        Catalog.getInstance().setStatistics(dbDir, tableName, statistics);
+        return statistics;
+    }
+}
@@ -0,0 +1,113 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AnalyzeCommandTest {
+
+    private CommandProcessor commandProcessor;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @BeforeEach
+    void createTable() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE PEOPLE (ID INT(PK), NAME STRING, AGE INT);");
+        PreparedCommand insert = commandProcessor.prepare("INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (?, ?, ?);");
+        for (int i = 1; i <= 100; i++) {
+            commandProcessor.execute(insert, i, i % 4 == 0 ? null : "NAME" + (i % 20), i % 10);
+        }
+    }
+
+    @Test
+    void testCollectsColumnStatistics() throws Exception {
+        commandProcessor.processCommand("ANALYZE PEOPLE;");
+        assertTrue(new File("tinydb/databases/testdb/PEOPLE_stats.txt").exists());
+
+        TableStatistics statistics = Catalog.getInstance().getStatistics(new File("tinydb/databases/testdb"), "PEOPLE");
+        assertEquals(100, statistics.getRowCount());
+        TableStatistics.ColumnStatistics id = statistics.getColumn(0);
+        assertEquals(100, id.getDistinctCount());
+        assertEquals(1, id.getMin());
+        assertEquals(100, id.getMax());
+        assertEquals(33, id.getHistogram().length);
+        TableStatistics.ColumnStatistics name = statistics.getColumn(1);
+        assertEquals(0.25, name.getNullFraction(), 1e-9);
+        assertEquals(0, name.getHistogram().length);
+        assertEquals(10, statistics.getColumn(2).getDistinctCount());
+
+        // Statistics survive reloading the catalog
+        Catalog.getInstance().load(new File("tinydb/databases/testdb"));
+        statistics = Catalog.getInstance().getStatistics(new File("tinydb/databases/testdb"), "PEOPLE");
+        assertEquals(100, statistics.getRowCount());
+        assertEquals(10, statistics.getColumn(2).getDistinctCount());
+        assertArrayEquals(id.getHistogram(), statistics.getColumn(0).getHistogram());
+    }
+
+    @Test
+    void testChoosesAccessPathByCost() throws Exception {
+        commandProcessor.processCommand("CREATE INDEX PEOPLE_AGE ON PEOPLE(AGE) USING BTREE;");
+        String databaseName = commandProcessor.getSession().getActiveDatabase();
+        TableSchema schema = Catalog.getInstance().getTable(databaseName, "PEOPLE");
+        assertTrue(CostModel.useIndex(schema, null, 2, ">=", "1"));
+
+        commandProcessor.processCommand("ANALYZE PEOPLE;");
+        TableStatistics statistics = Catalog.getInstance().getStatistics(new File("tinydb/databases/testdb"), "PEOPLE");
+        assertEquals(10, CostModel.estimateRows(schema, statistics, 2, "=", "3"), 1e-9);
+        assertEquals(30, CostModel.estimateRows(schema, statistics, 0, "<=", "30.5"), 2);
+        assertEquals(0, CostModel.estimateRows(schema, statistics, 2, "=", "42"), 1e-9);
+        assertTrue(CostModel.useIndex(schema, statistics, 2, "=", "3"));
+        assertTrue(CostModel.useIndex(schema, statistics, 0, "=", "7"));
+        assertFalse(CostModel.useIndex(schema, statistics, 2, ">=", "1"));
+
+        assertEquals(90, commandProcessor.query("SELECT ID FROM PEOPLE WHERE AGE >= 1;").getRowCount());
+        assertEquals(10, commandProcessor.query("SELECT ID FROM PEOPLE WHERE AGE = 3;").getRowCount());
+    }
+
+    @Test
+    void testRefreshesStaleStatistics() throws Exception {
+        commandProcessor.processCommand("ANALYZE PEOPLE;");
+        PreparedCommand insert = commandProcessor.prepare("INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (?, ?, ?);");
+        for (int i = 101; i <= 150; i++) {
+            commandProcessor.execute(insert, i, "NAME", 1);
+        }
+
+        // The refresh runs in the background and may not see the insert that made the statistics stale
+        File dbDir = new File("tinydb/databases/testdb");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (Catalog.getInstance().getStatistics(dbDir, "PEOPLE").getRowCount() == 100
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        long rowCount = Catalog.getInstance().getStatistics(dbDir, "PEOPLE").getRowCount();
+        assertTrue(rowCount >= 149, "Rows: " + rowCount);
+
+        commandProcessor.processCommand("DROP TABLE PEOPLE;");
+        assertFalse(new File("tinydb/databases/testdb/PEOPLE_stats.txt").exists());
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,108 @@
+package org.example;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class AutoAnalyze implements Runnable {
+    private static final AutoAnalyze INSTANCE = new AutoAnalyze();
+
+    private final Set<String> queue = new LinkedHashSet<>();
+    private Thread worker;
+
+    private long runs = 0;
+    private String lastRun = "never";
+
+    /**
+     * Returns the process-wide statistics refresher.
+     *
+     * @return The shared refresher.
+     */
+    public static AutoAnalyze getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a table whose statistics are stale for analyzing by the background thread, starting the thread on
+     * first use. A table already waiting in the queue is not added twice.
+     *
+     * @param databaseName The name of the database.
+     * @param tableName The name of the table.
+     */
+    public static void schedule(String databaseName, String tableName) {
+        INSTANCE.enqueue(databaseName + "/" + tableName);
+    }
+
+    /**
+     * Adds a table to the queue.
+     *
+     * @param table The database name and table name, separated by a slash.
+     */
+    private synchronized void enqueue(String table) {
+        if (queue.add(table)) {
+            if (worker == null) {
+                worker = new Thread(this, "tinydb-analyze");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the next queued table.
+     *
+     * @return The database name and table name, separated by a slash.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private synchronized String take() throws InterruptedException {
+        while (queue.isEmpty()) {
+            wait();
+        }
+        String table = queue.iterator().next();
+        queue.remove(table);
+        return table;
+    }
+
+    /**
+     * Analyzes queued tables until the process exits. Every table is analyzed in a session of its own against
+     * a snapshot of the committed data, like an ANALYZE statement.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            String table;
+            try {
+                table = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            String databaseName = table.substring(0, table.indexOf('/'));
+            String tableName = table.substring(table.indexOf('/') + 1);
+            Session session = new Session();
+            session.setActiveDatabase(databaseName);
+            try {
+                TableStatistics[] statistics = new TableStatistics[1];
+                TransactionManager.read(() -> statistics[0] = AnalyzeCommand.analyze(session, tableName));
+                String summary = "Analyzed " + databaseName + "." + tableName + ": " + statistics[0].getRowCount()
+                        + " rows";
+                synchronized (this) {
+                    runs++;
+                    lastRun = summary;
+                }
+                LogManager.logEvent("ANALYZE", summary);
+            } catch (Exception e) {
+                LogManager.logEvent("ANALYZE", "Analyze of " + databaseName + "." + tableName + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns a summary of the refresher counters.
+     *
+     * @return The refresher statistics.
+     */
+    public synchronized String getStats() {
+        return "Runs: " + runs + ", queued tables: " + queue.size() + "\n"
+                + "Last run: " + lastRun;
+    }
+}
@@ -0,0 +1,738 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BPlusTree implements Index {
+    private static final int MAGIC = 0x54444249; // "TDBI"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_KEY_SIZE = HeapFile.PAGE_SIZE / 8;
+    private static final int NODE_HEADER_SIZE = 7;
+    private static final int BULK_LOAD_FILL = HeapFile.PAGE_SIZE * 9 / 10;
+
+    private final File file;
+    private final BufferPool bufferPool;
+    private final int fileId;
+    private final ColumnType keyType;
+    private int rootPage;
+    private int pageCount;
+
+    /**
+     * Opens a B+tree whose nodes are pages of the given file.
+     * Page 0 holds the tree header (root page, page count and key type). Entries are ordered by
+     * (key, record id), so the same tree layout serves unique and non-unique indexes.
+     *
+     * @param file The index file.
+     * @param fileId The identifier of the file in the buffer pool.
+     * @param keyType The type of the indexed column.
+     * @param rootPage The page number of the root node.
+     * @param pageCount The number of pages in the file.
+     */
+    private BPlusTree(File file, int fileId, ColumnType keyType, int rootPage, int pageCount) {
+        this.file = file;
+        this.bufferPool = BufferPool.getInstance();
+        this.fileId = fileId;
+        this.keyType = keyType;
+        this.rootPage = rootPage;
+        this.pageCount = pageCount;
+    }
+
+    /**
+     * Creates a new, empty B+tree index file.
+     *
+     * @param file The index file to create.
+     * @param keyType The type of the indexed column.
+     * @return The open tree.
+     * @throws IOException If the file already exists or cannot be written.
+     */
+    public static BPlusTree create(File file, ColumnType keyType) throws IOException {
+        BufferPool bufferPool = BufferPool.getInstance();
+        if (!bufferPool.createFile(file)) {
+            throw new IOException("Index file already exists: " + file.getPath());
+        }
+        BPlusTree tree = new BPlusTree(file, bufferPool.openFile(file), keyType, 1, 2);
+        Node root = new Node(true);
+        BufferPool.Frame frame = bufferPool.pinNew(tree.fileId, 1);
+        try {
+            tree.writeNode(root, frame.getBuffer());
+        } finally {
+            bufferPool.unpin(frame, true);
+        }
+        tree.writeHeader();
+        return tree;
+    }
+
+    /**
+     * Opens an existing B+tree index file.
+     *
+     * @param file The index file to open.
+     * @return The open tree.
+     * @throws IOException If the file cannot be read or is not an index file.
+     */
+    public static BPlusTree open(File file) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("Index file does not exist: " + file.getPath());
+        }
+        BufferPool bufferPool = BufferPool.getInstance();
+        int fileId = bufferPool.openFile(file);
+        BufferPool.Frame frame = bufferPool.pin(fileId, 0);
+        try {
+            ByteBuffer header = frame.getBuffer();
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not a TinyDB index file: " + file.getPath());
+            }
+            ColumnType keyType = ColumnType.values()[header.get(16)];
+            return new BPlusTree(file, fileId, keyType, header.getInt(8), header.getInt(12));
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+    }
+
+    /**
+     * Returns the file backing this tree.
+     *
+     * @return The index file.
+     */
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Converts a column value into a key of the indexed type.
+     *
+     * @param value The column value.
+     * @return The key, or null if the value is null.
+     * @throws Exception If the value does not match the key type.
+     */
+    @Override
+    public Object toKey(String value) throws Exception {
+        return KeyCodec.toKey(keyType, value);
+    }
+
+    /**
+     * Adds an entry to the tree, splitting nodes on the way back up when they overflow their page.
+     *
+     * @param key The key.
+     * @param recordId The record the key points to.
+     * @throws IOException If the key is too large or an I/O error occurs.
+     */
+    @Override
+    public void insert(Object key, long recordId) throws IOException {
+        if (KeyCodec.size(keyType, key) > MAX_KEY_SIZE) {
+            throw new IOException("Index key is too long.");
+        }
+        readHeader();
+        Split split = insert(rootPage, key, recordId);
+        if (split != null) {
+            Node newRoot = new Node(false);
+            newRoot.children.add(rootPage);
+            newRoot.keys.add(split.key);
+            newRoot.recordIds.add(split.recordId);
+            newRoot.children.add(split.rightPage);
+            int newRootPage = allocatePage();
+            writeNode(newRootPage, newRoot);
+            rootPage = newRootPage;
+            writeHeader();
+        }
+    }
+
+    /**
+     * Fills an empty tree from a batch of entries bottom-up: the entries are sorted, packed into leaves left to
+     * right and the internal levels are built over them. This is much faster than inserting the entries one by
+     * one and leaves some free space in every node for later inserts.
+     *
+     * @param keys The keys of the entries.
+     * @param recordIds The record identifiers of the entries, in the same order as the keys.
+     * @throws IOException If the tree is not empty, a key is too large or an I/O error occurs.
+     */
+    public void load(List<Object> keys, List<Long> recordIds) throws IOException {
+        readHeader();
+        Node root = readNode(rootPage);
+        if (!root.leaf || !root.keys.isEmpty()) {
+            throw new IOException("Bulk load requires an empty index.");
+        }
+        Entry[] entries = new Entry[keys.size()];
+        for (int i = 0; i < entries.length; i++) {
+            if (KeyCodec.size(keyType, keys.get(i)) > MAX_KEY_SIZE) {
+                throw new IOException("Index key is too long.");
+            }
+            entries[i] = new Entry(keys.get(i), recordIds.get(i));
+        }
+        Arrays.sort(entries);
+
+        // Pack the sorted entries into leaves
+        List<Node> level = new ArrayList<>();
+        Node leaf = new Node(true);
+        int leafSize = NODE_HEADER_SIZE;
+        for (Entry entry : entries) {
+            int entrySize = KeyCodec.size(keyType, entry.key) + 8;
+            if (!leaf.keys.isEmpty() && leafSize + entrySize > BULK_LOAD_FILL) {
+                level.add(leaf);
+                leaf = new Node(true);
+                leafSize = NODE_HEADER_SIZE;
+            }
+            leaf.keys.add(entry.key);
+            leaf.recordIds.add(entry.recordId);
+            leafSize += entrySize;
+        }
+        level.add(leaf);
+
+        List<Integer> pages = new ArrayList<>();
+        List<Object> lowKeys = new ArrayList<>();
+        List<Long> lowRecordIds = new ArrayList<>();
+        for (int i = 0; i < level.size(); i++) {
+            pages.add(i == 0 ? rootPage : allocatePage());
+        }
+        for (int i = 0; i < level.size(); i++) {
+            Node node = level.get(i);
+            node.next = i + 1 < level.size() ? pages.get(i + 1) : 0;
+            writeNode(pages.get(i), node);
+            if (!node.keys.isEmpty()) {
+                lowKeys.add(node.keys.get(0));
+                lowRecordIds.add(node.recordIds.get(0));
+            }
+        }
+
+        // Build each internal level over the one below until a single root remains. The separator in front of
+        // a child is the smallest entry of its subtree.
+        while (pages.size() > 1) {
+            List<Integer> parentPages = new ArrayList<>();
+            List<Object> parentLowKeys = new ArrayList<>();
+            List<Long> parentLowRecordIds = new ArrayList<>();
+            Node parent = null;
+            int parentSize = 0;
+            for (int i = 0; i < pages.size(); i++) {
+                int entrySize = KeyCodec.size(keyType, lowKeys.get(i)) + 12;
+                if (parent != null && parentSize + entrySize > BULK_LOAD_FILL) {
+                    int pageNumber = allocatePage();
+                    writeNode(pageNumber, parent);
+                    parentPages.add(pageNumber);
+                    parent = null;
+                }
+                if (parent == null) {
+                    parent = new Node(false);
+                    parent.children.add(pages.get(i));
+                    parentSize = NODE_HEADER_SIZE + 4;
+                    parentLowKeys.add(lowKeys.get(i));
+                    parentLowRecordIds.add(lowRecordIds.get(i));
+                } else {
+                    parent.keys.add(lowKeys.get(i));
+                    parent.recordIds.add(lowRecordIds.get(i));
+                    parent.children.add(pages.get(i));
+                    parentSize += entrySize;
+                }
+            }
+            int pageNumber = allocatePage();
+            writeNode(pageNumber, parent);
+            parentPages.add(pageNumber);
+            pages = parentPages;
+            lowKeys = parentLowKeys;
+            lowRecordIds = parentLowRecordIds;
+        }
+        rootPage = pages.get(0);
+        writeHeader();
+    }
+
+    /**
+     * Removes an entry from the tree. Underfull leaves are left in place rather than merged.
+     *
+     * @param key The key.
+     * @param recordId The record the key points to.
+     * @return true if the entry existed, false otherwise.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public boolean delete(Object key, long recordId) throws IOException {
+        readHeader();
+        int pageNumber = findLeaf(key, recordId);
+        Node leaf = readNode(pageNumber);
+        for (int i = 0; i < leaf.keys.size(); i++) {
+            if (KeyCodec.compare(leaf.keys.get(i), key) == 0 && leaf.recordIds.get(i) == recordId) {
+                leaf.keys.remove(i);
+                leaf.recordIds.remove(i);
+                writeNode(pageNumber, leaf);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the records stored under a key.
+     *
+     * @param key The key to look up.
+     * @return The matching record identifiers in ascending order.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public List<Long> search(Object key) throws IOException {
+        List<Long> recordIds = new ArrayList<>();
+        RangeScan scan = range(key, true, key, true);
+        while (scan.next()) {
+            recordIds.add(scan.getRecordId());
+        }
+        return recordIds;
+    }
+
+    /**
+     * Starts an ordered scan over the entries whose keys fall between two bounds. The scan seeks to the
+     * first leaf of the range and then follows the leaf links, so only the pages holding the range are read.
+     *
+     * @param low The lower bound, or null to start at the smallest key.
+     * @param lowInclusive true if entries equal to the lower bound are included.
+     * @param high The upper bound, or null to continue to the largest key.
+     * @param highInclusive true if entries equal to the upper bound are included.
+     * @return A scan positioned before the first entry of the range.
+     * @throws IOException If an I/O error occurs.
+     */
+    public RangeScan range(Object low, boolean lowInclusive, Object high, boolean highInclusive) throws IOException {
+        readHeader();
+        int pageNumber = low == null ? findLeftmostLeaf() : findLeaf(low, Long.MIN_VALUE);
+        return new RangeScan(pageNumber, low, lowInclusive, high, highInclusive);
+    }
+
+    /**
+     * Releases the tree. Its dirty pages stay in the buffer pool, which writes them back after their changes
+     * are in the write-ahead log.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Inserts an entry into the subtree rooted at a page.
+     *
+     * @param pageNumber The root of the subtree.
+     * @param key The key.
+     * @param recordId The record identifier.
+     * @return The separator and new right sibling if the node split, or null.
+     * @throws IOException If an I/O error occurs.
+     */
+    private Split insert(int pageNumber, Object key, long recordId) throws IOException {
+        Node node = readNode(pageNumber);
+        int position = node.search(key, recordId);
+
+        if (node.leaf) {
+            node.keys.add(position, key);
+            node.recordIds.add(position, recordId);
+        } else {
+            Split childSplit = insert(node.children.get(position), key, recordId);
+            if (childSplit == null) {
+                return null;
+            }
+            node.keys.add(position, childSplit.key);
+            node.recordIds.add(position, childSplit.recordId);
+            node.children.add(position + 1, childSplit.rightPage);
+        }
+
+        if (nodeSize(node) <= HeapFile.PAGE_SIZE) {
+            writeNode(pageNumber, node);
+            return null;
+        }
+        return split(pageNumber, node);
+    }
+
+    /**
+     * Splits an overflowing node in two, writing both halves.
+     *
+     * @param pageNumber The page of the node.
+     * @param node The overflowing node.
+     * @return The separator to insert into the parent and the page of the new right node.
+     * @throws IOException If an I/O error occurs.
+     */
+    private Split split(int pageNumber, Node node) throws IOException {
+        int middle = node.keys.size() / 2;
+        Node right = new Node(node.leaf);
+        int rightPage = allocatePage();
+        Split split;
+
+        if (node.leaf) {
+            right.keys.addAll(node.keys.subList(middle, node.keys.size()));
+            right.recordIds.addAll(node.recordIds.subList(middle, node.recordIds.size()));
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.recordIds.subList(middle, node.recordIds.size()).clear();
+            right.next = node.next;
+            node.next = rightPage;
+            split = new Split(right.keys.get(0), right.recordIds.get(0), rightPage);
+        } else {
+            split = new Split(node.keys.get(middle), node.recordIds.get(middle), rightPage);
+            right.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+            right.recordIds.addAll(node.recordIds.subList(middle + 1, node.recordIds.size()));
+            right.children.addAll(node.children.subList(middle + 1, node.children.size()));
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.recordIds.subList(middle, node.recordIds.size()).clear();
+            node.children.subList(middle + 1, node.children.size()).clear();
+        }
+
+        writeNode(pageNumber, node);
+        writeNode(rightPage, right);
+        return split;
+    }
+
+    /**
+     * Descends from the root to the leaf where an entry belongs.
+     *
+     * @param key The key.
+     * @param recordId The record identifier, or Long.MIN_VALUE to find the first entry of the key.
+     * @return The page number of the leaf.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int findLeaf(Object key, long recordId) throws IOException {
+        int pageNumber = rootPage;
+        while (true) {
+            Node node = readNode(pageNumber);
+            if (node.leaf) {
+                return pageNumber;
+            }
+            pageNumber = node.children.get(node.search(key, recordId));
+        }
+    }
+
+    /**
+     * Descends from the root along the first children to the leaf holding the smallest keys.
+     *
+     * @return The page number of the leftmost leaf.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int findLeftmostLeaf() throws IOException {
+        int pageNumber = rootPage;
+        while (true) {
+            Node node = readNode(pageNumber);
+            if (node.leaf) {
+                return pageNumber;
+            }
+            pageNumber = node.children.get(0);
+        }
+    }
+
+    /**
+     * Appends a page to the index file.
+     *
+     * @return The number of the new page.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int allocatePage() throws IOException {
+        int pageNumber = pageCount++;
+        bufferPool.unpin(bufferPool.pinNew(fileId, pageNumber), true);
+        writeHeader();
+        return pageNumber;
+    }
+
+    /**
+     * Reads the root page and page count from the tree header, which other open instances of the tree may have
+     * changed since this one last read or wrote it.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void readHeader() throws IOException {
+        BufferPool.Frame frame = bufferPool.pin(fileId, 0);
+        try {
+            rootPage = frame.getBuffer().getInt(8);
+            pageCount = frame.getBuffer().getInt(12);
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+    }
+
+    /**
+     * Writes the tree header.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeHeader() throws IOException {
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, 0);
+        try {
+            ByteBuffer header = frame.getBuffer();
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT_VERSION);
+            header.putInt(8, rootPage);
+            header.putInt(12, pageCount);
+            header.put(16, (byte) keyType.ordinal());
+        } finally {
+            bufferPool.unpin(frame, true);
+        }
+    }
+
+    /**
+     * Reads and deserializes a node.
+     *
+     * @param pageNumber The page of the node.
+     * @return The node.
+     * @throws IOException If an I/O error occurs.
+     */
+    private Node readNode(int pageNumber) throws IOException {
+        BufferPool.Frame frame = bufferPool.pin(fileId, pageNumber);
+        try {
+            ByteBuffer buffer = frame.getBuffer();
+            Node node = new Node(buffer.get(0) == 1);
+            int count = buffer.getShort(1) & 0xFFFF;
+            node.next = buffer.getInt(3);
+            int position = NODE_HEADER_SIZE;
+            if (!node.leaf) {
+                node.children.add(buffer.getInt(position));
+                position += 4;
+            }
+            for (int i = 0; i < count; i++) {
+                Object key = KeyCodec.read(keyType, buffer, position);
+                position += KeyCodec.size(keyType, key);
+                node.keys.add(key);
+                node.recordIds.add(buffer.getLong(position));
+                position += 8;
+                if (!node.leaf) {
+                    node.children.add(buffer.getInt(position));
+                    position += 4;
+                }
+            }
+            return node;
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+    }
+
+    /**
+     * Serializes a node into its page.
+     *
+     * @param pageNumber The page of the node.
+     * @param node The node.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeNode(int pageNumber, Node node) throws IOException {
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+        try {
+            writeNode(node, frame.getBuffer());
+        } finally {
+            bufferPool.unpin(frame, true);
+        }
+    }
+
+    /**
+     * Serializes a node into a page buffer.
+     *
+     * @param node The node.
+     * @param buffer The page buffer.
+     */
+    private void writeNode(Node node, ByteBuffer buffer) {
+        buffer.put(0, (byte) (node.leaf ? 1 : 0));
+        buffer.putShort(1, (short) node.keys.size());
+        buffer.putInt(3, node.next);
+        int position = NODE_HEADER_SIZE;
+        if (!node.leaf) {
+            buffer.putInt(position, node.children.get(0));
+            position += 4;
+        }
+        for (int i = 0; i < node.keys.size(); i++) {
+            position = KeyCodec.write(keyType, buffer, position, node.keys.get(i));
+            buffer.putLong(position, node.recordIds.get(i));
+            position += 8;
+            if (!node.leaf) {
+                buffer.putInt(position, node.children.get(i + 1));
+                position += 4;
+            }
+        }
+    }
+
+    /**
+     * Computes the serialized size of a node.
+     *
+     * @param node The node.
+     * @return The size in bytes.
+     */
+    private int nodeSize(Node node) {
+        int size = NODE_HEADER_SIZE + (node.leaf ? 0 : 4);
+        for (Object key : node.keys) {
+            size += KeyCodec.size(keyType, key) + 8 + (node.leaf ? 0 : 4);
+        }
+        return size;
+    }
+
+    /**
+     * An in-memory copy of a tree node. Leaves hold (key, record id) entries and a link to the next leaf;
+     * internal nodes hold separator entries between their children.
+     */
+    private static class Node {
+        private final boolean leaf;
+        private final List<Object> keys = new ArrayList<>();
+        private final List<Long> recordIds = new ArrayList<>();
+        private final List<Integer> children = new ArrayList<>();
+        private int next = 0;
+
+        /**
+         * Constructs an empty node.
+         *
+         * @param leaf true for a leaf node, false for an internal node.
+         */
+        private Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        /**
+         * Finds the position of an entry: the insertion point in a leaf, or the child to descend into.
+         *
+         * @param key The key.
+         * @param recordId The record identifier.
+         * @return The position of the first entry greater than (key, recordId).
+         */
+        private int search(Object key, long recordId) {
+            int low = 0;
+            int high = keys.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = KeyCodec.compare(keys.get(middle), key);
+                if (comparison == 0) {
+                    comparison = Long.compare(recordIds.get(middle), recordId);
+                }
+                if (comparison <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * A (key, record id) pair being bulk loaded, ordered like the entries of the tree.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final Object key;
+        private final long recordId;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param key The key.
+         * @param recordId The record identifier.
+         */
+        private Entry(Object key, long recordId) {
+            this.key = key;
+            this.recordId = recordId;
+        }
+
+        /**
+         * Compares entries by key, then by record identifier.
+         *
+         * @param other The entry to compare with.
+         * @return A negative number, zero or a positive number as this entry sorts before, with or after the other.
+         */
+        @Override
+        public int compareTo(Entry other) {
+            int comparison = KeyCodec.compare(key, other.key);
+            return comparison != 0 ? comparison : Long.compare(recordId, other.recordId);
+        }
+    }
+
+    /**
+     * The result of splitting a node: the separator entry and the page of the new right sibling.
+     */
+    private static class Split {
+        private final Object key;
+        private final long recordId;
+        private final int rightPage;
+
+        /**
+         * Constructs a split result.
+         *
+         * @param key The separator key.
+         * @param recordId The record identifier of the separator entry.
+         * @param rightPage The page of the new right node.
+         */
+        private Split(Object key, long recordId, int rightPage) {
+            this.key = key;
+            this.recordId = recordId;
+            this.rightPage = rightPage;
+        }
+    }
+
+    /**
+     * An ordered scan over a key range, reading one leaf at a time.
+     */
+    public class RangeScan {
+        private final Object low;
+        private final boolean lowInclusive;
+        private final Object high;
+        private final boolean highInclusive;
+        private int nextPage;
+        private Node leaf;
+        private int position = -1;
+        private boolean finished = false;
+
+        /**
+         * Constructs a scan starting at the given leaf.
+         *
+         * @param firstPage The leaf holding the first entries of the range.
+         * @param low The lower bound, or null.
+         * @param lowInclusive true if the lower bound is included.
+         * @param high The upper bound, or null.
+         * @param highInclusive true if the upper bound is included.
+         */
+        private RangeScan(int firstPage, Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+            this.nextPage = firstPage;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        /**
+         * Advances to the next entry of the range.
+         *
+         * @return true if there is another entry, false when the range is exhausted.
+         * @throws IOException If an I/O error occurs.
+         */
+        public boolean next() throws IOException {
+            while (!finished) {
+                position++;
+                if (leaf == null || position >= leaf.keys.size()) {
+                    if (nextPage == 0) {
+                        finished = true;
+                        return false;
+                    }
+                    leaf = readNode(nextPage);
+                    nextPage = leaf.next;
+                    position = -1;
+                    continue;
+                }
+                Object key = leaf.keys.get(position);
+                if (low != null) {
+                    int comparison = KeyCodec.compare(key, low);
+                    if (comparison < 0 || (comparison == 0 && !lowInclusive)) {
+                        continue;
+                    }
+                }
+                if (high != null) {
+                    int comparison = KeyCodec.compare(key, high);
+                    if (comparison > 0 || (comparison == 0 && !highInclusive)) {
+                        finished = true;
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns the key of the current entry.
+         *
+         * @return The key.
+         */
+        public Object getKey() {
+            return leaf.keys.get(position);
+        }
+
+        /**
+         * Returns the record identifier of the current entry.
+         *
+         * @return The record identifier.
+         */
+        public long getRecordId() {
+            return leaf.recordIds.get(position);
+        }
+    }
+}
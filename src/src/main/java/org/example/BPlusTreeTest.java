@@ -0,0 +1,151 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BPlusTreeTest {
+
+    private CommandProcessor commandProcessor;
+    private File file;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        file = new File("tinydb/databases/" + commandProcessor.getSession().getActiveDatabase() + "/KEYS.idx");
+    }
+
+    @Test
+    void testSplitsKeepEntriesOrdered() throws Exception {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; key < 5000; key++) {
+            keys.add(key);
+        }
+        Collections.shuffle(keys, new Random(42));
+        BPlusTree tree = BPlusTree.create(file, ColumnType.INT);
+        for (long key : keys) {
+            tree.insert(key, key * 10);
+        }
+        assertNotEquals(1, rootPage(file), "The root never split");
+
+        assertEquals(List.of(25000L), tree.search(2500L));
+        assertEquals(range(0, 5000), scan(tree.range(null, true, null, true)));
+        assertEquals(range(101, 201), scan(tree.range(100L, false, 200L, true)));
+
+        BPlusTree reopened = BPlusTree.open(file);
+        assertEquals(List.of(49990L), reopened.search(4999L));
+        assertEquals(5000, scan(reopened.range(null, true, null, true)).size());
+    }
+
+    @Test
+    void testDeletesRemoveEntries() throws Exception {
+        BPlusTree tree = BPlusTree.create(file, ColumnType.INT);
+        for (long key = 0; key < 3000; key++) {
+            tree.insert(key, key * 10);
+        }
+        // Deleting the first keys empties whole leaves, which stay linked in place
+        for (long key = 0; key < 3000; key++) {
+            if (key < 1000 || key % 2 == 1) {
+                assertTrue(tree.delete(key, key * 10));
+            }
+        }
+        assertFalse(tree.delete(500L, 5000L), "A deleted entry was deleted again");
+        assertFalse(tree.delete(1000L, 1L), "An entry was deleted under another record");
+
+        List<Long> expected = new ArrayList<>();
+        for (long key = 1000; key < 3000; key += 2) {
+            expected.add(key * 10);
+        }
+        assertEquals(expected, scan(tree.range(null, true, null, true)));
+        assertTrue(tree.search(500L).isEmpty());
+        assertEquals(List.of(10020L, 10040L), scan(tree.range(1001L, true, 1004L, true)));
+
+        tree.insert(500L, 1L);
+        tree.insert(2000L, 1L);
+        assertEquals(List.of(1L), tree.search(500L));
+        assertEquals(List.of(1L, 20000L), tree.search(2000L), "Entries of one key are not ordered by record");
+    }
+
+    @Test
+    void testPrimaryKeyIndexSplitsAndDeletes() throws Exception {
+        commandProcessor.processCommand("CREATE TABLE ITEMS (ID INT(PK), NAME STRING);");
+        PreparedCommand insert = commandProcessor.prepare("INSERT INTO ITEMS (ID, NAME) VALUES (?, ?);");
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        for (int id = 3000; id > 0; id--) {
+            commandProcessor.execute(insert, id, "ITEM" + id);
+        }
+        commandProcessor.processCommand("COMMIT;");
+        File dbDir = new File("tinydb/databases/" + commandProcessor.getSession().getActiveDatabase());
+        assertNotEquals(1, rootPage(HeapTable.getPrimaryKeyIndexFile(dbDir, "ITEMS")), "The root never split");
+
+        commandProcessor.processCommand("DELETE FROM ITEMS WHERE ID > 1000 AND ID <= 2000;");
+        assertEquals(2000, commandProcessor.query("SELECT ID FROM ITEMS;").getRowCount());
+        assertEquals(0, commandProcessor.query("SELECT ID FROM ITEMS WHERE ID = 1500;").getRowCount());
+        QueryResult result = commandProcessor.query("SELECT NAME FROM ITEMS WHERE ID = 2001;");
+        assertEquals(1, result.getRowCount());
+        assertEquals("ITEM2001", result.getRows().get(0)[0]);
+
+        // A deleted key can be used again, while a live one is still rejected
+        commandProcessor.execute(insert, 1500, "AGAIN");
+        assertEquals("AGAIN", commandProcessor.query("SELECT NAME FROM ITEMS WHERE ID = 1500;").getRows().get(0)[0]);
+        Exception exception = assertThrows(Exception.class, () -> commandProcessor.execute(insert, 2500, "DUP"));
+        assertTrue(exception.getMessage().contains("not unique"), exception.getMessage());
+    }
+
+    private int rootPage(File indexFile) throws Exception {
+        BufferPool bufferPool = BufferPool.getInstance();
+        BufferPool.Frame frame = bufferPool.pin(bufferPool.openFile(indexFile), 0);
+        try {
+            return frame.getBuffer().getInt(8);
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+    }
+
+    private List<Long> scan(BPlusTree.RangeScan scan) throws Exception {
+        List<Long> recordIds = new ArrayList<>();
+        while (scan.next()) {
+            recordIds.add(scan.getRecordId());
+        }
+        return recordIds;
+    }
+
+    private List<Long> range(long from, long to) {
+        List<Long> recordIds = new ArrayList<>();
+        for (long key = from; key < to; key++) {
+            recordIds.add(key * 10);
+        }
+        return recordIds;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        BufferPool.getInstance().dropFile(file);
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
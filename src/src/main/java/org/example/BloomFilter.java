@@ -0,0 +1,134 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+public class BloomFilter {
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * Constructs an empty filter sized for the expected number of keys.
+     * With 10 bits per key the false positive rate is about 1%.
+     *
+     * @param expectedKeys The number of keys that will be added.
+     * @param bitsPerKey The number of bits to spend per key.
+     */
+    public BloomFilter(long expectedKeys, int bitsPerKey) {
+        long size = Math.max(64, Math.min(expectedKeys * bitsPerKey, Integer.MAX_VALUE - 63));
+        this.bits = new long[(int) ((size + 63) / 64)];
+        this.bitCount = bits.length * 64;
+        this.hashCount = Math.max(1, Math.min(30, (int) Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    /**
+     * Constructs a filter from its serialized bits.
+     *
+     * @param bits The bit array.
+     * @param hashCount The number of hash functions.
+     */
+    private BloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.bitCount = bits.length * 64;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key The key (a Long, Double or String).
+     */
+    public void add(Object key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(first + i * second, bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added to the filter.
+     *
+     * @param key The key (a Long, Double or String).
+     * @return false if the key was certainly not added, true if it may have been.
+     */
+    public boolean mightContain(Object key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(first + i * second, bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the serialized filter.
+     *
+     * @return The size in bytes.
+     */
+    public int getSerializedSize() {
+        return 8 + bits.length * 8;
+    }
+
+    /**
+     * Writes the filter into a buffer.
+     *
+     * @param buffer The buffer to write to, at its current position.
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(hashCount);
+        buffer.putInt(bits.length);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by {@link #write(ByteBuffer)}.
+     *
+     * @param buffer The buffer to read from, at its current position.
+     * @return The filter.
+     */
+    public static BloomFilter read(ByteBuffer buffer) {
+        int hashCount = buffer.getInt();
+        long[] bits = new long[buffer.getInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new BloomFilter(bits, hashCount);
+    }
+
+    /**
+     * Computes a 64-bit hash of a key.
+     *
+     * @param key The key.
+     * @return The hash.
+     */
+    private static long hash(Object key) {
+        long hash;
+        if (key instanceof Long) {
+            hash = (Long) key;
+        } else if (key instanceof Double) {
+            hash = Double.doubleToLongBits((Double) key);
+        } else {
+            String text = (String) key;
+            hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < text.length(); i++) {
+                hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        // Finalizer of MurmurHash3 to spread the bits of sequential keys
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
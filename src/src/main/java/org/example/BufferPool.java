@@ -0,0 +1,975 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of page frames shared by every file of the process. The page table, the CLOCK hand and the
+ * counters are guarded by one lock that is held only for bookkeeping: page reads, write-backs and the log flushes
+ * they need run without it, while the frame involved is marked as having I/O in progress.
+ */
+public class BufferPool {
+    private static final int DEFAULT_SIZE_MB = 32;
+    private static final int MAX_RANGE_GAP = 8;
+    private static final int SPARE_IMAGES = 16;
+    static final int MAP_WINDOW_PAGES = 64 * 1024 * 1024 / HeapFile.PAGE_SIZE;
+    private static final BufferPool INSTANCE = new BufferPool(
+            (int) (Long.getLong("tinydb.bufferpool.mb", DEFAULT_SIZE_MB) * 1024 * 1024 / HeapFile.PAGE_SIZE));
+
+    private final int capacity;
+    private final List<Frame> frames = new ArrayList<>();
+    private final Map<Long, Frame> pageTable = new HashMap<>();
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final Map<Integer, String> paths = new HashMap<>();
+    private final Map<Integer, FileChannel> channels = new HashMap<>();
+    private final Map<Integer, Object> fileKeys = new HashMap<>();
+    private final Map<Long, MappedByteBuffer> mappings = new HashMap<>();
+    private final Deque<byte[]> spareImages = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ioDone = lock.newCondition();
+    private int nextFileId = 1;
+    private int clockHand = 0;
+    private WriteAheadLog log;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long writes = 0;
+
+    /**
+     * Constructs a buffer pool holding at most the given number of pages.
+     *
+     * @param capacity The number of page frames.
+     */
+    public BufferPool(int capacity) {
+        this.capacity = Math.max(8, capacity);
+    }
+
+    /**
+     * Returns the process-wide buffer pool. Its size is read from the system property
+     * tinydb.bufferpool.mb (default 32 MB).
+     *
+     * @return The shared buffer pool.
+     */
+    public static BufferPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers a file with the pool, opening (and creating if needed) its channel once for the whole process.
+     * If the file at this path was deleted and recreated behind the pool's back, the stale channel and its
+     * cached pages are discarded first. The first file opened replays the write-ahead log, so no page is read
+     * before the data files are up to date.
+     *
+     * @param file The file to open.
+     * @return The identifier used to pin pages of the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public int openFile(File file) throws IOException {
+        lock.lock();
+        try {
+            getLog();
+            String path = file.getAbsolutePath();
+            Integer fileId = fileIds.get(path);
+            if (fileId != null) {
+                if (Objects.equals(fileKeys.get(fileId), getFileKey(file))) {
+                    return fileId;
+                }
+                discard(fileId);
+            }
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            fileId = nextFileId++;
+            fileIds.put(path, fileId);
+            paths.put(fileId, path);
+            channels.put(fileId, channel);
+            fileKeys.put(fileId, getFileKey(file));
+            return fileId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pins a page in memory for reading, reading it from disk if it is not cached. Every pin must be matched by an
+     * unpin. A page that may be modified while pinned must be pinned with {@link #pinForUpdate} instead.
+     *
+     * @param fileId The file identifier.
+     * @param pageNumber The page number.
+     * @return The frame holding the page.
+     * @throws IOException If the page cannot be read or every frame is pinned.
+     */
+    public Frame pin(int fileId, int pageNumber) throws IOException {
+        lock.lock();
+        try {
+            while (true) {
+                Frame frame = pageTable.get(key(fileId, pageNumber));
+                if (frame != null) {
+                    if (frame.io) {
+                        ioDone.awaitUninterruptibly();
+                        continue;
+                    }
+                    hits++;
+                    frame.pinCount++;
+                    frame.referenced = true;
+                    return frame;
+                }
+                frame = allocateFrame(fileId, pageNumber);
+                if (frame != null) {
+                    misses++;
+                    readFrame(frame);
+                    return frame;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pins a page that the caller may modify. The first of the pins a page has for update takes a copy of the
+     * page as it was last logged, against which its changes are logged on unpin; pages that are only read never
+     * carry a copy.
+     *
+     * @param fileId The file identifier.
+     * @param pageNumber The page number.
+     * @return The frame holding the page.
+     * @throws IOException If the page cannot be read or every frame is pinned.
+     */
+    public Frame pinForUpdate(int fileId, int pageNumber) throws IOException {
+        Frame frame = pin(fileId, pageNumber);
+        lock.lock();
+        try {
+            if (frame.image == null) {
+                // Every change to an unpinned page has been logged, so the page itself is its last logged state
+                frame.image = takeImage();
+                System.arraycopy(frame.buffer.array(), 0, frame.image, 0, HeapFile.PAGE_SIZE);
+            }
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pins a zero-filled frame for a page that is being appended to a file, without reading it from disk.
+     *
+     * @param fileId The file identifier.
+     * @param pageNumber The page number.
+     * @return The frame holding the new page, already marked dirty and pinned for update.
+     * @throws IOException If every frame is pinned.
+     */
+    public Frame pinNew(int fileId, int pageNumber) throws IOException {
+        lock.lock();
+        try {
+            Frame frame = null;
+            while (frame == null) {
+                frame = pageTable.get(key(fileId, pageNumber));
+                if (frame != null && frame.io) {
+                    ioDone.awaitUninterruptibly();
+                    frame = null;
+                } else if (frame != null) {
+                    frame.pinCount++;
+                } else {
+                    frame = allocateFrame(fileId, pageNumber);
+                }
+            }
+            ByteBuffer buffer = frame.buffer;
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) 0);
+            }
+            buffer.clear();
+            if (frame.image == null) {
+                frame.image = takeImage();
+            }
+            Arrays.fill(frame.image, (byte) 0);
+            frame.formatted = true;
+            frame.dirty = true;
+            frame.referenced = true;
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a pin on a page. If the page was modified, the changed byte ranges are appended to the
+     * write-ahead log under the transaction of the current thread. The copy of a page pinned for update is kept
+     * for reuse once its last pin is released.
+     *
+     * @param frame The frame returned by pin.
+     * @param dirty true if the page was modified while pinned.
+     * @throws IOException If the change cannot be logged.
+     */
+    public void unpin(Frame frame, boolean dirty) throws IOException {
+        lock.lock();
+        try {
+            if (frame.pinCount <= 0) {
+                throw new IllegalStateException("Page " + frame.pageNumber + " is not pinned.");
+            }
+            if (dirty && frame.image == null) {
+                throw new IllegalStateException("Page " + frame.pageNumber + " was modified without a pin for update.");
+            }
+            frame.pinCount--;
+            if (dirty) {
+                logChanges(frame);
+                frame.dirty = true;
+            }
+            if (frame.pinCount == 0 && frame.image != null) {
+                releaseImage(frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all dirty pages of a file back to disk.
+     *
+     * @param fileId The file identifier.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void flushFile(int fileId) throws IOException {
+        lock.lock();
+        try {
+            for (int i = 0; i < frames.size(); i++) {
+                Frame frame = frames.get(i);
+                awaitIo(frame, fileId);
+                if (frame.fileId == fileId && frame.dirty) {
+                    writeFrame(frame);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every dirty page in the pool back to disk.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void flushAll() throws IOException {
+        lock.lock();
+        try {
+            for (int i = 0; i < frames.size(); i++) {
+                Frame frame = frames.get(i);
+                awaitIo(frame, frame.fileId);
+                if (frame.dirty) {
+                    writeFrame(frame);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a read-only memory mapping of the window of a file that holds a page. Files are mapped in windows
+     * of at most {@value #MAP_WINDOW_PAGES} pages, so files of any size can be mapped, and every window is
+     * mapped once and reused by later scans until the file grows past its end or the pool forgets the file.
+     * Callers write the dirty pages of the file back first, so that the mapping sees the same contents as the
+     * pool.
+     *
+     * @param fileId The file identifier.
+     * @param pageNumber The number of the page the window must hold.
+     * @return The mapped window, starting at page {@code pageNumber / MAP_WINDOW_PAGES * MAP_WINDOW_PAGES}.
+     * @throws IOException If an I/O error occurs.
+     */
+    public MappedByteBuffer map(int fileId, int pageNumber) throws IOException {
+        lock.lock();
+        try {
+            int window = pageNumber / MAP_WINDOW_PAGES;
+            long start = (long) window * MAP_WINDOW_PAGES * HeapFile.PAGE_SIZE;
+            long required = (long) (pageNumber + 1) * HeapFile.PAGE_SIZE - start;
+            MappedByteBuffer mapping = mappings.get(key(fileId, window));
+            if (mapping == null || mapping.capacity() < required) {
+                // A window that no longer covers the file is left to the garbage collector, as a scan may still use it
+                FileChannel channel = getChannel(fileId);
+                long size = Math.min((long) MAP_WINDOW_PAGES * HeapFile.PAGE_SIZE,
+                        Math.max(channel.size() - start, required));
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                mappings.put(key(fileId, window), mapping);
+            }
+            return mapping;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every dirty page to disk and forces all open files, so that the data files no longer depend on
+     * the write-ahead log.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void sync() throws IOException {
+        flushAll();
+        force();
+    }
+
+    /**
+     * Does the buffer pool part of a checkpoint. Unpinned pages that have been dirty since before the previous
+     * checkpoint are written back, so that recovery never has to go back further than one checkpoint. The
+     * dirty page table is logged in a checkpoint record while no page change can be logged, and the data files
+     * are forced so that every page missing from the table is on disk.
+     *
+     * @param log The write-ahead log.
+     * @param previousCheckpointLsn The LSN of the previous checkpoint, or 0.
+     * @return The LSN of the checkpoint record and the LSN from which recovery would have to redo changes.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long[] checkpoint(WriteAheadLog log, long previousCheckpointLsn) throws IOException {
+        long checkpointLsn;
+        long redoLsn = Long.MAX_VALUE;
+        lock.lock();
+        try {
+            for (int i = 0; i < frames.size(); i++) {
+                Frame frame = frames.get(i);
+                boolean old = frame.recoveryLsn != 0 && frame.recoveryLsn < previousCheckpointLsn;
+                if (frame.dirty && frame.pinCount == 0 && !frame.io && old) {
+                    writeFrame(frame);
+                }
+            }
+
+            List<Frame> dirtyFrames = new ArrayList<>();
+            int size = 4;
+            for (Frame frame : frames) {
+                if (frame.fileId != 0 && frame.recoveryLsn != 0) {
+                    dirtyFrames.add(frame);
+                    size += 2 + paths.get(frame.fileId).getBytes(StandardCharsets.UTF_8).length + 12;
+                }
+            }
+            ByteBuffer dirtyPages = ByteBuffer.allocate(size);
+            dirtyPages.putInt(dirtyFrames.size());
+            for (Frame frame : dirtyFrames) {
+                byte[] path = paths.get(frame.fileId).getBytes(StandardCharsets.UTF_8);
+                dirtyPages.putShort((short) path.length).put(path);
+                dirtyPages.putInt(frame.pageNumber).putLong(frame.recoveryLsn);
+                redoLsn = Math.min(redoLsn, frame.recoveryLsn);
+            }
+            checkpointLsn = log.logCheckpoint(dirtyPages.array());
+        } finally {
+            lock.unlock();
+        }
+        force();
+        return new long[] {checkpointLsn, Math.min(redoLsn, checkpointLsn)};
+    }
+
+    /**
+     * Writes the old contents of a logged page change back to the page, logging the restored bytes as a change
+     * of the current transaction. Does nothing if the file no longer exists.
+     *
+     * @param change The page change to undo.
+     * @throws IOException If the page cannot be read or the change cannot be logged.
+     */
+    public void restore(WriteAheadLog.PageChange change) throws IOException {
+        File file = new File(change.path);
+        if (!file.exists()) {
+            return;
+        }
+        Frame frame = pinForUpdate(openFile(file), change.pageNumber);
+        try {
+            for (int i = 0; i < change.offsets.length; i++) {
+                System.arraycopy(change.before[i], 0, frame.buffer.array(), change.offsets[i], change.before[i].length);
+            }
+        } finally {
+            unpin(frame, true);
+        }
+    }
+
+    /**
+     * Creates a new, empty file and logs its creation.
+     *
+     * @param file The file to create.
+     * @return true if the file was created, false if it already exists.
+     * @throws IOException If the file cannot be created.
+     */
+    public boolean createFile(File file) throws IOException {
+        lock.lock();
+        try {
+            if (file.exists()) {
+                return false;
+            }
+            getLog().logCreate(file.getAbsolutePath());
+            return file.createNewFile();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a file without writing its dirty pages, then deletes it and logs the deletion.
+     *
+     * @param file The file to delete.
+     * @return true if the file was deleted, false if it did not exist or could not be deleted.
+     * @throws IOException If the deletion cannot be logged.
+     */
+    public boolean deleteFile(File file) throws IOException {
+        lock.lock();
+        try {
+            dropFile(file);
+            if (!file.exists()) {
+                return false;
+            }
+            getLog().logDelete(file.getAbsolutePath());
+            return file.delete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces a file with another one and logs the rename. Pages of the source are written back first;
+     * pages of the replaced target are discarded.
+     *
+     * @param source The file to rename.
+     * @param target The file to replace.
+     * @throws IOException If the file cannot be renamed.
+     */
+    public void renameFile(File source, File target) throws IOException {
+        closeFile(source);
+        lock.lock();
+        try {
+            dropFile(target);
+            getLog().logRename(source.getAbsolutePath(), target.getAbsolutePath());
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes and forgets a file, closing its channel. Used before a file is renamed.
+     *
+     * @param file The file to close.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void closeFile(File file) throws IOException {
+        Integer fileId;
+        lock.lock();
+        try {
+            fileId = fileIds.get(file.getAbsolutePath());
+        } finally {
+            lock.unlock();
+        }
+        if (fileId == null) {
+            return;
+        }
+        // The file is latched by the caller, so no page of it is changed between the flush and the discard
+        flushFile(fileId);
+        lock.lock();
+        try {
+            if (fileId.equals(fileIds.get(file.getAbsolutePath()))) {
+                discard(fileId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets a file without writing its dirty pages, closing its channel. Used before a file is deleted.
+     *
+     * @param file The file to drop.
+     * @throws IOException If the channel cannot be closed.
+     */
+    public void dropFile(File file) throws IOException {
+        lock.lock();
+        try {
+            Integer fileId = fileIds.get(file.getAbsolutePath());
+            if (fileId != null) {
+                discard(fileId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a summary of the pool usage counters.
+     *
+     * @return The buffer pool statistics.
+     */
+    public String getStats() {
+        lock.lock();
+        try {
+            int dirtyPages = 0;
+            int pinnedPages = 0;
+            int images = spareImages.size();
+            for (Frame frame : frames) {
+                if (frame.fileId != 0) {
+                    dirtyPages += frame.dirty ? 1 : 0;
+                    pinnedPages += frame.pinCount > 0 ? 1 : 0;
+                }
+                images += frame.image != null ? 1 : 0;
+            }
+            long requests = hits + misses;
+            double hitRatio = requests == 0 ? 0 : (double) hits * 100 / requests;
+            long frameKb = capacity * (long) HeapFile.PAGE_SIZE / 1024;
+            long imageKb = images * (long) HeapFile.PAGE_SIZE / 1024;
+            return "Capacity: " + capacity + " pages (" + frameKb + " KB), "
+                    + "page copies for update: " + images + " (" + imageKb + " KB)\n"
+                    + "Resident: " + pageTable.size() + " pages, dirty: " + dirtyPages + ", pinned: " + pinnedPages
+                    + "\n"
+                    + "Hits: " + hits + ", misses: " + misses + String.format(" (hit ratio %.1f%%)", hitRatio) + "\n"
+                    + "Evictions: " + evictions + ", page writes: " + writes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of page requests served from memory.
+     *
+     * @return The hit count.
+     */
+    public long getHits() {
+        lock.lock();
+        try {
+            return hits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of page requests that had to read from disk.
+     *
+     * @return The miss count.
+     */
+    public long getMisses() {
+        lock.lock();
+        try {
+            return misses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of pages evicted to make room for others.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictions() {
+        lock.lock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds a frame for a page: a never-used frame while the pool is growing, otherwise a victim chosen by the
+     * CLOCK algorithm. Recently referenced frames get a second chance; pinned frames and frames with I/O in
+     * progress are skipped. A dirty victim is written back with the lock released, so by the time it is clean
+     * another thread may have used it or loaded the page itself; the caller then looks the page up again.
+     *
+     * @param fileId The file identifier of the new page.
+     * @param pageNumber The page number of the new page.
+     * @return The frame, pinned once and registered in the page table, or null if the lock was released.
+     * @throws IOException If a dirty victim cannot be written or every frame is pinned.
+     */
+    private Frame allocateFrame(int fileId, int pageNumber) throws IOException {
+        Frame frame = null;
+        if (frames.size() < capacity) {
+            frame = new Frame();
+            frames.add(frame);
+        } else {
+            boolean busy = false;
+            for (int steps = 0; steps < frames.size() * 2; steps++) {
+                Frame candidate = frames.get(clockHand);
+                clockHand = (clockHand + 1) % frames.size();
+                if (candidate.pinCount > 0 || candidate.io) {
+                    busy |= candidate.io;
+                    continue;
+                }
+                if (candidate.referenced) {
+                    candidate.referenced = false;
+                    continue;
+                }
+                frame = candidate;
+                break;
+            }
+            if (frame == null && busy) {
+                ioDone.awaitUninterruptibly();
+                return null;
+            }
+            if (frame == null) {
+                throw new IOException("Buffer pool exhausted: all " + capacity + " pages are pinned.");
+            }
+            if (frame.fileId != 0 && frame.dirty) {
+                writeFrame(frame);
+                boolean unused = frame.pinCount == 0 && !frame.io && !frame.dirty && !frame.referenced;
+                if (!unused || pageTable.containsKey(key(fileId, pageNumber))) {
+                    return null;
+                }
+            }
+            if (frame.fileId != 0) {
+                pageTable.remove(key(frame.fileId, frame.pageNumber));
+                evictions++;
+            }
+        }
+
+        frame.fileId = fileId;
+        frame.pageNumber = pageNumber;
+        frame.pinCount = 1;
+        frame.dirty = false;
+        frame.referenced = true;
+        frame.pageLsn = 0;
+        frame.recoveryLsn = 0;
+        pageTable.put(key(fileId, pageNumber), frame);
+        return frame;
+    }
+
+    /**
+     * Reads the page of a newly allocated frame from its file, zero-filling it past the end of the file. The
+     * read runs with the lock released; other threads asking for the page wait until it is done. If the read
+     * fails, the frame is given up.
+     *
+     * @param frame The frame, pinned once by the caller.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void readFrame(Frame frame) throws IOException {
+        FileChannel channel = getChannel(frame.fileId);
+        ByteBuffer buffer = frame.buffer;
+        long position = (long) frame.pageNumber * HeapFile.PAGE_SIZE;
+        boolean read = false;
+        frame.io = true;
+        lock.unlock();
+        try {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1) {
+                    while (buffer.hasRemaining()) {
+                        buffer.put((byte) 0);
+                    }
+                }
+            }
+            buffer.clear();
+            read = true;
+        } finally {
+            lock.lock();
+            frame.io = false;
+            if (!read) {
+                pageTable.remove(key(frame.fileId, frame.pageNumber));
+                frame.fileId = 0;
+                frame.pinCount = 0;
+                frame.referenced = false;
+            }
+            ioDone.signalAll();
+        }
+        frame.formatted = false;
+    }
+
+    /**
+     * Writes a frame to its file and clears its dirty flag. The log flush and the write run with the lock
+     * released; other threads asking for the page wait until they are done. The frame stays dirty if a change
+     * to it was logged meanwhile.
+     *
+     * @param frame The frame to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeFrame(Frame frame) throws IOException {
+        long pageLsn = frame.pageLsn;
+        WriteAheadLog log = pageLsn != 0 ? getLog() : null;
+        FileChannel channel = getChannel(frame.fileId);
+        long position = (long) frame.pageNumber * HeapFile.PAGE_SIZE;
+        frame.io = true;
+        lock.unlock();
+        try {
+            // Write-ahead rule: the log must describe a page before the page itself reaches the disk
+            if (log != null) {
+                log.flush(pageLsn);
+            }
+            ByteBuffer source = frame.buffer.duplicate();
+            source.clear();
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+        } finally {
+            lock.lock();
+            frame.io = false;
+            ioDone.signalAll();
+        }
+        if (frame.pageLsn == pageLsn) {
+            frame.dirty = false;
+            frame.recoveryLsn = 0;
+        }
+        writes++;
+    }
+
+    /**
+     * Waits until no I/O is in progress on a frame while it holds a page of a file.
+     *
+     * @param frame The frame.
+     * @param fileId The file identifier.
+     */
+    private void awaitIo(Frame frame, int fileId) {
+        while (frame.io && frame.fileId == fileId) {
+            ioDone.awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * Forces every open file to disk. The lock is released first; a file that the pool forgets meanwhile has
+     * nothing left worth forcing.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void force() throws IOException {
+        List<FileChannel> open;
+        lock.lock();
+        try {
+            open = new ArrayList<>(channels.values());
+        } finally {
+            lock.unlock();
+        }
+        for (FileChannel channel : open) {
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Forgotten by the pool after the list was taken
+            }
+        }
+    }
+
+    /**
+     * Removes every page of a file from the pool, unmaps its windows and closes its channel. The file is
+     * latched by the caller, so no scan still reads the windows; a write-back of one of its pages for an eviction
+     * elsewhere is waited for.
+     *
+     * @param fileId The file identifier.
+     * @throws IOException If the channel cannot be closed.
+     */
+    private void discard(int fileId) throws IOException {
+        for (int i = 0; i < frames.size(); i++) {
+            awaitIo(frames.get(i), fileId);
+        }
+        Iterator<Map.Entry<Long, Frame>> iterator = pageTable.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Frame frame = iterator.next().getValue();
+            if (frame.fileId == fileId) {
+                frame.fileId = 0;
+                frame.pinCount = 0;
+                frame.dirty = false;
+                frame.referenced = false;
+                frame.image = null;
+                iterator.remove();
+            }
+        }
+        fileIds.values().remove(fileId);
+        paths.remove(fileId);
+        fileKeys.remove(fileId);
+        Iterator<Map.Entry<Long, MappedByteBuffer>> windows = mappings.entrySet().iterator();
+        while (windows.hasNext()) {
+            Map.Entry<Long, MappedByteBuffer> window = windows.next();
+            if ((int) (window.getKey() >>> 32) == fileId) {
+                unmap(window.getValue());
+                windows.remove();
+            }
+        }
+        FileChannel channel = channels.remove(fileId);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Releases a mapped window right away instead of when it is garbage collected, so that the file can be
+     * deleted or renamed on platforms that refuse to while it is mapped. If the runtime does not allow it, the
+     * window is left to the garbage collector.
+     *
+     * @param mapping The mapped window.
+     */
+    private static void unmap(MappedByteBuffer mapping) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), mapping);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LogManager.logEvent("UNMAP FAILED", "Mapped window left to the garbage collector: " + e);
+        }
+    }
+
+    /**
+     * Appends the byte ranges a caller changed since the page was last logged to the write-ahead log.
+     * Ranges separated by only a few unchanged bytes are merged into one.
+     *
+     * @param frame The modified frame.
+     * @throws IOException If the change cannot be logged.
+     */
+    private void logChanges(Frame frame) throws IOException {
+        byte[] page = frame.buffer.array();
+        byte[] image = frame.image;
+        int[] ranges = new int[16];
+        int rangeCount = 0;
+        int offset = 0;
+        while (offset < HeapFile.PAGE_SIZE) {
+            int mismatch = Arrays.mismatch(page, offset, HeapFile.PAGE_SIZE, image, offset, HeapFile.PAGE_SIZE);
+            if (mismatch == -1) {
+                break;
+            }
+            int start = offset + mismatch;
+            int end = start + 1;
+            while (end < HeapFile.PAGE_SIZE) {
+                int next = Arrays.mismatch(page, end, HeapFile.PAGE_SIZE, image, end, HeapFile.PAGE_SIZE);
+                if (next == -1 || next > MAX_RANGE_GAP) {
+                    break;
+                }
+                end += next + 1;
+            }
+            if (rangeCount * 2 == ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[rangeCount * 2] = start;
+            ranges[rangeCount * 2 + 1] = end - start;
+            rangeCount++;
+            offset = end;
+        }
+        if (rangeCount == 0 && !frame.formatted) {
+            return;
+        }
+        frame.pageLsn = getLog().logPage(paths.get(frame.fileId), frame.pageNumber, frame.formatted, page, image,
+                ranges, rangeCount);
+        if (frame.recoveryLsn == 0) {
+            frame.recoveryLsn = frame.pageLsn;
+        }
+        System.arraycopy(page, 0, image, 0, HeapFile.PAGE_SIZE);
+        frame.formatted = false;
+    }
+
+    /**
+     * Returns a page-sized array for the copy of a page pinned for update, reusing a released one if there is.
+     *
+     * @return The array.
+     */
+    private byte[] takeImage() {
+        byte[] image = spareImages.poll();
+        return image != null ? image : new byte[HeapFile.PAGE_SIZE];
+    }
+
+    /**
+     * Detaches the copy from a frame whose last pin was released, keeping a few copies for later pins.
+     *
+     * @param frame The frame.
+     */
+    private void releaseImage(Frame frame) {
+        if (spareImages.size() < SPARE_IMAGES) {
+            spareImages.push(frame.image);
+        }
+        frame.image = null;
+    }
+
+    /**
+     * Returns the write-ahead log, opening (and replaying) it on first use.
+     *
+     * @return The log.
+     */
+    private WriteAheadLog getLog() {
+        if (log == null) {
+            log = WriteAheadLog.getInstance();
+        }
+        return log;
+    }
+
+    /**
+     * Returns the identity of a file on disk (such as its inode), which changes when the file is recreated.
+     *
+     * @param file The file.
+     * @return The file key, or null if the file system does not provide one or the file does not exist.
+     */
+    static Object getFileKey(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the channel of a registered file.
+     *
+     * @param fileId The file identifier.
+     * @return The file channel.
+     * @throws IOException If the file is not registered.
+     */
+    private FileChannel getChannel(int fileId) throws IOException {
+        FileChannel channel = channels.get(fileId);
+        if (channel == null) {
+            throw new IOException("File " + fileId + " is not open in the buffer pool.");
+        }
+        return channel;
+    }
+
+    /**
+     * Builds the page table key of a page.
+     *
+     * @param fileId The file identifier.
+     * @param pageNumber The page number.
+     * @return The page table key.
+     */
+    private static long key(int fileId, int pageNumber) {
+        return ((long) fileId << 32) | (pageNumber & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A page-sized buffer in the pool together with its bookkeeping.
+     */
+    public static class Frame {
+        private final ByteBuffer buffer = ByteBuffer.allocate(HeapFile.PAGE_SIZE);
+        private byte[] image;
+        private int fileId;
+        private int pageNumber;
+        private int pinCount;
+        private boolean dirty;
+        private boolean referenced;
+        private boolean formatted;
+        private boolean io;
+        private long pageLsn;
+        private long recoveryLsn;
+
+        /**
+         * Returns the page contents. The buffer may only be used while the frame is pinned.
+         *
+         * @return The page buffer.
+         */
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Returns the number of the page held by this frame.
+         *
+         * @return The page number.
+         */
+        public int getPageNumber() {
+            return pageNumber;
+        }
+    }
+}
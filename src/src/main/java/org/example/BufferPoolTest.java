@@ -0,0 +1,183 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BufferPoolTest {
+
+    private CommandProcessor commandProcessor;
+    private BufferPool pool;
+    private File file;
+    private int fileId;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @BeforeEach
+    void createPool() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        file = new File("tinydb/databases/" + commandProcessor.getSession().getActiveDatabase() + "/POOL.dat");
+        pool = new BufferPool(8);
+        fileId = pool.openFile(file);
+    }
+
+    @Test
+    void testCountsHitsMissesAndEvictions() throws Exception {
+        for (int page = 0; page < 8; page++) {
+            touch(page);
+        }
+        assertEquals(8, pool.getMisses());
+        assertEquals(0, pool.getHits());
+        assertEquals(0, pool.getEvictions(), "A page was evicted while the pool had free frames");
+
+        touch(3);
+        assertEquals(1, pool.getHits());
+        assertEquals(8, pool.getMisses());
+
+        touch(8);
+        assertEquals(9, pool.getMisses());
+        assertEquals(1, pool.getEvictions());
+        assertTrue(pool.getStats().contains("Evictions: 1"), pool.getStats());
+    }
+
+    @Test
+    void testClockGivesReferencedPagesASecondChance() throws Exception {
+        for (int page = 0; page < 8; page++) {
+            touch(page);
+        }
+        // Every page is referenced, so the hand clears them all and evicts the first page on its second turn
+        touch(8);
+        // The hand now stands at page 1; referencing it again makes the hand pass it and evict page 2 instead
+        touch(1);
+        touch(9);
+        assertEquals(2, pool.getEvictions());
+
+        assertTrue(isCached(1), "A referenced page was evicted");
+        assertTrue(isCached(3));
+        assertTrue(isCached(8));
+        // Checking for an evicted page reads it back, so these come last
+        assertFalse(isCached(2), "The unreferenced page after the hand was not the victim");
+        assertFalse(isCached(0), "The first page was not the victim");
+    }
+
+    @Test
+    void testPinnedPagesAreNotEvicted() throws Exception {
+        List<BufferPool.Frame> pinned = new ArrayList<>();
+        for (int page = 0; page < 8; page++) {
+            pinned.add(pool.pin(fileId, page));
+        }
+        IOException exception = assertThrows(IOException.class, () -> pool.pin(fileId, 8));
+        assertTrue(exception.getMessage().contains("exhausted"), exception.getMessage());
+
+        pool.unpin(pinned.get(5), false);
+        touch(8);
+        assertEquals(1, pool.getEvictions());
+        for (int page = 0; page < 8; page++) {
+            if (page != 5) {
+                pool.unpin(pinned.get(page), false);
+                assertTrue(isCached(page), "Pinned page " + page + " was evicted");
+            }
+        }
+        assertFalse(isCached(5), "The only unpinned page was not the victim");
+    }
+
+    @Test
+    void testOnlyPagesPinnedForUpdateCarryACopy() throws Exception {
+        for (int page = 0; page < 8; page++) {
+            touch(page);
+        }
+        assertTrue(pool.getStats().contains("page copies for update: 0 "), pool.getStats());
+
+        BufferPool.Frame frame = pool.pinForUpdate(fileId, 2);
+        assertTrue(pool.getStats().contains("page copies for update: 1 "), pool.getStats());
+        frame.getBuffer().putInt(100, 42);
+        pool.unpin(frame, true);
+        // The released copy is kept for the next pin for update
+        pool.unpin(pool.pinForUpdate(fileId, 3), false);
+        assertTrue(pool.getStats().contains("page copies for update: 1 "), pool.getStats());
+        assertTrue(pool.getStats().contains("dirty: 1"), pool.getStats());
+
+        BufferPool.Frame readOnly = pool.pin(fileId, 4);
+        assertThrows(IllegalStateException.class, () -> pool.unpin(readOnly, true));
+        pool.unpin(readOnly, false);
+    }
+
+    @Test
+    void testConcurrentMissesReadTheirOwnPages() throws Exception {
+        for (int page = 0; page < 64; page++) {
+            BufferPool.Frame frame = pool.pinNew(fileId, page);
+            frame.getBuffer().putInt(0, page);
+            pool.unpin(frame, true);
+        }
+        // Dirty victims are written back and pages read again while other threads pin and evict
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        int page = random.nextInt(64);
+                        BufferPool.Frame frame = pool.pin(fileId, page);
+                        try {
+                            assertEquals(page, frame.getBuffer().getInt(0), "A frame holds the wrong page");
+                        } finally {
+                            pool.unpin(frame, false);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+        assertEquals(8000, pool.getHits() + pool.getMisses());
+    }
+
+    private void touch(int page) throws IOException {
+        pool.unpin(pool.pin(fileId, page), false);
+    }
+
+    private boolean isCached(int page) throws IOException {
+        long hits = pool.getHits();
+        touch(page);
+        return pool.getHits() > hits;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.dropFile(file);
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,227 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class Catalog {
+    private static final Catalog INSTANCE = new Catalog();
+
+    private final Map<String, Map<String, TableSchema>> databases = new HashMap<>();
+    private final Map<String, TableStatistics> statistics = new HashMap<>();
+
+    /**
+     * Constructs the process-wide catalog.
+     */
+    private Catalog() {
+    }
+
+    /**
+     * Returns the process-wide catalog.
+     *
+     * @return The catalog.
+     */
+    public static Catalog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads the metadata files of a database into the catalog, replacing anything cached for it.
+     * Tables whose metadata cannot be read are reported and left out.
+     *
+     * @param dbDir The directory of the database.
+     */
+    public synchronized void load(File dbDir) {
+        Map<String, TableSchema> tables = new TreeMap<>();
+        File[] metaFiles = dbDir.listFiles((dir, name) -> name.endsWith("_meta.txt"));
+        if (metaFiles != null) {
+            for (File metaFile : metaFiles) {
+                String tableName = metaFile.getName().replace("_meta.txt", "");
+                try {
+                    tables.put(tableName.toUpperCase(), TableSchema.load(metaFile));
+                } catch (Exception e) {
+                    System.out.println("Error loading metadata of table " + tableName + ": " + e.getMessage());
+                    LogManager.logEvent("LOAD CATALOG", "Metadata of table " + tableName + " could not be read: " + e.getMessage());
+                }
+            }
+        }
+        databases.put(getKey(dbDir), tables);
+        statistics.keySet().removeIf(key -> key.startsWith(getKey(dbDir) + File.separator));
+    }
+
+    /**
+     * Returns the schema of a table in a database.
+     *
+     * @param databaseName The name of the database.
+     * @param tableName The name of the table.
+     * @return The schema of the table.
+     * @throws Exception If the table has no metadata.
+     */
+    public TableSchema getTable(String databaseName, String tableName) throws Exception {
+        return getTable(new File("tinydb/databases/" + databaseName), tableName);
+    }
+
+    /**
+     * Returns the schema of a table in a database directory.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The schema of the table.
+     * @throws Exception If the table has no metadata.
+     */
+    public TableSchema getTable(File dbDir, String tableName) throws Exception {
+        TableSchema schema = findTable(dbDir, tableName);
+        if (schema == null) {
+            throw new Exception("Metadata file for table " + tableName + " does not exist.");
+        }
+        return schema;
+    }
+
+    /**
+     * Looks up the schema of a table, loading the database into the catalog on first use.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The schema of the table, or null if the table has no metadata.
+     */
+    public synchronized TableSchema findTable(File dbDir, String tableName) {
+        return getTables(dbDir).get(tableName.trim().toUpperCase());
+    }
+
+    /**
+     * Returns the schemas of all tables in a database, ordered by table name.
+     *
+     * @param dbDir The directory of the database.
+     * @return The table schemas.
+     */
+    public synchronized List<TableSchema> getTableSchemas(File dbDir) {
+        return new ArrayList<>(getTables(dbDir).values());
+    }
+
+    /**
+     * Returns the names of all tables in a database, ordered by name.
+     *
+     * @param dbDir The directory of the database.
+     * @return The table names.
+     */
+    public synchronized List<String> getTableNames(File dbDir) {
+        List<String> names = new ArrayList<>();
+        for (TableSchema schema : getTables(dbDir).values()) {
+            names.add(schema.getTableName());
+        }
+        return names;
+    }
+
+    /**
+     * Re-reads the metadata of one table after it was created, changed or dropped.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @throws Exception If the metadata file exists but cannot be read.
+     */
+    public synchronized void invalidate(File dbDir, String tableName) throws Exception {
+        Map<String, TableSchema> tables = databases.get(getKey(dbDir));
+        if (tables == null) {
+            return;
+        }
+        String key = tableName.trim().toUpperCase();
+        tables.remove(key);
+        statistics.remove(getStatisticsKey(dbDir, tableName));
+        File metaFile = new File(dbDir, tableName.trim() + "_meta.txt");
+        if (metaFile.exists()) {
+            tables.put(key, TableSchema.load(metaFile));
+        }
+    }
+
+    /**
+     * Returns the statistics of a table collected by ANALYZE, reading its statistics file on first use.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The statistics, or null if the table has not been analyzed or has no metadata.
+     */
+    public synchronized TableStatistics getStatistics(File dbDir, String tableName) {
+        String key = getStatisticsKey(dbDir, tableName);
+        if (statistics.containsKey(key)) {
+            return statistics.get(key);
+        }
+        TableSchema schema = findTable(dbDir, tableName);
+        File statsFile = getStatisticsFile(dbDir, tableName);
+        TableStatistics tableStatistics = null;
+        if (schema != null && statsFile.exists()) {
+            try {
+                tableStatistics = TableStatistics.load(statsFile, schema);
+            } catch (IOException e) {
+                System.out.println("Error loading statistics of table " + tableName + ": " + e.getMessage());
+                LogManager.logEvent("LOAD CATALOG", "Statistics of table " + tableName + " could not be read: " + e.getMessage());
+            }
+        }
+        statistics.put(key, tableStatistics);
+        return tableStatistics;
+    }
+
+    /**
+     * Stores the statistics of a table in its statistics file, next to its metadata file, and in the catalog.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @param tableStatistics The statistics.
+     * @throws IOException If the statistics file cannot be written.
+     */
+    public synchronized void setStatistics(File dbDir, String tableName, TableStatistics tableStatistics)
+            throws IOException {
+        tableStatistics.save(getStatisticsFile(dbDir, tableName), tableName.trim().toUpperCase());
+        statistics.put(getStatisticsKey(dbDir, tableName), tableStatistics);
+    }
+
+    /**
+     * Returns the file that holds the statistics of a table.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The statistics file.
+     */
+    public static File getStatisticsFile(File dbDir, String tableName) {
+        return new File(dbDir, tableName.trim() + "_stats.txt");
+    }
+
+    /**
+     * Returns the cached tables of a database, loading them on first use.
+     *
+     * @param dbDir The directory of the database.
+     * @return The schemas keyed by upper-case table name.
+     */
+    private Map<String, TableSchema> getTables(File dbDir) {
+        Map<String, TableSchema> tables = databases.get(getKey(dbDir));
+        if (tables == null) {
+            load(dbDir);
+            tables = databases.get(getKey(dbDir));
+        }
+        return tables;
+    }
+
+    /**
+     * Returns the key under which a database is cached.
+     *
+     * @param dbDir The directory of the database.
+     * @return The absolute path of the directory.
+     */
+    private static String getKey(File dbDir) {
+        return dbDir.getAbsolutePath();
+    }
+
+    /**
+     * Returns the key under which the statistics of a table are cached.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The absolute path of the directory followed by the upper-case table name.
+     */
+    private static String getStatisticsKey(File dbDir, String tableName) {
+        return getKey(dbDir) + File.separator + tableName.trim().toUpperCase();
+    }
+}
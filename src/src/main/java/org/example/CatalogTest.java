@@ -0,0 +1,70 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CatalogTest {
+
+    private CommandProcessor commandProcessor;
+    private final File dbDir = new File("tinydb/databases/testdb");
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @BeforeEach
+    void createTestDatabaseAndTable() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE people (id INT(PK), name STRING, age INT);");
+    }
+
+    @Test
+    void testCreatedTableIsInCatalog() {
+        TableSchema schema = Catalog.getInstance().findTable(dbDir, "people");
+        assertNotNull(schema);
+        assertEquals(2, schema.getColumnIndex("age"));
+        assertTrue(schema.isPrimaryKey("id"));
+    }
+
+    @Test
+    void testCreateIndexUpdatesCatalog() throws Exception {
+        commandProcessor.processCommand("CREATE INDEX people_age ON people(age);");
+
+        TableSchema schema = Catalog.getInstance().findTable(dbDir, "people");
+        assertNotNull(schema.getIndex("people_age"));
+    }
+
+    @Test
+    void testDropRemovesTableFromCatalog() throws Exception {
+        commandProcessor.processCommand("DROP TABLE people;");
+
+        assertNull(Catalog.getInstance().findTable(dbDir, "people"));
+        Exception exception = assertThrows(Exception.class, () -> {
+            commandProcessor.processCommand("SELECT * FROM people;");
+        });
+        assertTrue(exception.getMessage().contains("does not exist"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,334 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+public class Client implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private int pending;
+
+    /**
+     * Constructs a client on a connected socket.
+     *
+     * @param socket The socket connected to the server.
+     * @throws IOException If the streams of the socket cannot be opened.
+     */
+    private Client(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Connects to a server and logs in. The connection runs its statements in a session of its own.
+     *
+     * @param host The host of the server.
+     * @param port The port of the server.
+     * @param userID The user ID.
+     * @param password The password.
+     * @param securityAnswer The answer to the user's security question.
+     * @return The connected client.
+     * @throws IOException If the server cannot be reached or rejects the credentials.
+     */
+    public static Client connect(String host, int port, String userID, String password, String securityAnswer)
+            throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            Client client = new Client(socket);
+            Server.writeFrame(client.out, Server.AUTHENTICATE, userID + "\n" + password + "\n" + securityAnswer);
+            client.out.flush();
+            Server.Frame reply = Server.readFrame(client.in);
+            if (reply == null || reply.type != Server.OK) {
+                throw new IOException(reply == null ? "The server closed the connection." : reply.getText());
+            }
+            return client;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a statement without waiting for its reply. Statements sent in a row are pipelined: they are written
+     * to the server together when the first reply is read, and their replies arrive in the order they were
+     * sent.
+     *
+     * @param statement The statement.
+     * @throws IOException If the statement cannot be sent.
+     */
+    public void send(String statement) throws IOException {
+        Server.writeFrame(out, Server.QUERY, statement);
+        pending++;
+    }
+
+    /**
+     * Waits for the reply to the oldest statement sent.
+     *
+     * @return The console output of the statement.
+     * @throws Exception If the statement failed, with the error reported by the server, or the connection
+     *                   failed.
+     */
+    public String receive() throws Exception {
+        return receive(Server.OK).getText();
+    }
+
+    /**
+     * Runs a statement and waits for its reply.
+     *
+     * @param statement The statement.
+     * @return The console output of the statement.
+     * @throws Exception If the statement failed or the connection failed.
+     */
+    public String execute(String statement) throws Exception {
+        send(statement);
+        return receive();
+    }
+
+    /**
+     * Runs a SELECT query and returns its rows as typed values, sent by the server in binary form rather than
+     * as console output.
+     *
+     * @param statement The query.
+     * @return The selected columns and the matching rows.
+     * @throws Exception If the query failed or the connection failed.
+     */
+    public QueryResult query(String statement) throws Exception {
+        return QueryResult.collect(openCursor(statement, 0));
+    }
+
+    /**
+     * Opens a cursor over the rows of a SELECT query. The server sends the rows in batches, each fetched when
+     * the previous one is used up, so only one batch is held in memory on either side. No other request may
+     * be sent while the cursor is reading a batch, but requests may be sent between batches.
+     *
+     * @param statement The query.
+     * @param fetchSize The number of rows per batch, or 0 for the server default.
+     * @return The cursor, positioned before the first row.
+     * @throws Exception If the query failed or the connection failed.
+     */
+    public Cursor openCursor(String statement, int fetchSize) throws Exception {
+        checkNoPendingReplies();
+        Server.writeFrame(out, Server.QUERY_ROWS, Math.max(fetchSize, 0) + "\n" + statement);
+        pending++;
+        RemoteCursor cursor = new RemoteCursor(fetchSize);
+        cursor.readBatch(receive(Server.ROWS));
+        return cursor;
+    }
+
+    /**
+     * Runs a statement without collecting its console output.
+     *
+     * @param statement The statement.
+     * @return The number of rows the statement inserted, updated or deleted.
+     * @throws Exception If the statement failed or the connection failed.
+     */
+    public long update(String statement) throws Exception {
+        checkNoPendingReplies();
+        Server.writeFrame(out, Server.UPDATE, statement);
+        pending++;
+        return Long.parseLong(receive(Server.OK).getText());
+    }
+
+    /**
+     * Checks that every statement sent has been answered, so that the next reply belongs to the next statement.
+     *
+     * @throws IllegalStateException If replies are still waiting to be received.
+     */
+    private void checkNoPendingReplies() {
+        if (pending != 0) {
+            throw new IllegalStateException(pending + " replies must be received first.");
+        }
+    }
+
+    /**
+     * Waits for the reply to the oldest statement sent.
+     *
+     * @param expected The type of a successful reply.
+     * @return The reply.
+     * @throws Exception If the statement failed, with the error reported by the server, or the connection
+     *                   failed.
+     */
+    private Server.Frame receive(byte expected) throws Exception {
+        if (pending == 0) {
+            throw new IllegalStateException("No statement is waiting for a reply.");
+        }
+        out.flush();
+        Server.Frame reply = Server.readFrame(in);
+        if (reply == null) {
+            throw new IOException("The server closed the connection.");
+        }
+        pending--;
+        if (reply.type == Server.ERROR) {
+            throw new Exception(reply.getText());
+        }
+        if (reply.type != expected) {
+            throw new IOException("Unexpected reply type: " + (char) reply.type);
+        }
+        return reply;
+    }
+
+    /**
+     * Logs out and closes the connection. The server rolls back the open transaction of the session.
+     *
+     * @throws IOException If the connection cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            Server.writeFrame(out, Server.QUIT, "");
+            out.flush();
+        } catch (IOException e) {
+            // The connection is already gone
+        } finally {
+            socket.close();
+        }
+    }
+
+    private class RemoteCursor implements Cursor {
+        private int cursorId;
+        private int fetchSize;
+        private QueryResult batch;
+        private int nextRow;
+        private Object[] row;
+        private boolean closed;
+
+        /**
+         * Constructs a cursor over the rows of a query opened on the server.
+         *
+         * @param fetchSize The number of rows per batch, or 0 for the server default.
+         */
+        private RemoteCursor(int fetchSize) {
+            this.fetchSize = Math.max(fetchSize, 0);
+        }
+
+        /**
+         * Reads a batch of rows sent by the server: the cursor identifier, or 0 once the server has sent the
+         * last row and closed its cursor, followed by the rows.
+         *
+         * @param reply The reply holding the batch.
+         * @throws IOException If the batch is malformed.
+         */
+        private void readBatch(Server.Frame reply) throws IOException {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(reply.data));
+            cursorId = data.readInt();
+            batch = QueryResult.read(data);
+            nextRow = 0;
+        }
+
+        /**
+         * Returns the number of result columns.
+         *
+         * @return The number of columns.
+         */
+        @Override
+        public int getColumnCount() {
+            return batch.getColumnCount();
+        }
+
+        /**
+         * Returns the name of a result column.
+         *
+         * @param column The position of the column.
+         * @return The column name.
+         */
+        @Override
+        public String getColumnName(int column) {
+            return batch.getColumnName(column);
+        }
+
+        /**
+         * Returns the type of a result column.
+         *
+         * @param column The position of the column.
+         * @return The column type.
+         */
+        @Override
+        public ColumnType getColumnType(int column) {
+            return batch.getColumnType(column);
+        }
+
+        /**
+         * Advances to the next row, fetching the next batch from the server when the current batch is used up.
+         *
+         * @return true if a row is available, false after the last row.
+         * @throws Exception If the cursor is closed, the server failed to read the rows, or the connection
+         *                   failed.
+         */
+        @Override
+        public boolean next() throws Exception {
+            if (closed) {
+                throw new Exception("Cursor is closed.");
+            }
+            if (nextRow == batch.getRowCount() && cursorId != 0) {
+                checkNoPendingReplies();
+                Server.writeFrame(out, Server.FETCH, cursorId + "\n" + fetchSize);
+                pending++;
+                try {
+                    readBatch(receive(Server.ROWS));
+                } catch (Exception e) {
+                    // The server closes a cursor that fails
+                    cursorId = 0;
+                    throw e;
+                }
+            }
+            row = nextRow < batch.getRowCount() ? batch.getRow(nextRow++) : null;
+            return row != null;
+        }
+
+        /**
+         * Returns the current row.
+         *
+         * @return The typed values of the row in column order.
+         */
+        @Override
+        public Object[] getRow() {
+            return row;
+        }
+
+        /**
+         * Sets the number of rows per batch for the batches fetched from now on.
+         *
+         * @param rows The number of rows, or 0 for the server default.
+         */
+        @Override
+        public void setFetchSize(int rows) {
+            fetchSize = Math.max(rows, 0);
+        }
+
+        /**
+         * Closes the cursor, and its server side if the server still holds rows for it.
+         *
+         * @throws IOException If the connection failed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            batch = new QueryResult(new String[0], new ColumnType[0]);
+            if (cursorId == 0) {
+                return;
+            }
+            checkNoPendingReplies();
+            Server.writeFrame(out, Server.CLOSE_CURSOR, String.valueOf(cursorId));
+            pending++;
+            try {
+                receive(Server.OK);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+}
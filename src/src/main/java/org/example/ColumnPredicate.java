@@ -0,0 +1,841 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+public abstract class ColumnPredicate extends RecordPredicate {
+    final RowCodec.FieldLocator field;
+    private final double cost;
+    private final double selectivity;
+
+    /**
+     * Constructs a condition on one column. Every kind of condition is compiled into its own class for the type
+     * of its column, with its values parsed and its operator resolved here, once per statement; so evaluating
+     * it on a record only reads the field and compares primitives, without looking at the schema, the operator
+     * or the text of the value again.
+     *
+     * @param schema The schema of the table.
+     * @param column The position of the column.
+     * @param cost The cost of evaluating the condition on one record.
+     * @param selectivity The estimated fraction of records that match.
+     */
+    ColumnPredicate(TableSchema schema, int column, double cost, double selectivity) {
+        this.field = new RowCodec.FieldLocator(schema, column);
+        this.cost = cost;
+        this.selectivity = Math.max(0, Math.min(1, selectivity));
+    }
+
+    /**
+     * Returns the cost of evaluating the condition on one record.
+     *
+     * @return The cost.
+     */
+    @Override
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Returns the estimated fraction of records that match.
+     *
+     * @return The selectivity, from 0 to 1.
+     */
+    @Override
+    public double getSelectivity() {
+        return selectivity;
+    }
+
+    /**
+     * Compiles a "column operator value" condition. INT and DOUBLE columns are compared as numbers of their own
+     * type, so that every comparison but inequality becomes a test of an inclusive range: for an INT column,
+     * {@code AGE > 29.5} is {@code AGE >= 30}. Equality and inequality on a string column compare the encoded
+     * bytes of the text; the other comparisons on a string column parse its text as a number.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table.
+     * @param column The position of the column.
+     * @param operator The comparison operator (=, &lt;&gt;, &lt;, &lt;=, &gt; or &gt;=).
+     * @param value The value to compare against.
+     * @return The predicate.
+     * @throws Exception If the operator is not supported or a numeric comparison value is not numeric.
+     */
+    static RecordPredicate compare(TableSchema schema, TableStatistics statistics, int column, String operator,
+                                   String value) throws Exception {
+        switch (operator) {
+            case ">":
+            case ">=":
+            case "<":
+            case "<=":
+            case "=":
+            case "<>":
+                break;
+            default:
+                throw new Exception("Unsupported operator: " + operator);
+        }
+        double selectivity = statistics.estimateSelectivity(schema, column, operator, value);
+        ColumnType type = schema.getColumnType(column);
+        if (type == ColumnType.STRING && (operator.equals("=") || operator.equals("<>"))) {
+            return new StringEquality(schema, column, value, operator.equals("<>"), selectivity);
+        }
+        if (operator.equals("<>")) {
+            double number = parseNumber(value);
+            if (type == ColumnType.DOUBLE) {
+                return new DoubleNotEqual(schema, column, number, selectivity);
+            }
+            if (isLong(number)) {
+                return new LongNotEqual(schema, column, longValue(value, number), selectivity);
+            }
+            // An INT field never equals a fraction
+            return new NullTest(schema, column, true, selectivity);
+        }
+        return range(schema, column, operator, value, null, null, selectivity);
+    }
+
+    /**
+     * Compiles a BETWEEN condition, which includes both bounds, into a single range test.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table.
+     * @param column The position of the column.
+     * @param low The lower bound.
+     * @param high The upper bound.
+     * @return The predicate.
+     * @throws Exception If a bound is not numeric.
+     */
+    static RecordPredicate between(TableSchema schema, TableStatistics statistics, int column, String low,
+                                   String high) throws Exception {
+        double selectivity = statistics.estimateSelectivity(schema, column, ">=", low)
+                + statistics.estimateSelectivity(schema, column, "<=", high)
+                - (1 - statistics.estimateNullFraction(column));
+        return range(schema, column, ">=", low, "<=", high, selectivity);
+    }
+
+    /**
+     * Compiles one or two comparisons on a numeric column, or on a string column compared numerically, into a
+     * test of the inclusive range of values that satisfy them all.
+     *
+     * @param schema The schema of the table.
+     * @param column The position of the column.
+     * @param operator The first comparison operator (=, &lt;, &lt;=, &gt; or &gt;=).
+     * @param value The value of the first comparison.
+     * @param operator2 The second comparison operator, or null.
+     * @param value2 The value of the second comparison, or null.
+     * @param selectivity The estimated fraction of records that match.
+     * @return The predicate.
+     * @throws Exception If a value is not numeric.
+     */
+    private static RecordPredicate range(TableSchema schema, int column, String operator, String value,
+                                         String operator2, String value2, double selectivity) throws Exception {
+        if (schema.getColumnType(column) == ColumnType.INT) {
+            long[] range = longRange(operator, value);
+            long[] range2 = operator2 == null ? range : longRange(operator2, value2);
+            if (range != null) {
+                range = range2 == null ? null
+                        : new long[]{Math.max(range[0], range2[0]), Math.min(range[1], range2[1])};
+            }
+            if (range == null || range[0] > range[1]) {
+                return NONE;
+            }
+            return new LongRange(schema, column, range[0], range[1], selectivity);
+        }
+        double[] range = doubleRange(operator, value);
+        double[] range2 = operator2 == null ? range : doubleRange(operator2, value2);
+        if (range != null) {
+            range = range2 == null ? null
+                    : new double[]{Math.max(range[0], range2[0]), Math.min(range[1], range2[1])};
+        }
+        if (range == null || range[0] > range[1]) {
+            return NONE;
+        }
+        if (schema.getColumnType(column) == ColumnType.DOUBLE) {
+            return new DoubleRange(schema, column, range[0], range[1], selectivity);
+        }
+        return new TextRange(schema, column, range[0], range[1], selectivity);
+    }
+
+    /**
+     * Works out the INT values that satisfy a comparison.
+     *
+     * @param operator The comparison operator (=, &lt;, &lt;=, &gt; or &gt;=).
+     * @param value The value to compare against.
+     * @return The lowest and highest value, or null if no INT value satisfies the comparison.
+     * @throws Exception If the value is not numeric.
+     */
+    private static long[] longRange(String operator, String value) throws Exception {
+        double number = parseNumber(value);
+        long exact;
+        try {
+            exact = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            if (!isLong(number)) {
+                // A fraction or a number beyond the range of INT: round the bound into the range
+                if (Double.isNaN(number) || operator.equals("=")) {
+                    return null;
+                }
+                boolean below = operator.startsWith("<");
+                if (number >= 0x1p63 || number < -0x1p63) {
+                    return below == number > 0 ? new long[]{Long.MIN_VALUE, Long.MAX_VALUE} : null;
+                }
+                return below ? new long[]{Long.MIN_VALUE, (long) Math.floor(number)}
+                        : new long[]{(long) Math.ceil(number), Long.MAX_VALUE};
+            }
+            exact = (long) number;
+        }
+        switch (operator) {
+            case "=":
+                return new long[]{exact, exact};
+            case "<":
+                return exact == Long.MIN_VALUE ? null : new long[]{Long.MIN_VALUE, exact - 1};
+            case "<=":
+                return new long[]{Long.MIN_VALUE, exact};
+            case ">":
+                return exact == Long.MAX_VALUE ? null : new long[]{exact + 1, Long.MAX_VALUE};
+            default:
+                return new long[]{exact, Long.MAX_VALUE};
+        }
+    }
+
+    /**
+     * Works out the DOUBLE values that satisfy a comparison. A strict bound becomes the next representable
+     * value, so that the range is inclusive.
+     *
+     * @param operator The comparison operator (=, &lt;, &lt;=, &gt; or &gt;=).
+     * @param value The value to compare against.
+     * @return The lowest and highest value, or null if no value satisfies the comparison.
+     * @throws Exception If the value is not numeric.
+     */
+    private static double[] doubleRange(String operator, String value) throws Exception {
+        double number = parseNumber(value);
+        if (Double.isNaN(number)) {
+            return null;
+        }
+        switch (operator) {
+            case "=":
+                return new double[]{number, number};
+            case "<":
+                return number == Double.NEGATIVE_INFINITY ? null
+                        : new double[]{Double.NEGATIVE_INFINITY, Math.nextDown(number)};
+            case "<=":
+                return new double[]{Double.NEGATIVE_INFINITY, number};
+            case ">":
+                return number == Double.POSITIVE_INFINITY ? null
+                        : new double[]{Math.nextUp(number), Double.POSITIVE_INFINITY};
+            default:
+                return new double[]{number, Double.POSITIVE_INFINITY};
+        }
+    }
+
+    /**
+     * Compiles an IS [NOT] NULL condition.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table.
+     * @param column The position of the column.
+     * @param negated true for IS NOT NULL.
+     * @return The predicate.
+     */
+    static RecordPredicate isNull(TableSchema schema, TableStatistics statistics, int column, boolean negated) {
+        double nullFraction = statistics.estimateNullFraction(column);
+        return new NullTest(schema, column, negated, negated ? 1 - nullFraction : nullFraction);
+    }
+
+    /**
+     * Compiles a [NOT] IN condition. The values are parsed once and looked up by binary search for numeric
+     * columns, and by hashing for string columns.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table.
+     * @param column The position of the column.
+     * @param values The values the column may hold, none of them NULL.
+     * @param negated true for NOT IN.
+     * @return The predicate.
+     * @throws Exception If a value for a numeric column is not numeric.
+     */
+    static RecordPredicate in(TableSchema schema, TableStatistics statistics, int column, List<String> values,
+                              boolean negated) throws Exception {
+        double selectivity = 0;
+        for (String value : new HashSet<>(values)) {
+            selectivity += statistics.estimateSelectivity(schema, column, "=", value);
+        }
+        double notNull = 1 - statistics.estimateNullFraction(column);
+        selectivity = Math.min(selectivity, notNull);
+        if (negated) {
+            selectivity = notNull - selectivity;
+        }
+
+        switch (schema.getColumnType(column)) {
+            case INT:
+                long[] longs = new long[values.size()];
+                int count = 0;
+                for (String value : values) {
+                    double number = parseNumber(value);
+                    if (isLong(number)) {
+                        longs[count++] = longValue(value, number);
+                    }
+                }
+                longs = Arrays.copyOf(longs, count);
+                Arrays.sort(longs);
+                return new LongIn(schema, column, longs, negated, selectivity);
+            case DOUBLE:
+                double[] doubles = new double[values.size()];
+                for (int i = 0; i < doubles.length; i++) {
+                    doubles[i] = parseNumber(values.get(i));
+                }
+                Arrays.sort(doubles);
+                return new DoubleIn(schema, column, doubles, negated, selectivity);
+            default:
+                return new StringIn(schema, column, new HashSet<>(values), negated, selectivity);
+        }
+    }
+
+    /**
+     * Compiles a [NOT] LIKE condition.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table.
+     * @param column The position of the column.
+     * @param pattern The pattern, where % stands for any number of characters and _ for exactly one.
+     * @param negated true for NOT LIKE.
+     * @return The predicate.
+     */
+    static RecordPredicate like(TableSchema schema, TableStatistics statistics, int column, String pattern,
+                                boolean negated) {
+        double selectivity = statistics.estimatePattern(schema, column, pattern);
+        if (negated) {
+            selectivity = 1 - statistics.estimateNullFraction(column) - selectivity;
+        }
+        return new PatternMatch(schema, column, pattern, negated, selectivity);
+    }
+
+    /**
+     * Parses a comparison value as a number.
+     *
+     * @param value The value.
+     * @return The number.
+     * @throws Exception If the value is not numeric.
+     */
+    private static double parseNumber(String value) throws Exception {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new Exception("Comparison value must be numeric.");
+        }
+    }
+
+    /**
+     * Checks whether a number is a whole number an INT field can hold.
+     *
+     * @param number The number.
+     * @return true if the number has no fraction and lies within the range of INT, false otherwise.
+     */
+    private static boolean isLong(double number) {
+        return number == Math.rint(number) && number >= -0x1p63 && number < 0x1p63;
+    }
+
+    /**
+     * Returns the whole number a comparison value stands for, read exactly when it is written as an integer.
+     *
+     * @param value The value.
+     * @param number The value parsed as a double.
+     * @return The number.
+     */
+    private static long longValue(String value, double number) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return (long) number;
+        }
+    }
+
+    /**
+     * An inclusive range of INT values: every comparison but inequality on an INT column.
+     */
+    static final class LongRange extends ColumnPredicate {
+        private final long low;
+        private final long high;
+
+        /**
+         * Constructs a range test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param low The lowest matching value.
+         * @param high The highest matching value.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        LongRange(TableSchema schema, int column, long low, long high, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * Tests the field of the record, read as a long straight from the record bytes.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field lies within the range, false otherwise or if the field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            if (position == -1) {
+                return false;
+            }
+            long value = buffer.getLong(position);
+            return value >= low && value <= high;
+        }
+    }
+
+    /**
+     * {@code <column> <> <value>} on an INT column.
+     */
+    static final class LongNotEqual extends ColumnPredicate {
+        private final long value;
+
+        /**
+         * Constructs an inequality test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param value The value the field may not hold.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        LongNotEqual(TableSchema schema, int column, long value, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.value = value;
+        }
+
+        /**
+         * Tests the field of the record.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field holds another value, false otherwise or if the field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            return position != -1 && buffer.getLong(position) != value;
+        }
+    }
+
+    /**
+     * An inclusive range of DOUBLE values: every comparison but inequality on a DOUBLE column.
+     */
+    static final class DoubleRange extends ColumnPredicate {
+        private final double low;
+        private final double high;
+
+        /**
+         * Constructs a range test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param low The lowest matching value.
+         * @param high The highest matching value.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        DoubleRange(TableSchema schema, int column, double low, double high, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * Tests the field of the record, read as a double straight from the record bytes.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field lies within the range, false otherwise or if the field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            if (position == -1) {
+                return false;
+            }
+            double value = buffer.getDouble(position);
+            return value >= low && value <= high;
+        }
+    }
+
+    /**
+     * {@code <column> <> <value>} on a DOUBLE column.
+     */
+    static final class DoubleNotEqual extends ColumnPredicate {
+        private final double value;
+
+        /**
+         * Constructs an inequality test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param value The value the field may not hold.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        DoubleNotEqual(TableSchema schema, int column, double value, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.value = value;
+        }
+
+        /**
+         * Tests the field of the record.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field holds another value, false otherwise or if the field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            return position != -1 && buffer.getDouble(position) != value;
+        }
+    }
+
+    /**
+     * A numeric comparison on a string column, whose text has to be parsed on every record; the range is worked
+     * out once.
+     */
+    static final class TextRange extends ColumnPredicate {
+        private final double low;
+        private final double high;
+
+        /**
+         * Constructs a numeric test of a string column.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param low The lowest matching value.
+         * @param high The highest matching value.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        TextRange(TableSchema schema, int column, double low, double high, double selectivity) {
+            super(schema, column, STRING_COST, selectivity);
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * Tests the text of the field as a number.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the number lies within the range, false otherwise or if the field is null.
+         * @throws Exception If the field does not hold a numeric value.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) throws Exception {
+            int position = field.locate(buffer, offset);
+            if (position == -1) {
+                return false;
+            }
+            double value;
+            try {
+                value = Double.parseDouble(RowCodec.readString(buffer, position));
+            } catch (NumberFormatException e) {
+                throw new Exception("Comparison value must be numeric.");
+            }
+            return value >= low && value <= high;
+        }
+    }
+
+    /**
+     * {@code <column> = <value>} or {@code <column> <> <value>} on a string column, which compares the encoded
+     * bytes of the field with those of the value without decoding the field.
+     */
+    static final class StringEquality extends ColumnPredicate {
+        private final byte[] bytes;
+        private final boolean negated;
+
+        /**
+         * Constructs an equality test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param value The value to compare against.
+         * @param negated true for inequality.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        StringEquality(TableSchema schema, int column, String value, boolean negated, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.negated = negated;
+        }
+
+        /**
+         * Compares the field of the record with the value.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field holds the value (another value for inequality), false otherwise or if the
+         *         field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            if (position == -1) {
+                return false;
+            }
+            boolean equal = (buffer.getShort(position) & 0xFFFF) == bytes.length;
+            if (equal && buffer.hasArray()) {
+                int start = buffer.arrayOffset() + position + 2;
+                equal = Arrays.equals(buffer.array(), start, start + bytes.length, bytes, 0, bytes.length);
+            } else {
+                for (int i = 0; equal && i < bytes.length; i++) {
+                    equal = buffer.get(position + 2 + i) == bytes[i];
+                }
+            }
+            return equal != negated;
+        }
+    }
+
+    /**
+     * {@code <column> IS [NOT] NULL}, which only looks at the null bitmap of the record.
+     */
+    static final class NullTest extends ColumnPredicate {
+        private final boolean negated;
+
+        /**
+         * Constructs a null test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param negated true for IS NOT NULL.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        NullTest(TableSchema schema, int column, boolean negated, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.negated = negated;
+        }
+
+        /**
+         * Checks whether the field of the record is null.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field is null (not null for IS NOT NULL), false otherwise.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            return (field.locate(buffer, offset) == -1) != negated;
+        }
+    }
+
+    /**
+     * {@code <column> [NOT] IN (<value>, ...)} on an INT column.
+     */
+    static final class LongIn extends ColumnPredicate {
+        private final long[] values;
+        private final boolean negated;
+
+        /**
+         * Constructs an IN test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param values The values the field may hold, sorted.
+         * @param negated true for NOT IN.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        LongIn(TableSchema schema, int column, long[] values, boolean negated, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.values = values;
+            this.negated = negated;
+        }
+
+        /**
+         * Looks the field of the record up among the values.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field holds one of the values (none of them for NOT IN), false otherwise or if
+         *         the field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            return position != -1 && (Arrays.binarySearch(values, buffer.getLong(position)) >= 0) != negated;
+        }
+    }
+
+    /**
+     * {@code <column> [NOT] IN (<value>, ...)} on a DOUBLE column.
+     */
+    static final class DoubleIn extends ColumnPredicate {
+        private final double[] values;
+        private final boolean negated;
+
+        /**
+         * Constructs an IN test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param values The values the field may hold, sorted.
+         * @param negated true for NOT IN.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        DoubleIn(TableSchema schema, int column, double[] values, boolean negated, double selectivity) {
+            super(schema, column, NUMERIC_COST, selectivity);
+            this.values = values;
+            this.negated = negated;
+        }
+
+        /**
+         * Looks the field of the record up among the values.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field holds one of the values (none of them for NOT IN), false otherwise or if
+         *         the field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            return position != -1 && (Arrays.binarySearch(values, buffer.getDouble(position)) >= 0) != negated;
+        }
+    }
+
+    /**
+     * {@code <column> [NOT] IN (<value>, ...)} on a string column.
+     */
+    static final class StringIn extends ColumnPredicate {
+        private final Set<String> values;
+        private final boolean negated;
+
+        /**
+         * Constructs an IN test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param values The values the field may hold.
+         * @param negated true for NOT IN.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        StringIn(TableSchema schema, int column, Set<String> values, boolean negated, double selectivity) {
+            super(schema, column, STRING_COST, selectivity);
+            this.values = values;
+            this.negated = negated;
+        }
+
+        /**
+         * Looks the decoded field of the record up among the values.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the field holds one of the values (none of them for NOT IN), false otherwise or if
+         *         the field is null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            int position = field.locate(buffer, offset);
+            return position != -1 && values.contains(RowCodec.readString(buffer, position)) != negated;
+        }
+    }
+
+    /**
+     * {@code <column> [NOT] LIKE <pattern>}, matched against the text of the field. Patterns without wildcards
+     * and patterns whose only wildcard is a trailing % are compared directly; other patterns are translated to
+     * a regular expression once.
+     */
+    static final class PatternMatch extends ColumnPredicate {
+        private final boolean negated;
+        private final String prefix;
+        private final boolean exact;
+        private final Pattern regex;
+
+        /**
+         * Constructs a LIKE test.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         * @param pattern The pattern, where % stands for any number of characters and _ for exactly one.
+         * @param negated true for NOT LIKE.
+         * @param selectivity The estimated fraction of records that match.
+         */
+        PatternMatch(TableSchema schema, int column, String pattern, boolean negated, double selectivity) {
+            super(schema, column, isSimple(pattern) ? STRING_COST : PATTERN_COST, selectivity);
+            this.negated = negated;
+            int wildcard = firstWildcard(pattern);
+            if (wildcard == -1) {
+                this.prefix = pattern;
+                this.exact = true;
+                this.regex = null;
+            } else if (isSimple(pattern)) {
+                this.prefix = pattern.substring(0, wildcard);
+                this.exact = false;
+                this.regex = null;
+            } else {
+                StringBuilder expression = new StringBuilder();
+                int start = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    if (c == '%' || c == '_') {
+                        if (i > start) {
+                            expression.append(Pattern.quote(pattern.substring(start, i)));
+                        }
+                        expression.append(c == '%' ? ".*" : ".");
+                        start = i + 1;
+                    }
+                }
+                if (start < pattern.length()) {
+                    expression.append(Pattern.quote(pattern.substring(start)));
+                }
+                this.prefix = null;
+                this.exact = false;
+                this.regex = Pattern.compile(expression.toString(), Pattern.DOTALL);
+            }
+        }
+
+        /**
+         * Checks whether a pattern can be matched without a regular expression.
+         *
+         * @param pattern The pattern.
+         * @return true if the pattern has no wildcard, or only a trailing %.
+         */
+        private static boolean isSimple(String pattern) {
+            int wildcard = firstWildcard(pattern);
+            return wildcard == -1 || wildcard == pattern.length() - 1 && pattern.charAt(wildcard) == '%';
+        }
+
+        /**
+         * Finds the first wildcard of a pattern.
+         *
+         * @param pattern The pattern.
+         * @return The position of the first % or _, or -1 if the pattern has none.
+         */
+        private static int firstWildcard(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                if (pattern.charAt(i) == '%' || pattern.charAt(i) == '_') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Matches the text of the field against the pattern.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the text matches (does not match for NOT LIKE), false otherwise or if the field is
+         *         null.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            String value = field.decodeText(buffer, offset);
+            if (value == null) {
+                return false;
+            }
+            boolean found;
+            if (regex != null) {
+                found = regex.matcher(value).matches();
+            } else {
+                found = exact ? value.equals(prefix) : value.startsWith(prefix);
+            }
+            return found != negated;
+        }
+    }
+}
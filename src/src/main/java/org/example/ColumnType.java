@@ -0,0 +1,40 @@
+package org.example;
+
+public enum ColumnType {
+    INT,
+    DOUBLE,
+    STRING;
+
+    /**
+     * Resolves the storage type of a column from its declared SQL type.
+     * Declarations such as "INT(PK)" or "VARCHAR(50)" are reduced to their base type first.
+     *
+     * @param declaration The declared type as written in the Structure line of the metadata file.
+     * @return The storage type used to encode values of the column.
+     */
+    public static ColumnType fromDeclaration(String declaration) {
+        String type = declaration.trim().toUpperCase();
+        int parenthesisIndex = type.indexOf('(');
+        if (parenthesisIndex != -1) {
+            type = type.substring(0, parenthesisIndex).trim();
+        }
+
+        switch (type) {
+            case "INT":
+            case "INTEGER":
+            case "BIGINT":
+            case "SMALLINT":
+            case "TINYINT":
+            case "LONG":
+                return INT;
+            case "DOUBLE":
+            case "FLOAT":
+            case "REAL":
+            case "DECIMAL":
+            case "NUMERIC":
+                return DOUBLE;
+            default:
+                return STRING;
+        }
+    }
+}
@@ -1,72 +1,277 @@
 package org.example;
 
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 public class CommandProcessor {
-    public static String activeDatabase = null;
-    public static String databaseNames;
-    private static TransactionManager transactionManager = new TransactionManager();
+    private final Session session;
+
+    /**
+     * Constructs a command processor with a session of its own.
+     */
+    public CommandProcessor() {
+        this(new Session());
+    }
+
+    /**
+     * Constructs a command processor that runs statements in a session.
+     *
+     * @param session The session.
+     */
+    public CommandProcessor(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Returns the session the processor runs statements in.
+     *
+     * @return The session.
+     */
+    public Session getSession() {
+        return session;
+    }
 
     /**
      * Processes the input command by identifying its type and executing the appropriate action.
+     * Processors of different sessions can be called from different threads at the same time; the statements
+     * of one session run one at a time.
      *
      * @param input The input command to process.
      * @throws Exception If an error occurs during command processing.
      */
-    public static void processCommand(String input) throws Exception {
+    public void processCommand(String input) throws Exception {
+        synchronized (session) {
+            processStatement(input);
+        }
+    }
+
+    /**
+     * Runs a SELECT query and returns its rows as typed values instead of printing them, for callers that use
+     * the engine as a library.
+     *
+     * @param input The query.
+     * @return The selected columns and the matching rows.
+     * @throws Exception If the statement is not a SELECT query or the query fails.
+     */
+    public QueryResult query(String input) throws Exception {
+        return QueryResult.collect(openCursor(input));
+    }
+
+    /**
+     * Opens a cursor over the rows of a SELECT query, for callers that read large results a batch at a time.
+     * Rows are read from the table as the cursor is advanced; closing the cursor early skips the rest.
+     *
+     * @param input The query.
+     * @return A cursor positioned before the first matching row.
+     * @throws Exception If the statement is not a SELECT query or the query is invalid.
+     */
+    public QueryCursor openCursor(String input) throws Exception {
+        synchronized (session) {
+            List<SqlStatement.Literal> parameters = new ArrayList<>();
+            PreparedCommand command = PlanCache.getInstance().get(session, input, parameters);
+            if (command == null) {
+                SqlStatement statement = SqlParser.parse(input);
+                if (statement.getKind() != SqlStatement.Kind.SELECT) {
+                    throw new Exception("Only SELECT statements return rows.");
+                }
+                command = new PreparedCommand(input, statement);
+            }
+            return openCursor(command, parameters.toArray(new SqlStatement.Literal[0]), input);
+        }
+    }
+
+    /**
+     * Runs a statement with its console output discarded, for callers that use the engine as a library.
+     *
+     * @param input The statement.
+     * @return The number of rows the statement inserted, updated or deleted.
+     * @throws Exception If the statement fails.
+     */
+    public long update(String input) throws Exception {
+        synchronized (session) {
+            ConsoleRedirect.run(OutputStream.nullOutputStream(), () -> processStatement(input));
+            return session.getRowCount();
+        }
+    }
+
+    /**
+     * Prepares a SELECT, INSERT, UPDATE or DELETE statement whose values are written as ? and bound each time
+     * it runs. The statement is parsed here and planned when it first runs, so running it again skips both.
+     * A prepared statement can be run by the processors of all sessions.
+     *
+     * @param input The statement, with ? for every value bound when it runs.
+     * @return The prepared statement.
+     * @throws Exception If the statement is malformed or of another kind.
+     */
+    public PreparedCommand prepare(String input) throws Exception {
+        return new PreparedCommand(input, SqlParser.parse(input));
+    }
+
+    /**
+     * Runs a prepared statement with its console output discarded.
+     *
+     * @param command The prepared statement.
+     * @param values The values of its parameter markers, in order: numbers, strings or nulls.
+     * @return The number of rows the statement inserted, updated or deleted.
+     * @throws Exception If the values do not match the parameter markers or the statement fails.
+     */
+    public long execute(PreparedCommand command, Object... values) throws Exception {
+        SqlStatement.Literal[] parameters = command.bind(values);
+        synchronized (session) {
+            ConsoleRedirect.run(OutputStream.nullOutputStream(), () -> {
+                session.setRowCount(0);
+                run(command, parameters, command.getText());
+            });
+            return session.getRowCount();
+        }
+    }
+
+    /**
+     * Runs a prepared SELECT query and returns its rows as typed values.
+     *
+     * @param command The prepared query.
+     * @param values The values of its parameter markers, in order: numbers, strings or nulls.
+     * @return The selected columns and the matching rows.
+     * @throws Exception If the values do not match the parameter markers or the query fails.
+     */
+    public QueryResult query(PreparedCommand command, Object... values) throws Exception {
+        return QueryResult.collect(openCursor(command, values));
+    }
+
+    /**
+     * Opens a cursor over the rows of a prepared SELECT query.
+     *
+     * @param command The prepared query.
+     * @param values The values of its parameter markers, in order: numbers, strings or nulls.
+     * @return A cursor positioned before the first matching row.
+     * @throws Exception If the statement is not a SELECT query, the values do not match the parameter markers
+     *                   or the query is invalid.
+     */
+    public QueryCursor openCursor(PreparedCommand command, Object... values) throws Exception {
+        SqlStatement.Literal[] parameters = command.bind(values);
+        synchronized (session) {
+            return openCursor(command, parameters, command.getText());
+        }
+    }
+
+    /**
+     * Opens a cursor over the rows of a prepared SELECT query of the session.
+     *
+     * @param command The prepared query.
+     * @param parameters The values of its parameter markers, in order.
+     * @param input The statement, for the query log.
+     * @return A cursor positioned before the first matching row.
+     * @throws Exception If the statement is not a SELECT query or the query is invalid.
+     */
+    private QueryCursor openCursor(PreparedCommand command, SqlStatement.Literal[] parameters, String input)
+            throws Exception {
+        if (command.getStatement().getKind() != SqlStatement.Kind.SELECT) {
+            throw new Exception("Only SELECT statements return rows.");
+        }
+        QueryCursor cursor = session.getTransactionManager().openCursor(command, parameters);
+        LogManager.logQuery(input, "Attempting to select record");
+        return cursor;
+    }
+
+    /**
+     * Processes a statement of the session. The statement is parsed once into its syntax tree, which the
+     * command that runs it reads its operands from. SELECT, INSERT, UPDATE and DELETE statements are looked up
+     * in the plan cache first, so a statement that only differs from an earlier one in its values is neither
+     * parsed nor planned again.
+     *
+     * @param input The input command to process.
+     * @throws Exception If the statement is malformed or an error occurs during command processing.
+     */
+    private void processStatement(String input) throws Exception {
+        TransactionManager transactionManager = session.getTransactionManager();
+        session.setRowCount(0);
+        List<SqlStatement.Literal> parameters = new ArrayList<>();
+        PreparedCommand command = PlanCache.getInstance().get(session, input, parameters);
+        SqlStatement statement = command == null ? SqlParser.parse(input) : command.getStatement();
         if (input.endsWith(";")) {
             input = input.substring(0, input.length() - 1);
         }
-        String[] tokens = input.split("\\s+");
-        String command = tokens[0].toUpperCase();
+        if (PreparedCommand.isPlannable(statement)) {
+            if (command == null) {
+                command = new PreparedCommand(input, statement);
+            }
+            run(command, parameters.toArray(new SqlStatement.Literal[0]), input);
+            return;
+        }
+        SqlStatement.Kind kind = statement.getKind();
 
         if (transactionManager.isTransactionActive()) {
-            if (command.equals("COMMIT") || command.equals("ROLLBACK")) {
-                transactionManager.executeTransactionCommand(command);
+            if (kind == SqlStatement.Kind.COMMIT || kind == SqlStatement.Kind.ROLLBACK) {
+                transactionManager.executeTransactionCommand(kind.getCommand());
             } else {
-                transactionManager.execute(tokens, input);
+                transactionManager.execute(statement, input);
             }
         } else {
-            switch (command) {
-                case "BEGIN":
-                    if (tokens.length == 2 && tokens[1].equalsIgnoreCase("TRANSACTION")) {
-                        transactionManager.beginTransaction();
-                    } else {
-                        throw new Exception("Invalid BEGIN command");
-                    }
+            switch (kind) {
+                case BEGIN:
+                    transactionManager.beginTransaction();
                     break;
-                case "COMMIT":
-                case "ROLLBACK":
+                case COMMIT:
+                case ROLLBACK:
                     throw new Exception("No active transaction");
-                case "CREATE":
-                    CreateCommand.execute(tokens, input);
+                case CREATE_DATABASE:
+                case CREATE_TABLE:
+                case CREATE_INDEX:
+                    TransactionManager.autocommit(() -> CreateCommand.execute(session, statement));
                     LogManager.logGeneral("CREATE command executed", "Database state after CREATE");
                     break;
-                case "USE":
-                    UseCommand.execute(tokens);
+                case USE:
+                    UseCommand.execute(session, ((SqlStatement.Named) statement).getName());
                     LogManager.logGeneral("USE command executed", "Database state after USE");
                     break;
-                case "INSERT":
-                    InsertCommand.execute(tokens, input);
-                    LogManager.logQuery(input, "Attempting to insert record");
+                case DROP_TABLE:
+                    TransactionManager.autocommit(() ->
+                            DropCommand.execute(session, ((SqlStatement.Named) statement).getName()));
+                    LogManager.logGeneral("DROP command executed", "Database state after DROP");
                     break;
-                case "SELECT":
-                    SelectCommand.execute(tokens, input);
-                    LogManager.logQuery(input, "Attempting to select record");
+                case ANALYZE:
+                    TransactionManager.read(() ->
+                            AnalyzeCommand.execute(session, ((SqlStatement.Named) statement).getName()));
                     break;
-                case "UPDATE":
-                    UpdateCommand.execute(input);
-                    LogManager.logQuery(input, "Attempting to update record");
+                case SHOW:
+                    ShowCommand.execute(session, (SqlStatement.Show) statement);
                     break;
-                case "DELETE":
-                    DeleteCommand.execute(tokens);
-                    LogManager.logQuery(input, "Attempting to delete record");
+                case SET:
+                    SetCommand.execute(session, (SqlStatement.Setting) statement);
                     break;
-                case "DROP":
-                    DropCommand.execute(tokens);
-                    LogManager.logGeneral("DROP command executed", "Database state after DROP");
+                case CHECKPOINT:
+                    WriteAheadLog.getInstance().checkpoint();
+                    System.out.println("Checkpoint complete.");
+                    LogManager.logGeneral("CHECKPOINT command executed", "Write-ahead log checkpointed");
                     break;
                 default:
                     throw new Exception("Invalid command");
             }
         }
     }
+
+    /**
+     * Runs a SELECT, INSERT, UPDATE or DELETE statement of the session with values bound to its parameter
+     * markers: inside the active transaction if there is one, and as a statement of its own otherwise.
+     *
+     * @param command The prepared statement.
+     * @param parameters The values of its parameter markers, in order.
+     * @param input The statement, for the query log.
+     * @throws Exception If the statement fails.
+     */
+    private void run(PreparedCommand command, SqlStatement.Literal[] parameters, String input) throws Exception {
+        TransactionManager transactionManager = session.getTransactionManager();
+        if (transactionManager.isTransactionActive()) {
+            transactionManager.execute(command, parameters, input);
+            return;
+        }
+        SqlStatement.Kind kind = command.getStatement().getKind();
+        if (kind == SqlStatement.Kind.SELECT) {
+            TransactionManager.read(() -> command.getPlan(session).execute(session, parameters));
+        } else {
+            TransactionManager.autocommit(() -> command.getPlan(session).execute(session, parameters));
+        }
+        LogManager.logQuery(input, "Attempting to " + kind.getCommand().toLowerCase() + " record");
+    }
 }
@@ -0,0 +1,189 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+public class ConsoleRedirect {
+    private static final ThreadLocal<OutputStream> output = new ThreadLocal<>();
+    private static final ThreadLocal<InputStream> input = new ThreadLocal<>();
+
+    /**
+     * Prevents instantiation. Commands write their results to System.out and read prompts from System.in, which
+     * the console shares with every session. The redirect replaces both with streams that route each thread to
+     * its own streams while it runs a statement for a remote client, and to the console otherwise.
+     */
+    private ConsoleRedirect() {
+    }
+
+    /**
+     * Runs a statement on the current thread with its console output captured and its console input empty,
+     * so prompts of interactive commands take their default answer.
+     *
+     * @param target The stream that receives the output of the statement.
+     * @param operation The statement.
+     * @throws Exception If the statement fails.
+     */
+    public static void run(OutputStream target, TransactionManager.Operation operation) throws Exception {
+        install();
+        output.set(target);
+        input.set(InputStream.nullInputStream());
+        try {
+            operation.run();
+        } finally {
+            System.out.flush();
+            output.remove();
+            input.remove();
+        }
+    }
+
+    /**
+     * Routes System.out and System.in through the redirect, unless they already are. Streams set afterwards, for
+     * example by a test capturing the console, become the streams of threads that are not redirected.
+     */
+    private static synchronized void install() {
+        if (!(System.out instanceof RoutedPrintStream)) {
+            System.setOut(new RoutedPrintStream(System.out));
+        }
+        if (!(System.in instanceof RoutedInputStream)) {
+            System.setIn(new RoutedInputStream(System.in));
+        }
+    }
+
+    /**
+     * A print stream whose bytes go to the output of the current thread.
+     */
+    private static class RoutedPrintStream extends PrintStream {
+        /**
+         * Constructs a routed print stream.
+         *
+         * @param console The stream of threads that are not redirected.
+         */
+        private RoutedPrintStream(PrintStream console) {
+            super(new RoutedOutputStream(console), true);
+        }
+    }
+
+    /**
+     * An output stream that writes to the output of the current thread, or to the console.
+     */
+    private static class RoutedOutputStream extends OutputStream {
+        private final OutputStream console;
+
+        /**
+         * Constructs a routed output stream.
+         *
+         * @param console The stream of threads that are not redirected.
+         */
+        private RoutedOutputStream(OutputStream console) {
+            this.console = console;
+        }
+
+        /**
+         * Returns the stream the current thread writes to.
+         *
+         * @return The redirected output, or the console.
+         */
+        private OutputStream target() {
+            OutputStream target = output.get();
+            return target != null ? target : console;
+        }
+
+        /**
+         * Writes a byte.
+         *
+         * @param b The byte.
+         * @throws IOException If the target cannot be written.
+         */
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param b The buffer.
+         * @param off The offset of the first byte.
+         * @param len The number of bytes.
+         * @throws IOException If the target cannot be written.
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        /**
+         * Flushes the target.
+         *
+         * @throws IOException If the target cannot be flushed.
+         */
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    /**
+     * An input stream that reads from the input of the current thread, or from the console.
+     */
+    private static class RoutedInputStream extends InputStream {
+        private final InputStream console;
+
+        /**
+         * Constructs a routed input stream.
+         *
+         * @param console The stream of threads that are not redirected.
+         */
+        private RoutedInputStream(InputStream console) {
+            this.console = console;
+        }
+
+        /**
+         * Returns the stream the current thread reads from.
+         *
+         * @return The redirected input, or the console.
+         */
+        private InputStream source() {
+            InputStream source = input.get();
+            return source != null ? source : console;
+        }
+
+        /**
+         * Reads a byte.
+         *
+         * @return The byte, or -1 at the end of the input.
+         * @throws IOException If the source cannot be read.
+         */
+        @Override
+        public int read() throws IOException {
+            return source().read();
+        }
+
+        /**
+         * Reads bytes.
+         *
+         * @param b The buffer.
+         * @param off The offset to read to.
+         * @param len The maximum number of bytes.
+         * @return The number of bytes read, or -1 at the end of the input.
+         * @throws IOException If the source cannot be read.
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return source().read(b, off, len);
+        }
+
+        /**
+         * Returns the number of bytes that can be read without blocking.
+         *
+         * @return The number of bytes.
+         * @throws IOException If the source cannot be read.
+         */
+        @Override
+        public int available() throws IOException {
+            return source().available();
+        }
+    }
+}
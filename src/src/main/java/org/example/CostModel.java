@@ -0,0 +1,118 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CostModel {
+    /** The cost of reading one row in storage order. */
+    private static final double SEQUENTIAL_ROW_COST = 1.0;
+    /** The cost of reading one row found through an index: a lookup of its record, usually on another page. */
+    private static final double INDEX_ROW_COST = 4.0;
+
+    /**
+     * Constructs nothing; the cost model only has static methods.
+     */
+    private CostModel() {
+    }
+
+    /**
+     * Estimates the number of rows of a table that match a "column operator value" condition.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table, or null if it has not been analyzed.
+     * @param column The position of the compared column.
+     * @param operator The comparison operator.
+     * @param value The value to compare against.
+     * @return The estimated number of matching rows, or -1 without statistics.
+     */
+    public static double estimateRows(TableSchema schema, TableStatistics statistics, int column, String operator,
+                                      String value) {
+        if (statistics == null) {
+            return -1;
+        }
+        return statistics.getRowCount() * statistics.estimateSelectivity(schema, column, operator, value);
+    }
+
+    /**
+     * Chooses the access path of a "column operator value" condition: a lookup through an index on the column,
+     * or a scan of the whole table. A scan reads every row once in storage order; an index lookup descends the
+     * index and then reads every matching row on its own, which costs more per row. The index is chosen when
+     * its estimated cost does not exceed that of the scan, so a condition that matches a large part of the
+     * table scans it. Without statistics, a usable index is always chosen.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table, or null if it has not been analyzed.
+     * @param column The position of the compared column.
+     * @param operator The comparison operator.
+     * @param value The value to compare against.
+     * @return true to look the rows up through an index, false to scan the table.
+     */
+    public static boolean useIndex(TableSchema schema, TableStatistics statistics, int column, String operator,
+                                   String value) {
+        if (!IndexScan.isUsable(schema, column, operator)) {
+            return false;
+        }
+        if (statistics == null) {
+            return true;
+        }
+        double rows = statistics.getRowCount();
+        double scanCost = rows * SEQUENTIAL_ROW_COST;
+        double indexCost = Math.log(rows + 1) / Math.log(2)
+                + estimateRows(schema, statistics, column, operator, value) * INDEX_ROW_COST;
+        return indexCost <= scanCost;
+    }
+
+    /**
+     * Chooses the comparison of a WHERE condition to look its rows up by through an index. Only a comparison
+     * every matching row satisfies narrows the rows to read: the condition itself, or one of the conditions it
+     * combines with AND. Of those an index can serve at a lower estimated cost than a scan, the one estimated
+     * to match the fewest rows is chosen. The whole condition is still evaluated on the rows the index returns.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table, or null if it has not been analyzed.
+     * @param condition The WHERE condition, or null.
+     * @param parameters The values of the parameter markers, in order.
+     * @return The comparison with its value bound, or null to scan the table.
+     * @throws Exception If a parameter has no value.
+     */
+    public static SqlStatement.Comparison chooseIndex(TableSchema schema, TableStatistics statistics,
+                                                      SqlStatement.Condition condition,
+                                                      SqlStatement.Literal[] parameters) throws Exception {
+        List<SqlStatement.Comparison> comparisons = new ArrayList<>();
+        addConjuncts(condition, comparisons);
+        TableStatistics estimates = statistics != null ? statistics : TableStatistics.NONE;
+        SqlStatement.Comparison chosen = null;
+        double chosenSelectivity = Double.MAX_VALUE;
+        for (SqlStatement.Comparison comparison : comparisons) {
+            int column = schema.getColumnIndex(comparison.getColumn());
+            SqlStatement.Literal value = comparison.getValue().bind(parameters);
+            if (column == -1 || value.getType() == SqlStatement.Literal.Type.NULL
+                    || !useIndex(schema, statistics, column, comparison.getOperator(), value.getText())) {
+                continue;
+            }
+            double selectivity = estimates.estimateSelectivity(schema, column, comparison.getOperator(),
+                    value.getText());
+            if (selectivity < chosenSelectivity) {
+                chosen = new SqlStatement.Comparison(comparison.getColumn(), comparison.getOperator(), value);
+                chosenSelectivity = selectivity;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Collects the comparisons every row matching a condition has to satisfy.
+     *
+     * @param condition The condition, or null.
+     * @param comparisons The list the comparisons are added to.
+     */
+    private static void addConjuncts(SqlStatement.Condition condition, List<SqlStatement.Comparison> comparisons) {
+        if (condition instanceof SqlStatement.Comparison) {
+            comparisons.add((SqlStatement.Comparison) condition);
+        } else if (condition instanceof SqlStatement.Junction && ((SqlStatement.Junction) condition).isConjunction()) {
+            for (SqlStatement.Condition operand : ((SqlStatement.Junction) condition).getOperands()) {
+                addConjuncts(operand, comparisons);
+            }
+        }
+    }
+}
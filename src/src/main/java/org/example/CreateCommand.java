@@ -2,77 +2,87 @@ package org.example;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CreateCommand {
-    private static List<Relationship> globalRelationships = new ArrayList<>();
+    private static final List<Relationship> globalRelationships = new CopyOnWriteArrayList<>();
 
     /**
-     * Executes the CREATE command to create a database or a table based on the input tokens.
+     * Executes the CREATE command to create a database, a table or an index.
      *
-     * @param tokens The tokens parsed from the command input.
-     * @param input The full command input.
+     * @param session The session that runs the statement.
+     * @param statement The parsed CREATE DATABASE, CREATE TABLE or CREATE INDEX statement.
      * @throws Exception If an error occurs during command execution.
      */
-    public static void execute(String[] tokens, String input) throws Exception {
-        if (tokens[1].equalsIgnoreCase("DATABASE")) {
-            createDatabase(tokens[2]);
-            LogManager.logEvent("CREATE DATABASE", "Database created: " + tokens[2]);
-        } else if (tokens[1].equalsIgnoreCase("TABLE")) {
-            createTable(input);
-            LogManager.logEvent("CREATE TABLE", "Table created: " + tokens[2]);
-        } else {
-            throw new Exception("Invalid CREATE command");
+    public static void execute(Session session, SqlStatement statement) throws Exception {
+        switch (statement.getKind()) {
+            case CREATE_DATABASE:
+                String dbName = ((SqlStatement.CreateDatabase) statement).getDatabaseName();
+                createDatabase(dbName);
+                LogManager.logEvent("CREATE DATABASE", "Database created: " + dbName);
+                break;
+            case CREATE_TABLE:
+                SqlStatement.CreateTable table = (SqlStatement.CreateTable) statement;
+                createTable(session, table);
+                LogManager.logEvent("CREATE TABLE", "Table created: " + table.getTableName());
+                break;
+            case CREATE_INDEX:
+                SqlStatement.CreateIndex index = (SqlStatement.CreateIndex) statement;
+                createIndex(session, index);
+                LogManager.logEvent("CREATE INDEX", "Index created: " + index.getIndexName());
+                break;
+            default:
+                throw new Exception("Invalid CREATE command");
         }
     }
 
     /**
-     * Creates a table based on the input command.
+     * Creates a table based on the input command. The storage engine can be chosen with a trailing
+     * {@code ENGINE = HEAP | LSM} clause; tables use the heap engine by default.
      *
-     * @param input The full command input.
+     * @param session The session that runs the statement.
+     * @param statement The parsed CREATE TABLE statement.
      * @throws IOException If an I/O error occurs during table creation.
      */
-    public static void createTable(String input) throws IOException {
-        if (CommandProcessor.activeDatabase == null) {
+    public static void createTable(Session session, SqlStatement.CreateTable statement) throws IOException {
+        if (session.getActiveDatabase() == null) {
             throw new IOException("No database selected.");
         }
 
         Scanner scanner = new Scanner(System.in);
 
-        String[] tokens = input.split("\\s+");
-        String tableName = tokens[2].trim();
-        if (tableName.contains("(")) {
-            tableName = tableName.substring(0, tableName.indexOf('('));
-        }
-        tableName = tableName.replace(";", "").trim().toUpperCase();
-
-        String tableStructure = input.substring(input.indexOf('(') + 1, input.lastIndexOf(')')).trim();
+        String tableName = statement.getTableName().toUpperCase();
+        TableSchema.Engine engine = parseEngine(statement.getEngine());
 
-        File dbDir = new File("tinydb/databases/" + CommandProcessor.activeDatabase);
+        File dbDir = new File("tinydb/databases/" + session.getActiveDatabase());
         if (!dbDir.exists()) {
             dbDir.mkdirs();
         }
 
-        String[] columns = tableStructure.split(",");
         StringBuilder csvStructure = new StringBuilder();
+        StringBuilder tableStructure = new StringBuilder();
         List<String> primaryKeys = new ArrayList<>();
         List<String> allColumns = new ArrayList<>();
 
-        for (String column : columns) {
-            String columnDef = column.trim();
-            String[] columnParts = columnDef.split("\\s+");
-            String columnName = columnParts[0].trim().toUpperCase();
-            String columnType = columnParts[1].trim().toUpperCase();
+        for (SqlStatement.ColumnDefinition column : statement.getColumns()) {
+            String columnName = column.getName().toUpperCase();
 
             csvStructure.append(columnName).append(",");
+            tableStructure.append(tableStructure.length() > 0 ? ", " : "").append(column);
             allColumns.add(columnName);
 
-            if (columnDef.toLowerCase().contains("(pk)")) {
+            if (column.isPrimaryKey()) {
                 primaryKeys.add(columnName);
             }
         }
         if (csvStructure.length() > 0) {
             csvStructure.setLength(csvStructure.length() - 1);
         }
+        if (engine == TableSchema.Engine.LSM && primaryKeys.isEmpty()) {
+            throw new IOException("LSM tables require a primary key.");
+        }
 
         // Print table structure
         System.out.println("Table structure:");
@@ -80,19 +90,19 @@ public class CreateCommand {
 
         // Ask user if they want to define relationships
         System.out.print("Do you want to define relationships for table " + tableName + "? (yes/no): ");
-        String response = scanner.nextLine().trim().toLowerCase();
+        // Without console input, for example for a remote client, no relationships are defined
+        String response = scanner.hasNextLine() ? scanner.nextLine().trim().toLowerCase() : "no";
 
         if (response.equals("yes")) {
             String selectedColumn = promptForColumn(scanner, allColumns);
             System.out.println("Selected column: " + selectedColumn);
 
-            List<String> tablesInDatabase = getTablesInDatabase(dbDir);
-            tablesInDatabase.removeIf(name -> name.endsWith("_meta"));
+            List<String> tablesInDatabase = Catalog.getInstance().getTableNames(dbDir);
             tablesInDatabase.remove(tableName);
             if (tablesInDatabase.isEmpty()) {
                 System.out.println("There are no other tables in the current database for relationship.");
             } else {
-                System.out.println("List of tables in the current database (excluding _meta tables):");
+                System.out.println("List of tables in the current database:");
                 for (String table : tablesInDatabase) {
                     System.out.println("Table: " + table);
                 }
@@ -100,7 +110,8 @@ public class CreateCommand {
                 String relatedTable = promptForValidTable(scanner, tablesInDatabase);
 
                 if (relatedTable != null) {
-                    List<String> relatedTableColumns = getTableColumns(dbDir, relatedTable);
+                    TableSchema relatedSchema = Catalog.getInstance().findTable(dbDir, relatedTable);
+                    List<String> relatedTableColumns = relatedSchema.getColumnNames();
                     System.out.println("Columns in table '" + relatedTable + "':");
                     for (String column : relatedTableColumns) {
                         System.out.println(column);
@@ -108,11 +119,9 @@ public class CreateCommand {
 
                     String relatedColumn = promptForRelatedColumn(scanner, relatedTableColumns);
 
-                    boolean isPrimaryKey = isPrimaryKeyColumn(dbDir, relatedTable, relatedColumn);
-                    while (!isPrimaryKey) {
+                    while (!relatedSchema.isPrimaryKey(relatedColumn)) {
                         System.out.println("The chosen column '" + relatedColumn + "' is not the primary key of table '" + relatedTable + "'.");
                         relatedColumn = promptForRelatedColumn(scanner, relatedTableColumns);
-                        isPrimaryKey = isPrimaryKeyColumn(dbDir, relatedTable, relatedColumn);
                     }
 
                     // Store relationship without cardinality
@@ -129,27 +138,103 @@ public class CreateCommand {
         }
 
         // Write the table and metadata files
-        writeTableFile(dbDir, tableName, csvStructure);
-        writeMetaFile(dbDir, tableName, tableStructure, primaryKeys);
+        writeTableFile(dbDir, tableName, engine);
+        writeMetaFile(dbDir, tableName, tableStructure.toString(), primaryKeys, engine);
+        try {
+            Catalog.getInstance().invalidate(dbDir, tableName);
+            PlanCache.getInstance().invalidate(dbDir.getName(), tableName);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolves the storage engine named by the optional engine clause that follows the column list of
+     * CREATE TABLE.
+     *
+     * @param engine The engine name, or null if the statement has no engine clause.
+     * @return The storage engine, HEAP if no engine is given.
+     * @throws IOException If the clause names an unknown engine.
+     */
+    private static TableSchema.Engine parseEngine(String engine) throws IOException {
+        if (engine == null) {
+            return TableSchema.Engine.HEAP;
+        }
+        try {
+            return TableSchema.Engine.valueOf(engine.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown table engine: " + engine);
+        }
+    }
+
+    /**
+     * Creates a secondary index on one column of a table, written as
+     * {@code CREATE INDEX <name> ON <table>(<column>) [USING HASH | BTREE]}. A hash index (the default) serves
+     * equality conditions; a B+tree index also serves range conditions. The index is built from the existing
+     * rows and then recorded in the metadata file of the table.
+     *
+     * @param session The session that runs the statement.
+     * @param statement The parsed CREATE INDEX statement.
+     * @throws Exception If the table or column does not exist, or the index name is taken.
+     */
+    public static void createIndex(Session session, SqlStatement.CreateIndex statement) throws Exception {
+        if (session.getActiveDatabase() == null) {
+            throw new Exception("No database selected.");
+        }
+
+        String indexName = statement.getIndexName().toUpperCase();
+        String tableName = statement.getTableName().toUpperCase();
+        String columnName = statement.getColumnName().toUpperCase();
+        IndexDefinition.Type indexType = statement.getType();
+
+        // The index is built from a scan, so no transaction may change the table meanwhile
+        LockManager.lockTable(session, tableName, LockManager.Mode.ACCESS_EXCLUSIVE);
+
+        File dbDir = new File("tinydb/databases/" + session.getActiveDatabase());
+        File tableFile = new File(dbDir, tableName + ".tbl");
+        if (!tableFile.exists()) {
+            throw new Exception("Table does not exist.");
+        }
+
+        try (Table table = Table.open(session.getActiveDatabase(), tableName)) {
+            TableSchema schema = table.getSchema();
+            int columnIndex = schema.getColumnIndex(columnName);
+            if (columnIndex == -1) {
+                throw new Exception("Column '" + columnName + "' does not exist in table '" + tableName + "'.");
+            }
+            if (indexName.equals("PK") || schema.getIndex(indexName) != null) {
+                throw new Exception("Index " + indexName + " already exists on table " + tableName + ".");
+            }
+
+            IndexDefinition definition = new IndexDefinition(indexName, columnName, indexType);
+            File indexFile = definition.getFile(dbDir, tableName);
+            BufferPool.getInstance().deleteFile(indexFile);
+            table.buildIndex(definition, indexFile, columnIndex).close();
+
+            try (FileWriter metaWriter = new FileWriter(new File(dbDir, tableName + "_meta.txt"), true)) {
+                metaWriter.write("Index: " + definition + "\n");
+            }
+        }
+        Catalog.getInstance().invalidate(dbDir, tableName);
+        PlanCache.getInstance().invalidate(dbDir.getName(), tableName);
+        System.out.println("Index " + indexName + " created on " + tableName + "(" + columnName + ") using " + indexType + ".");
     }
 
     /**
-     * Writes the table file with the given structure.
+     * Creates the empty storage of the given table.
      *
      * @param dbDir The directory of the database.
      * @param tableName The name of the table.
-     * @param csvStructure The CSV structure of the table columns.
-     * @throws IOException If an I/O error occurs during file writing.
+     * @param engine The storage engine of the table.
+     * @throws IOException If an I/O error occurs during file creation.
      */
-    private static void writeTableFile(File dbDir, String tableName, StringBuilder csvStructure) throws IOException {
-        String tableFilePath = dbDir + File.separator + tableName + ".txt";
-        File tableFile = new File(tableFilePath);
+    private static void writeTableFile(File dbDir, String tableName, TableSchema.Engine engine) throws IOException {
+        File tableFile = new File(dbDir, tableName + ".tbl");
         if (!tableFile.exists()) {
-            tableFile.createNewFile();
-            try (FileWriter tableWriter = new FileWriter(tableFile, false)) {
-                tableWriter.write(csvStructure.toString() + "\n");
-                System.out.println("Table " + tableName + " created.");
-            }
+            Table.create(dbDir, tableName, engine);
+            System.out.println("Table " + tableName + " created.");
         } else {
             System.out.println("Table " + tableName + " already exists.");
         }
@@ -162,9 +247,11 @@ public class CreateCommand {
      * @param tableName The name of the table.
      * @param tableStructure The structure of the table.
      * @param primaryKeys The list of primary keys.
+     * @param engine The storage engine of the table.
      * @throws IOException If an I/O error occurs during file writing.
      */
-    private static void writeMetaFile(File dbDir, String tableName, String tableStructure, List<String> primaryKeys) throws IOException {
+    private static void writeMetaFile(File dbDir, String tableName, String tableStructure, List<String> primaryKeys,
+                                      TableSchema.Engine engine) throws IOException {
         String metaFilePath = dbDir + File.separator + tableName + "_meta.txt";
         File metaFile = new File(metaFilePath);
         if (!metaFile.exists()) {
@@ -175,6 +262,9 @@ public class CreateCommand {
                 for (String primaryKey : primaryKeys) {
                     metaWriter.write("Primary Key: " + primaryKey + "\n");
                 }
+                if (engine != TableSchema.Engine.HEAP) {
+                    metaWriter.write("Engine: " + engine + "\n");
+                }
                 if (!globalRelationships.isEmpty()) {
                     for (Relationship relationship : globalRelationships) {
                         if (relationship.getTable().equalsIgnoreCase(tableName)) {
@@ -189,35 +279,6 @@ public class CreateCommand {
         }
     }
 
-    /**
-     * Checks if the given column is a primary key in the specified table.
-     *
-     * @param dbDir The directory of the database.
-     * @param tableName The name of the table.
-     * @param columnName The name of the column.
-     * @return true if the column is a primary key, false otherwise.
-     */
-    private static boolean isPrimaryKeyColumn(File dbDir, String tableName, String columnName) {
-        String metaFilePath = dbDir + File.separator + tableName + "_meta.txt";
-        File metaFile = new File(metaFilePath);
-        if (metaFile.exists()) {
-            try (Scanner scanner = new Scanner(metaFile)) {
-                while (scanner.hasNextLine()) {
-                    String line = scanner.nextLine();
-                    if (line.startsWith("Primary Key:")) {
-                        String primaryKey = line.split(":")[1].trim();
-                        if (primaryKey.equalsIgnoreCase(columnName)) {
-                            return true;
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        return false;
-    }
-
     /**
      * Creates a new database with the given name.
      *
@@ -247,51 +308,6 @@ public class CreateCommand {
         return globalRelationships;
     }
 
-    /**
-     * Retrieves the list of tables in the specified database directory.
-     *
-     * @param dbDir The directory of the database.
-     * @return The list of table names.
-     */
-    private static List<String> getTablesInDatabase(File dbDir) {
-        List<String> tables = new ArrayList<>();
-        File[] files = dbDir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isFile() && file.getName().endsWith(".txt") && !file.getName().endsWith("_meta.txt")) {
-                    String tableName = file.getName().replace(".txt", "").toUpperCase();
-                    tables.add(tableName);
-                }
-            }
-        }
-        return tables;
-    }
-
-    /**
-     * Retrieves the list of columns for the specified table.
-     *
-     * @param dbDir The directory of the database.
-     * @param tableName The name of the table.
-     * @return The list of column names.
-     */
-    private static List<String> getTableColumns(File dbDir, String tableName) {
-        List<String> columns = new ArrayList<>();
-        String tableFilePath = dbDir + File.separator + tableName + ".txt";
-        File tableFile = new File(tableFilePath);
-        if (tableFile.exists()) {
-            try (Scanner scanner = new Scanner(tableFile)) {
-                if (scanner.hasNextLine()) {
-                    String headerLine = scanner.nextLine();
-                    String[] columnNames = headerLine.split(",");
-                    columns.addAll(Arrays.asList(columnNames));
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        return columns;
-    }
-
     /**
      * Prompts the user to select a column from the provided list of columns.
      *
@@ -369,6 +385,24 @@ public class CreateCommand {
             this.cardinality = cardinality;
         }
 
+        /**
+         * Parses the value of a "Relationship:" metadata line, written as
+         * {@code From <TABLE>(<COLUMN>) to <RELATED TABLE>(<RELATED COLUMN>)}.
+         *
+         * @param definition The text after "Relationship:".
+         * @return The relationship.
+         * @throws IllegalArgumentException If the line is malformed.
+         */
+        public static Relationship parse(String definition) {
+            Matcher matcher = Pattern.compile("(?i)\\s*From\\s+(\\w+)\\s*\\(\\s*(\\w+)\\s*\\)\\s+to\\s+(\\w+)\\s*\\(\\s*(\\w+)\\s*\\)\\s*")
+                    .matcher(definition);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid relationship definition: " + definition);
+            }
+            return new Relationship(matcher.group(1).toUpperCase(), matcher.group(3).toUpperCase(),
+                    matcher.group(2).toUpperCase(), matcher.group(4).toUpperCase());
+        }
+
         /**
          * Returns the name of the table.
          *
@@ -0,0 +1,112 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CreateIndexTest {
+
+    private CommandProcessor commandProcessor;
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @BeforeEach
+    void createTestDatabaseAndTable() throws Exception {
+        // Create test database and table
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE people (id INT(PK), name STRING, age INT);");
+
+        // Insert sample data
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (1, 'John', 30);");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (3, 'Jim', 30);");
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @Test
+    void testCreateIndexAndSelect() throws Exception {
+        commandProcessor.processCommand("CREATE INDEX people_age ON people(age);");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people WHERE age = 30;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOHN") && output.contains("JIM") && !output.contains("JANE"), "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testIndexIsMaintainedByWrites() throws Exception {
+        commandProcessor.processCommand("CREATE INDEX people_age ON people(age);");
+        commandProcessor.processCommand("UPDATE people SET age = 40 WHERE id = 1;");
+        commandProcessor.processCommand("DELETE FROM people WHERE id = 3;");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (4, 'Joe', 30);");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people WHERE age = 30;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOE") && !output.contains("JOHN") && !output.contains("JIM"), "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testRangeSelectWithBTreeIndex() throws Exception {
+        commandProcessor.processCommand("CREATE INDEX people_age ON people(age) USING BTREE;");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people WHERE age < 30;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JANE") && !output.contains("JOHN") && !output.contains("JIM"), "Unexpected rows: " + output);
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people WHERE age >= 30;");
+        output = outContent.toString().toUpperCase();
+        assertTrue(!output.contains("JANE") && output.contains("JOHN") && output.contains("JIM"), "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testCreateDuplicateIndex() throws Exception {
+        commandProcessor.processCommand("CREATE INDEX people_age ON people(age);");
+        Exception exception = assertThrows(Exception.class, () -> {
+            commandProcessor.processCommand("CREATE INDEX people_age ON people(name);");
+        });
+
+        assertTrue(exception.getMessage().contains("already exists"));
+    }
+
+    @Test
+    void testCreateIndexOnInvalidColumn() {
+        Exception exception = assertThrows(Exception.class, () -> {
+            commandProcessor.processCommand("CREATE INDEX people_x ON people(invalidColumn);");
+        });
+
+        assertTrue(exception.getMessage().contains("does not exist"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+        outContent.reset();
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
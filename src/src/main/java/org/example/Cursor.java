@@ -0,0 +1,61 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface Cursor extends Closeable {
+
+    /**
+     * Returns the number of result columns.
+     *
+     * @return The number of columns.
+     */
+    int getColumnCount();
+
+    /**
+     * Returns the name of a result column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    String getColumnName(int column);
+
+    /**
+     * Returns the type of a result column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    ColumnType getColumnType(int column);
+
+    /**
+     * Advances to the next row, fetching the next batch of rows when the current batch is used up.
+     *
+     * @return true if a row is available, false after the last row.
+     * @throws Exception If the next batch cannot be fetched.
+     */
+    boolean next() throws Exception;
+
+    /**
+     * Returns the current row.
+     *
+     * @return The typed values of the row in column order: a Long for INT columns, a Double for DOUBLE
+     *         columns, a String for STRING columns, and null for null fields.
+     */
+    Object[] getRow();
+
+    /**
+     * Sets the number of rows fetched at a time. Only one batch of rows is held in memory.
+     *
+     * @param rows The number of rows, or 0 for the default.
+     */
+    void setFetchSize(int rows);
+
+    /**
+     * Closes the cursor before or after its last row, releasing what it holds.
+     *
+     * @throws IOException If the cursor cannot be closed.
+     */
+    @Override
+    void close() throws IOException;
+}
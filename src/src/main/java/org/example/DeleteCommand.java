@@ -1,146 +1,197 @@
 package org.example;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DeleteCommand {
 
     /**
      * Executes the DELETE command to delete records from a table based on the specified condition.
      *
-     * @param tokens The tokens parsed from the command input.
+     * @param session The session that runs the statement.
+     * @param statement The parsed DELETE statement.
      * @throws Exception If an error occurs during command execution.
      */
-    public static void execute(String[] tokens) throws Exception {
-        if (CommandProcessor.activeDatabase == null) {
-            throw new Exception("No database selected.");
-        }
-
-        // Add logging before deleting
-        LogManager.logGeneral("DELETE command initiated", "Attempting to delete record");
+    public static void execute(Session session, SqlStatement.Delete statement) throws Exception {
+        plan(session, statement).execute(session, StatementPlan.NO_PARAMETERS);
+    }
 
-        // Remove semicolon at the end of the input if it exists
-        if (tokens.length > 0 && tokens[tokens.length - 1].endsWith(";")) {
-            tokens[tokens.length - 1] = tokens[tokens.length - 1].substring(0, tokens[tokens.length - 1].length() - 1);
+    /**
+     * Plans a DELETE statement against the schema of its table: the columns of the WHERE condition are checked.
+     * The values of the condition may be parameter markers.
+     *
+     * @param session The session whose active database the table is resolved in.
+     * @param statement The parsed DELETE statement.
+     * @return The plan.
+     * @throws Exception If the statement is invalid or its table does not exist.
+     */
+    public static Plan plan(Session session, SqlStatement.Delete statement) throws Exception {
+        if (session.getActiveDatabase() == null) {
+            throw new Exception("No database selected.");
         }
 
-        // Extract table name
-        if (tokens.length < 4 || !tokens[3].equalsIgnoreCase("WHERE")) {
+        SqlStatement.Condition condition = statement.getWhere();
+        if (condition == null) {
             throw new Exception("Invalid delete statement format: Missing WHERE clause.");
         }
-        String tableName = tokens[2];
+        String tableName = statement.getTableName();
 
-        // Extract condition from tokens
-        StringBuilder conditionBuilder = new StringBuilder();
-        for (int i = 4; i < tokens.length; i++) {
-            conditionBuilder.append(tokens[i]).append(" ");
-        }
-        String condition = conditionBuilder.toString().trim();
+        checkTableFile(session, tableName);
 
-        // Split condition into column name and value
-        String[] conditionParts = condition.split("=");
-        if (conditionParts.length != 2) {
-            throw new Exception("Invalid condition format: " + condition);
+        TableSchema schema = Catalog.getInstance().getTable(session.getActiveDatabase(), tableName);
+        String columnName = RecordPredicate.findMissingColumn(schema, condition);
+        if (columnName != null) {
+            throw new Exception("Column '" + columnName + "' does not exist in table '" + tableName + "'.");
         }
-        String columnName = conditionParts[0].trim();
-        String conditionValueWithQuotes = conditionParts[1].trim(); // Extract value (with or without surrounding quotes)
-
-        // Remove surrounding single quotes from condition value if they exist
-        String conditionValue = conditionValueWithQuotes.replaceAll("^['\"]|['\"]$", "");
+        return new Plan(session.getActiveDatabase(), statement, schema);
+    }
 
-        // Check if the table file exists
-        File tableFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + ".txt");
-        if (!tableFile.exists()) {
-            throw new Exception("Table does not exist.");
+    /**
+     * The plan of a DELETE statement, which deletes the rows matching the values bound when it runs.
+     */
+    public static class Plan extends StatementPlan {
+
+        /**
+         * Constructs the plan of a DELETE statement.
+         *
+         * @param databaseName The database the table was resolved in.
+         * @param statement The parsed DELETE statement.
+         * @param schema The schema of the table.
+         */
+        private Plan(String databaseName, SqlStatement.Delete statement, TableSchema schema) {
+            super(statement, databaseName, schema);
         }
 
-        File tempFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + "_temp.txt");
+        /**
+         * Deletes the rows matching the WHERE condition.
+         *
+         * @param session The session that runs the statement.
+         * @param parameters The values of the parameter markers, in order.
+         * @throws Exception If the rows cannot be deleted.
+         */
+        @Override
+        public void execute(Session session, SqlStatement.Literal[] parameters) throws Exception {
+            SqlStatement.Delete statement = (SqlStatement.Delete) getStatement();
+            Plan current = isCurrent(session) ? this : plan(session, statement);
+
+            // Add logging before deleting
+            LogManager.logGeneral("DELETE command initiated", "Attempting to delete record");
+
+            String tableName = statement.getTableName();
+
+            LockManager.lockTableForWrite(session, tableName);
+
+            checkTableFile(session, tableName);
+            if (!current.isCurrent(session)) {
+                // The table changed while the lock was awaited
+                current = plan(session, statement);
+            }
+            current.delete(session, parameters);
+        }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(tableFile));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
+        /**
+         * Deletes the rows that match the WHERE condition.
+         *
+         * @param session The session that runs the statement.
+         * @param parameters The values of the parameter markers, in order.
+         * @throws Exception If a WHERE value does not fit its column, or the rows cannot be locked or written.
+         */
+        private void delete(Session session, SqlStatement.Literal[] parameters) throws Exception {
+            SqlStatement.Condition condition = ((SqlStatement.Delete) getStatement()).getWhere();
+            String tableName = ((SqlStatement.Delete) getStatement()).getTableName();
+            TableSchema schema = getSchema();
+
+            Table table = Table.open(session.getActiveDatabase(), tableName);
+            try {
+                // Collect the matching records first, then delete them in place
+                List<Long> recordIds = new ArrayList<>();
+                List<String[]> rows = new ArrayList<>();
+                TableStatistics statistics = Catalog.getInstance().getStatistics(
+                        new File("tinydb/databases/" + session.getActiveDatabase()), tableName);
+                TableScan plan = scan(table, schema, statistics, condition, parameters);
+                plan.open();
+                try {
+                    Object[] row;
+                    while ((row = plan.next()) != null) {
+                        recordIds.add(plan.getRecordId());
+                        rows.add(RowCodec.toText(row));
+                    }
+                } finally {
+                    plan.close();
+                }
 
-            String line;
-            boolean deleted = false;
-            String[] headers = null;
-            while ((line = reader.readLine()) != null) {
-                if (headers == null) {
-                    headers = line.split(","); // Read headers if not read yet
-                    writer.write(line); // Write header to temp file
-                    writer.newLine();
-                    continue;
+                if (recordIds.isEmpty()) {
+                    System.out.println("No matching records found for the delete condition.");
+                    return;
                 }
 
-                // Split the line into columns
-                String[] columns = line.split(",");
+                if (LockManager.isRowLocking(session, schema)) {
+                    // Lock the rows with the table closed, so that no scan of it still holds the table latch meanwhile
+                    table.close();
+                    for (String[] row : rows) {
+                        LockManager.lockRow(session, schema, row);
+                    }
+                    table = Table.open(session.getActiveDatabase(), tableName);
+                }
 
-                // Check if the line contains the condition to be deleted
-                boolean matchesCondition = checkCondition(columns, headers, columnName, conditionValue);
-                if (!matchesCondition) {
-                    writer.write(line);
-                    writer.newLine();
-                } else {
-                    deleted = true; // Mark as deleted if at least one line matches condition
+                for (long recordId : recordIds) {
+                    table.delete(recordId);
                     LogManager.logGeneral("DELETE command executed", "Record deleted from table: " + tableName);
                 }
-            }
-
-            if (!deleted) {
-                System.out.println("No matching records found for the delete condition.");
-                tempFile.delete(); // Delete temp file if no delete was performed
+                session.setRowCount(recordIds.size());
+                recordChanges(tableName, recordIds.size());
+            } catch (IOException e) {
+                System.out.println("Error processing table file: " + e.getMessage());
                 return;
+            } finally {
+                table.close();
             }
-        } catch (IOException e) {
-            System.out.println("Error processing table file: " + e.getMessage());
-            return;
-        }
 
-        // Replace the original table file with the updated temp file
-        if (!tableFile.delete()) {
-            throw new Exception("Failed to delete the original table file.");
-        }
-        if (!tempFile.renameTo(tableFile)) {
-            throw new Exception("Failed to rename the temporary table file.");
+            System.out.println("Record deleted successfully.");
         }
-
-        System.out.println("Record deleted successfully.");
     }
 
     /**
-     * Checks if the condition matches the values in the columns.
+     * Checks that the file of a table exists.
      *
-     * @param columns The array of column values.
-     * @param headers The array of header names.
-     * @param columnName The name of the column to check.
-     * @param conditionValue The value to check against.
-     * @return true if the condition matches, false otherwise.
+     * @param session The session whose active database holds the table.
+     * @param tableName The name of the table.
+     * @throws Exception If the table file does not exist.
      */
-    private static boolean checkCondition(String[] columns, String[] headers, String columnName, String conditionValue) {
-        // Find the index of the column in headers
-        int columnIndex = getColumnIndex(headers, columnName);
-        if (columnIndex == -1) {
-            System.out.println("Column '" + columnName + "' not found in table headers.");
-            return false;
+    private static void checkTableFile(Session session, String tableName) throws Exception {
+        File tableFile = new File("tinydb/databases/" + session.getActiveDatabase() + "/" + tableName + ".tbl");
+        if (!tableFile.exists()) {
+            throw new Exception("Table does not exist.");
         }
-
-        // Check if the value in the column matches the condition value
-        String columnValue = columns[columnIndex].trim();
-
-        // Check both quoted and unquoted values
-        return columnValue.equalsIgnoreCase(conditionValue) || columnValue.equalsIgnoreCase("'" + conditionValue + "'");
     }
 
     /**
-     * Retrieves the index of the column in the headers array.
+     * Creates the scan that reads the rows of a DELETE from its open table and evaluates the WHERE condition on
+     * their encoded records: a lookup through an index on a column the condition compares if the cost model
+     * prefers it, and a scan of the whole table otherwise.
      *
-     * @param headers The array of header names.
-     * @param columnName The name of the column.
-     * @return The index of the column in the headers array, or -1 if not found.
+     * @param table The open table.
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table, or null if it has not been analyzed.
+     * @param condition The WHERE condition.
+     * @param parameters The values of the parameter markers, in order.
+     * @return The scan, which returns every column of the matching rows.
+     * @throws Exception If a parameter has no value or a WHERE value does not fit its column.
      */
-    private static int getColumnIndex(String[] headers, String columnName) {
-        for (int i = 0; i < headers.length; i++) {
-            if (headers[i].trim().equalsIgnoreCase(columnName)) {
-                return i;
-            }
+    private static TableScan scan(Table table, TableSchema schema, TableStatistics statistics,
+                                  SqlStatement.Condition condition, SqlStatement.Literal[] parameters)
+            throws Exception {
+        int[] columns = new int[schema.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
+        }
+        RecordPredicate predicate = RecordPredicate.create(schema, statistics, condition, parameters);
+        SqlStatement.Comparison access = CostModel.chooseIndex(schema, statistics, condition, parameters);
+        if (access != null) {
+            return new IndexScan(table, predicate, columns, schema.getColumnIndex(access.getColumn()),
+                    access.getOperator(), access.getValue().getText());
         }
-        return -1; // Return -1 if column not found
+        return new SeqScan(table, predicate, columns);
     }
 }
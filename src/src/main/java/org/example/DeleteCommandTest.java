@@ -3,11 +3,7 @@ package org.example;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,10 +25,10 @@ class DeleteCommandTest {
         commandProcessor.processCommand("CREATE TABLE people (id INT, name STRING, age INT);");
 
         // Insert test data
-        String tableFilePath = "tinydb/databases/testdb/people.txt";
-        try (FileWriter writer = new FileWriter(tableFilePath, true)) {
-            writer.write("1,John,30\n");
-            writer.write("2,Jane,25\n");
+        TableSchema schema = TableSchema.load(new File("tinydb/databases/testdb/people_meta.txt"));
+        try (HeapFile heapFile = HeapFile.open(new File("tinydb/databases/testdb/people.tbl"))) {
+            heapFile.insert(RowCodec.encode(schema, new String[]{"1", "John", "30"}));
+            heapFile.insert(RowCodec.encode(schema, new String[]{"2", "Jane", "25"}));
         }
     }
 
@@ -42,16 +38,8 @@ class DeleteCommandTest {
             commandProcessor.processCommand("DELETE FROM people WHERE id=1;");
         });
 
-        List<String> lines;
-        try {
-            lines = Files.readAllLines(Paths.get("tinydb/databases/testdb/people.txt"));
-        } catch (IOException e) {
-            fail("Error reading table file.");
-            return;
-        }
-
-        assertEquals(2, lines.size()); // Including header
-        assertFalse(lines.stream().anyMatch(line -> line.contains("1,John,30")));
+        assertEquals(1, countRows()); // Only the second record remains
+        assertFalse(containsId("1"));
     }
 
     @Test
@@ -60,15 +48,17 @@ class DeleteCommandTest {
             commandProcessor.processCommand("DELETE FROM people WHERE id=3;");
         });
 
-        List<String> lines;
-        try {
-            lines = Files.readAllLines(Paths.get("tinydb/databases/testdb/people.txt"));
-        } catch (IOException e) {
-            fail("Error reading table file.");
-            return;
-        }
+        assertEquals(2, countRows()); // Both records remain
+    }
+
+    @Test
+    void testDeleteWithCompoundCondition() {
+        assertDoesNotThrow(() -> {
+            commandProcessor.processCommand("DELETE FROM people WHERE age > 26 AND (name LIKE 'J%' OR id = 2);");
+        });
 
-        assertEquals(3, lines.size()); // Including header and two records
+        assertEquals(1, countRows());
+        assertFalse(containsId("1"));
     }
 
     @Test
@@ -80,6 +70,34 @@ class DeleteCommandTest {
         assertEquals("Table does not exist.", exception.getMessage());
     }
 
+    private int countRows() {
+        int rows = 0;
+        try (HeapFile heapFile = HeapFile.open(new File("tinydb/databases/testdb/people.tbl"))) {
+            HeapFile.Scan scan = heapFile.scan();
+            while (scan.next()) {
+                rows++;
+            }
+        } catch (IOException e) {
+            fail("Error reading table file.");
+        }
+        return rows;
+    }
+
+    private boolean containsId(String id) {
+        try (HeapFile heapFile = HeapFile.open(new File("tinydb/databases/testdb/people.tbl"))) {
+            TableSchema schema = TableSchema.load(new File("tinydb/databases/testdb/people_meta.txt"));
+            HeapFile.Scan scan = heapFile.scan();
+            while (scan.next()) {
+                if (id.equals(RowCodec.decode(schema, scan.getRecord())[0])) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            fail("Error reading table file.");
+        }
+        return false;
+    }
+
     @AfterEach
     void tearDown() {
         deleteDirectory(new File("tinydb/databases/testdb"));
@@ -0,0 +1,1231 @@
+package org.example;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+public class Driver implements java.sql.Driver {
+    public static final String URL_PREFIX = "jdbc:tinydb:";
+
+    static {
+        try {
+            DriverManager.registerDriver(new Driver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Opens a connection. URLs of the form {@code jdbc:tinydb:[database]} run the engine in-process: statements
+     * run in a session of their own on the calling thread, and query rows are handed over as the typed values
+     * the executor decodes. URLs of the form {@code jdbc:tinydb://host[:port]/[database]} connect to a server
+     * and log in with the {@code user}, {@code password} and {@code securityAnswer} properties; query rows are
+     * sent in binary form. Either way the driver covers the core of JDBC: statements, prepared statements with
+     * parameters, forward-only result sets and transactions. Statements are upper-cased as they are on the
+     * console.
+     *
+     * @param url The URL of the database.
+     * @param info The connection properties.
+     * @return The connection, or null if the URL is not a TinyDB URL.
+     * @throws SQLException If the connection cannot be opened.
+     */
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        Properties properties = info == null ? new Properties() : info;
+        String location = url.substring(URL_PREFIX.length());
+        String database = location;
+        Backend backend;
+        try {
+            if (location.startsWith("//")) {
+                String authority = location.substring(2);
+                int slash = authority.indexOf('/');
+                database = slash == -1 ? "" : authority.substring(slash + 1);
+                authority = slash == -1 ? authority : authority.substring(0, slash);
+                int colon = authority.lastIndexOf(':');
+                String host = colon == -1 ? authority : authority.substring(0, colon);
+                int port = colon == -1 ? Server.DEFAULT_PORT : Integer.parseInt(authority.substring(colon + 1));
+                String user = properties.getProperty("user");
+                String password = properties.getProperty("password");
+                String securityAnswer = properties.getProperty("securityAnswer");
+                if (user == null || password == null || securityAnswer == null) {
+                    throw new SQLException("The user, password and securityAnswer properties are required.");
+                }
+                backend = new RemoteBackend(Client.connect(host, port, user, password, securityAnswer));
+            } else {
+                backend = new EmbeddedBackend(new CommandProcessor(new Session(properties.getProperty("user"))));
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Cannot connect to " + url + ": " + e.getMessage(), e);
+        }
+        ConnectionHandler connection = new ConnectionHandler(backend);
+        if (!database.isEmpty()) {
+            try {
+                connection.run("USE " + database);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        return (Connection) connection.proxy;
+    }
+
+    /**
+     * Checks whether the driver opens connections to a URL.
+     *
+     * @param url The URL of the database.
+     * @return true if the URL is a TinyDB URL, false otherwise.
+     */
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    /**
+     * Describes the connection properties.
+     *
+     * @param url The URL of the database.
+     * @param info The connection properties given so far.
+     * @return The user, password and securityAnswer properties.
+     */
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        String[] names = {"user", "password", "securityAnswer"};
+        boolean remote = url != null && url.startsWith(URL_PREFIX + "//");
+        DriverPropertyInfo[] properties = new DriverPropertyInfo[names.length];
+        for (int i = 0; i < names.length; i++) {
+            properties[i] = new DriverPropertyInfo(names[i], info == null ? null : info.getProperty(names[i]));
+            properties[i].required = remote;
+        }
+        return properties;
+    }
+
+    /**
+     * Returns the major version of the driver.
+     *
+     * @return The major version.
+     */
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    /**
+     * Returns the minor version of the driver.
+     *
+     * @return The minor version.
+     */
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    /**
+     * Reports whether the driver is JDBC compliant, which it is not, as it implements only the core of JDBC.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    /**
+     * Returns the parent logger of the driver, which logs through the log manager instead.
+     *
+     * @return Never.
+     * @throws SQLFeatureNotSupportedException Always.
+     */
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("The driver logs through the TinyDB logs.");
+    }
+
+    /**
+     * Checks whether a statement is a query that returns rows.
+     *
+     * @param sql The statement.
+     * @return true if the statement is a SELECT query, false otherwise.
+     */
+    private static boolean isQuery(String sql) {
+        return sql.trim().toUpperCase().startsWith("SELECT");
+    }
+
+    /**
+     * Converts an error of the engine into an SQL exception.
+     *
+     * @param e The error.
+     * @return The SQL exception.
+     */
+    private static SQLException toSQLException(Exception e) {
+        return e instanceof SQLException ? (SQLException) e : new SQLException(e.getMessage(), e);
+    }
+
+    /**
+     * Runs the statements of a connection, in-process or on a server.
+     */
+    private interface Backend {
+        /**
+         * Opens a cursor over the rows of a SELECT query.
+         *
+         * @param sql The upper-cased query.
+         * @param fetchSize The number of rows fetched at a time, or 0 for the default.
+         * @return The cursor, positioned before the first row.
+         * @throws Exception If the query fails.
+         */
+        Cursor open(String sql, int fetchSize) throws Exception;
+
+        /**
+         * Runs a statement that returns no rows.
+         *
+         * @param sql The upper-cased statement.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws Exception If the statement fails.
+         */
+        long update(String sql) throws Exception;
+
+        /**
+         * Prepares a statement whose values are written as ?, so that it can run many times with typed values.
+         *
+         * @param sql The upper-cased statement.
+         * @return The prepared statement, or null if the backend runs statement texts only, in which case the
+         *         values are written into the text of every run.
+         * @throws Exception If the statement is malformed.
+         */
+        PreparedCommand prepare(String sql) throws Exception;
+
+        /**
+         * Opens a cursor over the rows of a query prepared by this backend.
+         *
+         * @param command The prepared query.
+         * @param values The values of its parameter markers, in order.
+         * @param fetchSize The number of rows fetched at a time, or 0 for the default.
+         * @return The cursor, positioned before the first row.
+         * @throws Exception If the query fails.
+         */
+        Cursor open(PreparedCommand command, Object[] values, int fetchSize) throws Exception;
+
+        /**
+         * Runs a statement prepared by this backend that returns no rows.
+         *
+         * @param command The prepared statement.
+         * @param values The values of its parameter markers, in order.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws Exception If the statement fails.
+         */
+        long update(PreparedCommand command, Object[] values) throws Exception;
+
+        /**
+         * Rolls back the open transaction and ends the session.
+         *
+         * @throws Exception If the session cannot be ended.
+         */
+        void close() throws Exception;
+    }
+
+    /**
+     * Runs statements in a session of the current process.
+     */
+    private static class EmbeddedBackend implements Backend {
+        private final CommandProcessor commandProcessor;
+
+        /**
+         * Constructs an in-process backend.
+         *
+         * @param commandProcessor The command processor of the session.
+         */
+        private EmbeddedBackend(CommandProcessor commandProcessor) {
+            this.commandProcessor = commandProcessor;
+        }
+
+        /**
+         * Opens a cursor over the rows of a SELECT query.
+         *
+         * @param sql The upper-cased query.
+         * @param fetchSize The number of rows read from the table at a time, or 0 for the default.
+         * @return The cursor, positioned before the first row.
+         * @throws Exception If the query fails.
+         */
+        @Override
+        public Cursor open(String sql, int fetchSize) throws Exception {
+            Cursor cursor = commandProcessor.openCursor(sql);
+            cursor.setFetchSize(fetchSize);
+            return cursor;
+        }
+
+        /**
+         * Runs a statement that returns no rows.
+         *
+         * @param sql The upper-cased statement.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws Exception If the statement fails.
+         */
+        @Override
+        public long update(String sql) throws Exception {
+            return commandProcessor.update(sql);
+        }
+
+        /**
+         * Parses a SELECT, INSERT, UPDATE or DELETE statement once, so that its runs bind typed values instead
+         * of parsing a new text. Other statements run as text.
+         *
+         * @param sql The upper-cased statement.
+         * @return The prepared statement, or null for statements of other kinds.
+         * @throws Exception If the statement is malformed.
+         */
+        @Override
+        public PreparedCommand prepare(String sql) throws Exception {
+            SqlStatement statement = SqlParser.parse(sql);
+            return PreparedCommand.isPlannable(statement) ? new PreparedCommand(sql, statement) : null;
+        }
+
+        /**
+         * Opens a cursor over the rows of a prepared query.
+         *
+         * @param command The prepared query.
+         * @param values The values of its parameter markers, in order.
+         * @param fetchSize The number of rows read from the table at a time, or 0 for the default.
+         * @return The cursor, positioned before the first row.
+         * @throws Exception If the query fails.
+         */
+        @Override
+        public Cursor open(PreparedCommand command, Object[] values, int fetchSize) throws Exception {
+            Cursor cursor = commandProcessor.openCursor(command, values);
+            cursor.setFetchSize(fetchSize);
+            return cursor;
+        }
+
+        /**
+         * Runs a prepared statement that returns no rows.
+         *
+         * @param command The prepared statement.
+         * @param values The values of its parameter markers, in order.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws Exception If the statement fails.
+         */
+        @Override
+        public long update(PreparedCommand command, Object[] values) throws Exception {
+            return commandProcessor.execute(command, values);
+        }
+
+        /**
+         * Rolls back the open transaction of the session.
+         *
+         * @throws Exception If the rollback fails.
+         */
+        @Override
+        public void close() throws Exception {
+            if (commandProcessor.getSession().getTransactionManager().isTransactionActive()) {
+                commandProcessor.update("ROLLBACK");
+            }
+        }
+    }
+
+    /**
+     * Runs statements on a server.
+     */
+    private static class RemoteBackend implements Backend {
+        private final Client client;
+
+        /**
+         * Constructs a backend on a server connection.
+         *
+         * @param client The connected client.
+         */
+        private RemoteBackend(Client client) {
+            this.client = client;
+        }
+
+        /**
+         * Opens a cursor over the rows of a SELECT query, held by the server.
+         *
+         * @param sql The upper-cased query.
+         * @param fetchSize The number of rows the server sends at a time, or 0 for the server default.
+         * @return The cursor, positioned before the first row.
+         * @throws Exception If the query fails.
+         */
+        @Override
+        public Cursor open(String sql, int fetchSize) throws Exception {
+            return client.openCursor(sql, fetchSize);
+        }
+
+        /**
+         * Runs a statement that returns no rows.
+         *
+         * @param sql The upper-cased statement.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws Exception If the statement fails.
+         */
+        @Override
+        public long update(String sql) throws Exception {
+            return client.update(sql);
+        }
+
+        /**
+         * Leaves prepared statements to the driver, as the server protocol only carries statement texts.
+         *
+         * @param sql The upper-cased statement.
+         * @return null, so that values are written into the text of every run.
+         */
+        @Override
+        public PreparedCommand prepare(String sql) {
+            return null;
+        }
+
+        /**
+         * Not called, as this backend prepares no statements.
+         *
+         * @param command The prepared query.
+         * @param values The values of its parameter markers.
+         * @param fetchSize The number of rows fetched at a time.
+         * @return Nothing.
+         */
+        @Override
+        public Cursor open(PreparedCommand command, Object[] values, int fetchSize) {
+            throw new IllegalStateException("The server runs statement texts only.");
+        }
+
+        /**
+         * Not called, as this backend prepares no statements.
+         *
+         * @param command The prepared statement.
+         * @param values The values of its parameter markers.
+         * @return Nothing.
+         */
+        @Override
+        public long update(PreparedCommand command, Object[] values) {
+            throw new IllegalStateException("The server runs statement texts only.");
+        }
+
+        /**
+         * Closes the server connection, which rolls back the open transaction of its session.
+         *
+         * @throws Exception If the connection cannot be closed.
+         */
+        @Override
+        public void close() throws Exception {
+            client.close();
+        }
+    }
+
+    /**
+     * Implements a JDBC interface through a dynamic proxy. Methods the driver does not support throw
+     * SQLFeatureNotSupportedException.
+     */
+    private abstract static class Handler implements InvocationHandler {
+        final Object proxy;
+        boolean closed;
+
+        /**
+         * Constructs a handler and the proxy it implements.
+         *
+         * @param type The JDBC interface.
+         */
+        Handler(Class<?> type) {
+            this.proxy = Proxy.newProxyInstance(Driver.class.getClassLoader(), new Class<?>[]{type}, this);
+        }
+
+        /**
+         * Handles a call on the proxy.
+         *
+         * @param proxy The proxy.
+         * @param method The method called.
+         * @param args The arguments, or null if there are none.
+         * @return The result of the method.
+         * @throws SQLException If the method fails or is not supported.
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                case "unwrap":
+                    if (!((Class<?>) args[0]).isInstance(proxy)) {
+                        throw new SQLException("Not a wrapper for " + args[0]);
+                    }
+                    return proxy;
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy);
+                case "isClosed":
+                    return closed;
+                case "getWarnings":
+                    return null;
+                case "clearWarnings":
+                    return null;
+                case "close":
+                    if (!closed) {
+                        close();
+                        closed = true;
+                    }
+                    return null;
+                default:
+                    if (closed) {
+                        throw new SQLException(method.getDeclaringClass().getSimpleName() + " is closed.");
+                    }
+                    try {
+                        return invoke(method, args == null ? new Object[0] : args);
+                    } catch (Exception e) {
+                        throw toSQLException(e);
+                    }
+            }
+        }
+
+        /**
+         * Handles a call of a JDBC method on the open object.
+         *
+         * @param method The method called.
+         * @param args The arguments.
+         * @return The result of the method.
+         * @throws Exception If the method fails or is not supported.
+         */
+        abstract Object invoke(Method method, Object[] args) throws Exception;
+
+        /**
+         * Releases the resources of the object.
+         *
+         * @throws SQLException If they cannot be released.
+         */
+        abstract void close() throws SQLException;
+
+        /**
+         * Creates the error for a method the driver does not support.
+         *
+         * @param method The method.
+         * @return The error.
+         */
+        static SQLFeatureNotSupportedException unsupported(Method method) {
+            return new SQLFeatureNotSupportedException(method.getDeclaringClass().getSimpleName() + "."
+                    + method.getName() + " is not supported.");
+        }
+    }
+
+    /**
+     * A connection and the session behind it.
+     */
+    private static class ConnectionHandler extends Handler {
+        private final Backend backend;
+        private final Set<StatementHandler> statements = new HashSet<>();
+        private boolean autoCommit = true;
+
+        /**
+         * Constructs a connection.
+         *
+         * @param backend The backend that runs the statements of the connection.
+         */
+        private ConnectionHandler(Backend backend) {
+            super(Connection.class);
+            this.backend = backend;
+        }
+
+        /**
+         * Handles a call of a Connection method.
+         *
+         * @param method The method called.
+         * @param args The arguments.
+         * @return The result of the method.
+         * @throws Exception If the method fails or is not supported.
+         */
+        @Override
+        Object invoke(Method method, Object[] args) throws Exception {
+            switch (method.getName()) {
+                case "createStatement":
+                    return createStatement(null).proxy;
+                case "prepareStatement":
+                    return createStatement((String) args[0]).proxy;
+                case "nativeSQL":
+                    return args[0];
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    boolean enabled = (Boolean) args[0];
+                    if (enabled != autoCommit) {
+                        // Statements run in a transaction of their own unless a transaction is open
+                        run(enabled ? "COMMIT" : "BEGIN TRANSACTION");
+                        autoCommit = enabled;
+                    }
+                    return null;
+                case "commit":
+                case "rollback":
+                    if (args.length != 0) {
+                        throw unsupported(method);
+                    }
+                    if (autoCommit) {
+                        throw new SQLException("The connection is in auto-commit mode.");
+                    }
+                    run(method.getName().toUpperCase());
+                    run("BEGIN TRANSACTION");
+                    return null;
+                case "getTransactionIsolation":
+                    // Transactions read a snapshot taken when they begin
+                    return Connection.TRANSACTION_REPEATABLE_READ;
+                case "isValid":
+                    return true;
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        /**
+         * Closes the statements of the connection, which closes their result sets, and ends the session, rolling
+         * back its open transaction.
+         *
+         * @throws SQLException If the session cannot be ended.
+         */
+        @Override
+        void close() throws SQLException {
+            try {
+                for (StatementHandler statement : new ArrayList<>(statements)) {
+                    ((Statement) statement.proxy).close();
+                }
+                backend.close();
+            } catch (Exception e) {
+                throw toSQLException(e);
+            }
+        }
+
+        /**
+         * Runs a statement that returns no rows.
+         *
+         * @param sql The statement.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws SQLException If the connection is closed or the statement fails.
+         */
+        private long run(String sql) throws SQLException {
+            checkOpen();
+            try {
+                return backend.update(sql.trim().toUpperCase());
+            } catch (Exception e) {
+                throw toSQLException(e);
+            }
+        }
+
+        /**
+         * Creates a statement of the connection.
+         *
+         * @param sql The text of a prepared statement, or null for a plain statement.
+         * @return The statement.
+         */
+        private StatementHandler createStatement(String sql) {
+            StatementHandler statement = new StatementHandler(this, sql);
+            statements.add(statement);
+            return statement;
+        }
+
+        /**
+         * Opens a cursor over the rows of a SELECT query.
+         *
+         * @param sql The query.
+         * @param fetchSize The number of rows fetched at a time, or 0 for the default.
+         * @return The cursor, positioned before the first row.
+         * @throws SQLException If the connection is closed or the query fails.
+         */
+        private Cursor open(String sql, int fetchSize) throws SQLException {
+            checkOpen();
+            try {
+                return backend.open(sql.trim().toUpperCase(), fetchSize);
+            } catch (Exception e) {
+                throw toSQLException(e);
+            }
+        }
+
+        /**
+         * Prepares a statement with the backend.
+         *
+         * @param sql The statement, with ? for every value bound when it runs.
+         * @return The prepared statement, or null if its values are written into its text.
+         * @throws SQLException If the connection is closed or the statement is malformed.
+         */
+        private PreparedCommand prepare(String sql) throws SQLException {
+            checkOpen();
+            try {
+                return backend.prepare(sql.trim().toUpperCase());
+            } catch (Exception e) {
+                throw toSQLException(e);
+            }
+        }
+
+        /**
+         * Opens a cursor over the rows of a prepared query.
+         *
+         * @param command The prepared query.
+         * @param values The values of its parameter markers, in order.
+         * @param fetchSize The number of rows fetched at a time, or 0 for the default.
+         * @return The cursor, positioned before the first row.
+         * @throws SQLException If the connection is closed or the query fails.
+         */
+        private Cursor open(PreparedCommand command, Object[] values, int fetchSize) throws SQLException {
+            checkOpen();
+            try {
+                return backend.open(command, values, fetchSize);
+            } catch (Exception e) {
+                throw toSQLException(e);
+            }
+        }
+
+        /**
+         * Runs a prepared statement that returns no rows.
+         *
+         * @param command The prepared statement.
+         * @param values The values of its parameter markers, in order.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws SQLException If the connection is closed or the statement fails.
+         */
+        private long run(PreparedCommand command, Object[] values) throws SQLException {
+            checkOpen();
+            try {
+                return backend.update(command, values);
+            } catch (Exception e) {
+                throw toSQLException(e);
+            }
+        }
+
+        /**
+         * Checks that the connection is open.
+         *
+         * @throws SQLException If the connection is closed.
+         */
+        private void checkOpen() throws SQLException {
+            if (closed) {
+                throw new SQLException("Connection is closed.");
+            }
+        }
+    }
+
+    /**
+     * A statement, or a prepared statement. An in-process connection prepares the statement once and binds typed
+     * values to every run; a server connection binds the values into the text of the statement.
+     */
+    private static class StatementHandler extends Handler {
+        private final ConnectionHandler connection;
+        private final String sql;
+        private final Map<Integer, Object> parameters = new HashMap<>();
+        private PreparedCommand command;
+        private boolean prepared;
+        private ResultSetHandler resultSet;
+        private long updateCount = -1;
+        private int fetchSize;
+
+        /**
+         * Constructs a statement.
+         *
+         * @param connection The connection of the statement.
+         * @param sql The text of a prepared statement, or null for a plain statement.
+         */
+        private StatementHandler(ConnectionHandler connection, String sql) {
+            super(sql == null ? Statement.class : PreparedStatement.class);
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        /**
+         * Handles a call of a Statement or PreparedStatement method.
+         *
+         * @param method The method called.
+         * @param args The arguments.
+         * @return The result of the method.
+         * @throws Exception If the method fails or is not supported.
+         */
+        @Override
+        Object invoke(Method method, Object[] args) throws Exception {
+            String name = method.getName();
+            if (name.startsWith("set") && name.length() > 3 && args.length >= 2 && args[0] instanceof Integer
+                    && sql != null) {
+                bind(method, (Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return null;
+            }
+            switch (name) {
+                case "executeQuery":
+                    return executeQuery(method, args).proxy;
+                case "executeUpdate":
+                    return (int) executeUpdate(method, args);
+                case "executeLargeUpdate":
+                    return executeUpdate(method, args);
+                case "execute":
+                    if (isQuery(sql == null ? statementText(method, args) : sql)) {
+                        executeQuery(method, args);
+                        return true;
+                    }
+                    executeUpdate(method, args);
+                    return false;
+                case "getResultSet":
+                    return resultSet == null ? null : resultSet.proxy;
+                case "getUpdateCount":
+                    return (int) updateCount;
+                case "getLargeUpdateCount":
+                    return updateCount;
+                case "getMoreResults":
+                    closeResultSet();
+                    updateCount = -1;
+                    return false;
+                case "clearParameters":
+                    parameters.clear();
+                    return null;
+                case "getConnection":
+                    return (Connection) connection.proxy;
+                case "getFetchSize":
+                    return fetchSize;
+                case "setFetchSize":
+                    if ((Integer) args[0] < 0) {
+                        throw new SQLException("The fetch size cannot be negative.");
+                    }
+                    fetchSize = (Integer) args[0];
+                    return null;
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        /**
+         * Closes the current result set of the statement and forgets the statement.
+         *
+         * @throws SQLException If the result set cannot be closed.
+         */
+        @Override
+        void close() throws SQLException {
+            connection.statements.remove(this);
+            closeResultSet();
+        }
+
+        /**
+         * Runs a SELECT query and makes a cursor over its rows the current result set.
+         *
+         * @param method The execute method called.
+         * @param args The arguments of the call.
+         * @return The result set.
+         * @throws SQLException If the statement is not a query or fails.
+         */
+        private ResultSetHandler executeQuery(Method method, Object[] args) throws SQLException {
+            PreparedCommand command = getCommand(args);
+            String statement = command == null ? statementText(method, args) : sql;
+            if (!isQuery(statement)) {
+                throw new SQLException("Only SELECT statements return a result set.");
+            }
+            closeResultSet();
+            updateCount = -1;
+            Cursor cursor = command == null ? connection.open(statement, fetchSize)
+                    : connection.open(command, values(command), fetchSize);
+            resultSet = new ResultSetHandler(this, cursor);
+            return resultSet;
+        }
+
+        /**
+         * Runs a statement that returns no rows.
+         *
+         * @param method The execute method called.
+         * @param args The arguments of the call.
+         * @return The number of rows the statement inserted, updated or deleted.
+         * @throws SQLException If the statement is a query or fails.
+         */
+        private long executeUpdate(Method method, Object[] args) throws SQLException {
+            PreparedCommand command = getCommand(args);
+            String statement = command == null ? statementText(method, args) : sql;
+            if (isQuery(statement)) {
+                throw new SQLException("SELECT statements must be run with executeQuery.");
+            }
+            closeResultSet();
+            updateCount = command == null ? connection.run(statement) : connection.run(command, values(command));
+            return updateCount;
+        }
+
+        /**
+         * Returns the statement the backend prepared for this prepared statement, preparing it on its first run.
+         *
+         * @param args The arguments of the execute call.
+         * @return The prepared statement, or null if this is a plain statement, the call passes a statement
+         *         text, or the backend binds values into the text.
+         * @throws SQLException If the statement is malformed.
+         */
+        private PreparedCommand getCommand(Object[] args) throws SQLException {
+            if (sql == null || args.length != 0) {
+                return null;
+            }
+            if (!prepared) {
+                command = connection.prepare(sql);
+                prepared = true;
+            }
+            return command;
+        }
+
+        /**
+         * Returns the values bound to the parameters of a prepared statement. Statement texts are upper-cased
+         * before they run, literals included, so string values are upper-cased alike.
+         *
+         * @param command The prepared statement.
+         * @return The values, in the order of the parameter markers.
+         * @throws SQLException If a parameter is not set.
+         */
+        private Object[] values(PreparedCommand command) throws SQLException {
+            Object[] values = new Object[command.getParameterCount()];
+            for (int i = 0; i < values.length; i++) {
+                if (!parameters.containsKey(i + 1)) {
+                    throw new SQLException("No value specified for parameter " + (i + 1) + ".");
+                }
+                Object value = parameters.get(i + 1);
+                values[i] = value instanceof String ? ((String) value).toUpperCase() : value;
+            }
+            return values;
+        }
+
+        /**
+         * Returns the text of the statement to run: the text passed to a plain statement, or the text of a
+         * prepared statement with its parameters bound.
+         *
+         * @param method The execute method called.
+         * @param args The arguments of the call.
+         * @return The statement.
+         * @throws SQLException If the call does not fit the kind of statement, or a parameter is not set.
+         */
+        private String statementText(Method method, Object[] args) throws SQLException {
+            if (sql == null) {
+                if (args.length != 1) {
+                    throw unsupported(method);
+                }
+                return (String) args[0];
+            }
+            if (args.length != 0) {
+                throw new SQLException(method.getName() + " cannot be called with a statement text on a "
+                        + "PreparedStatement.");
+            }
+            StringBuilder statement = new StringBuilder();
+            boolean quoted = false;
+            int parameter = 0;
+            for (int i = 0; i < sql.length(); i++) {
+                char c = sql.charAt(i);
+                if (c == '\'') {
+                    quoted = !quoted;
+                }
+                if (c != '?' || quoted) {
+                    statement.append(c);
+                    continue;
+                }
+                parameter++;
+                if (!parameters.containsKey(parameter)) {
+                    throw new SQLException("No value specified for parameter " + parameter + ".");
+                }
+                statement.append(toLiteral(parameters.get(parameter)));
+            }
+            return statement.toString();
+        }
+
+        /**
+         * Sets a parameter of the prepared statement.
+         *
+         * @param method The setter called.
+         * @param parameter The position of the parameter, starting at 1.
+         * @param value The value, or null for NULL.
+         * @throws SQLException If the type of the value is not supported.
+         */
+        private void bind(Method method, int parameter, Object value) throws SQLException {
+            if (value != null && !(value instanceof Number) && !(value instanceof String)) {
+                throw unsupported(method);
+            }
+            parameters.put(parameter, value);
+        }
+
+        /**
+         * Formats a parameter value as a literal of the statement text.
+         *
+         * @param value The value.
+         * @return NULL, a number, or a quoted string in which quotes are doubled.
+         */
+        private static String toLiteral(Object value) {
+            if (value == null) {
+                return "NULL";
+            }
+            if (value instanceof BigDecimal) {
+                return ((BigDecimal) value).toPlainString();
+            }
+            if (value instanceof Number) {
+                return value.toString();
+            }
+            return "'" + ((String) value).replace("'", "''") + "'";
+        }
+
+        /**
+         * Closes the current result set of the statement, if any.
+         *
+         * @throws SQLException If the result set cannot be closed.
+         */
+        private void closeResultSet() throws SQLException {
+            if (resultSet != null) {
+                ResultSetHandler closing = resultSet;
+                resultSet = null;
+                ((ResultSet) closing.proxy).close();
+            }
+        }
+    }
+
+    /**
+     * A forward-only result set over a cursor, which fetches the rows of the query in batches as the result
+     * set is read.
+     */
+    private static class ResultSetHandler extends Handler {
+        private final StatementHandler statement;
+        private final Cursor cursor;
+        private int fetchSize;
+        private int row;
+        private boolean afterLast;
+        private boolean wasNull;
+
+        /**
+         * Constructs a result set.
+         *
+         * @param statement The statement that ran the query.
+         * @param cursor The cursor over the rows of the query, positioned before the first row.
+         */
+        private ResultSetHandler(StatementHandler statement, Cursor cursor) {
+            super(ResultSet.class);
+            this.statement = statement;
+            this.cursor = cursor;
+            this.fetchSize = statement.fetchSize;
+        }
+
+        /**
+         * Handles a call of a ResultSet method.
+         *
+         * @param method The method called.
+         * @param args The arguments.
+         * @return The result of the method.
+         * @throws Exception If the method fails or is not supported.
+         */
+        @Override
+        Object invoke(Method method, Object[] args) throws Exception {
+            switch (method.getName()) {
+                case "next":
+                    if (afterLast) {
+                        return false;
+                    }
+                    if (cursor.next()) {
+                        row++;
+                        return true;
+                    }
+                    afterLast = true;
+                    return false;
+                case "getObject":
+                    Object value = value(args[0]);
+                    return args.length == 1 ? value : convert(value, (Class<?>) args[1]);
+                case "getString":
+                    return convert(value(args[0]), String.class);
+                case "getLong":
+                    return primitive(convert(value(args[0]), Long.class), 0L);
+                case "getInt":
+                    return primitive(convert(value(args[0]), Integer.class), 0);
+                case "getDouble":
+                    return primitive(convert(value(args[0]), Double.class), 0.0);
+                case "wasNull":
+                    return wasNull;
+                case "findColumn":
+                    return column(args[0]) + 1;
+                case "getMetaData":
+                    return new MetaDataHandler(cursor).proxy;
+                case "getStatement":
+                    return statement.proxy;
+                case "getRow":
+                    return afterLast ? 0 : row;
+                case "getType":
+                    return ResultSet.TYPE_FORWARD_ONLY;
+                case "getConcurrency":
+                    return ResultSet.CONCUR_READ_ONLY;
+                case "getFetchSize":
+                    return fetchSize;
+                case "setFetchSize":
+                    if ((Integer) args[0] < 0) {
+                        throw new SQLException("The fetch size cannot be negative.");
+                    }
+                    fetchSize = (Integer) args[0];
+                    cursor.setFetchSize(fetchSize);
+                    return null;
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        /**
+         * Closes the cursor, discarding the rows not read yet.
+         *
+         * @throws SQLException If the cursor cannot be closed.
+         */
+        @Override
+        void close() throws SQLException {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                throw toSQLException(e);
+            }
+        }
+
+        /**
+         * Returns a value of the current row.
+         *
+         * @param column The position of the column, starting at 1, or its name.
+         * @return The typed value, or null if it is NULL.
+         * @throws SQLException If there is no current row or no such column.
+         */
+        private Object value(Object column) throws SQLException {
+            if (row == 0 || afterLast) {
+                throw new SQLException("The result set is not positioned on a row.");
+            }
+            Object value = cursor.getRow()[column(column)];
+            wasNull = value == null;
+            return value;
+        }
+
+        /**
+         * Resolves a column of the result.
+         *
+         * @param column The position of the column, starting at 1, or its name.
+         * @return The position of the column, starting at 0.
+         * @throws SQLException If the result has no such column.
+         */
+        private int column(Object column) throws SQLException {
+            int index = -1;
+            if (column instanceof Integer) {
+                index = (Integer) column - 1;
+            } else {
+                for (int i = 0; i < cursor.getColumnCount() && index == -1; i++) {
+                    if (cursor.getColumnName(i).equalsIgnoreCase((String) column)) {
+                        index = i;
+                    }
+                }
+            }
+            if (index < 0 || index >= cursor.getColumnCount()) {
+                throw new SQLException("Invalid column: " + column);
+            }
+            return index;
+        }
+
+        /**
+         * Converts a value to a Java type.
+         *
+         * @param value The value, or null.
+         * @param type The type to convert to: String, Long, Integer, Double or Object.
+         * @return The converted value, or null if the value is null.
+         * @throws SQLException If the value cannot be converted.
+         */
+        private static Object convert(Object value, Class<?> type) throws SQLException {
+            if (value == null || type.isInstance(value)) {
+                return value;
+            }
+            try {
+                if (type == String.class) {
+                    return value.toString();
+                }
+                if (type == Long.class) {
+                    return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+                }
+                if (type == Integer.class) {
+                    return Math.toIntExact((Long) convert(value, Long.class));
+                }
+                if (type == Double.class) {
+                    return value instanceof Number ? ((Number) value).doubleValue()
+                            : Double.parseDouble(value.toString());
+                }
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new SQLException("Cannot convert " + value + " to " + type.getSimpleName() + ".", e);
+            }
+            throw new SQLException("Cannot convert " + value + " to " + type.getSimpleName() + ".");
+        }
+
+        /**
+         * Returns a value for a getter of a primitive type, which returns zero for NULL.
+         *
+         * @param value The converted value, or null.
+         * @param zero The zero of the type.
+         * @return The value, or zero if it is null.
+         */
+        private static Object primitive(Object value, Object zero) {
+            return value == null ? zero : value;
+        }
+    }
+
+    /**
+     * The columns of a result set.
+     */
+    private static class MetaDataHandler extends Handler {
+        private final Cursor result;
+
+        /**
+         * Constructs the metadata of a result.
+         *
+         * @param result The cursor over the result.
+         */
+        private MetaDataHandler(Cursor result) {
+            super(ResultSetMetaData.class);
+            this.result = result;
+        }
+
+        /**
+         * Handles a call of a ResultSetMetaData method.
+         *
+         * @param method The method called.
+         * @param args The arguments.
+         * @return The result of the method.
+         * @throws Exception If the method fails or is not supported.
+         */
+        @Override
+        Object invoke(Method method, Object[] args) throws Exception {
+            if (method.getName().equals("getColumnCount")) {
+                return result.getColumnCount();
+            }
+            int column = (Integer) args[0] - 1;
+            if (column < 0 || column >= result.getColumnCount()) {
+                throw new SQLException("Invalid column: " + args[0]);
+            }
+            ColumnType type = result.getColumnType(column);
+            switch (method.getName()) {
+                case "getColumnName":
+                case "getColumnLabel":
+                    return result.getColumnName(column);
+                case "getColumnType":
+                    return type == ColumnType.INT ? Types.BIGINT : type == ColumnType.DOUBLE ? Types.DOUBLE
+                            : Types.VARCHAR;
+                case "getColumnTypeName":
+                    return type.name();
+                case "getColumnClassName":
+                    return (type == ColumnType.INT ? Long.class : type == ColumnType.DOUBLE ? Double.class
+                            : String.class).getName();
+                case "isNullable":
+                    return ResultSetMetaData.columnNullableUnknown;
+                case "isReadOnly":
+                    return true;
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        /**
+         * Releases nothing.
+         */
+        @Override
+        void close() {
+        }
+    }
+}
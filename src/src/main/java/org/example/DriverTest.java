@@ -0,0 +1,228 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DriverTest {
+
+    private static final String USER = "drivertest";
+    private static final String PASSWORD = "secret";
+    private static final String ANSWER = "green";
+
+    @BeforeAll
+    void loadDriver() throws Exception {
+        Class.forName("org.example.Driver");
+    }
+
+    @BeforeEach
+    void createTestDatabase() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:tinydb:");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("create database testdb;");
+            statement.executeUpdate("use testdb;");
+            statement.executeUpdate("create table people (id int(pk), name string, score double);");
+        }
+    }
+
+    @Test
+    void testEmbeddedQueryReturnsTypedRows() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:tinydb:testdb");
+             Statement statement = connection.createStatement()) {
+            assertEquals(1, statement.executeUpdate("insert into people (id, name, score) values (1, 'John', 7.5);"));
+            assertEquals(1, statement.executeUpdate("insert into people (id, name, score) values (2, 'Jane', NULL);"));
+
+            try (ResultSet resultSet = statement.executeQuery("select id,name,score from people where id = 2;")) {
+                assertEquals(3, resultSet.getMetaData().getColumnCount());
+                assertEquals(Types.BIGINT, resultSet.getMetaData().getColumnType(1));
+                assertTrue(resultSet.next());
+                assertEquals(2L, resultSet.getObject(1));
+                assertEquals("JANE", resultSet.getObject("name"));
+                assertNull(resultSet.getObject("score"));
+                assertTrue(resultSet.wasNull());
+                assertFalse(resultSet.next());
+            }
+
+            try (ResultSet resultSet = statement.executeQuery("select score from people where id = 1;")) {
+                assertTrue(resultSet.next());
+                assertEquals(7.5, resultSet.getObject(1));
+                assertEquals(7, resultSet.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void testPreparedStatementsReturnUpdateCounts() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:tinydb:testdb");
+             PreparedStatement insert = connection.prepareStatement(
+                     "insert into people (id, name, score) values (?, ?, ?);")) {
+            for (int i = 1; i <= 5; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "name" + i);
+                insert.setDouble(3, i % 2);
+                assertEquals(1, insert.executeUpdate());
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                assertEquals(3, statement.executeUpdate("update people set name = 'odd' where score = 1.0;"));
+                assertEquals(2, statement.executeUpdate("delete from people where score = 0.0;"));
+            }
+
+            PreparedStatement select = connection.prepareStatement("select id from people where name = ?;");
+            select.setString(1, "ODD");
+            int count = 0;
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    assertEquals(1, resultSet.getLong("id") % 2);
+                    count++;
+                }
+            }
+            assertEquals(3, count);
+            assertThrows(SQLException.class, () -> select.executeQuery("select id from people;"));
+
+            // Quotes are values, not statement syntax
+            insert.setInt(1, 6);
+            insert.setString(2, "O'Brien");
+            insert.setDouble(3, 2);
+            assertEquals(1, insert.executeUpdate());
+            select.setString(1, "o'brien");
+            try (ResultSet resultSet = select.executeQuery()) {
+                assertTrue(resultSet.next(), "A quoted name was not stored as given");
+                assertEquals(6, resultSet.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void testRollbackDiscardsChanges() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:tinydb:testdb");
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.executeUpdate("insert into people (id, name, score) values (1, 'John', 1);");
+            try (ResultSet resultSet = statement.executeQuery("select name from people;")) {
+                assertTrue(resultSet.next(), "The transaction does not see its own insert");
+            }
+            connection.rollback();
+            try (ResultSet resultSet = statement.executeQuery("select name from people;")) {
+                assertFalse(resultSet.next(), "The rolled back insert is visible");
+            }
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Test
+    void testResultSetFetchesRowsInBatches() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:tinydb:testdb");
+             Statement statement = connection.createStatement();
+             Statement writer = connection.createStatement()) {
+            for (int i = 1; i <= 10; i++) {
+                statement.executeUpdate("insert into people (id, name, score) values (" + i + ", 'name" + i
+                        + "', 1.5);");
+            }
+
+            statement.setFetchSize(3);
+            ResultSet resultSet = statement.executeQuery("select id from people;");
+            for (int i = 1; i <= 4; i++) {
+                assertTrue(resultSet.next());
+                assertEquals(i, resultSet.getInt("id"));
+                assertEquals(i, resultSet.getRow());
+            }
+            // Later batches read the snapshot the query started with
+            assertEquals(1, writer.executeUpdate("insert into people (id, name, score) values (11, 'late', 1.5);"));
+            assertEquals(1, writer.executeUpdate("delete from people where id = 5;"));
+            resultSet.setFetchSize(2);
+            for (int i = 5; i <= 10; i++) {
+                assertTrue(resultSet.next());
+                assertEquals(i, resultSet.getInt("id"));
+            }
+            assertFalse(resultSet.next());
+            assertEquals(0, resultSet.getRow());
+
+            ResultSet closedEarly = statement.executeQuery("select name from people;");
+            assertTrue(resultSet.isClosed(), "Running a query does not close the previous result set");
+            assertTrue(closedEarly.next());
+            closedEarly.close();
+            assertThrows(SQLException.class, closedEarly::next);
+        }
+    }
+
+    @Test
+    void testNetworkQueryReturnsTypedRows() throws Exception {
+        Map<String, String[]> userProfiles = UserProfileManager.loadUserProfiles();
+        userProfiles.put(UserProfileManager.hashString(USER),
+                new String[]{UserProfileManager.hashString(PASSWORD), "Favourite colour?", ANSWER});
+        UserProfileManager.saveUserProfiles(userProfiles);
+        try (Server server = Server.start(0)) {
+            Properties properties = new Properties();
+            properties.setProperty("user", USER);
+            properties.setProperty("password", PASSWORD);
+            properties.setProperty("securityAnswer", ANSWER);
+            try (Connection connection = DriverManager.getConnection(
+                    "jdbc:tinydb://localhost:" + server.getPort() + "/testdb", properties);
+                 Statement statement = connection.createStatement()) {
+                assertEquals(1, statement.executeUpdate("insert into people (id, name, score) values (1, 'John', 2.5);"));
+                assertFalse(statement.execute("insert into people (id, name, score) values (2, NULL, 3.5);"));
+                assertEquals(1, statement.getUpdateCount());
+
+                assertTrue(statement.execute("select * from people where score > 3.0;"));
+                try (ResultSet resultSet = statement.getResultSet()) {
+                    assertTrue(resultSet.next());
+                    assertEquals(2L, resultSet.getObject("id"));
+                    assertNull(resultSet.getString("name"));
+                    assertEquals(3.5, resultSet.getDouble("score"));
+                    assertFalse(resultSet.next());
+                }
+
+                statement.setFetchSize(1);
+                try (ResultSet resultSet = statement.executeQuery("select id from people;")) {
+                    assertTrue(resultSet.next());
+                    assertEquals(1, resultSet.getInt(1));
+                    assertTrue(resultSet.next());
+                    assertEquals(2, resultSet.getInt(1));
+                    assertFalse(resultSet.next());
+                }
+                try (ResultSet resultSet = statement.executeQuery("select id from people;")) {
+                    assertTrue(resultSet.next());
+                }
+                assertEquals(1, statement.executeUpdate("delete from people where id = 1;"));
+
+                SQLException exception = assertThrows(SQLException.class,
+                        () -> statement.executeQuery("select missing from people;"));
+                assertTrue(exception.getMessage().contains("does not exist"), exception.getMessage());
+            }
+        } finally {
+            userProfiles = UserProfileManager.loadUserProfiles();
+            userProfiles.remove(UserProfileManager.hashString(USER));
+            UserProfileManager.saveUserProfiles(userProfiles);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
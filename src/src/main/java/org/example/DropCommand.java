@@ -7,32 +7,41 @@ public class DropCommand {
     /**
      * Executes the DROP command to drop a table and its metadata.
      *
-     * @param tokens The tokens parsed from the command input.
+     * @param session The session that runs the statement.
+     * @param tableName The name of the table.
      * @throws Exception If an error occurs during command execution.
      */
-    public static void execute(String[] tokens) throws Exception {
-        if (CommandProcessor.activeDatabase == null) {
+    public static void execute(Session session, String tableName) throws Exception {
+        if (session.getActiveDatabase() == null) {
             throw new Exception("No database selected.");
         }
 
         // Add logging before dropping the table
         LogManager.logGeneral("DROP command initiated", "Attempting to drop table");
 
-        if (tokens.length < 3) {
-            System.out.println("Invalid DROP command syntax.");
-            return;
-        }
-
-        String tableName = tokens[2].replace(";", "").trim();
-        File tableFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + ".txt");
-        File metaFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + "_meta.txt");
+        // Wait until no transaction uses the table anymore
+        LockManager.lockTable(session, tableName, LockManager.Mode.ACCESS_EXCLUSIVE);
+        File tableFile = new File("tinydb/databases/" + session.getActiveDatabase() + "/" + tableName + ".tbl");
+        File metaFile = new File("tinydb/databases/" + session.getActiveDatabase() + "/" + tableName + "_meta.txt");
 
         boolean tableDropped = false;
         boolean metaDropped = false;
 
         if (tableFile.exists()) {
-            if (tableFile.delete()) {
+            TableSchema schema = Catalog.getInstance().findTable(tableFile.getParentFile(), tableName);
+            if (schema != null && schema.getEngine() == TableSchema.Engine.LSM) {
+                if (!LsmTree.drop(tableFile)) {
+                    throw new Exception("Failed to drop table.");
+                }
+                tableDropped = true;
+            } else if (HeapFile.drop(tableFile)) {
                 tableDropped = true;
+                dropIndexFile(HeapTable.getPrimaryKeyIndexFile(tableFile.getParentFile(), tableName));
+                if (schema != null) {
+                    for (IndexDefinition index : schema.getIndexes()) {
+                        dropIndexFile(index.getFile(tableFile.getParentFile(), tableName));
+                    }
+                }
             } else {
                 throw new Exception("Failed to drop table.");
             }
@@ -50,6 +59,14 @@ public class DropCommand {
             System.out.println("Metadata for table " + tableName + " does not exist.");
         }
 
+        File statsFile = Catalog.getStatisticsFile(metaFile.getParentFile(), tableName);
+        if (statsFile.exists() && !statsFile.delete()) {
+            throw new Exception("Failed to drop statistics.");
+        }
+
+        Catalog.getInstance().invalidate(metaFile.getParentFile(), tableName);
+        PlanCache.getInstance().invalidate(session.getActiveDatabase(), tableName);
+
         if (tableDropped && metaDropped) {
             System.out.println("Table and metadata dropped successfully.");
             LogManager.logGeneral("DROP command executed", "Table and metadata dropped successfully for table: " + tableName);
@@ -61,4 +78,16 @@ public class DropCommand {
             LogManager.logGeneral("DROP command executed", "Metadata dropped successfully, but table was not found for table: " + tableName);
         }
     }
+
+    /**
+     * Deletes an index file of a dropped table, discarding its cached pages first.
+     *
+     * @param indexFile The index file.
+     * @throws Exception If the file exists but cannot be deleted.
+     */
+    private static void dropIndexFile(File indexFile) throws Exception {
+        if (!BufferPool.getInstance().deleteFile(indexFile) && indexFile.exists()) {
+            throw new Exception("Failed to drop index " + indexFile.getName() + ".");
+        }
+    }
 }
@@ -26,7 +26,7 @@ class DropCommandTest {
         commandProcessor.processCommand("CREATE TABLE people (id INT, name STRING, age INT);");
 
         // Verify that the table and metadata files are created
-        assertTrue(Files.exists(Paths.get("tinydb/databases/testdb/people.txt")));
+        assertTrue(Files.exists(Paths.get("tinydb/databases/testdb/people.tbl")));
         assertTrue(Files.exists(Paths.get("tinydb/databases/testdb/people_meta.txt")));
     }
 
@@ -36,7 +36,7 @@ class DropCommandTest {
             commandProcessor.processCommand("DROP TABLE people;");
         });
 
-        assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people.txt")));
+        assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people.tbl")));
         assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people_meta.txt")));
     }
 
@@ -47,7 +47,7 @@ class DropCommandTest {
         commandProcessor.processCommand("DROP TABLE people;");
 
         // Verify the table and metadata files are deleted
-        assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people.txt")));
+        assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people.tbl")));
         assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people_meta.txt")));
     }
 
@@ -62,7 +62,7 @@ class DropCommandTest {
         });
 
         // Verify the table file is deleted
-        assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people.txt")));
+        assertFalse(Files.exists(Paths.get("tinydb/databases/testdb/people.tbl")));
     }
 
     @AfterEach
@@ -17,20 +17,14 @@ public class ERDExport {
             return;
         }
 
-        File[] files = dbDir.listFiles();
-        if (files != null) {
+        StorageMigrator.migrateDatabase(dbDir);
+        List<TableSchema> tables = Catalog.getInstance().getTableSchemas(dbDir);
+        if (!tables.isEmpty()) {
             List<CreateCommand.Relationship> relationships = new ArrayList<>();
-            Map<String, TableInfo> tableInfoMap = new HashMap<>();
+            for (TableSchema table : tables) {
+                relationships.addAll(table.getRelationships());
+            }
             try {
-                for (File file : files) {
-                    if (file.isFile() && file.getName().endsWith("_meta.txt")) {
-                        TableInfo tableInfo = readTableInfo(file);
-                        tableInfoMap.put(tableInfo.tableName.toUpperCase(), tableInfo);
-                        // Collect relationships from each meta file
-                        relationships.addAll(tableInfo.relationships);
-                    }
-                }
-
                 File erdFile = new File(dbDir, "ERD.txt");
                 // Clear the file by opening it in write mode
                 try (FileWriter fileWriter = new FileWriter(erdFile, false); // 'false' to overwrite
@@ -39,19 +33,17 @@ public class ERDExport {
                     erdWriter.println("Entity-Relationship Diagram for database: " + dbName);
                     erdWriter.println();
 
-                    for (File file : files) {
-                        if (file.isFile() && file.getName().endsWith(".txt") && !file.getName().endsWith("_meta.txt")) {
-                            String tableName = file.getName().replace(".txt", "").toUpperCase();
-                            erdWriter.println("Table: " + tableName);
+                    for (TableSchema table : tables) {
+                        String tableName = table.getTableName();
+                        erdWriter.println("Table: " + tableName);
 
-                            // Print column names
-                            printColumnNames(erdWriter, tableInfoMap.get(tableName));
+                        // Print column names
+                        printColumnNames(erdWriter, table);
 
-                            // Print relationships
-                            writeRelationships(erdWriter, tableName, relationships, tableInfoMap);
+                        // Print relationships
+                        writeRelationships(erdWriter, dbDir, tableName, relationships);
 
-                            erdWriter.println();
-                        }
+                        erdWriter.println();
                     }
 
                     System.out.println("ERD exported successfully.");
@@ -64,67 +56,26 @@ public class ERDExport {
         }
     }
 
-    /**
-     * Reads the table information from the specified metadata file.
-     *
-     * @param metaFile The metadata file to read the table information from.
-     * @return The table information.
-     * @throws IOException If an I/O error occurs.
-     */
-    private static TableInfo readTableInfo(File metaFile) throws IOException {
-        TableInfo tableInfo = new TableInfo();
-        try (Scanner scanner = new Scanner(metaFile)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                if (line.startsWith("Table:")) {
-                    tableInfo.tableName = line.split(":")[1].trim();
-                } else if (line.startsWith("Structure:")) {
-                    String[] columns = line.split(":")[1].trim().split(",");
-                    for (String column : columns) {
-                        tableInfo.columns.add(column.trim().split("\\s+")[0].toUpperCase());
-                    }
-                } else if (line.startsWith("Primary Key:")) {
-                    tableInfo.primaryKeys.add(line.split(":")[1].trim().toUpperCase());
-                } else if (line.startsWith("Relationship:")) {
-                    String[] parts = line.split(":")[1].trim().split(" to ");
-                    String[] from = parts[0].split("\\(");
-                    String[] to = parts[1].split("\\(");
-
-                    String fromColumn = from[1].replace(")", "").trim();
-                    String toColumn = to[1].replace(")", "").trim();
-
-                    tableInfo.relationships.add(new CreateCommand.Relationship(
-                            tableInfo.tableName,
-                            to[0].trim(),
-                            fromColumn,
-                            toColumn
-                    ));
-                }
-            }
-        }
-        return tableInfo;
-    }
-
     /**
      * Prints the column names and primary keys for the specified table.
      *
      * @param writer The writer to print to.
-     * @param tableInfo The table information.
+     * @param table The schema of the table.
      */
-    private static void printColumnNames(PrintWriter writer, TableInfo tableInfo) {
-        writer.println("Columns: " + String.join(", ", tableInfo.columns));
-        writer.println("Primary Keys: " + String.join(", ", tableInfo.primaryKeys));
+    private static void printColumnNames(PrintWriter writer, TableSchema table) {
+        writer.println("Columns: " + String.join(", ", table.getColumnNames()));
+        writer.println("Primary Keys: " + (table.getPrimaryKey() == null ? "" : table.getPrimaryKey()));
     }
 
     /**
      * Writes the relationships for the specified table.
      *
      * @param writer The writer to print to.
+     * @param dbDir The directory of the database.
      * @param tableName The name of the table.
      * @param relationships The list of relationships.
-     * @param tableInfoMap The map of table information.
      */
-    private static void writeRelationships(PrintWriter writer, String tableName, List<CreateCommand.Relationship> relationships, Map<String, TableInfo> tableInfoMap) {
+    private static void writeRelationships(PrintWriter writer, File dbDir, String tableName, List<CreateCommand.Relationship> relationships) {
         boolean foundRelationship = false;
         for (CreateCommand.Relationship relationship : relationships) {
             if (relationship.getTable().equalsIgnoreCase(tableName)) {
@@ -132,8 +83,8 @@ public class ERDExport {
                 String column = relationship.getColumn();
                 String relatedColumn = relationship.getRelatedColumn();
 
-                boolean isPrimaryKeyTable = isPrimaryKeyColumn(tableInfoMap, tableName, column);
-                boolean isPrimaryKeyRelatedTable = isPrimaryKeyColumn(tableInfoMap, relatedTable, relatedColumn);
+                boolean isPrimaryKeyTable = isPrimaryKeyColumn(dbDir, tableName, column);
+                boolean isPrimaryKeyRelatedTable = isPrimaryKeyColumn(dbDir, relatedTable, relatedColumn);
                 String cardinality = determineCardinality(isPrimaryKeyTable, isPrimaryKeyRelatedTable);
 
                 writer.println("Relationship: " + tableName + " (" + column + ") -> " + relatedTable + " (" + relatedColumn + ") - Cardinality: " + cardinality);
@@ -148,14 +99,14 @@ public class ERDExport {
     /**
      * Checks if the specified column is a primary key in the specified table.
      *
-     * @param tableInfoMap The map of table information.
+     * @param dbDir The directory of the database.
      * @param tableName The name of the table.
      * @param columnName The name of the column.
      * @return true if the column is a primary key, false otherwise.
      */
-    private static boolean isPrimaryKeyColumn(Map<String, TableInfo> tableInfoMap, String tableName, String columnName) {
-        TableInfo tableInfo = tableInfoMap.get(tableName.toUpperCase());
-        return tableInfo != null && tableInfo.primaryKeys.contains(columnName.toUpperCase());
+    private static boolean isPrimaryKeyColumn(File dbDir, String tableName, String columnName) {
+        TableSchema table = Catalog.getInstance().findTable(dbDir, tableName);
+        return table != null && table.isPrimaryKey(columnName);
     }
 
     /**
@@ -174,14 +125,4 @@ public class ERDExport {
             return "unknown";
         }
     }
-
-    /**
-     * Represents the information of a table, including columns, primary keys, and relationships.
-     */
-    static class TableInfo {
-        String tableName;
-        List<String> columns = new ArrayList<>();
-        List<String> primaryKeys = new ArrayList<>();
-        List<CreateCommand.Relationship> relationships = new ArrayList<>();
-    }
 }
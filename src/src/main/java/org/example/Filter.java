@@ -0,0 +1,114 @@
+package org.example;
+
+import java.io.IOException;
+
+public class Filter implements Operator {
+    private final Operator child;
+    private final Condition condition;
+
+    /**
+     * A condition on the decoded values of a row.
+     */
+    public interface Condition {
+        /**
+         * Evaluates the condition on a row.
+         *
+         * @param row The values of the row in the column order of the input.
+         * @return true if the row matches, false otherwise.
+         * @throws Exception If the condition cannot be evaluated on the row.
+         */
+        boolean test(Object[] row) throws Exception;
+    }
+
+    /**
+     * Constructs an operator that returns the rows of its input that match a condition. Conditions that can be
+     * evaluated on encoded records are better given to the scan, which then does not decode the rows that do
+     * not match; this operator takes the conditions that need the decoded values.
+     *
+     * @param child The input.
+     * @param condition The condition rows must match.
+     */
+    public Filter(Operator child, Condition condition) {
+        this.child = child;
+        this.condition = condition;
+    }
+
+    /**
+     * Opens the input.
+     *
+     * @throws Exception If the input cannot be opened.
+     */
+    @Override
+    public void open() throws Exception {
+        child.open();
+    }
+
+    /**
+     * Returns the next row of the input that matches the condition.
+     *
+     * @return The row, or null after the last row.
+     * @throws Exception If the input cannot be read or the condition cannot be evaluated.
+     */
+    @Override
+    public Object[] next() throws Exception {
+        Object[] row;
+        while ((row = child.next()) != null) {
+            if (condition.test(row)) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes the input.
+     *
+     * @throws IOException If a table cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        child.close();
+    }
+
+    /**
+     * Returns the number of output columns, those of the input.
+     *
+     * @return The number of columns.
+     */
+    @Override
+    public int getColumnCount() {
+        return child.getColumnCount();
+    }
+
+    /**
+     * Returns the name of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        return child.getColumnName(column);
+    }
+
+    /**
+     * Returns the type of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        return child.getColumnType(column);
+    }
+
+    /**
+     * Returns the identifier of the record the last row was read from.
+     *
+     * @return The record identifier.
+     */
+    @Override
+    public long getRecordId() {
+        return child.getRecordId();
+    }
+}
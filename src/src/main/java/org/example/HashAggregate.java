@@ -0,0 +1,275 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HashAggregate implements Operator {
+    private final Operator child;
+    private final int[] groupColumns;
+    private final Aggregate[] aggregates;
+    private final List<Object[]> groups = new ArrayList<>();
+    private Iterator<Object[]> iterator;
+
+    /**
+     * The aggregate functions.
+     */
+    public enum Function {
+        COUNT,
+        SUM,
+        MIN,
+        MAX,
+        AVG
+    }
+
+    /**
+     * An aggregate function applied to a column of the input.
+     */
+    public static class Aggregate {
+        private final Function function;
+        private final int column;
+
+        /**
+         * Constructs an aggregate.
+         *
+         * @param function The function.
+         * @param column The position of the input column, or -1 for COUNT(*), which counts rows rather than
+         *               values.
+         */
+        public Aggregate(Function function, int column) {
+            this.function = function;
+            this.column = column;
+        }
+    }
+
+    /**
+     * The running state of an aggregate within a group.
+     */
+    private static class Accumulator {
+        private long count;
+        private long longSum;
+        private double doubleSum;
+        private Object value;
+    }
+
+    /**
+     * Constructs an operator that groups the rows of its input by some of its columns and computes aggregates
+     * over every group. The groups are kept in a hash table, so the input is read completely when the operator
+     * is opened, and memory grows with the number of groups rather than rows. NULL values are skipped by every
+     * function but COUNT(*). Output rows hold the grouping columns followed by the aggregates, in the order
+     * the groups first appear in the input; without grouping columns, the output is a single row even for an
+     * empty input.
+     *
+     * @param child The input.
+     * @param groupColumns The positions of the input columns to group by.
+     * @param aggregates The aggregates to compute.
+     * @throws IllegalArgumentException If SUM or AVG is applied to a STRING column, or a function other than
+     *                                  COUNT has no column.
+     */
+    public HashAggregate(Operator child, int[] groupColumns, Aggregate[] aggregates) {
+        for (Aggregate aggregate : aggregates) {
+            if (aggregate.column == -1 && aggregate.function != Function.COUNT) {
+                throw new IllegalArgumentException(aggregate.function + " needs a column.");
+            }
+            if ((aggregate.function == Function.SUM || aggregate.function == Function.AVG)
+                    && child.getColumnType(aggregate.column) == ColumnType.STRING) {
+                throw new IllegalArgumentException(aggregate.function + " needs a numeric column.");
+            }
+        }
+        this.child = child;
+        this.groupColumns = groupColumns;
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * Reads the input and computes the aggregates of every group.
+     *
+     * @throws Exception If the input cannot be read.
+     */
+    @Override
+    public void open() throws Exception {
+        groups.clear();
+        Map<List<Object>, Accumulator[]> accumulators = new LinkedHashMap<>();
+        child.open();
+        try {
+            Object[] row;
+            while ((row = child.next()) != null) {
+                Object[] key = new Object[groupColumns.length];
+                for (int i = 0; i < groupColumns.length; i++) {
+                    key[i] = row[groupColumns[i]];
+                }
+                Accumulator[] group = accumulators.computeIfAbsent(Arrays.asList(key), k -> newGroup());
+                for (int i = 0; i < aggregates.length; i++) {
+                    accumulate(aggregates[i], group[i], row);
+                }
+            }
+        } finally {
+            child.close();
+        }
+        if (accumulators.isEmpty() && groupColumns.length == 0) {
+            accumulators.put(Arrays.asList(), newGroup());
+        }
+        for (Map.Entry<List<Object>, Accumulator[]> entry : accumulators.entrySet()) {
+            Object[] values = new Object[groupColumns.length + aggregates.length];
+            for (int i = 0; i < groupColumns.length; i++) {
+                values[i] = entry.getKey().get(i);
+            }
+            for (int i = 0; i < aggregates.length; i++) {
+                values[groupColumns.length + i] = result(aggregates[i], entry.getValue()[i]);
+            }
+            groups.add(values);
+        }
+        iterator = groups.iterator();
+    }
+
+    /**
+     * Returns the next group.
+     *
+     * @return The grouping values followed by the aggregates, or null after the last group.
+     */
+    @Override
+    public Object[] next() {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Discards the groups. The input has already been closed.
+     */
+    @Override
+    public void close() {
+        groups.clear();
+        iterator = groups.iterator();
+    }
+
+    /**
+     * Returns the number of output columns.
+     *
+     * @return The number of grouping columns and aggregates.
+     */
+    @Override
+    public int getColumnCount() {
+        return groupColumns.length + aggregates.length;
+    }
+
+    /**
+     * Returns the name of an output column: the name of a grouping column, or the function and column of an
+     * aggregate, such as SUM(AGE).
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        if (column < groupColumns.length) {
+            return child.getColumnName(groupColumns[column]);
+        }
+        Aggregate aggregate = aggregates[column - groupColumns.length];
+        return aggregate.function + "(" + (aggregate.column == -1 ? "*" : child.getColumnName(aggregate.column))
+                + ")";
+    }
+
+    /**
+     * Returns the type of an output column. COUNT is an INT, AVG a DOUBLE, SUM has the type of its column,
+     * and MIN and MAX return values of their column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        if (column < groupColumns.length) {
+            return child.getColumnType(groupColumns[column]);
+        }
+        Aggregate aggregate = aggregates[column - groupColumns.length];
+        switch (aggregate.function) {
+            case COUNT:
+                return ColumnType.INT;
+            case AVG:
+                return ColumnType.DOUBLE;
+            default:
+                return child.getColumnType(aggregate.column);
+        }
+    }
+
+    /**
+     * Creates the accumulators of a new group.
+     *
+     * @return One accumulator per aggregate.
+     */
+    private Accumulator[] newGroup() {
+        Accumulator[] group = new Accumulator[aggregates.length];
+        for (int i = 0; i < group.length; i++) {
+            group[i] = new Accumulator();
+        }
+        return group;
+    }
+
+    /**
+     * Adds a row to the state of an aggregate.
+     *
+     * @param aggregate The aggregate.
+     * @param accumulator The state of the aggregate in the group of the row.
+     * @param row The row.
+     */
+    private static void accumulate(Aggregate aggregate, Accumulator accumulator, Object[] row) {
+        if (aggregate.column == -1) {
+            accumulator.count++;
+            return;
+        }
+        Object value = row[aggregate.column];
+        if (value == null) {
+            return;
+        }
+        accumulator.count++;
+        switch (aggregate.function) {
+            case SUM:
+            case AVG:
+                if (value instanceof Long) {
+                    accumulator.longSum += (Long) value;
+                } else {
+                    accumulator.doubleSum += (Double) value;
+                }
+                break;
+            case MIN:
+                if (accumulator.value == null || Sort.compareValues(value, accumulator.value) < 0) {
+                    accumulator.value = value;
+                }
+                break;
+            case MAX:
+                if (accumulator.value == null || Sort.compareValues(value, accumulator.value) > 0) {
+                    accumulator.value = value;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the value of an aggregate from its state.
+     *
+     * @param aggregate The aggregate.
+     * @param accumulator The state of the aggregate in a group.
+     * @return The value, or null if the group has no values and the function is not COUNT.
+     */
+    private Object result(Aggregate aggregate, Accumulator accumulator) {
+        if (aggregate.function == Function.COUNT) {
+            return accumulator.count;
+        }
+        if (accumulator.count == 0) {
+            return null;
+        }
+        boolean integer = child.getColumnType(aggregate.column) == ColumnType.INT;
+        switch (aggregate.function) {
+            case SUM:
+                return integer ? (Object) accumulator.longSum : (Object) accumulator.doubleSum;
+            case AVG:
+                return (integer ? accumulator.longSum : accumulator.doubleSum) / accumulator.count;
+            default:
+                return accumulator.value;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HashIndex implements Index {
+    private static final int MAGIC = 0x54444248; // "TDBH"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MIN_BUCKETS = 16;
+    private static final int BUCKET_HEADER_SIZE = 6;
+    private static final int BUCKET_CAPACITY = HeapFile.PAGE_SIZE - BUCKET_HEADER_SIZE;
+    private static final double MAX_LOAD = 0.75;
+
+    private final File file;
+    private final BufferPool bufferPool;
+    private final ColumnType keyType;
+    private int fileId;
+    private int bucketCount;
+    private int pageCount;
+    private long dataBytes;
+
+    /**
+     * Opens a hash index whose buckets are pages of the given file.
+     * Page 0 holds the index header; pages 1 to bucketCount are the primary bucket pages, and overflow pages are
+     * appended after them and chained from their bucket. Once the entries fill the primary pages past MAX_LOAD,
+     * the index is rebuilt with twice as many buckets so that chains stay short.
+     *
+     * @param file The index file.
+     * @param fileId The identifier of the file in the buffer pool.
+     * @param keyType The type of the indexed column.
+     * @param bucketCount The number of buckets, a power of two.
+     * @param pageCount The number of pages in the file.
+     * @param dataBytes The total size of the stored entries.
+     */
+    private HashIndex(File file, int fileId, ColumnType keyType, int bucketCount, int pageCount, long dataBytes) {
+        this.file = file;
+        this.bufferPool = BufferPool.getInstance();
+        this.fileId = fileId;
+        this.keyType = keyType;
+        this.bucketCount = bucketCount;
+        this.pageCount = pageCount;
+        this.dataBytes = dataBytes;
+    }
+
+    /**
+     * Creates a new, empty hash index file.
+     *
+     * @param file The index file to create.
+     * @param keyType The type of the indexed column.
+     * @return The open index.
+     * @throws IOException If the file already exists or cannot be written.
+     */
+    public static HashIndex create(File file, ColumnType keyType) throws IOException {
+        return create(file, keyType, MIN_BUCKETS);
+    }
+
+    /**
+     * Creates a new, empty hash index file with the given number of buckets.
+     *
+     * @param file The index file to create.
+     * @param keyType The type of the indexed column.
+     * @param bucketCount The number of buckets, a power of two.
+     * @return The open index.
+     * @throws IOException If the file already exists or cannot be written.
+     */
+    private static HashIndex create(File file, ColumnType keyType, int bucketCount) throws IOException {
+        BufferPool bufferPool = BufferPool.getInstance();
+        if (!bufferPool.createFile(file)) {
+            throw new IOException("Index file already exists: " + file.getPath());
+        }
+        HashIndex index = new HashIndex(file, bufferPool.openFile(file), keyType, bucketCount, bucketCount + 1, 0);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            bufferPool.unpin(bufferPool.pinNew(index.fileId, bucket + 1), true);
+        }
+        index.writeHeader();
+        return index;
+    }
+
+    /**
+     * Opens an existing hash index file.
+     *
+     * @param file The index file to open.
+     * @return The open index.
+     * @throws IOException If the file cannot be read or is not an index file.
+     */
+    public static HashIndex open(File file) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("Index file does not exist: " + file.getPath());
+        }
+        BufferPool bufferPool = BufferPool.getInstance();
+        int fileId = bufferPool.openFile(file);
+        BufferPool.Frame frame = bufferPool.pin(fileId, 0);
+        try {
+            ByteBuffer header = frame.getBuffer();
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not a TinyDB hash index file: " + file.getPath());
+            }
+            ColumnType keyType = ColumnType.values()[header.get(8)];
+            return new HashIndex(file, fileId, keyType, header.getInt(12), header.getInt(16), header.getLong(20));
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+    }
+
+    /**
+     * Returns the file backing this index.
+     *
+     * @return The index file.
+     */
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Converts a column value into a key of the indexed type.
+     *
+     * @param value The column value.
+     * @return The key, or null if the value is null.
+     * @throws Exception If the value does not match the key type.
+     */
+    @Override
+    public Object toKey(String value) throws Exception {
+        return KeyCodec.toKey(keyType, value);
+    }
+
+    /**
+     * Adds an entry to the bucket of its key, chaining an overflow page if the bucket is full.
+     *
+     * @param key The key.
+     * @param recordId The record the key points to.
+     * @throws IOException If the key is too large or an I/O error occurs.
+     */
+    @Override
+    public void insert(Object key, long recordId) throws IOException {
+        int entrySize = KeyCodec.size(keyType, key) + 8;
+        if (entrySize > BUCKET_CAPACITY / 8) {
+            throw new IOException("Index key is too long.");
+        }
+        readHeader();
+        addEntry(key, recordId, entrySize);
+        dataBytes += entrySize;
+        if (dataBytes > bucketCount * (long) BUCKET_CAPACITY * MAX_LOAD) {
+            grow();
+        }
+        writeHeader();
+    }
+
+    /**
+     * Fills a newly created index from a batch of entries. The number of buckets is chosen up front for the
+     * size of the batch, so the index does not have to be rebuilt while it is being filled.
+     *
+     * @param keys The keys of the entries.
+     * @param recordIds The record identifiers of the entries, in the same order as the keys.
+     * @throws IOException If the index is not new, a key is too large or an I/O error occurs.
+     */
+    public void load(List<Object> keys, List<Long> recordIds) throws IOException {
+        readHeader();
+        if (dataBytes != 0 || pageCount != bucketCount + 1) {
+            throw new IOException("Bulk load requires an empty index.");
+        }
+        long totalBytes = 0;
+        for (Object key : keys) {
+            int entrySize = KeyCodec.size(keyType, key) + 8;
+            if (entrySize > BUCKET_CAPACITY / 8) {
+                throw new IOException("Index key is too long.");
+            }
+            totalBytes += entrySize;
+        }
+        int newBucketCount = bucketCount;
+        while (totalBytes > newBucketCount * (long) BUCKET_CAPACITY * MAX_LOAD) {
+            newBucketCount *= 2;
+        }
+        for (int bucket = bucketCount; bucket < newBucketCount; bucket++) {
+            bufferPool.unpin(bufferPool.pinNew(fileId, bucket + 1), true);
+        }
+        bucketCount = newBucketCount;
+        pageCount = bucketCount + 1;
+        for (int i = 0; i < keys.size(); i++) {
+            addEntry(keys.get(i), recordIds.get(i), KeyCodec.size(keyType, keys.get(i)) + 8);
+        }
+        dataBytes = totalBytes;
+        writeHeader();
+    }
+
+    /**
+     * Removes an entry from its bucket. Emptied overflow pages stay in the chain and are reused by later inserts.
+     *
+     * @param key The key.
+     * @param recordId The record the key points to.
+     * @return true if the entry existed, false otherwise.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public boolean delete(Object key, long recordId) throws IOException {
+        readHeader();
+        int pageNumber = getBucketPage(key);
+        while (pageNumber != 0) {
+            BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+            boolean deleted = false;
+            try {
+                ByteBuffer buffer = frame.getBuffer();
+                int count = buffer.getShort(0) & 0xFFFF;
+                int position = BUCKET_HEADER_SIZE;
+                for (int i = 0; i < count; i++) {
+                    Object entryKey = KeyCodec.read(keyType, buffer, position);
+                    int entryEnd = position + KeyCodec.size(keyType, entryKey) + 8;
+                    if (buffer.getLong(entryEnd - 8) == recordId && KeyCodec.compare(entryKey, key) == 0) {
+                        // Close the gap by shifting the following entries of the page down
+                        int usedEnd = getUsedEnd(buffer, count);
+                        for (int b = entryEnd; b < usedEnd; b++) {
+                            buffer.put(position + b - entryEnd, buffer.get(b));
+                        }
+                        buffer.putShort(0, (short) (count - 1));
+                        dataBytes -= entryEnd - position;
+                        deleted = true;
+                        break;
+                    }
+                    position = entryEnd;
+                }
+                pageNumber = buffer.getInt(2);
+            } finally {
+                bufferPool.unpin(frame, deleted);
+            }
+            if (deleted) {
+                writeHeader();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the records stored under a key by reading only the chain of its bucket.
+     *
+     * @param key The key to look up.
+     * @return The matching record identifiers.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public List<Long> search(Object key) throws IOException {
+        readHeader();
+        List<Long> recordIds = new ArrayList<>();
+        int pageNumber = getBucketPage(key);
+        while (pageNumber != 0) {
+            BufferPool.Frame frame = bufferPool.pin(fileId, pageNumber);
+            try {
+                ByteBuffer buffer = frame.getBuffer();
+                int count = buffer.getShort(0) & 0xFFFF;
+                int position = BUCKET_HEADER_SIZE;
+                for (int i = 0; i < count; i++) {
+                    Object entryKey = KeyCodec.read(keyType, buffer, position);
+                    position += KeyCodec.size(keyType, entryKey) + 8;
+                    if (KeyCodec.compare(entryKey, key) == 0) {
+                        recordIds.add(buffer.getLong(position - 8));
+                    }
+                }
+                pageNumber = buffer.getInt(2);
+            } finally {
+                bufferPool.unpin(frame, false);
+            }
+        }
+        return recordIds;
+    }
+
+    /**
+     * Releases the index. Its dirty pages stay in the buffer pool, which writes them back after their changes
+     * are in the write-ahead log.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Appends an entry to the first page of its bucket chain with enough room.
+     *
+     * @param key The key.
+     * @param recordId The record identifier.
+     * @param entrySize The serialized size of the entry.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void addEntry(Object key, long recordId, int entrySize) throws IOException {
+        int pageNumber = getBucketPage(key);
+        while (true) {
+            BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+            boolean added = false;
+            try {
+                ByteBuffer buffer = frame.getBuffer();
+                int count = buffer.getShort(0) & 0xFFFF;
+                int usedEnd = getUsedEnd(buffer, count);
+                if (usedEnd + entrySize <= HeapFile.PAGE_SIZE) {
+                    int position = KeyCodec.write(keyType, buffer, usedEnd, key);
+                    buffer.putLong(position, recordId);
+                    buffer.putShort(0, (short) (count + 1));
+                    added = true;
+                } else if (buffer.getInt(2) != 0) {
+                    pageNumber = buffer.getInt(2);
+                } else {
+                    int overflowPage = pageCount++;
+                    bufferPool.unpin(bufferPool.pinNew(fileId, overflowPage), true);
+                    buffer.putInt(2, overflowPage);
+                    pageNumber = overflowPage;
+                }
+            } finally {
+                bufferPool.unpin(frame, true);
+            }
+            if (added) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index with twice as many buckets. The new index is written to a temporary file that
+     * replaces the current one once it is complete.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void grow() throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        bufferPool.deleteFile(tempFile);
+
+        HashIndex grown = create(tempFile, keyType, bucketCount * 2);
+        try {
+            for (int pageNumber = 1; pageNumber < pageCount; pageNumber++) {
+                BufferPool.Frame frame = bufferPool.pin(fileId, pageNumber);
+                try {
+                    ByteBuffer buffer = frame.getBuffer();
+                    int count = buffer.getShort(0) & 0xFFFF;
+                    int position = BUCKET_HEADER_SIZE;
+                    for (int i = 0; i < count; i++) {
+                        Object entryKey = KeyCodec.read(keyType, buffer, position);
+                        int entrySize = KeyCodec.size(keyType, entryKey) + 8;
+                        grown.addEntry(entryKey, buffer.getLong(position + entrySize - 8), entrySize);
+                        position += entrySize;
+                    }
+                } finally {
+                    bufferPool.unpin(frame, false);
+                }
+            }
+            grown.dataBytes = dataBytes;
+            grown.writeHeader();
+        } catch (IOException e) {
+            bufferPool.deleteFile(tempFile);
+            throw e;
+        }
+
+        bufferPool.renameFile(tempFile, file);
+        fileId = bufferPool.openFile(file);
+        bucketCount = grown.bucketCount;
+        pageCount = grown.pageCount;
+    }
+
+    /**
+     * Returns the primary page of the bucket a key hashes to.
+     *
+     * @param key The key.
+     * @return The page number of the bucket.
+     */
+    private int getBucketPage(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return 1 + (hash & (bucketCount - 1));
+    }
+
+    /**
+     * Returns the end of the entries stored in a bucket page.
+     *
+     * @param buffer The page buffer.
+     * @param count The number of entries in the page.
+     * @return The position just after the last entry.
+     */
+    private int getUsedEnd(ByteBuffer buffer, int count) {
+        int position = BUCKET_HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            if (keyType == ColumnType.STRING) {
+                position += 2 + (buffer.getShort(position) & 0xFFFF) + 8;
+            } else {
+                position += 16;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Reads the bucket count, page count and entry size from the index header, which other open instances of
+     * the index may have changed since this one last read or wrote it. A rebuild by another instance replaces
+     * the file, so the file is looked up in the buffer pool again as well.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void readHeader() throws IOException {
+        fileId = bufferPool.openFile(file);
+        BufferPool.Frame frame = bufferPool.pin(fileId, 0);
+        try {
+            ByteBuffer header = frame.getBuffer();
+            bucketCount = header.getInt(12);
+            pageCount = header.getInt(16);
+            dataBytes = header.getLong(20);
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+    }
+
+    /**
+     * Writes the index header.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeHeader() throws IOException {
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, 0);
+        try {
+            ByteBuffer header = frame.getBuffer();
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT_VERSION);
+            header.put(8, (byte) keyType.ordinal());
+            header.putInt(12, bucketCount);
+            header.putInt(16, pageCount);
+            header.putLong(20, dataBytes);
+        } finally {
+            bufferPool.unpin(frame, true);
+        }
+    }
+}
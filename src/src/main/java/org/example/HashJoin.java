@@ -0,0 +1,150 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HashJoin implements Operator {
+    private final Operator build;
+    private final Operator probe;
+    private final int buildColumn;
+    private final int probeColumn;
+    private final boolean numericKeys;
+    private final Map<Object, List<Object[]>> table = new HashMap<>();
+    private Object[] probeRow;
+    private List<Object[]> matches = Collections.emptyList();
+    private int nextMatch;
+
+    /**
+     * Constructs an inner equi-join. The rows of the build input are read into a hash table on their join
+     * column when the operator is opened, so the smaller input should be the build input; the rows of the
+     * probe input are then read one at a time and joined with the build rows of the same value. NULL values
+     * join with nothing. Output rows hold the columns of the build row followed by those of the probe row.
+     *
+     * @param build The input held in memory.
+     * @param probe The input read one row at a time.
+     * @param buildColumn The position of the join column in the build input.
+     * @param probeColumn The position of the join column in the probe input.
+     */
+    public HashJoin(Operator build, Operator probe, int buildColumn, int probeColumn) {
+        this.build = build;
+        this.probe = probe;
+        this.buildColumn = buildColumn;
+        this.probeColumn = probeColumn;
+        // An INT column joins a DOUBLE column on their numeric values
+        this.numericKeys = build.getColumnType(buildColumn) != probe.getColumnType(probeColumn);
+    }
+
+    /**
+     * Reads the build input into the hash table and opens the probe input.
+     *
+     * @throws Exception If an input cannot be read.
+     */
+    @Override
+    public void open() throws Exception {
+        table.clear();
+        build.open();
+        try {
+            Object[] row;
+            while ((row = build.next()) != null) {
+                Object key = key(row[buildColumn]);
+                if (key != null) {
+                    table.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+                }
+            }
+        } finally {
+            build.close();
+        }
+        probeRow = null;
+        matches = Collections.emptyList();
+        nextMatch = 0;
+        probe.open();
+    }
+
+    /**
+     * Returns the next joined row.
+     *
+     * @return The row, or null after the last row.
+     * @throws Exception If the probe input cannot be read.
+     */
+    @Override
+    public Object[] next() throws Exception {
+        while (nextMatch == matches.size()) {
+            probeRow = probe.next();
+            if (probeRow == null) {
+                return null;
+            }
+            Object key = key(probeRow[probeColumn]);
+            matches = key == null ? Collections.emptyList() : table.getOrDefault(key, Collections.emptyList());
+            nextMatch = 0;
+        }
+        Object[] buildRow = matches.get(nextMatch++);
+        Object[] row = new Object[buildRow.length + probeRow.length];
+        System.arraycopy(buildRow, 0, row, 0, buildRow.length);
+        System.arraycopy(probeRow, 0, row, buildRow.length, probeRow.length);
+        return row;
+    }
+
+    /**
+     * Discards the hash table and closes the probe input.
+     *
+     * @throws IOException If a table cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        table.clear();
+        matches = Collections.emptyList();
+        nextMatch = 0;
+        probe.close();
+    }
+
+    /**
+     * Returns the number of output columns.
+     *
+     * @return The number of columns of both inputs.
+     */
+    @Override
+    public int getColumnCount() {
+        return build.getColumnCount() + probe.getColumnCount();
+    }
+
+    /**
+     * Returns the name of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        int buildColumns = build.getColumnCount();
+        return column < buildColumns ? build.getColumnName(column) : probe.getColumnName(column - buildColumns);
+    }
+
+    /**
+     * Returns the type of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        int buildColumns = build.getColumnCount();
+        return column < buildColumns ? build.getColumnType(column) : probe.getColumnType(column - buildColumns);
+    }
+
+    /**
+     * Returns the hash key of a join value.
+     *
+     * @param value The value, or null.
+     * @return The key, or null if the value joins with nothing.
+     */
+    private Object key(Object value) {
+        if (numericKeys && value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,1214 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class HeapFile implements Closeable {
+    public static final int PAGE_SIZE = 4096;
+    private static final int MAGIC = 0x54444231; // "TDB1"
+    private static final int FORMAT_VERSION = 2;
+    private static final int FSM_ENTRIES = PAGE_SIZE;
+    private static final int FSM_UNIT = PAGE_SIZE / 256;
+    private static final Map<String, FileState> states = new HashMap<>();
+
+    private final File file;
+    private final BufferPool bufferPool;
+    private final int fileId;
+    private final List<LatchedScan> openScans = new ArrayList<>();
+    private final FileState state;
+    private final ReentrantReadWriteLock latch;
+    private long deletedSinceOpen;
+    private boolean changed;
+    private boolean closed;
+
+    /**
+     * Opens a heap file whose pages are accessed through the shared buffer pool.
+     * Page 0 is the file header. Free-space map pages are interleaved with data pages: page 1 maps the
+     * free space of the next FSM_ENTRIES pages with one byte each, followed by another map page, and so on.
+     * Every heap file open on the same table file shares its header fields and its latch. Scans and reads take
+     * the shared side of the latch; each change takes the exclusive side only while it is made.
+     *
+     * @param file The table file.
+     * @param fileId The identifier of the file in the buffer pool.
+     * @param state The shared state of the file.
+     */
+    private HeapFile(File file, int fileId, FileState state) {
+        this.file = file;
+        this.bufferPool = BufferPool.getInstance();
+        this.fileId = fileId;
+        this.state = state;
+        this.latch = state.latch;
+    }
+
+    /**
+     * Creates a new, empty heap file.
+     *
+     * @param file The table file to create.
+     * @return The open heap file.
+     * @throws IOException If the file already exists or cannot be written.
+     */
+    public static HeapFile create(File file) throws IOException {
+        FileState state = getState(file);
+        state.latch.writeLock().lock();
+        try {
+            BufferPool bufferPool = BufferPool.getInstance();
+            if (!bufferPool.createFile(file)) {
+                throw new IOException("Table file already exists: " + file.getPath());
+            }
+            state.fileId = bufferPool.openFile(file);
+            state.pageCount = 2;
+            state.insertHint = -1;
+            state.liveCount = 0;
+            state.deadCount = 0;
+            HeapFile heapFile = new HeapFile(file, state.fileId, state);
+            bufferPool.unpin(bufferPool.pinNew(heapFile.fileId, 1), true);
+            heapFile.writeHeader();
+            return heapFile;
+        } finally {
+            state.latch.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens an existing heap file. The header is read by the first heap file opened on the file, and again
+     * whenever the file has been replaced since.
+     *
+     * @param file The table file to open.
+     * @return The open heap file.
+     * @throws IOException If the file cannot be read or is not a table file.
+     */
+    public static HeapFile open(File file) throws IOException {
+        FileState state = getState(file);
+        state.latch.readLock().lock();
+        try {
+            if (!file.exists()) {
+                throw new IOException("Table file does not exist: " + file.getPath());
+            }
+            int fileId = BufferPool.getInstance().openFile(file);
+            if (state.fileId == fileId) {
+                return new HeapFile(file, fileId, state);
+            }
+        } finally {
+            state.latch.readLock().unlock();
+        }
+
+        state.latch.writeLock().lock();
+        try {
+            if (!file.exists()) {
+                throw new IOException("Table file does not exist: " + file.getPath());
+            }
+            int fileId = BufferPool.getInstance().openFile(file);
+            if (state.fileId != fileId) {
+                readHeader(file, fileId, state);
+            }
+            return new HeapFile(file, fileId, state);
+        } finally {
+            state.latch.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the header fields of a table file into its shared state. The caller holds the exclusive side of
+     * the latch.
+     *
+     * @param file The table file.
+     * @param fileId The identifier of the file in the buffer pool.
+     * @param state The shared state of the file.
+     * @throws IOException If the file cannot be read or is not a table file.
+     */
+    private static void readHeader(File file, int fileId, FileState state) throws IOException {
+        BufferPool bufferPool = BufferPool.getInstance();
+        int version;
+        BufferPool.Frame frame = bufferPool.pin(fileId, 0);
+        try {
+            ByteBuffer header = frame.getBuffer();
+            version = header.getInt(4);
+            if (header.getInt(0) != MAGIC || version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Not a TinyDB table file: " + file.getPath());
+            }
+            state.pageCount = header.getInt(8);
+            state.insertHint = -1;
+            state.liveCount = version == FORMAT_VERSION ? header.getLong(12) : 0;
+            state.deadCount = version == FORMAT_VERSION ? header.getLong(20) : 0;
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+        if (version < FORMAT_VERSION) {
+            // Files written before record counts were kept in the header are counted once.
+            HeapFile heapFile = new HeapFile(file, fileId, state);
+            heapFile.countRecords();
+            heapFile.writeHeader();
+        }
+        state.fileId = fileId;
+    }
+
+    /**
+     * Deletes a table file and discards its pages from the buffer pool and its record versions. Waits until no
+     * scan or change of the file is in progress.
+     *
+     * @param file The table file to delete.
+     * @return true if the file was deleted, false otherwise.
+     * @throws IOException If the buffered pages cannot be discarded.
+     */
+    public static boolean drop(File file) throws IOException {
+        FileState state = getState(file);
+        state.latch.writeLock().lock();
+        try {
+            state.fileId = 0;
+            VersionStore.getInstance().discard(file);
+            return BufferPool.getInstance().deleteFile(file);
+        } finally {
+            state.latch.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Acquires the exclusive side of the latch of a table file, which waits for the scans of the file to end
+     * and keeps other statements from reading or changing it. A rolled back transaction holds it while its
+     * changes are undone.
+     *
+     * @param file The table file.
+     * @return The acquired latch.
+     */
+    static Lock lock(File file) {
+        Lock latch = getState(file).latch.writeLock();
+        latch.lock();
+        return latch;
+    }
+
+    /**
+     * Returns the shared state of a table file, creating it on first use.
+     *
+     * @param file The table file.
+     * @return The shared state.
+     */
+    private static FileState getState(File file) {
+        synchronized (states) {
+            return states.computeIfAbsent(file.getAbsolutePath(), path -> new FileState());
+        }
+    }
+
+    /**
+     * Acquires the exclusive side of the latch for a change of the file. Callers that combine a change of the
+     * file with changes of its indexes hold it around both. A thread cannot wait for it while one of its own
+     * scans of the file holds the shared side, so that case fails instead of waiting forever.
+     *
+     * @return The acquired latch.
+     */
+    Lock lockExclusive() {
+        if (latch.getReadHoldCount() > 0 && !latch.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("A scan of " + file.getName() + " is still open in this thread.");
+        }
+        Lock exclusive = latch.writeLock();
+        exclusive.lock();
+        changed = true;
+        return exclusive;
+    }
+
+    /**
+     * Acquires the shared side of the latch for a read of the file or a lookup in one of its indexes.
+     *
+     * @return The acquired latch.
+     */
+    Lock lockShared() {
+        Lock shared = latch.readLock();
+        shared.lock();
+        return shared;
+    }
+
+    /**
+     * Returns the file backing this heap.
+     *
+     * @return The table file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Inserts a record into the first page with enough free space, allocating a new page if needed.
+     *
+     * @param record The encoded record.
+     * @return The identifier of the inserted record.
+     * @throws IOException If the record is too large or an I/O error occurs.
+     */
+    public long insert(byte[] record) throws IOException {
+        Lock exclusive = lockExclusive();
+        try {
+            long recordId = insert(record, false);
+            state.liveCount++;
+            return recordId;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Stores a record in the first page with enough free space, allocating a new page if needed.
+     *
+     * @param record The encoded record.
+     * @param moved Whether the record is the new location of a record reached through a forwarding slot.
+     * @return The identifier of the stored record.
+     * @throws IOException If the record is too large or an I/O error occurs.
+     */
+    private long insert(byte[] record, boolean moved) throws IOException {
+        if (record.length > SlottedPage.MAX_RECORD_SIZE) {
+            throw new IOException("Record of " + record.length + " bytes does not fit in a page.");
+        }
+
+        while (true) {
+            int pageNumber = findPageWithSpace(record.length);
+            if (pageNumber == -1) {
+                pageNumber = allocateDataPage();
+            }
+            BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+            int slot;
+            int availableSpace;
+            try {
+                SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                slot = moved ? slottedPage.insertMoved(record) : slottedPage.insert(record);
+                availableSpace = slottedPage.getAvailableSpace();
+            } finally {
+                bufferPool.unpin(frame, true);
+            }
+            updateFreeSpace(pageNumber, availableSpace);
+            if (slot != -1) {
+                state.insertHint = pageNumber;
+                return RecordId.of(pageNumber, slot);
+            }
+            // The free-space map was optimistic; it has been corrected, so try another page.
+            state.insertHint = -1;
+        }
+    }
+
+    /**
+     * Reads a record, following its forwarding pointer if it was moved.
+     *
+     * @param recordId The identifier of the record.
+     * @return The record bytes, or null if the record does not exist.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] read(long recordId) throws IOException {
+        Lock shared = lockShared();
+        try {
+            int pageNumber = RecordId.page(recordId);
+            if (!isDataPage(pageNumber)) {
+                return null;
+            }
+            long forward;
+            BufferPool.Frame frame = bufferPool.pin(fileId, pageNumber);
+            try {
+                SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                int slot = RecordId.slot(recordId);
+                if (slottedPage.isMoved(slot)) {
+                    return null;
+                }
+                if (!slottedPage.isForward(slot)) {
+                    return slottedPage.read(slot);
+                }
+                forward = slottedPage.getForward(slot);
+            } finally {
+                bufferPool.unpin(frame, false);
+            }
+            frame = bufferPool.pin(fileId, RecordId.page(forward));
+            try {
+                return new SlottedPage(frame.getBuffer()).read(RecordId.slot(forward));
+            } finally {
+                bufferPool.unpin(frame, false);
+            }
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Replaces a record. The record is overwritten in its page when it fits there; otherwise it moves to another
+     * page and its original slot becomes a forwarding pointer, so the record keeps its identifier either way and
+     * only the pages holding the record are written.
+     *
+     * @param recordId The identifier of the record.
+     * @param record The new encoded record.
+     * @return The identifier of the record after the update. It differs from the original identifier only if the
+     *         original page has no room even for a forwarding pointer.
+     * @throws IOException If the record does not exist, is too large or an I/O error occurs.
+     */
+    public long update(long recordId, byte[] record) throws IOException {
+        Lock exclusive = lockExclusive();
+        try {
+            if (record.length > SlottedPage.MAX_RECORD_SIZE) {
+                throw new IOException("Record of " + record.length + " bytes does not fit in a page.");
+            }
+            int pageNumber = RecordId.page(recordId);
+            int slot = RecordId.slot(recordId);
+            long location = -1;
+            if (isDataPage(pageNumber)) {
+                BufferPool.Frame frame = bufferPool.pin(fileId, pageNumber);
+                try {
+                    SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                    if (slottedPage.isForward(slot)) {
+                        location = slottedPage.getForward(slot);
+                    } else if (slottedPage.isLive(slot) && !slottedPage.isMoved(slot)) {
+                        location = recordId;
+                    }
+                } finally {
+                    bufferPool.unpin(frame, false);
+                }
+            }
+            if (location == -1) {
+                throw new IOException("Record " + RecordId.toString(recordId) + " does not exist.");
+            }
+
+            // Overwrite the record where it currently lives
+            if (replace(location, record)) {
+                return recordId;
+            }
+
+            // Move the record and point its original slot at the new location
+            long moved = insert(record, true);
+            if (!forward(recordId, moved)) {
+                // Not even a forwarding pointer fits, so the record gets a new identifier
+                remove(moved);
+                delete(recordId);
+                return insert(record);
+            }
+            if (location != recordId) {
+                remove(location);
+            }
+            return recordId;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Overwrites a record in its page and records the new free space of the page.
+     *
+     * @param recordId The identifier of the record.
+     * @param record The new encoded record.
+     * @return true if the record fitted in its page, false otherwise.
+     * @throws IOException If an I/O error occurs.
+     */
+    private boolean replace(long recordId, byte[] record) throws IOException {
+        int pageNumber = RecordId.page(recordId);
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+        boolean replaced = false;
+        int availableSpace = 0;
+        try {
+            SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+            replaced = slottedPage.update(RecordId.slot(recordId), record);
+            availableSpace = slottedPage.getAvailableSpace();
+        } finally {
+            bufferPool.unpin(frame, replaced);
+        }
+        if (replaced) {
+            updateFreeSpace(pageNumber, availableSpace);
+        }
+        return replaced;
+    }
+
+    /**
+     * Turns the slot of a record into a forwarding pointer and records the new free space of the page.
+     *
+     * @param recordId The identifier of the record.
+     * @param target The identifier of the moved record.
+     * @return true if the pointer fitted in the page, false otherwise.
+     * @throws IOException If an I/O error occurs.
+     */
+    private boolean forward(long recordId, long target) throws IOException {
+        int pageNumber = RecordId.page(recordId);
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+        boolean forwarded = false;
+        int availableSpace = 0;
+        try {
+            SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+            forwarded = slottedPage.setForward(RecordId.slot(recordId), target);
+            availableSpace = slottedPage.getAvailableSpace();
+        } finally {
+            bufferPool.unpin(frame, forwarded);
+        }
+        if (forwarded) {
+            updateFreeSpace(pageNumber, availableSpace);
+        }
+        return forwarded;
+    }
+
+    /**
+     * Frees the slot of a moved record immediately. Moved records are only reachable through their forwarding
+     * slot, so no reader can still refer to them.
+     *
+     * @param recordId The identifier of the moved record.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void remove(long recordId) throws IOException {
+        int pageNumber = RecordId.page(recordId);
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+        int availableSpace;
+        try {
+            SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+            slottedPage.delete(RecordId.slot(recordId));
+            availableSpace = slottedPage.getAvailableSpace();
+        } finally {
+            bufferPool.unpin(frame, true);
+        }
+        updateFreeSpace(pageNumber, availableSpace);
+    }
+
+    /**
+     * Deletes a record by marking its slot as a tombstone. The record keeps its space, and its identifier is not
+     * reused, until a vacuum purges the page.
+     *
+     * @param recordId The identifier of the record.
+     * @return true if the record existed, false otherwise.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean delete(long recordId) throws IOException {
+        Lock exclusive = lockExclusive();
+        try {
+            int pageNumber = RecordId.page(recordId);
+            if (!isDataPage(pageNumber)) {
+                return false;
+            }
+            BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+            boolean deleted = false;
+            long forward = -1;
+            try {
+                SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                int slot = RecordId.slot(recordId);
+                if (slottedPage.isForward(slot)) {
+                    forward = slottedPage.getForward(slot);
+                }
+                deleted = !slottedPage.isMoved(slot) && slottedPage.markDeleted(slot);
+            } finally {
+                bufferPool.unpin(frame, deleted);
+            }
+            if (forward != -1) {
+                remove(forward);
+            }
+            if (deleted) {
+                state.liveCount--;
+                state.deadCount++;
+                deletedSinceOpen++;
+            }
+            return deleted;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Brings a deleted record back under its identifier, as a rollback does when it undoes the delete. The
+     * record is written into its slot, which has kept its space since the delete, or moves to another page
+     * behind a forwarding pointer if it was already moved before it was deleted.
+     *
+     * @param recordId The identifier of the deleted record.
+     * @param record The encoded record.
+     * @throws IOException If the record is not a deleted record waiting to be purged, or an I/O error occurs.
+     */
+    public void restore(long recordId, byte[] record) throws IOException {
+        Lock exclusive = lockExclusive();
+        try {
+            int pageNumber = RecordId.page(recordId);
+            int slot = RecordId.slot(recordId);
+            boolean dead = false;
+            boolean restored = false;
+            int availableSpace = 0;
+            if (isDataPage(pageNumber)) {
+                BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+                try {
+                    SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                    dead = slottedPage.isDead(slot);
+                    restored = dead && slottedPage.restore(slot, record);
+                    availableSpace = slottedPage.getAvailableSpace();
+                } finally {
+                    bufferPool.unpin(frame, restored);
+                }
+            }
+            if (!dead) {
+                throw new IOException("Record " + RecordId.toString(recordId) + " is not a deleted record.");
+            }
+            if (!restored) {
+                // The slot only kept the space of a forwarding pointer, so the record moves again
+                long moved = insert(record, true);
+                BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+                try {
+                    SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                    restored = slottedPage.restoreForward(slot, moved);
+                    availableSpace = slottedPage.getAvailableSpace();
+                } finally {
+                    bufferPool.unpin(frame, restored);
+                }
+                if (!restored) {
+                    remove(moved);
+                    throw new IOException("Record " + RecordId.toString(recordId) + " cannot be restored.");
+                }
+            }
+            updateFreeSpace(pageNumber, availableSpace);
+            state.liveCount++;
+            state.deadCount = Math.max(0, state.deadCount - 1);
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Purges the deleted records of a range of pages and returns their space to the free-space map.
+     * Live records keep their identifiers, so indexes stay valid.
+     *
+     * @param firstPage The first page to purge.
+     * @param pages The number of pages to purge.
+     * @return The number of records purged and the number of bytes reclaimed.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long[] vacuum(int firstPage, int pages) throws IOException {
+        Lock exclusive = lockExclusive();
+        try {
+            long purged = 0;
+            long reclaimed = 0;
+            int endPage = Math.min(firstPage + pages, state.pageCount);
+            for (int pageNumber = firstPage; pageNumber < endPage; pageNumber++) {
+                if (!isDataPage(pageNumber)) {
+                    continue;
+                }
+                BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, pageNumber);
+                int deadRecords = 0;
+                int availableSpace = 0;
+                try {
+                    SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                    deadRecords = slottedPage.getDeadCount();
+                    if (deadRecords > 0) {
+                        int before = slottedPage.getAvailableSpace();
+                        slottedPage.purge();
+                        availableSpace = slottedPage.getAvailableSpace();
+                        reclaimed += availableSpace - before;
+                    }
+                } finally {
+                    bufferPool.unpin(frame, deadRecords > 0);
+                }
+                if (deadRecords > 0) {
+                    updateFreeSpace(pageNumber, availableSpace);
+                    purged += deadRecords;
+                }
+            }
+            state.deadCount = Math.max(0, state.deadCount - purged);
+            return new long[] {purged, reclaimed};
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of pages in the file, including the header and free-space map pages.
+     *
+     * @return The page count.
+     */
+    public int getPageCount() {
+        Lock shared = lockShared();
+        try {
+            return state.pageCount;
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of live records.
+     *
+     * @return The live record count.
+     */
+    public long getLiveCount() {
+        Lock shared = lockShared();
+        try {
+            return state.liveCount;
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of deleted records that have not been purged yet.
+     *
+     * @return The dead record count.
+     */
+    public long getDeadCount() {
+        Lock shared = lockShared();
+        try {
+            return state.deadCount;
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Starts a sequential scan over all records in page order. The scan holds the shared side of the latch until
+     * it reaches the end of the file or the heap file is closed, so the thread must not change the file meanwhile.
+     *
+     * @return A scan positioned before the first record.
+     */
+    public Scan scan() {
+        return new Scan(-1);
+    }
+
+    /**
+     * Starts a sequential scan that resumes after a record, for example one returned by an earlier scan of the
+     * file. Records keep their identifiers when they are moved, so the scan returns exactly the records that
+     * follow it in page order.
+     *
+     * @param afterRecordId The identifier of the record to resume after.
+     * @return A scan positioned after the record.
+     */
+    public Scan scan(long afterRecordId) {
+        return new Scan(afterRecordId);
+    }
+
+    /**
+     * Starts a sequential scan that reads the table file through read-only memory mappings instead of the
+     * buffer pool. Records are exposed in place, so callers can inspect single fields without copying the record.
+     * The file is mapped in windows that the buffer pool keeps for later scans.
+     *
+     * @return A scan positioned before the first record.
+     * @throws IOException If the dirty pages of the file cannot be written back.
+     */
+    public MappedScan mappedScan() throws IOException {
+        return mappedScan(-1);
+    }
+
+    /**
+     * Starts a sequential scan through a read-only memory mapping that resumes after a record.
+     *
+     * @param afterRecordId The identifier of the record to resume after.
+     * @return A scan positioned after the record.
+     * @throws IOException If the dirty pages of the file cannot be written back.
+     */
+    public MappedScan mappedScan(long afterRecordId) throws IOException {
+        MappedScan scan = new MappedScan(afterRecordId);
+        bufferPool.flushFile(fileId);
+        return scan;
+    }
+
+    /**
+     * Returns whether SELECT should scan tables through memory mappings. Controlled by the system property
+     * tinydb.scan.mmap (default true).
+     *
+     * @return true if mapped scans are enabled, false otherwise.
+     */
+    public static boolean isMappedScanEnabled() {
+        return Boolean.parseBoolean(System.getProperty("tinydb.scan.mmap", "true"));
+    }
+
+    /**
+     * Ends the scans still open, releasing their pages and their side of the latch, and updates the file header
+     * if this heap file changed the file. The file itself stays open in the buffer pool so that later statements
+     * find its pages cached; the pool writes them back once their changes are in the write-ahead log. If records
+     * were deleted and the table has crossed the vacuum threshold, a vacuum is scheduled.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (LatchedScan scan : new ArrayList<>(openScans)) {
+            scan.release();
+        }
+        if (changed) {
+            Lock exclusive = lockExclusive();
+            try {
+                writeHeader();
+            } finally {
+                exclusive.unlock();
+            }
+        }
+        if (deletedSinceOpen > 0 && Vacuum.isNeeded(getLiveCount(), getDeadCount())) {
+            Vacuum.schedule(file);
+        }
+    }
+
+    /**
+     * Recounts the live and dead records of the file.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void countRecords() throws IOException {
+        state.liveCount = 0;
+        state.deadCount = 0;
+        for (int pageNumber = 2; pageNumber < state.pageCount; pageNumber++) {
+            if (!isDataPage(pageNumber)) {
+                continue;
+            }
+            BufferPool.Frame frame = bufferPool.pin(fileId, pageNumber);
+            try {
+                SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+                for (int slot = 0; slot < slottedPage.getSlotCount(); slot++) {
+                    if (slottedPage.isLive(slot) && !slottedPage.isMoved(slot)) {
+                        state.liveCount++;
+                    } else if (slottedPage.isDead(slot)) {
+                        state.deadCount++;
+                    }
+                }
+            } finally {
+                bufferPool.unpin(frame, false);
+            }
+        }
+    }
+
+    /**
+     * Finds a data page whose free-space map entry guarantees room for a record of the given length.
+     *
+     * @param recordLength The length of the record.
+     * @return The page number, or -1 if no page has enough space.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int findPageWithSpace(int recordLength) throws IOException {
+        int needed = (recordLength + SlottedPage.SLOT_SIZE + FSM_UNIT - 1) / FSM_UNIT;
+        if (state.insertHint != -1 && getFreeSpaceCategory(state.insertHint) >= needed) {
+            return state.insertHint;
+        }
+
+        for (int fsmPage = 1; fsmPage < state.pageCount; fsmPage += FSM_ENTRIES + 1) {
+            BufferPool.Frame frame = bufferPool.pin(fileId, fsmPage);
+            try {
+                ByteBuffer map = frame.getBuffer();
+                for (int i = 0; i < FSM_ENTRIES && fsmPage + 1 + i < state.pageCount; i++) {
+                    if ((map.get(i) & 0xFF) >= needed) {
+                        return fsmPage + 1 + i;
+                    }
+                }
+            } finally {
+                bufferPool.unpin(frame, false);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends a new empty data page, adding a free-space map page first when a new map group begins.
+     *
+     * @return The number of the new data page.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int allocateDataPage() throws IOException {
+        if (isFreeSpaceMapPage(state.pageCount)) {
+            bufferPool.unpin(bufferPool.pinNew(fileId, state.pageCount), true);
+            state.pageCount++;
+        }
+        int pageNumber = state.pageCount++;
+        BufferPool.Frame frame = bufferPool.pinNew(fileId, pageNumber);
+        int availableSpace;
+        try {
+            SlottedPage slottedPage = new SlottedPage(frame.getBuffer());
+            slottedPage.init();
+            availableSpace = slottedPage.getAvailableSpace();
+        } finally {
+            bufferPool.unpin(frame, true);
+        }
+        writeHeader();
+        updateFreeSpace(pageNumber, availableSpace);
+        return pageNumber;
+    }
+
+    /**
+     * Reads the free-space category of a data page from the free-space map.
+     *
+     * @param pageNumber The data page.
+     * @return The free space of the page in FSM_UNIT increments.
+     * @throws IOException If an I/O error occurs.
+     */
+    private int getFreeSpaceCategory(int pageNumber) throws IOException {
+        int fsmPage = getFreeSpaceMapPage(pageNumber);
+        BufferPool.Frame frame = bufferPool.pin(fileId, fsmPage);
+        try {
+            return frame.getBuffer().get(pageNumber - fsmPage - 1) & 0xFF;
+        } finally {
+            bufferPool.unpin(frame, false);
+        }
+    }
+
+    /**
+     * Records the free space of a data page in the free-space map.
+     *
+     * @param pageNumber The data page.
+     * @param freeSpace The free space of the page in bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void updateFreeSpace(int pageNumber, int freeSpace) throws IOException {
+        int fsmPage = getFreeSpaceMapPage(pageNumber);
+        int category = Math.min(255, freeSpace / FSM_UNIT);
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, fsmPage);
+        boolean changed = false;
+        try {
+            ByteBuffer map = frame.getBuffer();
+            if ((map.get(pageNumber - fsmPage - 1) & 0xFF) != category) {
+                map.put(pageNumber - fsmPage - 1, (byte) category);
+                changed = true;
+            }
+        } finally {
+            bufferPool.unpin(frame, changed);
+        }
+    }
+
+    /**
+     * Returns the free-space map page covering a data page.
+     *
+     * @param pageNumber The data page.
+     * @return The free-space map page number.
+     */
+    private static int getFreeSpaceMapPage(int pageNumber) {
+        return 1 + ((pageNumber - 1) / (FSM_ENTRIES + 1)) * (FSM_ENTRIES + 1);
+    }
+
+    /**
+     * Checks whether a page number is a free-space map page.
+     *
+     * @param pageNumber The page number.
+     * @return true if the page holds a free-space map, false otherwise.
+     */
+    private static boolean isFreeSpaceMapPage(int pageNumber) {
+        return pageNumber >= 1 && (pageNumber - 1) % (FSM_ENTRIES + 1) == 0;
+    }
+
+    /**
+     * Checks whether a page number refers to an allocated data page.
+     *
+     * @param pageNumber The page number.
+     * @return true if the page is a data page, false otherwise.
+     */
+    private boolean isDataPage(int pageNumber) {
+        return pageNumber > 1 && pageNumber < state.pageCount && !isFreeSpaceMapPage(pageNumber);
+    }
+
+    /**
+     * Writes the file header with the magic number, format version, page count and record counts.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeHeader() throws IOException {
+        BufferPool.Frame frame = bufferPool.pinForUpdate(fileId, 0);
+        try {
+            ByteBuffer header = frame.getBuffer();
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT_VERSION);
+            header.putInt(8, state.pageCount);
+            header.putLong(12, state.liveCount);
+            header.putLong(20, state.deadCount);
+        } finally {
+            bufferPool.unpin(frame, true);
+        }
+    }
+
+    /**
+     * A forward-only cursor over the records of the heap file.
+     */
+    public class Scan extends LatchedScan {
+        private final int startPage;
+        private final int startSlot;
+        private int pageNumber;
+        private BufferPool.Frame frame;
+        private SlottedPage page;
+        private int slot = -1;
+        private BufferPool.Frame movedFrame;
+        private SlottedPage movedPage;
+        private int movedSlot;
+
+        /**
+         * Constructs a scan that starts after a record.
+         *
+         * @param afterRecordId The identifier of the record to start after, or -1 to start at the first record.
+         */
+        private Scan(long afterRecordId) {
+            this.startPage = afterRecordId < 0 ? 0 : RecordId.page(afterRecordId);
+            this.startSlot = afterRecordId < 0 ? -1 : RecordId.slot(afterRecordId);
+            this.pageNumber = afterRecordId < 0 ? 1 : startPage - 1;
+        }
+
+        /**
+         * Advances to the next record. The page holding the current record stays pinned until the scan
+         * moves past it or the heap file is closed, and the scan ends once it reaches the end of the file. Moved
+         * records are returned at their original location, under their original identifier.
+         *
+         * @return true if a record is available, false at the end of the file.
+         * @throws IOException If an I/O error occurs.
+         */
+        @Override
+        public boolean next() throws IOException {
+            releaseMoved();
+            while (true) {
+                if (page != null) {
+                    while (++slot < page.getSlotCount()) {
+                        if (page.isLive(slot) && !page.isMoved(slot)) {
+                            if (page.isForward(slot)) {
+                                long forward = page.getForward(slot);
+                                movedFrame = bufferPool.pin(fileId, RecordId.page(forward));
+                                movedPage = new SlottedPage(movedFrame.getBuffer());
+                                movedSlot = RecordId.slot(forward);
+                            }
+                            return true;
+                        }
+                    }
+                }
+                releasePage();
+                do {
+                    pageNumber++;
+                } while (pageNumber < state.pageCount && !isDataPage(pageNumber));
+                if (pageNumber >= state.pageCount) {
+                    release();
+                    return false;
+                }
+                frame = bufferPool.pin(fileId, pageNumber);
+                page = new SlottedPage(frame.getBuffer());
+                slot = pageNumber == startPage ? startSlot : -1;
+            }
+        }
+
+        /**
+         * Returns the identifier of the current record.
+         *
+         * @return The record identifier.
+         */
+        @Override
+        public long getRecordId() {
+            return RecordId.of(pageNumber, slot);
+        }
+
+        /**
+         * Returns a copy of the current record.
+         *
+         * @return The record bytes.
+         */
+        public byte[] getRecord() {
+            return movedPage != null ? movedPage.read(movedSlot) : page.read(slot);
+        }
+
+        /**
+         * Returns the pinned page buffer holding the current record.
+         *
+         * @return The page buffer.
+         */
+        @Override
+        public ByteBuffer getBuffer() {
+            return movedFrame != null ? movedFrame.getBuffer() : frame.getBuffer();
+        }
+
+        /**
+         * Returns the offset of the current record within its page.
+         *
+         * @return The record offset.
+         */
+        @Override
+        public int getOffset() {
+            return movedPage != null ? movedPage.getOffset(movedSlot) : page.getOffset(slot);
+        }
+
+        /**
+         * Unpins the page holding the moved record the scan last returned, if any.
+         *
+         * @throws IOException If the page cannot be released.
+         */
+        private void releaseMoved() throws IOException {
+            if (movedFrame != null) {
+                bufferPool.unpin(movedFrame, false);
+                movedFrame = null;
+                movedPage = null;
+            }
+        }
+
+        /**
+         * Unpins the current pages, if any.
+         *
+         * @throws IOException If the pages cannot be released.
+         */
+        private void releasePage() throws IOException {
+            releaseMoved();
+            if (frame != null) {
+                bufferPool.unpin(frame, false);
+                frame = null;
+                page = null;
+            }
+        }
+
+        /**
+         * Unpins the current pages and ends the scan.
+         *
+         * @throws IOException If the pages cannot be released.
+         */
+        @Override
+        void release() throws IOException {
+            try {
+                releasePage();
+            } finally {
+                super.release();
+            }
+        }
+    }
+
+    /**
+     * A scan that holds the shared side of the latch from its start until it reaches the end of the file or the
+     * heap file is closed, so that the records it exposes in place are not moved or purged under it.
+     */
+    private abstract class LatchedScan implements RecordScan {
+        private boolean latched;
+
+        /**
+         * Constructs a scan and acquires the shared side of the latch for it.
+         */
+        LatchedScan() {
+            latch.readLock().lock();
+            latched = true;
+            openScans.add(this);
+        }
+
+        /**
+         * Ends the scan, releasing the shared side of the latch. Ending it again has no effect.
+         *
+         * @throws IOException If the scan cannot release what it holds.
+         */
+        void release() throws IOException {
+            if (latched) {
+                latched = false;
+                openScans.remove(this);
+                latch.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * A forward-only cursor over read-only memory mappings of the heap file.
+     */
+    public class MappedScan extends LatchedScan {
+        private final int endPage;
+        private final int startPage;
+        private final int startSlot;
+        private ByteBuffer window;
+        private int windowStart;
+        private ByteBuffer movedWindow;
+        private int movedWindowStart;
+        private int pageNumber;
+        private ByteBuffer pageBuffer;
+        private SlottedPage page;
+        private int slot = -1;
+        private ByteBuffer movedBuffer;
+        private int movedOffset;
+
+        /**
+         * Constructs a scan over the pages the file has now that starts after a record.
+         *
+         * @param afterRecordId The identifier of the record to start after, or -1 to start at the first record.
+         */
+        private MappedScan(long afterRecordId) {
+            this.endPage = state.pageCount;
+            this.startPage = afterRecordId < 0 ? 0 : RecordId.page(afterRecordId);
+            this.startSlot = afterRecordId < 0 ? -1 : RecordId.slot(afterRecordId);
+            this.pageNumber = afterRecordId < 0 ? 1 : startPage - 1;
+        }
+
+        /**
+         * Advances to the next record.
+         *
+         * @return true if a record is available, false at the end of the file.
+         * @throws IOException If a window of the file cannot be mapped.
+         */
+        @Override
+        public boolean next() throws IOException {
+            movedBuffer = null;
+            while (true) {
+                if (page != null) {
+                    while (++slot < page.getSlotCount()) {
+                        if (page.isLive(slot) && !page.isMoved(slot)) {
+                            if (page.isForward(slot)) {
+                                long forward = page.getForward(slot);
+                                int movedPage = RecordId.page(forward);
+                                if (!covers(movedWindow, movedWindowStart, movedPage)) {
+                                    movedWindow = bufferPool.map(fileId, movedPage);
+                                    movedWindowStart = movedPage - movedPage % BufferPool.MAP_WINDOW_PAGES;
+                                }
+                                movedBuffer = movedWindow.slice((movedPage - movedWindowStart) * PAGE_SIZE, PAGE_SIZE);
+                                movedOffset = new SlottedPage(movedBuffer).getOffset(RecordId.slot(forward));
+                            }
+                            return true;
+                        }
+                    }
+                }
+                do {
+                    pageNumber++;
+                } while (pageNumber < state.pageCount && !isDataPage(pageNumber));
+                if (pageNumber >= endPage) {
+                    page = null;
+                    release();
+                    return false;
+                }
+                if (!covers(window, windowStart, pageNumber)) {
+                    window = bufferPool.map(fileId, pageNumber);
+                    windowStart = pageNumber - pageNumber % BufferPool.MAP_WINDOW_PAGES;
+                }
+                pageBuffer = window.slice((pageNumber - windowStart) * PAGE_SIZE, PAGE_SIZE);
+                page = new SlottedPage(pageBuffer);
+                slot = pageNumber == startPage ? startSlot : -1;
+            }
+        }
+
+        /**
+         * Checks if a mapped window holds a page.
+         *
+         * @param window The mapped window, or null if none is mapped yet.
+         * @param windowStart The number of the first page of the window.
+         * @param pageNumber The page number.
+         * @return true if the page lies within the window, false otherwise.
+         */
+        private boolean covers(ByteBuffer window, int windowStart, int pageNumber) {
+            return window != null && pageNumber >= windowStart
+                    && (long) (pageNumber - windowStart + 1) * PAGE_SIZE <= window.capacity();
+        }
+
+        /**
+         * Returns the identifier of the current record.
+         *
+         * @return The record identifier.
+         */
+        @Override
+        public long getRecordId() {
+            return RecordId.of(pageNumber, slot);
+        }
+
+        /**
+         * Returns the mapped page holding the current record.
+         *
+         * @return The page buffer.
+         */
+        @Override
+        public ByteBuffer getBuffer() {
+            return movedBuffer != null ? movedBuffer : pageBuffer;
+        }
+
+        /**
+         * Returns the offset of the current record within its page.
+         *
+         * @return The record offset.
+         */
+        @Override
+        public int getOffset() {
+            return movedBuffer != null ? movedOffset : page.getOffset(slot);
+        }
+    }
+
+    /**
+     * The header fields and the latch of a table file, shared by every heap file open on it. The fields are
+     * read and written under the latch.
+     */
+    private static final class FileState {
+        private final ReentrantReadWriteLock latch = new ReentrantReadWriteLock();
+        private int fileId;
+        private int pageCount;
+        private int insertHint = -1;
+        private long liveCount;
+        private long deadCount;
+    }
+}
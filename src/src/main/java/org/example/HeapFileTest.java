@@ -0,0 +1,292 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HeapFileTest {
+
+    private CommandProcessor commandProcessor;
+    private File file;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+        // Keep the background vacuum away from the files under test
+        System.setProperty("tinydb.vacuum.min.dead", String.valueOf(Long.MAX_VALUE));
+    }
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        file = new File("tinydb/databases/" + commandProcessor.getSession().getActiveDatabase() + "/HEAP.tbl");
+    }
+
+    @Test
+    void testMappedScanMatchesBufferPoolScan() throws Exception {
+        List<Long> recordIds = new ArrayList<>();
+        try (HeapFile heapFile = HeapFile.create(file)) {
+            for (int key = 0; key < 2000; key++) {
+                recordIds.add(heapFile.insert(record(key, key % 7 * 40)));
+            }
+            for (int key = 0; key < 2000; key += 5) {
+                heapFile.delete(recordIds.get(key));
+            }
+            // Grown records move to other pages behind forwarding pointers
+            for (int key = 1; key < 2000; key += 50) {
+                heapFile.update(recordIds.get(key), record(key, 1500));
+            }
+
+            Map<Long, Integer> expected = drain(heapFile.scan());
+            assertEquals(1600, expected.size());
+            assertEquals(expected, drain(heapFile.mappedScan()));
+            assertEquals(1500, expected.get(recordIds.get(1)));
+
+            // The mapping sees changes made through the buffer pool after an earlier scan
+            heapFile.update(recordIds.get(2), record(2, 3000));
+            heapFile.delete(recordIds.get(3));
+            expected = drain(heapFile.scan());
+            assertEquals(expected, drain(heapFile.mappedScan()));
+            assertEquals(3000, expected.get(recordIds.get(2)));
+            assertFalse(expected.containsKey(recordIds.get(3)));
+
+            long after = recordIds.get(1001);
+            assertEquals(drain(heapFile.scan(after)), drain(heapFile.mappedScan(after)));
+            assertFalse(drain(heapFile.mappedScan(after)).containsKey(after));
+        }
+
+        int fileId = BufferPool.getInstance().openFile(file);
+        assertSame(BufferPool.getInstance().map(fileId, 2), BufferPool.getInstance().map(fileId, 3),
+                "Mapped windows are not reused");
+    }
+
+    @Test
+    void testTombstonesAreSkippedUntilVacuumReclaimsThem() throws Exception {
+        List<Long> recordIds = new ArrayList<>();
+        int pageCount;
+        try (HeapFile heapFile = HeapFile.create(file)) {
+            for (int key = 0; key < 400; key++) {
+                recordIds.add(heapFile.insert(record(key, 100)));
+            }
+            pageCount = heapFile.getPageCount();
+            for (int key = 0; key < 400; key += 2) {
+                assertTrue(heapFile.delete(recordIds.get(key)));
+            }
+            assertFalse(heapFile.delete(recordIds.get(0)), "A tombstone was deleted again");
+            assertEquals(200, heapFile.getLiveCount());
+            assertEquals(200, heapFile.getDeadCount());
+            assertNull(heapFile.read(recordIds.get(0)));
+
+            Map<Long, Integer> records = drain(heapFile.scan());
+            assertEquals(200, records.size(), "Deleted records are returned by a scan");
+            assertFalse(records.containsKey(recordIds.get(0)));
+            assertEquals(records, drain(heapFile.mappedScan()));
+            assertEquals(pageCount, heapFile.getPageCount());
+        }
+
+        String summary = Vacuum.getInstance().vacuum(file);
+        assertTrue(summary.contains("purged 200 records"), summary);
+        assertFalse(summary.contains("reclaimed 0 bytes"), summary);
+
+        try (HeapFile heapFile = HeapFile.open(file)) {
+            assertEquals(200, heapFile.getLiveCount());
+            assertEquals(0, heapFile.getDeadCount());
+            assertEquals(1, ByteBuffer.wrap(heapFile.read(recordIds.get(1))).getInt(), "A live record moved");
+            assertEquals(399, ByteBuffer.wrap(heapFile.read(recordIds.get(399))).getInt());
+
+            // The purged space is used again before the file grows
+            for (int key = 400; key < 600; key++) {
+                heapFile.insert(record(key, 100));
+            }
+            assertEquals(pageCount, heapFile.getPageCount(), "Reclaimed space was not reused");
+            assertEquals(400, drain(heapFile.mappedScan()).size());
+        }
+    }
+
+    @Test
+    void testVacuumWaitsForRunningTransactions() throws Exception {
+        commandProcessor.processCommand("CREATE TABLE NOTES (ID INT(PK), BODY STRING);");
+        PreparedCommand insert = commandProcessor.prepare("INSERT INTO NOTES (ID, BODY) VALUES (?, ?);");
+        for (int id = 1; id <= 100; id++) {
+            commandProcessor.execute(insert, id, "NOTE" + id);
+        }
+        commandProcessor.processCommand("DELETE FROM NOTES WHERE ID <= 60;");
+        File tableFile = new File(file.getParentFile(), "NOTES.tbl");
+
+        // A rollback restores deleted records into their slots, so they must not be purged meanwhile
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("DELETE FROM NOTES WHERE ID = 70;");
+        String summary = Vacuum.getInstance().vacuum(tableFile);
+        assertTrue(summary.contains("purged 0 records") && summary.contains("deferred"), summary);
+        commandProcessor.processCommand("ROLLBACK;");
+        assertEquals(40, commandProcessor.query("SELECT ID FROM NOTES;").getRowCount());
+
+        summary = Vacuum.getInstance().vacuum(tableFile);
+        assertTrue(summary.contains("purged 60 records") && !summary.contains("deferred"), summary);
+        assertEquals(1, commandProcessor.query("SELECT ID FROM NOTES WHERE ID = 70;").getRowCount());
+    }
+
+    @Test
+    void testUpdatesStayInPlaceUntilRowsOutgrowTheirPage() throws Exception {
+        List<Long> recordIds = new ArrayList<>();
+        try (HeapFile heapFile = HeapFile.create(file)) {
+            // Four records fill a page
+            for (int key = 0; key < 8; key++) {
+                recordIds.add(heapFile.insert(record(key, 1000)));
+            }
+            int pageCount = heapFile.getPageCount();
+
+            assertEquals(recordIds.get(1), heapFile.update(recordIds.get(1), record(1, 900)));
+            assertEquals(recordIds.get(1), heapFile.update(recordIds.get(1), record(1, 1000)));
+            assertEquals(pageCount, heapFile.getPageCount(), "A record that fits its page was moved");
+
+            // A record that outgrows its page moves, but keeps its identifier through a forwarding pointer
+            long grown = recordIds.get(2);
+            assertEquals(grown, heapFile.update(grown, record(2, 3000)));
+            assertEquals(pageCount + 1, heapFile.getPageCount());
+            assertEquals(3000, ByteBuffer.wrap(heapFile.read(grown)).getInt(4));
+            Map<Long, Integer> records = drain(heapFile.scan());
+            assertEquals(8, records.size(), "A forwarded record was not returned exactly once");
+            assertEquals(3000, records.get(grown));
+            assertEquals(records, drain(heapFile.mappedScan()));
+
+            // Updating a forwarded record again still leaves a single copy under the same identifier
+            assertEquals(grown, heapFile.update(grown, record(2, 3500)));
+            assertEquals(grown, heapFile.update(grown, record(2, 10)));
+            records = drain(heapFile.mappedScan());
+            assertEquals(8, records.size());
+            assertEquals(10, records.get(grown));
+            assertEquals(records, drain(heapFile.scan()));
+
+            assertThrows(Exception.class, () -> heapFile.update(grown, record(2, SlottedPage.MAX_RECORD_SIZE)));
+            assertEquals(10, ByteBuffer.wrap(heapFile.read(grown)).getInt(4));
+
+            assertTrue(heapFile.delete(grown));
+            assertNull(heapFile.read(grown));
+            records = drain(heapFile.mappedScan());
+            assertEquals(7, records.size());
+            assertEquals(records, drain(heapFile.scan()));
+        }
+    }
+
+    @Test
+    void testRowsGrowingPastTheirPageRemainReachable() throws Exception {
+        commandProcessor.processCommand("CREATE TABLE NOTES (ID INT(PK), BODY STRING);");
+        PreparedCommand insert = commandProcessor.prepare("INSERT INTO NOTES (ID, BODY) VALUES (?, ?);");
+        for (int id = 1; id <= 20; id++) {
+            commandProcessor.execute(insert, id, "NOTE" + id + "X".repeat(300));
+        }
+        String body = "LONG" + "Y".repeat(3000);
+        commandProcessor.execute(commandProcessor.prepare("UPDATE NOTES SET BODY = ? WHERE ID = 5;"), body);
+
+        assertEquals(20, commandProcessor.query("SELECT ID FROM NOTES;").getRowCount());
+        QueryResult result = commandProcessor.query("SELECT BODY FROM NOTES WHERE ID = 5;");
+        assertEquals(1, result.getRowCount());
+        assertEquals(body, result.getRows().get(0)[0]);
+        assertEquals(1, commandProcessor.query("SELECT ID FROM NOTES WHERE BODY LIKE 'LONG%';").getRowCount());
+        assertEquals(19, commandProcessor.query("SELECT ID FROM NOTES WHERE BODY LIKE 'NOTE%';").getRowCount());
+
+        commandProcessor.processCommand("DELETE FROM NOTES WHERE ID = 5;");
+        assertEquals(19, commandProcessor.query("SELECT ID FROM NOTES;").getRowCount());
+    }
+
+    @Test
+    void testOpenScansOnlyKeepChangesOut() throws Exception {
+        List<Long> recordIds = new ArrayList<>();
+        try (HeapFile heapFile = HeapFile.create(file)) {
+            for (int key = 0; key < 100; key++) {
+                recordIds.add(heapFile.insert(record(key, 100)));
+            }
+        }
+        try (HeapFile scanning = HeapFile.open(file)) {
+            HeapFile.Scan scan = scanning.scan();
+            assertTrue(scan.next());
+            assertThrows(IllegalStateException.class, () -> scanning.delete(recordIds.get(50)),
+                    "A change waited for a scan of the same thread");
+
+            // Another statement reads while the scan is open, but its change waits for the scan to end
+            List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+            Thread writer = new Thread(() -> {
+                try (HeapFile heapFile = HeapFile.open(file)) {
+                    assertNotNull(heapFile.read(recordIds.get(50)));
+                    assertEquals(100, heapFile.getLiveCount());
+                    assertTrue(heapFile.delete(recordIds.get(50)));
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            writer.start();
+            writer.join(2000);
+            assertTrue(writer.isAlive(), "A change did not wait for the open scan");
+            assertEquals(List.of(), failures);
+
+            int scanned = 1;
+            while (scan.next()) {
+                scanned++;
+            }
+            assertEquals(100, scanned, "A record was deleted under the scan");
+            writer.join();
+            assertEquals(List.of(), failures);
+            assertEquals(99, scanning.getLiveCount());
+            assertNull(scanning.read(recordIds.get(50)));
+        }
+    }
+
+    private byte[] record(int key, int padding) {
+        ByteBuffer record = ByteBuffer.allocate(8 + padding);
+        record.putInt(key).putInt(padding);
+        while (record.hasRemaining()) {
+            record.put((byte) key);
+        }
+        return record.array();
+    }
+
+    private Map<Long, Integer> drain(RecordScan scan) throws Exception {
+        // Maps every record to its padding length, checking that the record is intact
+        Map<Long, Integer> records = new LinkedHashMap<>();
+        while (scan.next()) {
+            ByteBuffer buffer = scan.getBuffer();
+            int offset = scan.getOffset();
+            int key = buffer.getInt(offset);
+            int padding = buffer.getInt(offset + 4);
+            for (int i = 0; i < padding; i++) {
+                assertEquals((byte) key, buffer.get(offset + 8 + i), "Record " + key + " is damaged");
+            }
+            assertNull(records.put(scan.getRecordId(), padding), "A record was returned twice");
+        }
+        return records;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        HeapFile.drop(file);
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    @AfterAll
+    void restoreSettings() {
+        System.clearProperty("tinydb.vacuum.min.dead");
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,773 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+public class HeapTable implements Table {
+    private final TableSchema schema;
+    private final HeapFile heapFile;
+    private final BPlusTree primaryKeyIndex;
+    private final List<Index> indexes = new ArrayList<>();
+    private final List<Integer> indexColumns = new ArrayList<>();
+    private final VersionStore versionStore = VersionStore.getInstance();
+    private final Map<Long, VersionStore.Version> versions;
+
+    /**
+     * Constructs a HeapTable from its open heap file and primary key index.
+     * Rows are read as of the snapshot of the current thread: rows changed by transactions the snapshot cannot
+     * see are read from their older versions in the version store. Threads without a snapshot read the newest
+     * version of every row.
+     *
+     * @param schema The schema of the table.
+     * @param heapFile The heap file holding the rows.
+     * @param primaryKeyIndex The primary key index, or null if the table has no primary key.
+     */
+    private HeapTable(TableSchema schema, HeapFile heapFile, BPlusTree primaryKeyIndex) {
+        this.schema = schema;
+        this.heapFile = heapFile;
+        this.primaryKeyIndex = primaryKeyIndex;
+        this.versions = versionStore.getVersions(heapFile.getFile());
+        if (primaryKeyIndex != null) {
+            indexes.add(primaryKeyIndex);
+            indexColumns.add(schema.getPrimaryKeyIndex());
+        }
+    }
+
+    /**
+     * Opens a heap table together with its primary key and secondary indexes.
+     * An index is built from the rows of the table if its file does not exist yet, for example after a migration.
+     * The table file is latched exclusively while an index is built, so other statements do not see it half full.
+     *
+     * @param dbDir The directory of the database.
+     * @param schema The schema of the table.
+     * @return The open table.
+     * @throws Exception If the table file cannot be read or an index cannot be built.
+     */
+    public static HeapTable open(File dbDir, TableSchema schema) throws Exception {
+        String tableName = schema.getTableName();
+        File tableFile = new File(dbDir, tableName + ".tbl");
+        HeapFile heapFile = HeapFile.open(tableFile);
+        try {
+            BPlusTree primaryKeyIndex = null;
+            int primaryKeyIndexColumn = schema.getPrimaryKeyIndex();
+            if (primaryKeyIndexColumn != -1) {
+                File indexFile = getPrimaryKeyIndexFile(dbDir, tableName);
+                if (indexFile.exists()) {
+                    primaryKeyIndex = BPlusTree.open(indexFile);
+                } else {
+                    Lock exclusive = heapFile.lockExclusive();
+                    try {
+                        // Another statement may have built the index while this one waited
+                        primaryKeyIndex = indexFile.exists() ? BPlusTree.open(indexFile)
+                                : buildPrimaryKeyIndex(schema, heapFile, indexFile, primaryKeyIndexColumn);
+                    } finally {
+                        exclusive.unlock();
+                    }
+                }
+            }
+            HeapTable table = new HeapTable(schema, heapFile, primaryKeyIndex);
+            try {
+                for (IndexDefinition definition : schema.getIndexes()) {
+                    File indexFile = definition.getFile(dbDir, tableName);
+                    int columnIndex = schema.getColumnIndex(definition.getColumnName());
+                    Index index;
+                    if (indexFile.exists()) {
+                        index = openIndex(definition, indexFile);
+                    } else {
+                        Lock exclusive = heapFile.lockExclusive();
+                        try {
+                            index = indexFile.exists() ? openIndex(definition, indexFile)
+                                    : table.buildIndex(definition, indexFile, columnIndex);
+                        } finally {
+                            exclusive.unlock();
+                        }
+                    }
+                    table.indexes.add(index);
+                    table.indexColumns.add(columnIndex);
+                }
+            } catch (Exception e) {
+                table.close();
+                throw e;
+            }
+            return table;
+        } catch (Exception e) {
+            heapFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the file of a secondary index.
+     *
+     * @param definition The index definition.
+     * @param indexFile The index file.
+     * @return The open index.
+     * @throws IOException If the file cannot be read.
+     */
+    private static Index openIndex(IndexDefinition definition, File indexFile) throws IOException {
+        if (definition.getType() == IndexDefinition.Type.BTREE) {
+            return BPlusTree.open(indexFile);
+        }
+        return HashIndex.open(indexFile);
+    }
+
+    /**
+     * Creates the file of a new secondary index and fills it from the rows of the table. The index is not
+     * registered in the metadata file; the caller records it once the index is complete.
+     *
+     * @param definition The index definition.
+     * @param indexFile The index file to create.
+     * @param columnIndex The position of the indexed column.
+     * @return The open index.
+     * @throws Exception If the index cannot be written.
+     */
+    @Override
+    public Index buildIndex(IndexDefinition definition, File indexFile, int columnIndex) throws Exception {
+        ColumnType keyType = schema.getColumnType(columnIndex);
+        Index index = definition.getType() == IndexDefinition.Type.BTREE
+                ? BPlusTree.create(indexFile, keyType) : HashIndex.create(indexFile, keyType);
+        fillIndex(index, columnIndex);
+        return index;
+    }
+
+    /**
+     * Returns the file of the primary key index of a table.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The index file.
+     */
+    public static File getPrimaryKeyIndexFile(File dbDir, String tableName) {
+        return new File(dbDir, tableName + "_pk.idx");
+    }
+
+    /**
+     * Creates the primary key index file and fills it with the primary key of every row.
+     *
+     * @param schema The schema of the table.
+     * @param heapFile The heap file holding the rows.
+     * @param indexFile The index file to create.
+     * @param columnIndex The position of the primary key column.
+     * @return The open index.
+     * @throws Exception If the index cannot be written.
+     */
+    private static BPlusTree buildPrimaryKeyIndex(TableSchema schema, HeapFile heapFile, File indexFile, int columnIndex) throws Exception {
+        BPlusTree index = BPlusTree.create(indexFile, schema.getColumnType(columnIndex));
+        fillIndex(schema, heapFile, index, columnIndex);
+        return index;
+    }
+
+    /**
+     * Fills a new index with the values of one column of every row of this table.
+     *
+     * @param index The empty index.
+     * @param columnIndex The position of the indexed column.
+     * @throws Exception If the index cannot be written.
+     */
+    private void fillIndex(Index index, int columnIndex) throws Exception {
+        fillIndex(schema, heapFile, index, columnIndex);
+    }
+
+    /**
+     * Fills a new index with the values of one column of every row. The index file is deleted if this fails.
+     *
+     * @param schema The schema of the table.
+     * @param heapFile The heap file holding the rows.
+     * @param index The empty index.
+     * @param columnIndex The position of the indexed column.
+     * @throws Exception If the index cannot be written.
+     */
+    private static void fillIndex(TableSchema schema, HeapFile heapFile, Index index, int columnIndex) throws Exception {
+        try {
+            List<Object> keys = new ArrayList<>();
+            List<Long> recordIds = new ArrayList<>();
+            HeapFile.Scan scan = heapFile.scan();
+            while (scan.next()) {
+                Object key = index.toKey(RowCodec.decodeField(schema, scan.getBuffer(), scan.getOffset(), columnIndex));
+                if (key != null) {
+                    keys.add(key);
+                    recordIds.add(scan.getRecordId());
+                }
+            }
+            if (index instanceof BPlusTree) {
+                ((BPlusTree) index).load(keys, recordIds);
+            } else {
+                ((HashIndex) index).load(keys, recordIds);
+            }
+            index.close();
+        } catch (Exception e) {
+            BufferPool.getInstance().deleteFile(index.getFile());
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the schema of the table.
+     *
+     * @return The table schema.
+     */
+    @Override
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns the heap file holding the rows of the table.
+     *
+     * @return The heap file.
+     */
+    public HeapFile getHeapFile() {
+        return heapFile;
+    }
+
+    /**
+     * Returns whether the table has a primary key index.
+     *
+     * @return true if the table has a primary key, false otherwise.
+     */
+    public boolean hasPrimaryKeyIndex() {
+        return primaryKeyIndex != null;
+    }
+
+    /**
+     * Inserts a row, rejecting it if its primary key value is missing or already present. The table file is
+     * latched exclusively from the uniqueness check until the index entries are added.
+     *
+     * @param row The row values in schema order.
+     * @return The identifier of the new record.
+     * @throws Exception If the primary key is missing or not unique, or the row cannot be encoded or written.
+     */
+    @Override
+    public long insert(String[] row) throws Exception {
+        byte[] record = RowCodec.encode(schema, row);
+        Object key = null;
+        if (primaryKeyIndex != null) {
+            key = primaryKeyIndex.toKey(row[schema.getPrimaryKeyIndex()]);
+            if (key == null) {
+                throw new Exception("Primary key value cannot be null in table " + schema.getTableName());
+            }
+        }
+        Lock exclusive = heapFile.lockExclusive();
+        try {
+            if (key != null && !primaryKeyIndex.search(key).isEmpty()) {
+                throw new Exception("Primary key value is not unique in table " + schema.getTableName());
+            }
+            long recordId = heapFile.insert(record);
+            versionStore.recordWrite(heapFile.getFile(), recordId, null, false);
+            addIndexEntries(row, recordId);
+            return recordId;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Reads the encoded record of a row as of the snapshot of the current thread.
+     *
+     * @param recordId The identifier of the record.
+     * @return The record bytes, or null if the record does not exist in the snapshot.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public byte[] readRecord(long recordId) throws IOException {
+        byte[] record = heapFile.read(recordId);
+        Snapshot snapshot = VersionStore.getCurrentSnapshot();
+        if (snapshot == null) {
+            return record;
+        }
+        if (snapshot.getReadWriteSet() != null) {
+            snapshot.getReadWriteSet().recordRead(heapFile.getFile(), recordId);
+        }
+        if (versions.isEmpty()) {
+            return record;
+        }
+        VersionStore.Version head = versions.get(recordId);
+        if (head == null) {
+            return record;
+        }
+        VersionStore.Version version = head.find(snapshot);
+        if (version == null || version.isDeleted()) {
+            return null;
+        }
+        return version.getRecord() != null ? version.getRecord() : record;
+    }
+
+    /**
+     * Reads and decodes a row as of the snapshot of the current thread.
+     *
+     * @param recordId The identifier of the record.
+     * @return The row values in schema order, or null if the record does not exist in the snapshot.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public String[] read(long recordId) throws IOException {
+        byte[] record = readRecord(recordId);
+        return record == null ? null : RowCodec.decode(schema, record);
+    }
+
+    /**
+     * Deletes a row and its index entry. The deleted row stays readable to snapshots that cannot see the
+     * delete until it is pruned from the version store.
+     *
+     * @param recordId The identifier of the record.
+     * @return true if the record existed in the snapshot of the current thread, false otherwise.
+     * @throws Exception If a concurrent transaction has changed the row or an I/O error occurs.
+     */
+    @Override
+    public boolean delete(long recordId) throws Exception {
+        Lock exclusive = heapFile.lockExclusive();
+        try {
+            byte[] record = readRecord(recordId);
+            if (record == null) {
+                return false;
+            }
+            versionStore.checkWrite(heapFile.getFile(), recordId);
+            heapFile.delete(recordId);
+            versionStore.recordWrite(heapFile.getFile(), recordId, record, true);
+            removeIndexEntries(RowCodec.decode(schema, record), recordId);
+            return true;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Replaces a row with new values. The primary key value must not change. The record is updated in place,
+     * so only the index entries of changed columns are rewritten.
+     *
+     * @param recordId The identifier of the record.
+     * @param row The new row values in schema order.
+     * @return The identifier of the record after the update.
+     * @throws Exception If the row does not exist, was changed by a concurrent transaction, cannot be encoded or
+     *                   cannot be written.
+     */
+    @Override
+    public long update(long recordId, String[] row) throws Exception {
+        byte[] record = RowCodec.encode(schema, row);
+        Lock exclusive = heapFile.lockExclusive();
+        try {
+            byte[] oldRecord = readRecord(recordId);
+            if (oldRecord == null) {
+                throw new Exception("Record " + RecordId.toString(recordId) + " does not exist in table "
+                        + schema.getTableName());
+            }
+            versionStore.checkWrite(heapFile.getFile(), recordId);
+            String[] oldRow = RowCodec.decode(schema, oldRecord);
+            long newRecordId = heapFile.update(recordId, record);
+            if (newRecordId == recordId) {
+                versionStore.recordWrite(heapFile.getFile(), recordId, oldRecord, false);
+            } else {
+                versionStore.recordWrite(heapFile.getFile(), recordId, oldRecord, true);
+                versionStore.recordWrite(heapFile.getFile(), newRecordId, null, false);
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                Index index = indexes.get(i);
+                int columnIndex = indexColumns.get(i);
+                if (newRecordId == recordId && Objects.equals(oldRow[columnIndex], row[columnIndex])) {
+                    continue;
+                }
+                Object oldKey = index.toKey(oldRow[columnIndex]);
+                if (oldKey != null) {
+                    index.delete(oldKey, recordId);
+                }
+                Object newKey = index.toKey(row[columnIndex]);
+                if (newKey != null) {
+                    index.insert(newKey, newRecordId);
+                }
+            }
+            return newRecordId;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * Undoes the changes a transaction made to the table by writing back the versions they replaced, before the
+     * transaction is discarded from the version store. Other transactions may have changed other rows on the
+     * same pages since, so the rows are restored one by one rather than by restoring page images. The index
+     * entries of the transaction's rows are all removed before those of the restored rows are added back, so that
+     * a primary key the transaction deleted and inserted again is never indexed twice.
+     *
+     * @param snapshot The snapshot of the transaction.
+     * @throws Exception If a record cannot be restored or an I/O error occurs.
+     */
+    public void undo(Snapshot snapshot) throws Exception {
+        Map<Long, VersionStore.Version> writes = versionStore.getWrites(snapshot, heapFile.getFile());
+        for (Map.Entry<Long, VersionStore.Version> write : writes.entrySet()) {
+            if (!write.getValue().isDeleted()) {
+                removeIndexEntries(RowCodec.decode(schema, heapFile.read(write.getKey())), write.getKey());
+            }
+        }
+        for (Map.Entry<Long, VersionStore.Version> write : writes.entrySet()) {
+            long recordId = write.getKey();
+            VersionStore.Version previous = write.getValue().getPrevious();
+            if (previous.isDeleted()) {
+                // The transaction inserted the record
+                if (!write.getValue().isDeleted()) {
+                    heapFile.delete(recordId);
+                }
+                continue;
+            }
+            if (write.getValue().isDeleted()) {
+                heapFile.restore(recordId, previous.getRecord());
+            } else {
+                recordId = heapFile.update(recordId, previous.getRecord());
+            }
+            addIndexEntries(RowCodec.decode(schema, previous.getRecord()), recordId);
+        }
+    }
+
+    /**
+     * Looks up the record holding a primary key value.
+     *
+     * @param value The primary key value.
+     * @return The matching record identifiers, empty if there is no such row.
+     * @throws Exception If the table has no primary key or the value does not match the key type.
+     */
+    @Override
+    public List<Long> findByPrimaryKey(String value) throws Exception {
+        if (primaryKeyIndex == null) {
+            throw new Exception("Table " + schema.getTableName() + " has no primary key.");
+        }
+        Lock shared = heapFile.lockShared();
+        try {
+            Object key = primaryKeyIndex.toKey(value);
+            return key == null ? Collections.emptyList() : primaryKeyIndex.search(key);
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Finds the records whose column equals a value through an index on that column. Indexes hold the newest
+     * version of every row, so under a snapshot the rows with older versions are returned as well and callers
+     * still have to check each row against the value.
+     *
+     * @param columnIndex The position of the column.
+     * @param value The value to look up.
+     * @return The candidate record identifiers, or null if the column has no index or the value does not
+     *         match the column type, in which case the caller has to scan the table.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public List<Long> findEqual(int columnIndex, String value) throws IOException {
+        Lock shared = heapFile.lockShared();
+        try {
+            for (int i = 0; i < indexes.size(); i++) {
+                if (indexColumns.get(i) == columnIndex) {
+                    Object key;
+                    try {
+                        key = indexes.get(i).toKey(value);
+                    } catch (Exception e) {
+                        return null;
+                    }
+                    return withVersionedRecords(key == null ? Collections.emptyList() : indexes.get(i).search(key));
+                }
+            }
+            return null;
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Finds the records whose numeric column value satisfies a range comparison through an ordered index on
+     * that column. The key range is widened to whole numbers for INT columns, so callers still have to check
+     * each row against the comparison.
+     *
+     * @param columnIndex The position of the column.
+     * @param operator The comparison operator (&lt;, &lt;=, &gt; or &gt;=).
+     * @param value The numeric value to compare against.
+     * @return The candidate record identifiers in key order, followed by the rows with older versions under a
+     *         snapshot, or null if the column has no ordered index, in which case the caller has to scan the
+     *         table.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public List<Long> findRange(int columnIndex, String operator, String value) throws IOException {
+        ColumnType columnType = schema.getColumnType(columnIndex);
+        if (columnType == ColumnType.STRING) {
+            // String columns are compared numerically, which does not follow the order of the index
+            return null;
+        }
+        Lock shared = heapFile.lockShared();
+        try {
+            for (int i = 0; i < indexes.size(); i++) {
+                if (indexColumns.get(i) != columnIndex || !(indexes.get(i) instanceof BPlusTree)) {
+                    continue;
+                }
+                Object key = Table.toRangeKey(columnType, operator, value);
+                if (key == null) {
+                    return null;
+                }
+                boolean lower = operator.startsWith(">");
+                List<Long> recordIds = new ArrayList<>();
+                BPlusTree.RangeScan scan = lower
+                        ? ((BPlusTree) indexes.get(i)).range(key, true, null, false)
+                        : ((BPlusTree) indexes.get(i)).range(null, false, key, true);
+                while (scan.next()) {
+                    recordIds.add(scan.getRecordId());
+                }
+                return withVersionedRecords(recordIds);
+            }
+            return null;
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Starts a scan over all rows in storage order. The heap file is read through a memory mapping when
+     * mapped scans are enabled, and through the buffer pool otherwise. Under a snapshot, rows are returned as
+     * of the snapshot, and the deleted rows the snapshot can still see are returned at their place in the file.
+     *
+     * @return A scan positioned before the first row.
+     * @throws IOException If the file cannot be mapped.
+     */
+    @Override
+    public RecordScan scan() throws IOException {
+        RecordScan scan = HeapFile.isMappedScanEnabled() ? heapFile.mappedScan() : heapFile.scan();
+        Snapshot snapshot = VersionStore.getCurrentSnapshot();
+        return snapshot == null ? scan : new SnapshotScan(scan, snapshot, -1);
+    }
+
+    /**
+     * Starts a scan over the rows that follow a record in storage order. Records keep their identifiers while
+     * snapshots can see them, so a resumed scan under the same snapshot returns exactly the rows the first
+     * scan had not reached.
+     *
+     * @param position The identifier of the record to resume after.
+     * @return A scan positioned after the record.
+     * @throws IOException If the file cannot be mapped.
+     */
+    @Override
+    public RecordScan scanAfter(Object position) throws IOException {
+        long afterRecordId = (Long) position;
+        RecordScan scan = HeapFile.isMappedScanEnabled() ? heapFile.mappedScan(afterRecordId)
+                : heapFile.scan(afterRecordId);
+        Snapshot snapshot = VersionStore.getCurrentSnapshot();
+        return snapshot == null ? scan : new SnapshotScan(scan, snapshot, afterRecordId);
+    }
+
+    /**
+     * Adds the records that have older versions to the candidates found through an index, as the index only
+     * knows the newest version of every row.
+     *
+     * @param recordIds The record identifiers found through the index.
+     * @return The candidate record identifiers.
+     */
+    private List<Long> withVersionedRecords(List<Long> recordIds) {
+        if (VersionStore.getCurrentSnapshot() == null || versions.isEmpty()) {
+            return recordIds;
+        }
+        Set<Long> candidates = new LinkedHashSet<>(recordIds);
+        candidates.addAll(versions.keySet());
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * Adds the index entries of a row.
+     *
+     * @param row The row values in schema order.
+     * @param recordId The identifier of the record.
+     * @throws Exception If a value does not match its column type or an I/O error occurs.
+     */
+    private void addIndexEntries(String[] row, long recordId) throws Exception {
+        for (int i = 0; i < indexes.size(); i++) {
+            Object key = indexes.get(i).toKey(row[indexColumns.get(i)]);
+            if (key != null) {
+                indexes.get(i).insert(key, recordId);
+            }
+        }
+    }
+
+    /**
+     * Removes the index entries of a row.
+     *
+     * @param row The row values in schema order.
+     * @param recordId The identifier of the record.
+     * @throws Exception If a value does not match its column type or an I/O error occurs.
+     */
+    private void removeIndexEntries(String[] row, long recordId) throws Exception {
+        for (int i = 0; i < indexes.size(); i++) {
+            Object key = indexes.get(i).toKey(row[indexColumns.get(i)]);
+            if (key != null) {
+                indexes.get(i).delete(key, recordId);
+            }
+        }
+    }
+
+    /**
+     * Writes the table and its indexes back to disk.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        heapFile.close();
+        for (Index index : indexes) {
+            index.close();
+        }
+    }
+
+    /**
+     * A scan that returns the rows of the table as of a snapshot.
+     */
+    private class SnapshotScan implements RecordScan {
+        private final RecordScan scan;
+        private final Snapshot snapshot;
+        private final long afterRecordId;
+        private long[] deleted;
+        private int nextDeleted;
+        private boolean scanPending = true;
+        private boolean scanAvailable;
+        private long recordId;
+        private ByteBuffer buffer;
+        private int offset;
+
+        /**
+         * Constructs a scan over the rows returned by a heap file scan.
+         *
+         * @param scan The scan over the newest versions of the rows.
+         * @param snapshot The snapshot to read.
+         * @param afterRecordId The identifier of the record the heap file scan starts after, or -1.
+         */
+        private SnapshotScan(RecordScan scan, Snapshot snapshot, long afterRecordId) {
+            this.scan = scan;
+            this.snapshot = snapshot;
+            this.afterRecordId = afterRecordId;
+        }
+
+        /**
+         * Advances to the next row visible to the snapshot, recording it in the read set of an optimistic
+         * transaction.
+         *
+         * @return true if a row is available, false at the end of the table.
+         * @throws IOException If an I/O error occurs.
+         */
+        @Override
+        public boolean next() throws IOException {
+            if (!advance()) {
+                return false;
+            }
+            if (snapshot.getReadWriteSet() != null) {
+                snapshot.getReadWriteSet().recordRead(heapFile.getFile(), recordId);
+            }
+            return true;
+        }
+
+        /**
+         * Advances to the next row visible to the snapshot. Rows whose newest version is visible are returned
+         * in place; other rows are replaced by their visible version or skipped if they have none. Deleted rows
+         * are not returned by the heap file scan, so the visible versions of deleted rows are merged in by
+         * record identifier, keeping the rows in the order of the file.
+         *
+         * @return true if a row is available, false at the end of the table.
+         * @throws IOException If an I/O error occurs.
+         */
+        private boolean advance() throws IOException {
+            if (deleted == null) {
+                deleted = findDeleted();
+            }
+            while (true) {
+                if (scanPending) {
+                    scanAvailable = scan.next();
+                    scanPending = false;
+                }
+                long deletedId = nextDeleted < deleted.length ? deleted[nextDeleted] : Long.MAX_VALUE;
+                if (scanAvailable && scan.getRecordId() <= deletedId) {
+                    scanPending = true;
+                    recordId = scan.getRecordId();
+                    VersionStore.Version head = versions.isEmpty() ? null : versions.get(recordId);
+                    VersionStore.Version version = head == null ? null : head.find(snapshot);
+                    if (head == null || version == head && !head.isDeleted()) {
+                        buffer = scan.getBuffer();
+                        offset = scan.getOffset();
+                        return true;
+                    }
+                    if (version != null && !version.isDeleted()) {
+                        buffer = ByteBuffer.wrap(version.getRecord());
+                        offset = 0;
+                        return true;
+                    }
+                    continue;
+                }
+                if (deletedId == Long.MAX_VALUE) {
+                    return false;
+                }
+                nextDeleted++;
+                VersionStore.Version head = versions.get(deletedId);
+                VersionStore.Version version = head == null || !head.isDeleted() ? null : head.find(snapshot);
+                if (version != null && !version.isDeleted()) {
+                    recordId = deletedId;
+                    buffer = ByteBuffer.wrap(version.getRecord());
+                    offset = 0;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Collects the deleted rows that still have versions and follow the start of the scan.
+         *
+         * @return Their record identifiers in ascending order.
+         */
+        private long[] findDeleted() {
+            if (versions.isEmpty()) {
+                return new long[0];
+            }
+            List<Long> recordIds = new ArrayList<>();
+            for (Map.Entry<Long, VersionStore.Version> entry : versions.entrySet()) {
+                if (entry.getValue().isDeleted() && entry.getKey() > afterRecordId) {
+                    recordIds.add(entry.getKey());
+                }
+            }
+            long[] sorted = new long[recordIds.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = recordIds.get(i);
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        /**
+         * Returns the identifier of the current row.
+         *
+         * @return The record identifier.
+         */
+        @Override
+        public long getRecordId() {
+            return recordId;
+        }
+
+        /**
+         * Returns the buffer holding the current row.
+         *
+         * @return The page buffer, or a buffer holding an older version of the row.
+         */
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Returns the offset of the current row within its buffer.
+         *
+         * @return The record offset.
+         */
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
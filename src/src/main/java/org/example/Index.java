@@ -0,0 +1,53 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public interface Index extends Closeable {
+
+    /**
+     * Returns the file backing this index.
+     *
+     * @return The index file.
+     */
+    File getFile();
+
+    /**
+     * Converts a column value into a key of the indexed type.
+     *
+     * @param value The column value.
+     * @return The key, or null if the value is null.
+     * @throws Exception If the value does not match the key type.
+     */
+    Object toKey(String value) throws Exception;
+
+    /**
+     * Adds an entry to the index.
+     *
+     * @param key The key.
+     * @param recordId The record the key points to.
+     * @throws IOException If the key is too large or an I/O error occurs.
+     */
+    void insert(Object key, long recordId) throws IOException;
+
+    /**
+     * Removes an entry from the index.
+     *
+     * @param key The key.
+     * @param recordId The record the key points to.
+     * @return true if the entry existed, false otherwise.
+     * @throws IOException If an I/O error occurs.
+     */
+    boolean delete(Object key, long recordId) throws IOException;
+
+    /**
+     * Finds the records stored under a key.
+     *
+     * @param key The key to look up.
+     * @return The matching record identifiers.
+     * @throws IOException If an I/O error occurs.
+     */
+    List<Long> search(Object key) throws IOException;
+}
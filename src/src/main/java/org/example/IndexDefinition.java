@@ -0,0 +1,93 @@
+package org.example;
+
+import java.io.File;
+
+public class IndexDefinition {
+    private final String name;
+    private final String columnName;
+    private final Type type;
+
+    /**
+     * The storage structures available for secondary indexes.
+     */
+    public enum Type {
+        HASH,
+        BTREE
+    }
+
+    /**
+     * Constructs an IndexDefinition.
+     *
+     * @param name The name of the index.
+     * @param columnName The indexed column.
+     * @param type The storage structure of the index.
+     */
+    public IndexDefinition(String name, String columnName, Type type) {
+        this.name = name;
+        this.columnName = columnName;
+        this.type = type;
+    }
+
+    /**
+     * Parses the value of an "Index:" metadata line, written as {@code <NAME> ON <COLUMN> USING <TYPE>}.
+     *
+     * @param definition The text after "Index:".
+     * @return The index definition.
+     * @throws IllegalArgumentException If the line is malformed or names an unknown index type.
+     */
+    public static IndexDefinition parse(String definition) {
+        String[] parts = definition.trim().split("\\s+");
+        if (parts.length != 5 || !parts[1].equalsIgnoreCase("ON") || !parts[3].equalsIgnoreCase("USING")) {
+            throw new IllegalArgumentException("Invalid index definition: " + definition);
+        }
+        return new IndexDefinition(parts[0].toUpperCase(), parts[2].toUpperCase(), Type.valueOf(parts[4].toUpperCase()));
+    }
+
+    /**
+     * Returns the name of the index.
+     *
+     * @return The index name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the indexed column.
+     *
+     * @return The column name.
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Returns the storage structure of the index.
+     *
+     * @return The index type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the file holding the index of a table.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The index file.
+     */
+    public File getFile(File dbDir, String tableName) {
+        return new File(dbDir, tableName + "_" + name + ".idx");
+    }
+
+    /**
+     * Returns the definition in the form stored in the metadata file.
+     *
+     * @return The index definition.
+     */
+    @Override
+    public String toString() {
+        return name + " ON " + columnName + " USING " + type;
+    }
+}
@@ -0,0 +1,134 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class IndexScan extends SeqScan {
+    private final int column;
+    private final String operator;
+    private final String value;
+    private List<Long> candidates;
+    private boolean searched;
+    private boolean readAll;
+    private int nextCandidate;
+
+    /**
+     * Constructs a scan that looks up the rows of a comparison through an index on the compared column,
+     * opening the table for every batch. The index may return rows that do not match, such as older versions
+     * under a snapshot, so the predicate of the scan still has to check them.
+     *
+     * @param session The session that runs the query.
+     * @param schema The schema of the table.
+     * @param predicate The condition evaluated on the encoded records, or null to return all candidates.
+     * @param columns The positions of the table columns to return.
+     * @param column The position of the compared column.
+     * @param operator The comparison operator (=, &lt;, &lt;=, &gt; or &gt;=).
+     * @param value The value to compare against.
+     */
+    public IndexScan(Session session, TableSchema schema, RecordPredicate predicate, int[] columns, int column,
+                     String operator, String value) {
+        super(session, schema, predicate, columns);
+        this.column = column;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    /**
+     * Constructs a scan that looks up the rows of a comparison through an index of a table the caller keeps
+     * open.
+     *
+     * @param table The open table.
+     * @param predicate The condition evaluated on the encoded records, or null to return all candidates.
+     * @param columns The positions of the table columns to return.
+     * @param column The position of the compared column.
+     * @param operator The comparison operator (=, &lt;, &lt;=, &gt; or &gt;=).
+     * @param value The value to compare against.
+     */
+    public IndexScan(Table table, RecordPredicate predicate, int[] columns, int column, String operator,
+                     String value) {
+        super(table, predicate, columns);
+        this.column = column;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    /**
+     * Checks whether a table has an index that can look up the rows of a comparison: an index of any kind on
+     * the column for equality, or an ordered index on a numeric column for a range.
+     *
+     * @param schema The schema of the table.
+     * @param column The position of the compared column.
+     * @param operator The comparison operator.
+     * @return true if the table has a usable index, false if the table has to be scanned.
+     */
+    public static boolean isUsable(TableSchema schema, int column, String operator) {
+        if (operator.equals("<>")) {
+            // An inequality matches nearly every row, and no index searches for all values but one
+            return false;
+        }
+        boolean equality = operator.equals("=");
+        if (!equality && schema.getColumnType(column) == ColumnType.STRING) {
+            // String columns are compared numerically, which does not follow the order of the index
+            return false;
+        }
+        if (column == schema.getPrimaryKeyIndex()) {
+            return true;
+        }
+        if (schema.getEngine() == TableSchema.Engine.LSM) {
+            return false;
+        }
+        for (IndexDefinition index : schema.getIndexes()) {
+            if (index.getColumnName().equalsIgnoreCase(schema.getColumnName(column))
+                    && (equality || index.getType() == IndexDefinition.Type.BTREE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the candidates found through the index.
+     */
+    @Override
+    void reset() {
+        super.reset();
+        candidates = null;
+        searched = false;
+        readAll = false;
+        nextCandidate = 0;
+    }
+
+    /**
+     * Reads the next batch of candidate rows. The first batch searches the index. The record identifiers of
+     * LSM tables only live as long as the open table, so when the table is reopened for every batch, the
+     * candidates of an LSM table are all read in the first one. If the index cannot be searched for the value,
+     * for example because it does not match the column type, the table is scanned instead.
+     *
+     * @param table The open table.
+     * @param reopened true if the table has been opened for this batch alone.
+     * @throws Exception If the table cannot be read.
+     */
+    @Override
+    void read(Table table, boolean reopened) throws Exception {
+        if (!searched) {
+            searched = true;
+            candidates = operator.equals("=") ? table.findEqual(column, value)
+                    : table.findRange(column, operator, value);
+            readAll = reopened && table instanceof LsmTable;
+        }
+        if (candidates == null) {
+            super.read(table, reopened);
+            return;
+        }
+        while ((readAll || !isBatchFull()) && nextCandidate < candidates.size()) {
+            long recordId = candidates.get(nextCandidate++);
+            byte[] record = table.readRecord(recordId);
+            if (record != null) {
+                add(ByteBuffer.wrap(record), 0, recordId);
+            }
+        }
+        if (nextCandidate == candidates.size()) {
+            finish();
+        }
+    }
+}
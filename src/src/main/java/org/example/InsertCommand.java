@@ -1,205 +1,180 @@
 package org.example;
 
 import java.io.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 public class InsertCommand {
 
     /**
      * Executes the INSERT command to insert a record into a table.
      *
-     * @param tokens The tokens parsed from the command input.
-     * @param input The complete command input string.
+     * @param session The session that runs the statement.
+     * @param statement The parsed INSERT statement.
      * @throws Exception If an error occurs during command execution.
      */
-    public static void execute(String[] tokens, String input) throws Exception {
-        if (CommandProcessor.activeDatabase == null) {
+    public static void execute(Session session, SqlStatement.Insert statement) throws Exception {
+        plan(session, statement).execute(session, StatementPlan.NO_PARAMETERS);
+    }
+
+    /**
+     * Plans an INSERT statement against the schema of its table: the primary key is checked and the listed
+     * columns are resolved to their positions. The inserted values may be parameter markers.
+     *
+     * @param session The session whose active database the table is resolved in.
+     * @param statement The parsed INSERT statement.
+     * @return The plan.
+     * @throws Exception If the statement does not fit the table.
+     */
+    public static Plan plan(Session session, SqlStatement.Insert statement) throws Exception {
+        if (session.getActiveDatabase() == null) {
             throw new Exception("No database selected.");
         }
 
-        // Add logging before inserting the record
-        LogManager.logQuery("INSERT command initiated", "Attempting to insert record");
-
-        // Extract table name
-        String tableName = extractTableName(input);
+        String tableName = statement.getTableName();
+        checkTableFile(session, tableName);
+        TableSchema schema = Catalog.getInstance().getTable(session.getActiveDatabase(), tableName);
+        validatePrimaryKey(schema, statement.getColumns());
+        return new Plan(session.getActiveDatabase(), statement, schema,
+                resolveColumns(schema, statement.getColumns(), statement.getValues()));
+    }
 
-        // Extract column names and values
-        String[] parts = input.split("VALUES", 2);
-        if (parts.length != 2) {
-            throw new Exception("Invalid INSERT statement format: " + input);
+    /**
+     * The plan of an INSERT statement, which builds the row from the values bound when it runs.
+     */
+    public static class Plan extends StatementPlan {
+        private final int[] columnIndexes;
+
+        /**
+         * Constructs the plan of an INSERT statement.
+         *
+         * @param databaseName The database the table was resolved in.
+         * @param statement The parsed INSERT statement.
+         * @param schema The schema of the table.
+         * @param columnIndexes The positions of the listed columns in the table.
+         */
+        private Plan(String databaseName, SqlStatement.Insert statement, TableSchema schema, int[] columnIndexes) {
+            super(statement, databaseName, schema);
+            this.columnIndexes = columnIndexes;
         }
-        String columnNamesWithParentheses = parts[0].trim();
-        String valuesPart = parts[1].trim();
 
-        // Remove "INSERT INTO tablename" part to get just "(col1, col2, ...)"
-        String columnNames = extractColumnNames(columnNamesWithParentheses);
-
-        // Extract values and validate primary key
-        String values = extractValues(valuesPart);
-        validatePrimaryKey(tableName, columnNames, values);
-
-        // Construct file path with sanitized table name
-        File tableFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + ".txt");
-        if (tableFile.exists()) {
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tableFile, true))) {
-                writer.newLine();
-                writer.write(values);
+        /**
+         * Inserts the row of the statement.
+         *
+         * @param session The session that runs the statement.
+         * @param parameters The values of the parameter markers, in order.
+         * @throws Exception If the row cannot be inserted.
+         */
+        @Override
+        public void execute(Session session, SqlStatement.Literal[] parameters) throws Exception {
+            SqlStatement.Insert statement = (SqlStatement.Insert) getStatement();
+            Plan current = isCurrent(session) ? this : plan(session, statement);
+
+            // Add logging before inserting the record
+            LogManager.logQuery("INSERT command initiated", "Attempting to insert record");
+
+            String tableName = statement.getTableName();
+
+            LockManager.lockTableForWrite(session, tableName);
+
+            checkTableFile(session, tableName);
+            if (!current.isCurrent(session)) {
+                // The table changed while the lock was awaited
+                current = plan(session, statement);
+            }
+            TableSchema schema = current.getSchema();
+            String[] row = current.buildRow(parameters);
+            // Lock the row first, so that an insert of the same key by a running transaction is awaited before the
+            // uniqueness check
+            LockManager.lockRow(session, schema, row);
+
+            try (Table table = Table.open(session.getActiveDatabase(), tableName)) {
+                // The primary key index rejects duplicate keys without scanning the table
+                table.insert(row);
+                session.setRowCount(1);
+                recordChanges(tableName, 1);
                 System.out.println("Record inserted successfully into table " + tableName + ".");
                 LogManager.logQuery("INSERT command executed", "Record inserted successfully into table: " + tableName);
             } catch (IOException e) {
                 throw new Exception("Error writing to table file: " + e.getMessage());
             }
-        } else {
-            throw new Exception("Table file path: " + tableFile.getAbsolutePath() + " does not exist.");
         }
-    }
 
-    /**
-     * Extracts the table name from the INSERT command.
-     *
-     * @param input The complete command input string.
-     * @return The table name.
-     * @throws Exception If the table name cannot be extracted.
-     */
-    private static String extractTableName(String input) throws Exception {
-        // Extract table name after "INSERT INTO"
-        String regex = "(?i)INSERT\\s+INTO\\s+(\\w+)";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(input);
-        StringBuilder res = new StringBuilder();
-        while (matcher.find()) {
-            res.append(matcher.group(1));
+        /**
+         * Arranges the inserted values in the column order of the table.
+         *
+         * @param parameters The values of the parameter markers, in order.
+         * @return The row values in schema order; columns not listed are null.
+         * @throws Exception If a parameter has no value.
+         */
+        private String[] buildRow(SqlStatement.Literal[] parameters) throws Exception {
+            List<SqlStatement.Literal> values = ((SqlStatement.Insert) getStatement()).getValues();
+            String[] row = new String[getSchema().getColumnCount()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                row[columnIndexes[i]] = values.get(i).bind(parameters).getText();
+            }
+            return row;
         }
-        return res.toString().trim();
     }
 
     /**
-     * Extracts the column names from the INSERT command.
+     * Checks that the file of a table exists.
      *
-     * @param columnNamesWithParentheses The part of the command containing column names with parentheses.
-     * @return The column names.
-     */
-    private static String extractColumnNames(String columnNamesWithParentheses) {
-        // Remove "INSERT INTO tablename" part to get just "(col1, col2, ...)"
-        int startIndex = columnNamesWithParentheses.indexOf("(");
-        int endIndex = columnNamesWithParentheses.indexOf(")");
-        return columnNamesWithParentheses.substring(startIndex + 1, endIndex);
-    }
-
-    /**
-     * Extracts the values from the INSERT command.
-     *
-     * @param valuesPart The part of the command containing values.
-     * @return The extracted values.
+     * @param session The session whose active database holds the table.
+     * @param tableName The name of the table.
+     * @throws Exception If the table file does not exist.
      */
-    private static String extractValues(String valuesPart) {
-        // Remove surrounding parentheses and trim whitespace
-        valuesPart = valuesPart.trim();
-        if (valuesPart.startsWith("(") && valuesPart.endsWith(")")) {
-            valuesPart = valuesPart.substring(1, valuesPart.length() - 1);
+    private static void checkTableFile(Session session, String tableName) throws Exception {
+        // Construct file path with sanitized table name
+        File tableFile = new File("tinydb/databases/" + session.getActiveDatabase() + "/" + tableName + ".tbl");
+        if (!tableFile.exists()) {
+            throw new Exception("Table file path: " + tableFile.getAbsolutePath() + " does not exist.");
         }
-
-        // Remove surrounding single quotes for string values
-        valuesPart = valuesPart.replaceAll("^'|'$", "");
-
-        return valuesPart;
     }
 
     /**
-     * Validates the primary key for uniqueness before inserting the record.
+     * Resolves the columns listed in an INSERT statement to their positions in the table.
      *
-     * @param tableName The name of the table.
-     * @param columnNames The column names.
-     * @param values The values to insert.
-     * @throws Exception If the primary key is not unique or an error occurs.
+     * @param schema The schema of the table.
+     * @param columnNames The column names listed in the INSERT statement.
+     * @param values The values listed in the INSERT statement.
+     * @return The position of every listed column.
+     * @throws Exception If a column does not exist or the number of values does not match the number of columns.
      */
-    private static void validatePrimaryKey(String tableName, String columnNames, String values) throws Exception {
-        // Check if the table metadata file exists
-        File metaFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + "_meta.txt");
-        if (!metaFile.exists()) {
-            throw new Exception("Metadata file for table " + tableName + " does not exist.");
+    private static int[] resolveColumns(TableSchema schema, List<String> columnNames, List<SqlStatement.Literal> values)
+            throws Exception {
+        if (columnNames.size() != values.size()) {
+            throw new Exception("Column count does not match value count.");
         }
 
-        // Get the primary key column name from metadata
-        String primaryKeyColumnName = extractPrimaryKeyColumnName(metaFile);
-
-        // Split column names and values by comma
-        String[] columns = columnNames.split(",");
-        String[] columnValues = values.split(",");
-
-        // Find index of primary key column
-        int primaryKeyIndex = -1;
-        for (int i = 0; i < columns.length; i++) {
-            if (columns[i].trim().equalsIgnoreCase(primaryKeyColumnName)) {
-                primaryKeyIndex = i;
-                break;
+        int[] columnIndexes = new int[columnNames.size()];
+        for (int i = 0; i < columnNames.size(); i++) {
+            columnIndexes[i] = schema.getColumnIndex(columnNames.get(i));
+            if (columnIndexes[i] == -1) {
+                throw new Exception("Column '" + columnNames.get(i) + "' does not exist in table '" + schema.getTableName() + "'.");
             }
         }
-
-        if (primaryKeyIndex == -1) {
-            throw new Exception("Primary key column not found in the INSERT statement for table " + tableName);
-        }
-
-        // Validate primary key uniqueness
-        validatePrimaryKeyUniqueness(tableName, primaryKeyIndex, columnValues);
+        return columnIndexes;
     }
 
     /**
-     * Extracts the primary key column name from the metadata file.
+     * Validates that the INSERT statement provides a value for the primary key column.
      *
-     * @param metaFile The metadata file.
-     * @return The primary key column name.
-     * @throws IOException If an I/O error occurs.
+     * @param schema The schema of the table.
+     * @param columnNames The column names listed in the INSERT statement.
+     * @throws Exception If the table has no primary key or the primary key column is missing.
      */
-    private static String extractPrimaryKeyColumnName(File metaFile) throws IOException {
-        String primaryKeyColumnName = null;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(metaFile))) {
-            String line;
-
-            // Read table structure from metadata file
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("Primary Key: ")) {
-                    primaryKeyColumnName = line.substring("Primary Key: ".length()).trim();
-                    break;
-                }
-            }
-        }
-
+    private static void validatePrimaryKey(TableSchema schema, List<String> columnNames) throws Exception {
+        String primaryKeyColumnName = schema.getPrimaryKey();
         if (primaryKeyColumnName == null) {
-            throw new IOException("Metadata file does not contain primary key information.");
+            throw new Exception("Metadata file does not contain primary key information.");
         }
 
-        return primaryKeyColumnName;
-    }
-
-    /**
-     * Validates the uniqueness of the primary key before inserting the record.
-     *
-     * @param tableName The name of the table.
-     * @param primaryKeyIndex The index of the primary key column.
-     * @param columnValues The values to insert.
-     * @throws Exception If the primary key is not unique or an error occurs.
-     */
-    private static void validatePrimaryKeyUniqueness(String tableName, int primaryKeyIndex, String[] columnValues) throws Exception {
-        // Construct file path with sanitized table name
-        File tableFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + ".txt");
-
-        if (tableFile.exists()) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(tableFile))) {
-                String line;
-
-                // Read existing data from table file and validate primary key uniqueness
-                while ((line = reader.readLine()) != null) {
-                    String[] values = line.split(",");
-                    if (values.length > primaryKeyIndex) {
-                        if (values[primaryKeyIndex].trim().equals(columnValues[primaryKeyIndex].trim())) {
-                            throw new Exception("Primary key value is not unique in table " + tableName);
-                        }
-                    }
-                }
+        // Find the primary key column among the inserted columns
+        for (String column : columnNames) {
+            if (column.equalsIgnoreCase(primaryKeyColumnName)) {
+                return;
             }
         }
+        throw new Exception("Primary key column not found in the INSERT statement for table " + schema.getTableName());
     }
 }
@@ -0,0 +1,110 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class KeyCodec {
+
+    /**
+     * Converts a column value into an index key of the given type.
+     *
+     * @param keyType The type of the indexed column.
+     * @param value The column value.
+     * @return The key (a Long, Double or String), or null if the value is null.
+     * @throws Exception If the value does not match the key type.
+     */
+    public static Object toKey(ColumnType keyType, String value) throws Exception {
+        if (value == null) {
+            return null;
+        }
+        try {
+            switch (keyType) {
+                case INT:
+                    return Long.parseLong(value.trim());
+                case DOUBLE:
+                    return Double.parseDouble(value.trim());
+                default:
+                    return value;
+            }
+        } catch (NumberFormatException e) {
+            throw new Exception("Invalid " + keyType + " value: " + value);
+        }
+    }
+
+    /**
+     * Compares two keys of the same type.
+     *
+     * @param first The first key.
+     * @param second The second key.
+     * @return A negative number, zero or a positive number as the first key is less than, equal to or greater than the second.
+     */
+    @SuppressWarnings("unchecked")
+    public static int compare(Object first, Object second) {
+        return ((Comparable<Object>) first).compareTo(second);
+    }
+
+    /**
+     * Computes the serialized size of a key.
+     *
+     * @param keyType The type of the key.
+     * @param key The key.
+     * @return The size in bytes.
+     */
+    public static int size(ColumnType keyType, Object key) {
+        if (keyType == ColumnType.STRING) {
+            return 2 + ((String) key).getBytes(StandardCharsets.UTF_8).length;
+        }
+        return 8;
+    }
+
+    /**
+     * Writes a key into a buffer.
+     *
+     * @param keyType The type of the key.
+     * @param buffer The buffer to write to.
+     * @param position The position to write at.
+     * @param key The key.
+     * @return The position just after the key.
+     */
+    public static int write(ColumnType keyType, ByteBuffer buffer, int position, Object key) {
+        switch (keyType) {
+            case INT:
+                buffer.putLong(position, (Long) key);
+                return position + 8;
+            case DOUBLE:
+                buffer.putDouble(position, (Double) key);
+                return position + 8;
+            default:
+                byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+                buffer.putShort(position, (short) bytes.length);
+                for (int i = 0; i < bytes.length; i++) {
+                    buffer.put(position + 2 + i, bytes[i]);
+                }
+                return position + 2 + bytes.length;
+        }
+    }
+
+    /**
+     * Reads a key from a buffer.
+     *
+     * @param keyType The type of the key.
+     * @param buffer The buffer to read from.
+     * @param position The position of the key.
+     * @return The key.
+     */
+    public static Object read(ColumnType keyType, ByteBuffer buffer, int position) {
+        switch (keyType) {
+            case INT:
+                return buffer.getLong(position);
+            case DOUBLE:
+                return buffer.getDouble(position);
+            default:
+                int length = buffer.getShort(position) & 0xFFFF;
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = buffer.get(position + 2 + i);
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.example;
+
+import java.io.IOException;
+
+public class Limit implements Operator {
+    private final Operator child;
+    private final long limit;
+    private long count;
+
+    /**
+     * Constructs an operator that returns the first rows of its input and then stops reading it, so that the
+     * scans below it do not read the rest of their tables.
+     *
+     * @param child The input.
+     * @param limit The maximum number of rows.
+     */
+    public Limit(Operator child, long limit) {
+        this.child = child;
+        this.limit = limit;
+    }
+
+    /**
+     * Opens the input.
+     *
+     * @throws Exception If the input cannot be opened.
+     */
+    @Override
+    public void open() throws Exception {
+        count = 0;
+        child.open();
+    }
+
+    /**
+     * Returns the next row of the input until the limit is reached.
+     *
+     * @return The row, or null after the last row.
+     * @throws Exception If the input cannot be read.
+     */
+    @Override
+    public Object[] next() throws Exception {
+        if (count >= limit) {
+            return null;
+        }
+        Object[] row = child.next();
+        if (row != null) {
+            count++;
+        }
+        return row;
+    }
+
+    /**
+     * Closes the input.
+     *
+     * @throws IOException If a table cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        child.close();
+    }
+
+    /**
+     * Returns the number of output columns, those of the input.
+     *
+     * @return The number of columns.
+     */
+    @Override
+    public int getColumnCount() {
+        return child.getColumnCount();
+    }
+
+    /**
+     * Returns the name of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        return child.getColumnName(column);
+    }
+
+    /**
+     * Returns the type of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        return child.getColumnType(column);
+    }
+
+    /**
+     * Returns the identifier of the record the last row was read from.
+     *
+     * @return The record identifier.
+     */
+    @Override
+    public long getRecordId() {
+        return child.getRecordId();
+    }
+}
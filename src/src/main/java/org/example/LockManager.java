@@ -0,0 +1,646 @@
+package org.example;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class LockManager {
+    private static final LockManager INSTANCE = new LockManager(
+            Integer.getInteger("tinydb.lock.stripes", 16), Long.getLong("tinydb.lock.deadlockTimeout", 50));
+
+    private final Stripe[] stripes;
+    private final long deadlockTimeoutNanos;
+    private final Map<Snapshot, Set<String>> owned = new ConcurrentHashMap<>();
+    private final Map<String, TableStats> tableStats = new ConcurrentHashMap<>();
+    private long deadlocks;
+    private long timeouts;
+    private long validations;
+    private long validationFailures;
+
+    /**
+     * The modes in which a table can be locked, from the weakest to the strongest. Each mode conflicts with
+     * every mode the next weaker one conflicts with.
+     */
+    public enum Mode {
+        /**
+         * Taken by statements that read the table. Snapshot reads do not have to wait for writers, so this mode
+         * only conflicts with {@link #ACCESS_EXCLUSIVE}.
+         */
+        SHARED,
+        /**
+         * Taken by statements that change rows of the table under row locks, or validate their changes when
+         * they commit. Any number of transactions may change different rows of the table at the same time.
+         */
+        ROW_EXCLUSIVE,
+        /**
+         * Taken by statements that change the rows of the table without row locks, and by row locks themselves.
+         * Only one transaction at a time may change a table locked this way, while other transactions keep
+         * reading their snapshots of it.
+         */
+        EXCLUSIVE,
+        /**
+         * Taken by statements that change the files or the structure of the table, which nothing else may use
+         * meanwhile.
+         */
+        ACCESS_EXCLUSIVE;
+
+        /**
+         * Checks whether two transactions can hold the table in this mode and another mode at the same time.
+         *
+         * @param other The other mode.
+         * @return true if the modes conflict, false otherwise.
+         */
+        public boolean conflictsWith(Mode other) {
+            if (this == ACCESS_EXCLUSIVE || other == ACCESS_EXCLUSIVE) {
+                return true;
+            }
+            if (this == SHARED || other == SHARED) {
+                return false;
+            }
+            return this == EXCLUSIVE || other == EXCLUSIVE;
+        }
+    }
+
+    /**
+     * Constructs a lock manager. Table locks are owned by transactions rather than threads, as a transaction
+     * holds its locks from the statement that takes them until it commits or rolls back (two-phase locking).
+     * Each table is assigned to one of the stripes by its name; the stripe's latch guards the lock state of its
+     * tables and its condition wakes the transactions waiting for them, so that transactions locking tables
+     * of different stripes never contend.
+     *
+     * @param stripeCount The number of stripes.
+     * @param deadlockTimeoutMillis How long a transaction waits for a lock before it checks for a deadlock.
+     */
+    public LockManager(int stripeCount, long deadlockTimeoutMillis) {
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.deadlockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadlockTimeoutMillis));
+    }
+
+    /**
+     * Returns the process-wide lock manager. The number of stripes is read from the system property
+     * tinydb.lock.stripes (default 16) and the deadlock timeout from tinydb.lock.deadlockTimeout
+     * (default 50 ms).
+     *
+     * @return The lock manager.
+     */
+    public static LockManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Locks a table of the session's active database for the transaction or statement running on the current
+     * thread. The lock is held until the transaction ends. Waiting for the lock ends after the number of
+     * milliseconds in the session setting LOCK_TIMEOUT, if it is set to more than 0. Statements that run
+     * outside the transaction manager take no locks.
+     *
+     * @param session The session that runs the statement.
+     * @param tableName The name of the table.
+     * @param mode The lock mode.
+     * @throws Exception If the lock times out, or waiting for it would deadlock and the current transaction
+     *                   was chosen as the victim.
+     */
+    public static void lockTable(Session session, String tableName, Mode mode) throws Exception {
+        Snapshot owner = VersionStore.getCurrentSnapshot();
+        if (owner == null) {
+            return;
+        }
+        getInstance().lock(owner, session.getActiveDatabase() + "." + tableName, null, mode,
+                session.getSetting("LOCK_TIMEOUT", 0));
+    }
+
+    /**
+     * Locks a table of the session's active database for a statement that changes its rows. Under row
+     * locking, the table is only locked against statements that change it as a whole, and
+     * {@link #lockRow(Session, TableSchema, String[])} locks every row before it is changed. Optimistic
+     * transactions lock heap tables the same way but take no row locks. LSM tables keep no row versions, so
+     * their writers always lock the whole table.
+     *
+     * @param session The session that runs the statement.
+     * @param tableName The name of the table.
+     * @throws Exception If the lock times out, or waiting for it would deadlock and the current transaction
+     *                   was chosen as the victim.
+     */
+    public static void lockTableForWrite(Session session, String tableName) throws Exception {
+        TableSchema schema = Catalog.getInstance().findTable(
+                new File("tinydb/databases/" + session.getActiveDatabase()), tableName);
+        boolean optimistic = session.getConcurrency() == Session.Concurrency.OPTIMISTIC && schema != null
+                && schema.getEngine() == TableSchema.Engine.HEAP;
+        lockTable(session, tableName, optimistic || (schema != null && isRowLocking(session, schema))
+                ? Mode.ROW_EXCLUSIVE : Mode.EXCLUSIVE);
+    }
+
+    /**
+     * Returns whether the session locks the rows of a table one by one when it changes them: under row
+     * locking, rows of heap tables with a primary key are locked by their key.
+     *
+     * @param session The session that runs the statement.
+     * @param schema The schema of the table.
+     * @return true if the rows are locked, false if the table is locked as a whole or not at all.
+     */
+    public static boolean isRowLocking(Session session, TableSchema schema) {
+        return session.getConcurrency() == Session.Concurrency.ROW && schema.getPrimaryKeyIndex() != -1
+                && schema.getEngine() == TableSchema.Engine.HEAP;
+    }
+
+    /**
+     * Locks a row before the current transaction inserts, changes or deletes it, if the session uses row
+     * locking. Rows are identified by their primary key, so that a row keeps its lock when an update moves
+     * it to another record. The lock is held until the transaction ends.
+     *
+     * @param session The session that runs the statement.
+     * @param schema The schema of the table.
+     * @param row The row values in schema order.
+     * @throws Exception If the lock times out, or waiting for it would deadlock and the current transaction
+     *                   was chosen as the victim.
+     */
+    public static void lockRow(Session session, TableSchema schema, String[] row) throws Exception {
+        Snapshot owner = VersionStore.getCurrentSnapshot();
+        if (owner == null || !isRowLocking(session, schema)) {
+            return;
+        }
+        getInstance().lock(owner, session.getActiveDatabase() + "." + schema.getTableName(),
+                row[schema.getPrimaryKeyIndex()], Mode.EXCLUSIVE, session.getSetting("LOCK_TIMEOUT", 0));
+    }
+
+    /**
+     * Locks a table or a row for a transaction, waiting while other transactions hold it in a conflicting mode.
+     * Waiting transactions are granted the lock in the order they asked for it, except that a transaction
+     * that already holds the table and asks for a stronger mode goes first.
+     *
+     * @param owner The snapshot of the transaction that takes the lock.
+     * @param table The qualified name of the table.
+     * @param row The primary key of the row, or null to lock the table.
+     * @param mode The lock mode.
+     * @param timeoutMillis How long to wait for the lock, or 0 to wait until it is granted or a deadlock is
+     *                      detected.
+     * @throws Exception If the lock times out, or waiting for it would deadlock and the transaction was chosen
+     *                   as the victim.
+     */
+    public void lock(Snapshot owner, String table, String row, Mode mode, long timeoutMillis) throws Exception {
+        String key = row == null ? table.toUpperCase() : table.toUpperCase() + "#" + row;
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+        // Row locks are counted with their table
+        TableStats stats = tableStats.computeIfAbsent(table.toUpperCase(), name -> new TableStats());
+        Request request;
+        stripe.latch.lock();
+        try {
+            LockEntry entry = stripe.entries.computeIfAbsent(key, name -> new LockEntry());
+            if (entry.isGrantable(owner, mode, null)) {
+                grant(entry, owner, key, mode);
+                stats.acquired(0);
+                return;
+            }
+            request = new Request(owner, mode);
+            entry.waiters.add(request);
+        } finally {
+            stripe.latch.unlock();
+        }
+
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        boolean granted = false;
+        try {
+            while (true) {
+                stripe.latch.lock();
+                try {
+                    LockEntry entry = stripe.entries.get(key);
+                    long checkAt = System.nanoTime() + deadlockTimeoutNanos;
+                    if (timeoutMillis > 0 && deadline - checkAt < 0) {
+                        checkAt = deadline;
+                    }
+                    while (!entry.isGrantable(owner, mode, request)) {
+                        long remaining = checkAt - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        stripe.changed.awaitNanos(remaining);
+                    }
+                    if (entry.isGrantable(owner, mode, request)) {
+                        entry.waiters.remove(request);
+                        grant(entry, owner, key, mode);
+                        granted = true;
+                        stats.acquired(System.nanoTime() - started);
+                        return;
+                    }
+                    if (timeoutMillis > 0 && System.nanoTime() - deadline >= 0) {
+                        synchronized (this) {
+                            timeouts++;
+                        }
+                        throw new Exception("Lock timeout: " + describe(owner) + " could not lock "
+                                + (row == null ? "table " + key : "row " + row + " of table " + table.toUpperCase())
+                                + " in " + mode + " mode within " + timeoutMillis + " ms.");
+                    }
+                } finally {
+                    stripe.latch.unlock();
+                }
+                List<Snapshot> cycle = findDeadlock(owner, key, request);
+                if (cycle != null) {
+                    synchronized (this) {
+                        deadlocks++;
+                    }
+                    stats.deadlocked();
+                    StringBuilder message = new StringBuilder("Deadlock detected: ");
+                    for (Snapshot waiter : cycle) {
+                        message.append(describe(waiter)).append(" waits for ");
+                    }
+                    message.append(describe(owner)).append(", so ").append(describe(owner))
+                            .append(" was chosen as the victim.");
+                    throw new Exception(message.toString());
+                }
+            }
+        } finally {
+            if (!granted) {
+                stats.failed(System.nanoTime() - started);
+                stripe.latch.lock();
+                try {
+                    LockEntry entry = stripe.entries.get(key);
+                    if (entry != null) {
+                        entry.waiters.remove(request);
+                        if (entry.isEmpty()) {
+                            stripe.entries.remove(key);
+                        }
+                    }
+                    // Requests queued behind this one may be grantable now
+                    stripe.changed.signalAll();
+                } finally {
+                    stripe.latch.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases every table lock of a transaction or statement that has ended.
+     *
+     * @param owner The snapshot of the transaction or statement.
+     */
+    public void releaseAll(Snapshot owner) {
+        Set<String> tables = owned.remove(owner);
+        if (tables == null) {
+            return;
+        }
+        for (String key : tables) {
+            Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+            stripe.latch.lock();
+            try {
+                LockEntry entry = stripe.entries.get(key);
+                if (entry != null) {
+                    entry.holders.remove(owner);
+                    if (entry.isEmpty()) {
+                        stripe.entries.remove(key);
+                    }
+                    stripe.changed.signalAll();
+                }
+            } finally {
+                stripe.latch.unlock();
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of validating an optimistic transaction when it commits.
+     *
+     * @param succeeded true if the transaction committed, false if it was rolled back because of a conflict.
+     */
+    public synchronized void recordValidation(boolean succeeded) {
+        validations++;
+        if (!succeeded) {
+            validationFailures++;
+        }
+    }
+
+    /**
+     * Returns the number of lock requests that are waiting to be granted.
+     *
+     * @return The number of waiting requests.
+     */
+    public int getWaitingCount() {
+        int waiting = 0;
+        for (Stripe stripe : stripes) {
+            stripe.latch.lock();
+            try {
+                for (LockEntry entry : stripe.entries.values()) {
+                    waiting += entry.waiters.size();
+                }
+            } finally {
+                stripe.latch.unlock();
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * Returns a summary of the held locks, deadlocks and the tables whose locks were waited for the longest.
+     *
+     * @return The lock manager statistics.
+     */
+    public String getStats() {
+        int held = 0;
+        int lockedKeys = 0;
+        for (Stripe stripe : stripes) {
+            stripe.latch.lock();
+            try {
+                for (LockEntry entry : stripe.entries.values()) {
+                    held += entry.holders.size();
+                    lockedKeys += entry.holders.isEmpty() ? 0 : 1;
+                }
+            } finally {
+                stripe.latch.unlock();
+            }
+        }
+        StringBuilder stats = new StringBuilder();
+        stats.append("Stripes: ").append(stripes.length).append(", held locks: ").append(held).append(" on ")
+                .append(lockedKeys).append(" tables and rows, waiting requests: ").append(getWaitingCount())
+                .append("\n");
+        synchronized (this) {
+            stats.append("Deadlocks: ").append(deadlocks).append(", lock timeouts: ").append(timeouts).append("\n");
+            stats.append("Optimistic commits validated: ").append(validations).append(", failed and retryable: ")
+                    .append(validationFailures);
+        }
+        List<Map.Entry<String, TableStats>> tables = new ArrayList<>(tableStats.entrySet());
+        tables.sort((a, b) -> Long.compare(b.getValue().getWaitNanos(), a.getValue().getWaitNanos()));
+        for (Map.Entry<String, TableStats> table : tables) {
+            stats.append("\n").append(table.getKey()).append(": ").append(table.getValue());
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Grants a lock to a transaction, keeping the stronger mode if it already holds the table.
+     *
+     * @param entry The lock state of the table.
+     * @param owner The snapshot of the transaction.
+     * @param key The key of the table or row.
+     * @param mode The granted mode.
+     */
+    private void grant(LockEntry entry, Snapshot owner, String key, Mode mode) {
+        entry.holders.merge(owner, mode, (held, requested) -> held.compareTo(requested) >= 0 ? held : requested);
+        owned.computeIfAbsent(owner, snapshot -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    /**
+     * Looks for a cycle in the waits-for graph that passes through a waiting transaction. The graph is built
+     * while every stripe is latched, so it is consistent. If a cycle is found, the transaction's request is
+     * withdrawn before the stripes are released, so that the other transactions of the cycle do not pick a
+     * victim of their own.
+     *
+     * @param owner The snapshot of the waiting transaction.
+     * @param key The key of the table or row it waits for.
+     * @param request Its request.
+     * @return The transactions of the cycle, starting with the waiting transaction, or null if there is none.
+     */
+    private List<Snapshot> findDeadlock(Snapshot owner, String key, Request request) {
+        for (Stripe stripe : stripes) {
+            stripe.latch.lock();
+        }
+        try {
+            Map<Snapshot, Set<Snapshot>> waitsFor = new IdentityHashMap<>();
+            for (Stripe stripe : stripes) {
+                for (LockEntry entry : stripe.entries.values()) {
+                    for (Request waiter : entry.waiters) {
+                        Set<Snapshot> blockers = waitsFor.computeIfAbsent(waiter.owner, snapshot -> new HashSet<>());
+                        blockers.addAll(entry.getBlockers(waiter));
+                    }
+                }
+            }
+            List<Snapshot> path = new ArrayList<>();
+            if (!findPath(waitsFor, owner, owner, path, new HashSet<>())) {
+                return null;
+            }
+            Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+            stripe.entries.get(key).waiters.remove(request);
+            return path;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].latch.unlock();
+            }
+        }
+    }
+
+    /**
+     * Searches the waits-for graph depth first for a path from a transaction back to the waiting transaction.
+     *
+     * @param waitsFor The transactions each waiting transaction waits for.
+     * @param target The waiting transaction.
+     * @param current The transaction the path has reached.
+     * @param path The transactions on the path so far.
+     * @param visited The transactions already searched.
+     * @return true if a path was found, in which case it is left in path, false otherwise.
+     */
+    private boolean findPath(Map<Snapshot, Set<Snapshot>> waitsFor, Snapshot target, Snapshot current,
+                             List<Snapshot> path, Set<Snapshot> visited) {
+        if (!visited.add(current)) {
+            return false;
+        }
+        path.add(current);
+        for (Snapshot blocker : waitsFor.getOrDefault(current, Set.of())) {
+            if (blocker == target || findPath(waitsFor, target, blocker, path, visited)) {
+                return true;
+            }
+        }
+        path.remove(path.size() - 1);
+        return false;
+    }
+
+    /**
+     * Describes a lock owner for error messages.
+     *
+     * @param owner The snapshot of a transaction or statement.
+     * @return The description.
+     */
+    private static String describe(Snapshot owner) {
+        return owner.getTransactionId() == 0 ? "a read-only statement" : "transaction " + owner.getTransactionId();
+    }
+
+    /**
+     * A group of tables and rows whose lock state is guarded by the same latch.
+     */
+    private static class Stripe {
+        private final ReentrantLock latch = new ReentrantLock();
+        private final Condition changed = latch.newCondition();
+        private final Map<String, LockEntry> entries = new HashMap<>();
+    }
+
+    /**
+     * A request for a lock that has not been granted yet.
+     */
+    private static class Request {
+        private final Snapshot owner;
+        private final Mode mode;
+
+        /**
+         * Constructs a lock request.
+         *
+         * @param owner The snapshot of the transaction that waits for the lock.
+         * @param mode The requested mode.
+         */
+        private Request(Snapshot owner, Mode mode) {
+            this.owner = owner;
+            this.mode = mode;
+        }
+    }
+
+    /**
+     * The lock state of a table or row: the transactions that hold it and the requests waiting for it, in order.
+     */
+    private static class LockEntry {
+        private final Map<Snapshot, Mode> holders = new IdentityHashMap<>();
+        private final List<Request> waiters = new ArrayList<>();
+
+        /**
+         * Checks whether a lock can be granted now.
+         *
+         * @param owner The snapshot of the transaction that asks for the lock.
+         * @param mode The requested mode.
+         * @param request The queued request, or null if the transaction has not queued yet.
+         * @return true if the lock can be granted, false otherwise.
+         */
+        private boolean isGrantable(Snapshot owner, Mode mode, Request request) {
+            Mode held = holders.get(owner);
+            if (held != null && held.compareTo(mode) >= 0) {
+                return true;
+            }
+            for (Map.Entry<Snapshot, Mode> holder : holders.entrySet()) {
+                if (holder.getKey() != owner && holder.getValue().conflictsWith(mode)) {
+                    return false;
+                }
+            }
+            if (held != null) {
+                return true;
+            }
+            for (Request waiter : waiters) {
+                if (waiter == request) {
+                    break;
+                }
+                if (waiter.owner != owner && waiter.mode.conflictsWith(mode)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the transactions a waiting request waits for: the holders of conflicting modes and, unless
+         * the request upgrades a held lock, the conflicting requests queued before it.
+         *
+         * @param request The waiting request.
+         * @return The blocking transactions.
+         */
+        private Set<Snapshot> getBlockers(Request request) {
+            Set<Snapshot> blockers = new HashSet<>();
+            for (Map.Entry<Snapshot, Mode> holder : holders.entrySet()) {
+                if (holder.getKey() != request.owner && holder.getValue().conflictsWith(request.mode)) {
+                    blockers.add(holder.getKey());
+                }
+            }
+            if (!holders.containsKey(request.owner)) {
+                Iterator<Request> queued = waiters.iterator();
+                while (queued.hasNext()) {
+                    Request waiter = queued.next();
+                    if (waiter == request) {
+                        break;
+                    }
+                    if (waiter.owner != request.owner && waiter.mode.conflictsWith(request.mode)) {
+                        blockers.add(waiter.owner);
+                    }
+                }
+            }
+            return blockers;
+        }
+
+        /**
+         * Checks whether nobody holds or waits for the table.
+         *
+         * @return true if the entry can be dropped, false otherwise.
+         */
+        private boolean isEmpty() {
+            return holders.isEmpty() && waiters.isEmpty();
+        }
+    }
+
+    /**
+     * Lock statistics of a table.
+     */
+    private static class TableStats {
+        private long acquisitions;
+        private long waits;
+        private long failures;
+        private long deadlocks;
+        private long waitNanos;
+        private long maxWaitNanos;
+
+        /**
+         * Records a granted lock.
+         *
+         * @param waitedNanos How long the transaction waited for it, or 0 if it was granted immediately.
+         */
+        private synchronized void acquired(long waitedNanos) {
+            acquisitions++;
+            if (waitedNanos > 0) {
+                waited(waitedNanos);
+            }
+        }
+
+        /**
+         * Records a lock request that timed out or deadlocked.
+         *
+         * @param waitedNanos How long the transaction waited before giving up.
+         */
+        private synchronized void failed(long waitedNanos) {
+            failures++;
+            waited(waitedNanos);
+        }
+
+        /**
+         * Records a lock request whose transaction was chosen as a deadlock victim.
+         */
+        private synchronized void deadlocked() {
+            deadlocks++;
+        }
+
+        /**
+         * Records the time a transaction spent waiting for the table.
+         *
+         * @param waitedNanos The wait time.
+         */
+        private void waited(long waitedNanos) {
+            waits++;
+            waitNanos += waitedNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitedNanos);
+        }
+
+        /**
+         * Returns the total time transactions spent waiting for the table.
+         *
+         * @return The wait time in nanoseconds.
+         */
+        private synchronized long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * Returns a summary of the lock statistics of the table.
+         *
+         * @return The statistics.
+         */
+        @Override
+        public synchronized String toString() {
+            return acquisitions + " granted, " + waits + " waited (total " + TimeUnit.NANOSECONDS.toMillis(waitNanos)
+                    + " ms, max " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms), " + failures
+                    + " failed, " + deadlocks + " deadlocks";
+        }
+    }
+}
@@ -55,11 +55,12 @@ public class LogManager {
     }
 
     /**
-     * Writes a log entry to the specified log file.
+     * Writes a log entry to the specified log file. Entries written by concurrent sessions are appended one
+     * at a time, so that they do not interleave.
      * @param logFileName The name of the log file.
      * @param logEntry The log entry to write.
      */
-    private static void writeLog(String logFileName, String logEntry) {
+    private static synchronized void writeLog(String logFileName, String logEntry) {
         String logFilePath = "logs/" + logFileName;
         createLogDirectoryIfNotExists("logs");
 
@@ -0,0 +1,435 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class LsmTable implements Table {
+    private final TableSchema schema;
+    private final LsmTree tree;
+    private final int keyColumn;
+    private final LsmTree.Batch batch;
+    private final List<Object> keys = new ArrayList<>();
+    private final ByteArrayOutputStream logRecords = new ByteArrayOutputStream();
+    private boolean closed;
+
+    /**
+     * Constructs an LsmTable over the shared tree of the table.
+     * Rows are stored by primary key, so record identifiers handed out by this table are positions in a list
+     * of the keys it has returned; they are only meaningful until the table is closed.
+     * A statement that runs in a transaction writes to the batch of the transaction instead of the tree, and
+     * reads its batch on top of the tree; the batch reaches the tree when the transaction commits.
+     *
+     * @param schema The schema of the table.
+     * @param tree The acquired tree.
+     * @param batch The changes of the transaction the statement runs in, or null to write to the tree directly.
+     */
+    private LsmTable(TableSchema schema, LsmTree tree, LsmTree.Batch batch) {
+        this.schema = schema;
+        this.tree = tree;
+        this.keyColumn = schema.getPrimaryKeyIndex();
+        this.batch = batch;
+    }
+
+    /**
+     * Opens an LSM table for one statement.
+     *
+     * @param dbDir The directory of the database.
+     * @param schema The schema of the table.
+     * @return The open table.
+     * @throws Exception If the table has no primary key or its files cannot be read.
+     */
+    public static LsmTable open(File dbDir, TableSchema schema) throws Exception {
+        if (schema.getPrimaryKeyIndex() == -1) {
+            throw new Exception("LSM table " + schema.getTableName() + " has no primary key.");
+        }
+        LsmTree tree = LsmTree.open(new File(dbDir, schema.getTableName() + ".tbl"),
+                schema.getColumnType(schema.getPrimaryKeyIndex()));
+        tree.acquire();
+        Snapshot snapshot = VersionStore.getCurrentSnapshot();
+        boolean transactional = snapshot != null && snapshot.getTransactionId() != 0;
+        return new LsmTable(schema, tree, transactional ? snapshot.getLsmBatch(tree, schema.getTableName()) : null);
+    }
+
+    /**
+     * Returns the schema of the table.
+     *
+     * @return The table schema.
+     */
+    @Override
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns the shared tree holding the rows of the table.
+     *
+     * @return The tree.
+     */
+    public LsmTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Inserts a row, rejecting it if its primary key value is missing or already present. The bloom filters
+     * of the SSTables make the uniqueness check cheap for new keys.
+     *
+     * @param row The row values in schema order.
+     * @return The identifier of the new record.
+     * @throws Exception If the primary key is missing or not unique, or the row cannot be encoded.
+     */
+    @Override
+    public long insert(String[] row) throws Exception {
+        byte[] record = RowCodec.encode(schema, row);
+        Object key = KeyCodec.toKey(tree.getKeyType(), row[keyColumn]);
+        if (key == null) {
+            throw new Exception("Primary key value cannot be null in table " + schema.getTableName());
+        }
+        if (get(key) != null) {
+            throw new Exception("Primary key value is not unique in table " + schema.getTableName());
+        }
+        if (batch != null && tree.get(key) == null) {
+            batch.markInserted(key);
+        }
+        put(key, record);
+        return handle(key);
+    }
+
+    /**
+     * Reads the encoded record of a row.
+     *
+     * @param recordId The identifier of the record.
+     * @return The record bytes, or null if the record does not exist.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public byte[] readRecord(long recordId) throws IOException {
+        Object key = getKey(recordId);
+        return key == null ? null : get(key);
+    }
+
+    /**
+     * Reads and decodes a row.
+     *
+     * @param recordId The identifier of the record.
+     * @return The row values in schema order, or null if the record does not exist.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public String[] read(long recordId) throws IOException {
+        byte[] record = readRecord(recordId);
+        return record == null ? null : RowCodec.decode(schema, record);
+    }
+
+    /**
+     * Deletes a row by writing a deletion marker for its key.
+     *
+     * @param recordId The identifier of the record.
+     * @return true if the record existed, false otherwise.
+     * @throws Exception If an I/O error occurs.
+     */
+    @Override
+    public boolean delete(long recordId) throws Exception {
+        if (readRecord(recordId) == null) {
+            return false;
+        }
+        put(getKey(recordId), LsmTree.TOMBSTONE);
+        return true;
+    }
+
+    /**
+     * Replaces a row with new values by writing the new version under its key.
+     *
+     * @param recordId The identifier of the record.
+     * @param row The new row values in schema order.
+     * @return The identifier of the record, which does not change.
+     * @throws Exception If the row does not exist, its primary key changes or it cannot be encoded.
+     */
+    @Override
+    public long update(long recordId, String[] row) throws Exception {
+        byte[] record = RowCodec.encode(schema, row);
+        if (readRecord(recordId) == null) {
+            throw new Exception("Record " + recordId + " does not exist in table " + schema.getTableName());
+        }
+        Object key = getKey(recordId);
+        if (KeyCodec.compare(key, KeyCodec.toKey(tree.getKeyType(), row[keyColumn])) != 0) {
+            throw new Exception("Primary key value cannot be changed in table " + schema.getTableName());
+        }
+        put(key, record);
+        return recordId;
+    }
+
+    /**
+     * Looks up the record holding a primary key value.
+     *
+     * @param value The primary key value.
+     * @return The matching record identifiers, empty if there is no such row.
+     * @throws Exception If the value does not match the key type.
+     */
+    @Override
+    public List<Long> findByPrimaryKey(String value) throws Exception {
+        Object key = KeyCodec.toKey(tree.getKeyType(), value);
+        if (key == null || get(key) == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(handle(key));
+    }
+
+    /**
+     * Finds the record whose primary key equals a value with a point lookup.
+     *
+     * @param columnIndex The position of the column.
+     * @param value The value to look up.
+     * @return The matching record identifiers, or null if the column is not the primary key or the value does
+     *         not match the key type, in which case the caller has to scan the table.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public List<Long> findEqual(int columnIndex, String value) throws IOException {
+        if (columnIndex != keyColumn) {
+            return null;
+        }
+        try {
+            return findByPrimaryKey(value);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the records whose numeric primary key satisfies a range comparison by merging the sorted runs of
+     * the tree.
+     *
+     * @param columnIndex The position of the column.
+     * @param operator The comparison operator (&lt;, &lt;=, &gt; or &gt;=).
+     * @param value The numeric value to compare against.
+     * @return The candidate record identifiers in key order, or null if the column is not a numeric primary key.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public List<Long> findRange(int columnIndex, String operator, String value) throws IOException {
+        if (columnIndex != keyColumn || tree.getKeyType() == ColumnType.STRING) {
+            return null;
+        }
+        Object key = Table.toRangeKey(tree.getKeyType(), operator, value);
+        if (key == null) {
+            return null;
+        }
+        boolean lower = operator.startsWith(">");
+        Iterator<Map.Entry<Object, byte[]>> entries = lower ? range(key, true, null, false)
+                : range(null, false, key, true);
+        List<Long> recordIds = new ArrayList<>();
+        while (entries.hasNext()) {
+            recordIds.add(handle(entries.next().getKey()));
+        }
+        return recordIds;
+    }
+
+    /**
+     * Starts a scan over all rows in primary key order.
+     *
+     * @return A scan positioned before the first row.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public RecordScan scan() throws IOException {
+        return new KeyScan(range(null, false, null, false));
+    }
+
+    /**
+     * Starts a scan over the rows whose primary key follows a key returned by an earlier scan.
+     *
+     * @param position The primary key to resume after.
+     * @return A scan positioned after the key.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public RecordScan scanAfter(Object position) throws IOException {
+        return new KeyScan(range(position, false, null, false));
+    }
+
+    /**
+     * Rejects secondary indexes, which would have to refer to rows by primary key rather than by location.
+     *
+     * @param definition The index definition.
+     * @param indexFile The index file to create.
+     * @param columnIndex The position of the indexed column.
+     * @return Never returns normally.
+     * @throws Exception Always.
+     */
+    @Override
+    public Index buildIndex(IndexDefinition definition, File indexFile, int columnIndex) throws Exception {
+        throw new Exception("Secondary indexes are not supported on LSM table " + schema.getTableName() + ".");
+    }
+
+    /**
+     * Writes the log records of this statement and releases the tree.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (logRecords.size() > 0) {
+                tree.appendLog(logRecords.toByteArray());
+            }
+        } finally {
+            tree.release();
+        }
+    }
+
+    /**
+     * Looks up the value of a key as the statement sees it.
+     *
+     * @param key The key.
+     * @return The value, or null if the key does not exist or was deleted.
+     * @throws IOException If an I/O error occurs.
+     */
+    private byte[] get(Object key) throws IOException {
+        byte[] value = batch == null ? null : batch.get(key);
+        if (value == null) {
+            return tree.get(key);
+        }
+        return value == LsmTree.TOMBSTONE ? null : value;
+    }
+
+    /**
+     * Iterates over the live entries in a key range as the statement sees them.
+     *
+     * @param low The lower bound, or null for no lower bound.
+     * @param lowInclusive Whether an entry equal to the lower bound is included.
+     * @param high The upper bound, or null for no upper bound.
+     * @param highInclusive Whether an entry equal to the upper bound is included.
+     * @return An iterator over the entries.
+     * @throws IOException If an I/O error occurs.
+     */
+    private Iterator<Map.Entry<Object, byte[]>> range(Object low, boolean lowInclusive, Object high,
+                                                      boolean highInclusive) throws IOException {
+        return tree.range(batch == null ? null : batch.getEntries(), low, lowInclusive, high, highInclusive);
+    }
+
+    /**
+     * Stores a new version of a key: in the batch of the transaction, or else in the memtable, queueing its log
+     * record.
+     *
+     * @param key The key.
+     * @param value The encoded row, or {@link LsmTree#TOMBSTONE}.
+     */
+    private void put(Object key, byte[] value) {
+        if (batch != null) {
+            batch.put(key, value);
+            return;
+        }
+        tree.put(key, value);
+        byte[] record = tree.encodeLogRecord(key, value);
+        logRecords.write(record, 0, record.length);
+    }
+
+    /**
+     * Returns the record identifier handed out for a key.
+     *
+     * @param key The key.
+     * @return The record identifier.
+     */
+    private long handle(Object key) {
+        keys.add(key);
+        return keys.size() - 1;
+    }
+
+    /**
+     * Returns the key behind a record identifier.
+     *
+     * @param recordId The record identifier.
+     * @return The key, or null if the identifier was not handed out by this table.
+     */
+    private Object getKey(long recordId) {
+        return recordId >= 0 && recordId < keys.size() ? keys.get((int) recordId) : null;
+    }
+
+    /**
+     * A forward-only cursor over the merged entries of the tree. Record identifiers are handed out only for
+     * the rows a caller asks for.
+     */
+    private class KeyScan implements RecordScan {
+        private final Iterator<Map.Entry<Object, byte[]>> entries;
+        private Map.Entry<Object, byte[]> entry;
+        private long recordId = -1;
+
+        /**
+         * Constructs a scan over merged entries.
+         *
+         * @param entries The live entries in key order.
+         */
+        private KeyScan(Iterator<Map.Entry<Object, byte[]>> entries) {
+            this.entries = entries;
+        }
+
+        /**
+         * Advances to the next row.
+         *
+         * @return true if a row is available, false at the end of the table.
+         */
+        @Override
+        public boolean next() {
+            entry = entries.hasNext() ? entries.next() : null;
+            recordId = -1;
+            return entry != null;
+        }
+
+        /**
+         * Returns the identifier of the current row.
+         *
+         * @return The record identifier.
+         */
+        @Override
+        public long getRecordId() {
+            if (recordId == -1) {
+                recordId = handle(entry.getKey());
+            }
+            return recordId;
+        }
+
+        /**
+         * Returns the primary key of the current row, which stays valid after the table is closed, unlike its
+         * record identifier.
+         *
+         * @return The primary key.
+         */
+        @Override
+        public Object getPosition() {
+            return entry.getKey();
+        }
+
+        /**
+         * Returns a buffer holding the encoded current row.
+         *
+         * @return The record buffer.
+         */
+        @Override
+        public ByteBuffer getBuffer() {
+            return ByteBuffer.wrap(entry.getValue());
+        }
+
+        /**
+         * Returns the offset of the current row within its buffer.
+         *
+         * @return Always 0.
+         */
+        @Override
+        public int getOffset() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,1009 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class LsmTree {
+    /** The value stored for a deleted key until compaction drops it. */
+    public static final byte[] TOMBSTONE = new byte[0];
+
+    private static final int MAGIC = 0x5444424C; // "TDBL"
+    private static final int FORMAT_VERSION = 1;
+    private static final long DEFAULT_MEMTABLE_KB = 4096;
+    private static final int DEFAULT_COMPACTION_TABLES = 4;
+    private static final int ENTRY_OVERHEAD = 48;
+    private static final Map<String, LsmTree> trees = new HashMap<>();
+    private static final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tinydb-lsm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File manifestFile;
+    private final File directory;
+    private final ColumnType keyType;
+    private final Object fileKey;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong memtableBytes = new AtomicLong();
+    private final Object logLock = new Object();
+    private final Object forceLock = new Object();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private volatile State state;
+    private long nextFileNumber;
+    private long minLogNumber;
+    private long activeLogNumber;
+    private FileChannel log;
+    private long appendedBytes;
+    private long forcedBytes;
+    private boolean flushPending;
+    private boolean compactionPending;
+    private boolean dropped;
+
+    /**
+     * The memtables and SSTables readers see. Replaced as a whole when a memtable is frozen or flushed, or
+     * when tables are compacted.
+     */
+    private static final class State {
+        private final ConcurrentSkipListMap<Object, byte[]> memtable;
+        private final NavigableMap<Object, byte[]> immutable;
+        private final List<SSTable> tables;
+
+        /**
+         * Constructs a State.
+         *
+         * @param memtable The memtable receiving writes.
+         * @param immutable The frozen memtable being flushed, or null.
+         * @param tables The SSTables, newest first.
+         */
+        private State(ConcurrentSkipListMap<Object, byte[]> memtable, NavigableMap<Object, byte[]> immutable, List<SSTable> tables) {
+            this.memtable = memtable;
+            this.immutable = immutable;
+            this.tables = Collections.unmodifiableList(tables);
+        }
+    }
+
+    /**
+     * The changes a transaction has made to a tree. They are kept out of the memtable, where every statement
+     * would see them, until the transaction commits; a transaction that rolls back just drops them.
+     */
+    public static final class Batch {
+        private final LsmTree tree;
+        private final String tableName;
+        private final ConcurrentSkipListMap<Object, byte[]> entries = new ConcurrentSkipListMap<>(KeyCodec::compare);
+        private final Set<Object> inserted = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Constructs an empty batch.
+         *
+         * @param tree The tree the changes are made to.
+         * @param tableName The name of the table, for error messages.
+         */
+        Batch(LsmTree tree, String tableName) {
+            this.tree = tree;
+            this.tableName = tableName;
+        }
+
+        /**
+         * Returns the value the transaction has written for a key.
+         *
+         * @param key The key.
+         * @return The encoded row, {@link #TOMBSTONE} if the transaction deleted the key, or null if it has not
+         *         written the key.
+         */
+        public byte[] get(Object key) {
+            return entries.get(key);
+        }
+
+        /**
+         * Records a new value of a key.
+         *
+         * @param key The key.
+         * @param value The encoded row, or {@link #TOMBSTONE} to delete the key.
+         */
+        public void put(Object key, byte[] value) {
+            entries.put(key, value);
+        }
+
+        /**
+         * Records that the transaction inserted a key that no committed row held, so that the commit fails if
+         * another transaction has committed a row with the key in the meantime.
+         *
+         * @param key The key.
+         */
+        public void markInserted(Object key) {
+            inserted.add(key);
+        }
+
+        /**
+         * Returns the values the transaction has written, in key order.
+         *
+         * @return The entries; deleted keys map to {@link #TOMBSTONE}.
+         */
+        public NavigableMap<Object, byte[]> getEntries() {
+            return entries;
+        }
+    }
+
+    /**
+     * Constructs an LsmTree over the files of a table.
+     * The table file is the manifest listing the SSTables of the table, newest first. The SSTables and the
+     * logs of the memtable live in a directory next to it. Writes go to a sorted in-memory memtable and to a log;
+     * once the memtable is large enough it is flushed to a new SSTable in the background, and runs of similarly
+     * sized SSTables are merged by size-tiered compaction.
+     *
+     * @param manifestFile The table file.
+     * @param keyType The type of the primary key.
+     * @param fileKey The identity of the data directory on disk, which the manifest rewrites do not change.
+     */
+    private LsmTree(File manifestFile, ColumnType keyType, Object fileKey) {
+        this.manifestFile = manifestFile;
+        this.directory = getDirectory(manifestFile);
+        this.keyType = keyType;
+        this.fileKey = fileKey;
+    }
+
+    /**
+     * Creates the empty files of a new LSM table.
+     *
+     * @param tableFile The table file to create.
+     * @throws IOException If the table already exists or its files cannot be written.
+     */
+    public static void create(File tableFile) throws IOException {
+        if (tableFile.exists()) {
+            throw new IOException("Table file already exists: " + tableFile.getPath());
+        }
+        synchronized (trees) {
+            LsmTree stale = trees.remove(tableFile.getAbsolutePath());
+            if (stale != null) {
+                stale.closeFiles();
+            }
+        }
+        File directory = getDirectory(tableFile);
+        deleteDirectory(directory);
+        if (!directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory.getPath());
+        }
+        LsmTree tree = new LsmTree(tableFile, null, null);
+        tree.nextFileNumber = 1;
+        tree.writeManifest(Collections.emptyList());
+    }
+
+    /**
+     * Returns the process-wide tree of an LSM table, recovering it from disk on first use.
+     *
+     * @param tableFile The table file.
+     * @param keyType The type of the primary key.
+     * @return The tree.
+     * @throws IOException If the table files cannot be read.
+     */
+    public static LsmTree open(File tableFile, ColumnType keyType) throws IOException {
+        synchronized (trees) {
+            String path = tableFile.getAbsolutePath();
+            Object fileKey = BufferPool.getFileKey(getDirectory(tableFile));
+            LsmTree tree = trees.get(path);
+            if (tree != null && !Objects.equals(tree.fileKey, fileKey)) {
+                // The table was dropped and recreated behind our back
+                trees.remove(path);
+                tree.closeFiles();
+                tree = null;
+            }
+            if (tree == null) {
+                tree = new LsmTree(tableFile, keyType, fileKey);
+                tree.recover();
+                trees.put(path, tree);
+            }
+            return tree;
+        }
+    }
+
+    /**
+     * Deletes the files of an LSM table. Waits until no statement is using the table.
+     *
+     * @param tableFile The table file.
+     * @return true if the table file was deleted, false otherwise.
+     * @throws IOException If the files cannot be closed.
+     */
+    public static boolean drop(File tableFile) throws IOException {
+        close(tableFile);
+        deleteDirectory(getDirectory(tableFile));
+        return tableFile.delete();
+    }
+
+    /**
+     * Closes the tree of an LSM table and forgets it, so that the next statement recovers the table from its
+     * files as after a restart. Waits until no statement is using the table. A flush or compaction that is
+     * still running is abandoned; its output is removed by the recovery.
+     *
+     * @param tableFile The table file.
+     * @throws IOException If the files cannot be closed.
+     */
+    static void close(File tableFile) throws IOException {
+        LsmTree tree;
+        synchronized (trees) {
+            tree = trees.remove(tableFile.getAbsolutePath());
+        }
+        if (tree != null) {
+            tree.lock.writeLock().lock();
+            try {
+                tree.dropped = true;
+                tree.closeFiles();
+            } finally {
+                tree.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the directory holding the SSTables and logs of a table.
+     *
+     * @param tableFile The table file.
+     * @return The data directory.
+     */
+    public static File getDirectory(File tableFile) {
+        String name = tableFile.getName();
+        return new File(tableFile.getParentFile(), name.substring(0, name.length() - ".tbl".length()) + ".lsm");
+    }
+
+    /**
+     * Starts using the tree for a statement. Flushes and compactions do not swap files while a statement
+     * is using the tree.
+     *
+     * @throws IOException If the table was dropped.
+     */
+    public void acquire() throws IOException {
+        lock.readLock().lock();
+        if (dropped) {
+            lock.readLock().unlock();
+            throw new IOException("Table file does not exist: " + manifestFile.getPath());
+        }
+    }
+
+    /**
+     * Stops using the tree for a statement and schedules a flush if the memtable has grown past
+     * tinydb.lsm.memtable.kb (default 4096 KB).
+     */
+    public void release() {
+        lock.readLock().unlock();
+        if (memtableBytes.get() >= getMemtableLimit()) {
+            synchronized (this) {
+                if (flushPending) {
+                    return;
+                }
+                flushPending = true;
+            }
+            background.submit(this::flush);
+        }
+    }
+
+    /**
+     * Returns the type of the keys.
+     *
+     * @return The key type.
+     */
+    public ColumnType getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * Looks up the value of a key, from the newest data to the oldest.
+     *
+     * @param key The key.
+     * @return The value, or null if the key does not exist or was deleted.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] get(Object key) throws IOException {
+        State current = state;
+        byte[] value = current.memtable.get(key);
+        if (value == null && current.immutable != null) {
+            value = current.immutable.get(key);
+        }
+        for (int i = 0; value == null && i < current.tables.size(); i++) {
+            value = current.tables.get(i).get(key);
+        }
+        return value == TOMBSTONE ? null : value;
+    }
+
+    /**
+     * Stores the value of a key in the memtable. The caller writes the matching log record with
+     * {@link #appendLog(byte[])} before it releases the tree.
+     *
+     * @param key The key.
+     * @param value The encoded row, or {@link #TOMBSTONE} to delete the key.
+     */
+    public void put(Object key, byte[] value) {
+        state.memtable.put(key, value);
+        memtableBytes.addAndGet(KeyCodec.size(keyType, key) + value.length + ENTRY_OVERHEAD);
+    }
+
+    /**
+     * Encodes the log record of a put.
+     *
+     * @param key The key.
+     * @param value The encoded row, or {@link #TOMBSTONE} to delete the key.
+     * @return The log record.
+     */
+    public byte[] encodeLogRecord(Object key, byte[] value) {
+        boolean tombstone = value == TOMBSTONE;
+        int keySize = KeyCodec.size(keyType, key);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + keySize + 4 + (tombstone ? 0 : value.length));
+        buffer.putInt(buffer.capacity() - 4);
+        KeyCodec.write(keyType, buffer, 4, key);
+        buffer.position(4 + keySize);
+        buffer.putInt(tombstone ? -1 : value.length);
+        if (!tombstone) {
+            buffer.put(value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Appends log records to the log of the active memtable and forces them to disk before returning, so that
+     * the changes survive a crash once the statement or transaction that made them has finished. Writers that
+     * append while a force is running share the next one, as with the group commit of the write-ahead log.
+     *
+     * @param records The encoded records.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void appendLog(byte[] records) throws IOException {
+        long end;
+        synchronized (logLock) {
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            appendedBytes += records.length;
+            end = appendedBytes;
+        }
+        synchronized (forceLock) {
+            if (forcedBytes >= end) {
+                return;
+            }
+            FileChannel target;
+            long appended;
+            synchronized (logLock) {
+                target = log;
+                appended = appendedBytes;
+            }
+            target.force(false);
+            forcedBytes = appended;
+        }
+    }
+
+    /**
+     * Iterates over the live entries in a key range in ascending key order, merging the memtables and all
+     * SSTables. The newest value of a key wins and deleted keys are skipped.
+     *
+     * @param low The lower bound, or null for no lower bound.
+     * @param lowInclusive Whether an entry equal to the lower bound is included.
+     * @param high The upper bound, or null for no upper bound.
+     * @param highInclusive Whether an entry equal to the upper bound is included.
+     * @return An iterator over the entries.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Iterator<Map.Entry<Object, byte[]>> range(Object low, boolean lowInclusive, Object high, boolean highInclusive) throws IOException {
+        return range(null, low, lowInclusive, high, highInclusive);
+    }
+
+    /**
+     * Iterates over the live entries in a key range as a transaction sees them: its own uncommitted changes
+     * on top of the committed entries.
+     *
+     * @param pending The uncommitted changes of the transaction, or null if it has none.
+     * @param low The lower bound, or null for no lower bound.
+     * @param lowInclusive Whether an entry equal to the lower bound is included.
+     * @param high The upper bound, or null for no upper bound.
+     * @param highInclusive Whether an entry equal to the upper bound is included.
+     * @return An iterator over the entries.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Iterator<Map.Entry<Object, byte[]>> range(NavigableMap<Object, byte[]> pending, Object low, boolean lowInclusive,
+                                                     Object high, boolean highInclusive) throws IOException {
+        State current = state;
+        List<Iterator<Map.Entry<Object, byte[]>>> sources = new ArrayList<>();
+        if (pending != null) {
+            sources.add((low == null ? pending : pending.tailMap(low, lowInclusive)).entrySet().iterator());
+        }
+        sources.add((low == null ? current.memtable : current.memtable.tailMap(low, lowInclusive)).entrySet().iterator());
+        if (current.immutable != null) {
+            sources.add((low == null ? current.immutable : current.immutable.tailMap(low, lowInclusive)).entrySet().iterator());
+        }
+        for (SSTable table : current.tables) {
+            sources.add(table.iterator(low, lowInclusive));
+        }
+        return new MergeIterator(sources, true, high, highInclusive);
+    }
+
+    /**
+     * Applies the changes a transaction has made to LSM tables when it commits. The trees are locked in a fixed
+     * order and every key the transaction inserted is checked before any change is applied, so either all
+     * changes are applied or, if another transaction has committed one of the keys in the meantime, none. The
+     * changes to each tree are logged in a single write before they reach its memtable.
+     *
+     * @param batches The changes of the transaction, one batch per tree.
+     * @throws Exception If a table was dropped, an inserted key is no longer unique or a log cannot be written.
+     */
+    public static void commit(Collection<Batch> batches) throws Exception {
+        List<Batch> pending = new ArrayList<>();
+        for (Batch batch : batches) {
+            if (!batch.entries.isEmpty()) {
+                pending.add(batch);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        pending.sort(Comparator.comparing(batch -> batch.tree.manifestFile.getAbsolutePath()));
+        List<LsmTree> acquired = new ArrayList<>();
+        try {
+            for (Batch batch : pending) {
+                batch.tree.acquire();
+                acquired.add(batch.tree);
+                batch.tree.commitLock.lock();
+            }
+            for (Batch batch : pending) {
+                for (Object key : batch.inserted) {
+                    if (batch.tree.get(key) != null) {
+                        throw new Exception("Primary key value is not unique in table " + batch.tableName);
+                    }
+                }
+            }
+            for (Batch batch : pending) {
+                ByteArrayOutputStream records = new ByteArrayOutputStream();
+                for (Map.Entry<Object, byte[]> entry : batch.entries.entrySet()) {
+                    byte[] record = batch.tree.encodeLogRecord(entry.getKey(), entry.getValue());
+                    records.write(record, 0, record.length);
+                }
+                batch.tree.appendLog(records.toByteArray());
+                for (Map.Entry<Object, byte[]> entry : batch.entries.entrySet()) {
+                    batch.tree.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            for (int i = acquired.size() - 1; i >= 0; i--) {
+                LsmTree tree = acquired.get(i);
+                if (tree.commitLock.isHeldByCurrentThread()) {
+                    tree.commitLock.unlock();
+                }
+                tree.release();
+            }
+        }
+    }
+
+    /**
+     * Returns a summary of the memtable and SSTables of the tree.
+     *
+     * @return The tree statistics.
+     */
+    public String getStats() {
+        State current = state;
+        long entries = 0;
+        long bytes = 0;
+        for (SSTable table : current.tables) {
+            entries += table.getEntryCount();
+            bytes += table.getSize();
+        }
+        return "Memtable: " + current.memtable.size() + " entries (" + memtableBytes.get() / 1024 + " KB)"
+                + (current.immutable != null ? ", flushing " + current.immutable.size() + " entries" : "") + "\n"
+                + "SSTables: " + current.tables.size() + " (" + entries + " entries, " + bytes / 1024 + " KB)";
+    }
+
+    /**
+     * Reads the manifest, opens the SSTables it lists, removes files left behind by an interrupted flush or
+     * compaction and replays the logs of the memtable.
+     *
+     * @throws IOException If the table files cannot be read.
+     */
+    private void recover() throws IOException {
+        ByteBuffer manifest = ByteBuffer.wrap(Files.readAllBytes(manifestFile.toPath()));
+        if (manifest.remaining() < 28 || manifest.getInt() != MAGIC || manifest.getInt() != FORMAT_VERSION) {
+            throw new IOException("Not a TinyDB LSM table file: " + manifestFile.getPath());
+        }
+        nextFileNumber = manifest.getLong();
+        minLogNumber = manifest.getLong();
+        int tableCount = manifest.getInt();
+        List<SSTable> tables = new ArrayList<>();
+        Set<Long> live = new HashSet<>();
+        try {
+            for (int i = 0; i < tableCount; i++) {
+                long number = manifest.getLong();
+                tables.add(SSTable.open(getFile(number, ".sst"), number));
+                live.add(number);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (SSTable table : tables) {
+                table.close();
+            }
+            throw e;
+        }
+
+        ConcurrentSkipListMap<Object, byte[]> memtable = new ConcurrentSkipListMap<>(KeyCodec::compare);
+        state = new State(memtable, null, tables);
+        List<Long> logs = new ArrayList<>();
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            String name = file.getName();
+            long number;
+            try {
+                number = Long.parseLong(name.substring(0, name.indexOf('.')));
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (name.endsWith(".sst") && !live.contains(number)) {
+                file.delete();
+            } else if (name.endsWith(".log")) {
+                if (number < minLogNumber || file.length() == 0) {
+                    file.delete();
+                } else {
+                    logs.add(number);
+                }
+            }
+        }
+        Collections.sort(logs);
+        for (long number : logs) {
+            replayLog(getFile(number, ".log"));
+        }
+
+        activeLogNumber = nextFileNumber++;
+        if (logs.isEmpty()) {
+            minLogNumber = activeLogNumber;
+        }
+        log = FileChannel.open(getFile(activeLogNumber, ".log").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writeManifest(tables);
+    }
+
+    /**
+     * Applies the records of a log to the memtable. A torn record at the end of the log is ignored.
+     *
+     * @param logFile The log file.
+     * @throws IOException If the file cannot be read.
+     */
+    private void replayLog(File logFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(logFile.toPath()));
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length < 4 || length > buffer.remaining()) {
+                break;
+            }
+            int start = buffer.position();
+            Object key = KeyCodec.read(keyType, buffer, start);
+            buffer.position(start + KeyCodec.size(keyType, key));
+            int valueLength = buffer.getInt();
+            byte[] value = TOMBSTONE;
+            if (valueLength >= 0) {
+                value = new byte[valueLength];
+                buffer.get(value);
+            }
+            put(key, value);
+            buffer.position(start + length);
+        }
+    }
+
+    /**
+     * Freezes the memtable and writes it to a new SSTable. Readers keep seeing the frozen memtable until the
+     * SSTable is in place; its log is deleted only once the SSTable and the manifest listing it are on disk.
+     */
+    private void flush() {
+        try {
+            NavigableMap<Object, byte[]> frozen;
+            long number;
+            lock.writeLock().lock();
+            try {
+                synchronized (this) {
+                    flushPending = false;
+                }
+                if (dropped) {
+                    return;
+                }
+                frozen = state.immutable;
+                if (frozen == null) {
+                    if (state.memtable.isEmpty()) {
+                        return;
+                    }
+                    // Start a new memtable and log so that writers are not held up by the flush
+                    frozen = state.memtable;
+                    synchronized (forceLock) {
+                        synchronized (logLock) {
+                            log.force(false);
+                            log.close();
+                            forcedBytes = appendedBytes;
+                            activeLogNumber = nextFileNumber++;
+                            log = FileChannel.open(getFile(activeLogNumber, ".log").toPath(),
+                                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                        }
+                    }
+                    state = new State(new ConcurrentSkipListMap<>(KeyCodec::compare), frozen, state.tables);
+                    memtableBytes.set(0);
+                }
+                number = nextFileNumber++;
+                writeManifest(state.tables);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long start = System.nanoTime();
+            SSTable table = SSTable.write(getFile(number, ".sst"), number, keyType, frozen.entrySet().iterator(), frozen.size());
+
+            lock.writeLock().lock();
+            try {
+                if (dropped) {
+                    if (table != null) {
+                        table.close();
+                    }
+                    return;
+                }
+                List<SSTable> tables = new ArrayList<>();
+                if (table != null) {
+                    tables.add(table);
+                }
+                tables.addAll(state.tables);
+                state = new State(state.memtable, null, tables);
+                long obsoleteLogs = minLogNumber;
+                minLogNumber = activeLogNumber;
+                writeManifest(tables);
+                for (long log = obsoleteLogs; log < minLogNumber; log++) {
+                    getFile(log, ".log").delete();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            LogManager.logEvent("LSM FLUSH", "Flushed " + frozen.size() + " entries of " + manifestFile.getName()
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            scheduleCompaction();
+        } catch (IOException | RuntimeException e) {
+            LogManager.logEvent("LSM FLUSH", "Flush of " + manifestFile.getName() + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schedules a compaction on the background thread unless one is already pending.
+     */
+    private void scheduleCompaction() {
+        synchronized (this) {
+            if (compactionPending) {
+                return;
+            }
+            compactionPending = true;
+        }
+        background.submit(this::compact);
+    }
+
+    /**
+     * Merges runs of SSTables until no run qualifies. A run is a sequence of at least tinydb.lsm.compaction.tables
+     * (default 4) adjacent SSTables of the same size tier, where tier n holds tables between 4^n and 4^(n+1) times
+     * the memtable size. Deletion markers are dropped when the run includes the oldest table, since no older
+     * value can remain underneath them.
+     */
+    private void compact() {
+        synchronized (this) {
+            compactionPending = false;
+        }
+        try {
+            while (!dropped) {
+                List<SSTable> tables = state.tables;
+                int[] run = findCompactionRun(tables);
+                if (run == null) {
+                    return;
+                }
+                List<SSTable> inputs = new ArrayList<>(tables.subList(run[0], run[1]));
+                boolean oldest = run[1] == tables.size();
+                long number;
+                lock.writeLock().lock();
+                try {
+                    number = nextFileNumber++;
+                    writeManifest(state.tables);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                long start = System.nanoTime();
+                long inputBytes = 0;
+                long expectedCount = 0;
+                List<Iterator<Map.Entry<Object, byte[]>>> sources = new ArrayList<>();
+                for (SSTable input : inputs) {
+                    inputBytes += input.getSize();
+                    expectedCount += input.getEntryCount();
+                    sources.add(input.iterator(null, false));
+                }
+                SSTable output = SSTable.write(getFile(number, ".sst"), number, keyType,
+                        new MergeIterator(sources, oldest, null, false), expectedCount);
+
+                lock.writeLock().lock();
+                try {
+                    if (dropped) {
+                        if (output != null) {
+                            output.close();
+                        }
+                        return;
+                    }
+                    // Flushes only add tables in front, so the run is still contiguous
+                    List<SSTable> current = new ArrayList<>(state.tables);
+                    int position = current.indexOf(inputs.get(0));
+                    current.subList(position, position + inputs.size()).clear();
+                    if (output != null) {
+                        current.add(position, output);
+                    }
+                    state = new State(state.memtable, state.immutable, current);
+                    writeManifest(current);
+                    for (SSTable input : inputs) {
+                        input.close();
+                        input.getFile().delete();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                LogManager.logEvent("LSM COMPACTION", "Merged " + inputs.size() + " SSTables of " + manifestFile.getName()
+                        + " (" + inputBytes + " bytes) into " + (output == null ? 0 : output.getSize()) + " bytes in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+        } catch (IOException | RuntimeException e) {
+            LogManager.logEvent("LSM COMPACTION", "Compaction of " + manifestFile.getName() + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the first run of adjacent SSTables of the same size tier that is long enough to be merged.
+     *
+     * @param tables The SSTables, newest first.
+     * @return The start (inclusive) and end (exclusive) of the run, or null if no run qualifies.
+     */
+    private static int[] findCompactionRun(List<SSTable> tables) {
+        int threshold = Math.max(2, Integer.getInteger("tinydb.lsm.compaction.tables", DEFAULT_COMPACTION_TABLES));
+        long base = getMemtableLimit();
+        int runStart = 0;
+        for (int i = 1; i <= tables.size(); i++) {
+            if (i == tables.size() || getTier(tables.get(i).getSize(), base) != getTier(tables.get(runStart).getSize(), base)) {
+                if (i - runStart >= threshold) {
+                    return new int[] {runStart, i};
+                }
+                runStart = i;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the size tier of an SSTable.
+     *
+     * @param size The size of the table file.
+     * @param base The memtable size.
+     * @return The tier.
+     */
+    private static int getTier(long size, long base) {
+        int tier = 0;
+        for (long limit = base * 4; size >= limit && tier < 30; limit *= 4) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * Returns the memtable size that triggers a flush.
+     *
+     * @return The size in bytes.
+     */
+    private static long getMemtableLimit() {
+        return Math.max(64, Long.getLong("tinydb.lsm.memtable.kb", DEFAULT_MEMTABLE_KB)) * 1024;
+    }
+
+    /**
+     * Writes the manifest to a temporary file, forces it to disk and moves it over the table file.
+     *
+     * @param tables The SSTables, newest first.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeManifest(List<SSTable> tables) throws IOException {
+        ByteBuffer manifest = ByteBuffer.allocate(28 + tables.size() * 8);
+        manifest.putInt(MAGIC);
+        manifest.putInt(FORMAT_VERSION);
+        manifest.putLong(nextFileNumber);
+        manifest.putLong(minLogNumber);
+        manifest.putInt(tables.size());
+        for (SSTable table : tables) {
+            manifest.putLong(table.getNumber());
+        }
+        File tempFile = new File(manifestFile.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            manifest.flip();
+            while (manifest.hasRemaining()) {
+                channel.write(manifest);
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns a numbered file in the data directory.
+     *
+     * @param number The file number.
+     * @param extension The file extension.
+     * @return The file.
+     */
+    private File getFile(long number, String extension) {
+        return new File(directory, String.format("%06d", number) + extension);
+    }
+
+    /**
+     * Closes the log and the SSTables.
+     *
+     * @throws IOException If a file cannot be closed.
+     */
+    private void closeFiles() throws IOException {
+        synchronized (logLock) {
+            if (log != null) {
+                log.close();
+            }
+        }
+        if (state != null) {
+            for (SSTable table : state.tables) {
+                table.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes a directory and the files in it.
+     *
+     * @param directory The directory.
+     */
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Merges key-sorted iterators. When several iterators hold the same key, the entry of the earliest
+     * iterator in the list wins, so sources are passed newest first.
+     */
+    private static class MergeIterator implements Iterator<Map.Entry<Object, byte[]>> {
+        private final PriorityQueue<Head> heads;
+        private final boolean skipTombstones;
+        private final Object high;
+        private final boolean highInclusive;
+        private Map.Entry<Object, byte[]> next;
+
+        /**
+         * The next entry of one source.
+         */
+        private static final class Head {
+            private final Iterator<Map.Entry<Object, byte[]>> source;
+            private final int order;
+            private Map.Entry<Object, byte[]> entry;
+
+            /**
+             * Constructs a Head.
+             *
+             * @param source The source iterator.
+             * @param order The position of the source; lower positions hold newer data.
+             */
+            private Head(Iterator<Map.Entry<Object, byte[]>> source, int order) {
+                this.source = source;
+                this.order = order;
+            }
+        }
+
+        /**
+         * Constructs a MergeIterator.
+         *
+         * @param sources The key-sorted iterators, newest first.
+         * @param skipTombstones Whether deleted keys are left out.
+         * @param high The upper bound, or null for no upper bound.
+         * @param highInclusive Whether an entry equal to the upper bound is included.
+         */
+        private MergeIterator(List<Iterator<Map.Entry<Object, byte[]>>> sources, boolean skipTombstones, Object high, boolean highInclusive) {
+            this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (first, second) -> {
+                int comparison = KeyCodec.compare(first.entry.getKey(), second.entry.getKey());
+                return comparison != 0 ? comparison : Integer.compare(first.order, second.order);
+            });
+            this.skipTombstones = skipTombstones;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            for (int i = 0; i < sources.size(); i++) {
+                Head head = new Head(sources.get(i), i);
+                if (head.source.hasNext()) {
+                    head.entry = head.source.next();
+                    heads.add(head);
+                }
+            }
+            advance();
+        }
+
+        /**
+         * Checks whether another entry is available.
+         *
+         * @return true if next() returns an entry, false otherwise.
+         */
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Returns the next entry.
+         *
+         * @return The entry.
+         */
+        @Override
+        public Map.Entry<Object, byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Object, byte[]> entry = next;
+            advance();
+            return entry;
+        }
+
+        /**
+         * Finds the newest version of the next key, skipping older versions of it.
+         */
+        private void advance() {
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                Map.Entry<Object, byte[]> entry = head.entry;
+                moveOn(head);
+                while (!heads.isEmpty() && KeyCodec.compare(heads.peek().entry.getKey(), entry.getKey()) == 0) {
+                    moveOn(heads.poll());
+                }
+                if (high != null) {
+                    int comparison = KeyCodec.compare(entry.getKey(), high);
+                    if (comparison > 0 || (comparison == 0 && !highInclusive)) {
+                        break;
+                    }
+                }
+                if (skipTombstones && entry.getValue() == TOMBSTONE) {
+                    continue;
+                }
+                next = entry;
+                return;
+            }
+            next = null;
+            heads.clear();
+        }
+
+        /**
+         * Advances a source and puts it back into the queue if it has more entries.
+         *
+         * @param head The head of the source.
+         */
+        private void moveOn(Head head) {
+            if (head.source.hasNext()) {
+                head.entry = head.source.next();
+                heads.add(head);
+            }
+        }
+    }
+}
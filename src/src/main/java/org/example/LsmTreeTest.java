@@ -0,0 +1,138 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class LsmTreeTest {
+
+    private static final String PADDING = "X".repeat(100);
+
+    private CommandProcessor commandProcessor;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+        System.setProperty("tinydb.lsm.memtable.kb", "64");
+        System.setProperty("tinydb.lsm.compaction.tables", "2");
+    }
+
+    @BeforeEach
+    void createTable() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE EVENTS (ID INT(PK), NAME STRING, SIZE INT) ENGINE = LSM;");
+    }
+
+    @Test
+    void testFlushesCompactsAndRecovers() throws Exception {
+        PreparedCommand insert = commandProcessor.prepare("INSERT INTO EVENTS (ID, NAME, SIZE) VALUES (?, ?, ?);");
+        insertBatches(insert, 0, 8);
+        LsmTree tree = tree();
+        awaitBackgroundWork(tree);
+        int tables = sstableCount(tree);
+        assertTrue(tables >= 1 && tables < 8, "Flushed tables were not compacted: " + tree.getStats());
+
+        commandProcessor.processCommand("DELETE FROM EVENTS WHERE ID <= 100;");
+        commandProcessor.processCommand("UPDATE EVENTS SET SIZE = 42 WHERE ID = 5000;");
+        Exception exception = assertThrows(Exception.class, () -> commandProcessor.execute(insert, 200, "DUP", 0));
+        assertTrue(exception.getMessage().contains("not unique"), exception.getMessage());
+
+        // Push the deletion markers through further flushes and compactions
+        insertBatches(insert, 8, 10);
+        awaitBackgroundWork(tree);
+        assertNull(tree.get(50L), "A deleted key is visible");
+        assertNotNull(tree.get(150L));
+        checkRows();
+
+        LsmTree.close(tableFile());
+        assertNotSame(tree, tree(), "The tree was not reopened");
+        checkRows();
+    }
+
+    private void insertBatches(PreparedCommand insert, int from, int to) throws Exception {
+        for (int batch = from; batch < to; batch++) {
+            commandProcessor.processCommand("BEGIN TRANSACTION;");
+            for (int i = 1; i <= 1000; i++) {
+                int id = batch * 1000 + i;
+                commandProcessor.execute(insert, id, "NAME" + id + PADDING, id % 10);
+            }
+            commandProcessor.processCommand("COMMIT;");
+        }
+    }
+
+    private void checkRows() throws Exception {
+        assertEquals(9900, commandProcessor.query("SELECT ID FROM EVENTS;").getRowCount());
+
+        QueryResult result = commandProcessor.query("SELECT NAME, SIZE FROM EVENTS WHERE ID = 5000;");
+        assertEquals(1, result.getRowCount());
+        assertEquals("NAME5000" + PADDING, result.getRows().get(0)[0]);
+        assertEquals(42L, result.getRows().get(0)[1]);
+        assertEquals(0, commandProcessor.query("SELECT ID FROM EVENTS WHERE ID = 50;").getRowCount());
+
+        result = commandProcessor.query("SELECT ID FROM EVENTS WHERE ID > 9995;");
+        assertEquals(5, result.getRowCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(9996L + i, result.getRows().get(i)[0]);
+        }
+        result = commandProcessor.query("SELECT ID FROM EVENTS WHERE ID <= 105;");
+        assertEquals(5, result.getRowCount(), "Deleted rows are returned by a range read");
+        assertEquals(101L, result.getRows().get(0)[0]);
+    }
+
+    private File tableFile() {
+        return new File("tinydb/databases/" + commandProcessor.getSession().getActiveDatabase() + "/EVENTS.tbl");
+    }
+
+    private LsmTree tree() throws Exception {
+        return LsmTree.open(tableFile(), ColumnType.INT);
+    }
+
+    private int sstableCount(LsmTree tree) {
+        Matcher matcher = Pattern.compile("SSTables: (\\d+)").matcher(tree.getStats());
+        assertTrue(matcher.find());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private void awaitBackgroundWork(LsmTree tree) throws InterruptedException {
+        // Flushes and compactions run in the background; wait until the tree stops changing
+        long deadline = System.currentTimeMillis() + 30000;
+        String stats = tree.getStats();
+        int stable = 0;
+        while (stable < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            String current = tree.getStats();
+            stable = current.equals(stats) && !current.contains("flushing") ? stable + 1 : 0;
+            stats = current;
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        LsmTree.close(tableFile());
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    @AfterAll
+    void restoreSettings() {
+        System.clearProperty("tinydb.lsm.memtable.kb");
+        System.clearProperty("tinydb.lsm.compaction.tables");
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
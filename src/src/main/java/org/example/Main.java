@@ -6,15 +6,18 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Scanner;
 
-import static org.example.CommandProcessor.activeDatabase;
 import static org.example.ERDExport.exportERD;
 
 public class Main {
 
     private static UserProfileManager userProfileManager = new UserProfileManager();
-    private static CommandProcessor commandProcessor = new CommandProcessor();
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("--server")) {
+            runServer(args);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
         Map<String, String[]> userProfiles = userProfileManager.loadUserProfiles();
 
@@ -43,6 +46,18 @@ public class Main {
         }
     }
 
+    private static void runServer(String[] args) {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : Integer.getInteger("tinydb.server.port", Server.DEFAULT_PORT);
+        try (Server server = Server.start(port)) {
+            System.out.println("TinyDB server listening on " + server.getAddress() + ".");
+            server.awaitClose();
+        } catch (IOException e) {
+            System.out.println("Could not start the server: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private static void register(Scanner scanner, Map<String, String[]> userProfiles) {
         System.out.print("Enter userID: ");
         String userID = scanner.nextLine();
@@ -83,7 +98,7 @@ public class Main {
             if (userProfiles.get(hashedUserID)[2].equals(securityAnswer)) {
                 System.out.println("Login successful!");
                 LogManager.logUserActivity("LOGIN", userID);
-                accessSystem(scanner);
+                accessSystem(scanner, userID);
             } else {
                 System.out.println("Security answer incorrect.");
                 LogManager.logUserActivity("LOGIN_FAILED", userID);
@@ -94,8 +109,9 @@ public class Main {
         }
     }
 
-    private static void accessSystem(Scanner scanner) {
+    private static void accessSystem(Scanner scanner, String userID) {
         System.out.println("Welcome to TinyDB!");
+        CommandProcessor commandProcessor = new CommandProcessor(new Session(userID));
 
         while (true) {
             System.out.println("1. Write Queries");
@@ -108,7 +124,7 @@ public class Main {
 
             switch (choice) {
                 case 1:
-                    writeQueries(scanner);
+                    writeQueries(scanner, commandProcessor);
                     break;
                 case 2:
                     try {
@@ -131,7 +147,7 @@ public class Main {
         }
     }
 
-    private static void writeQueries(Scanner scanner) {
+    private static void writeQueries(Scanner scanner, CommandProcessor commandProcessor) {
         while (true) {
             System.out.print("TinyDB> ");
             String input = scanner.nextLine().trim().toUpperCase();
@@ -155,14 +171,22 @@ public class Main {
         System.out.println("Available commands:");
         System.out.println("1. CREATE DATABASE <dbName>;");
         System.out.println("2. USE <dbName>;");
-        System.out.println("3. CREATE TABLE <tableName> (column1 type1, column2 type2, ...);");
+        System.out.println("3. CREATE TABLE <tableName> (column1 type1, column2 type2, ...) [ENGINE = HEAP | LSM];");
         System.out.println("4. INSERT INTO <tableName> (column1, column2, ...) VALUES (value1, value2, ...);");
         System.out.println("5. SELECT * FROM <tableName>;");
         System.out.println("6. SELECT <column1>, <column2> FROM <tableName>;");
-        System.out.println("7. SELECT * FROM <tableName> WHERE <column> <operator> <value>;");
-        System.out.println("8. UPDATE <tableName> SET <column> = <value> WHERE <column> = <value>;");
-        System.out.println("9. DELETE FROM <tableName> WHERE <column> = <value>;");
+        System.out.println("7. SELECT * FROM <tableName> WHERE <condition>;");
+        System.out.println("8. UPDATE <tableName> SET <column> = <value> WHERE <condition>;");
+        System.out.println("9. DELETE FROM <tableName> WHERE <condition>;");
+        System.out.println("   <condition>: <column> =|<>|<|<=|>|>= <value>, <column> [NOT] IN (<value>, ...),");
+        System.out.println("   <column> [NOT] BETWEEN <low> AND <high>, <column> [NOT] LIKE '<pattern>',");
+        System.out.println("   <column> IS [NOT] NULL, combined with AND, OR, NOT and parentheses");
         System.out.println("10. DROP TABLE <tableName>;");
+        System.out.println("11. SHOW BUFFERPOOL | WAL | VACUUM | VERSIONS | LOCKS | PLANCACHE | ANALYZE | SESSION | LSM <tableName> | STATISTICS <tableName>;");
+        System.out.println("12. CREATE INDEX <indexName> ON <tableName>(<column>) [USING HASH | BTREE];");
+        System.out.println("13. CHECKPOINT;");
+        System.out.println("14. SET <setting> = <value> | DEFAULT;");
+        System.out.println("15. ANALYZE <tableName>;");
     }
 
     private static void exportDataAndStructure(Scanner scanner) throws IOException {
@@ -0,0 +1,65 @@
+package org.example;
+
+import java.io.IOException;
+
+public interface Operator {
+
+    /**
+     * Prepares the operator, and the operators it reads from, to return rows from the first one. An operator
+     * may be opened again after it has been closed to return its rows once more.
+     *
+     * @throws Exception If the operator cannot be opened.
+     */
+    void open() throws Exception;
+
+    /**
+     * Returns the next row. Operators pull rows from their inputs one at a time, so a plan only does the work
+     * its consumer asks for: a consumer that stops early stops the scans below it too.
+     *
+     * @return The typed values of the row in column order: a Long for INT columns, a Double for DOUBLE
+     *         columns, a String for STRING columns, and null for null fields; or null after the last row.
+     * @throws Exception If the row cannot be computed.
+     */
+    Object[] next() throws Exception;
+
+    /**
+     * Releases what the operator, and the operators it reads from, hold.
+     *
+     * @throws IOException If a table cannot be closed.
+     */
+    void close() throws IOException;
+
+    /**
+     * Returns the number of output columns.
+     *
+     * @return The number of columns.
+     */
+    int getColumnCount();
+
+    /**
+     * Returns the name of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    String getColumnName(int column);
+
+    /**
+     * Returns the type of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    ColumnType getColumnType(int column);
+
+    /**
+     * Returns the identifier of the table record the last row was read from, for statements that change the
+     * rows they select. Only operators that return table rows one for one know it.
+     *
+     * @return The record identifier.
+     * @throws UnsupportedOperationException If the rows of the operator do not come from single records.
+     */
+    default long getRecordId() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not return table records.");
+    }
+}
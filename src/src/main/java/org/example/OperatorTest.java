@@ -0,0 +1,166 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OperatorTest {
+
+    private CommandProcessor commandProcessor;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @BeforeEach
+    void createTestDatabase() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE PEOPLE (ID INT(PK), NAME STRING, AGE INT, DEPT INT);");
+        commandProcessor.processCommand("CREATE TABLE DEPTS (ID INT(PK), TITLE STRING);");
+
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE, DEPT) VALUES (1, 'ANN', 30, 1);");
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE, DEPT) VALUES (2, 'BOB', 25, 2);");
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE, DEPT) VALUES (3, 'CAT', 35, 1);");
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE, DEPT) VALUES (4, 'DAN', NULL, 3);");
+        commandProcessor.processCommand("INSERT INTO DEPTS (ID, TITLE) VALUES (1, 'SALES');");
+        commandProcessor.processCommand("INSERT INTO DEPTS (ID, TITLE) VALUES (2, 'STAFF');");
+    }
+
+    @Test
+    void testSelectOrdersAndLimitsRows() throws Exception {
+        QueryResult result = commandProcessor.query("SELECT NAME FROM PEOPLE ORDER BY AGE DESC LIMIT 3;");
+        assertEquals(1, result.getColumnCount(), "The ordering column is returned although it is not selected");
+        assertEquals(List.of("DAN", "CAT", "ANN"), column(result, 0));
+
+        result = commandProcessor.query("SELECT ID,AGE FROM PEOPLE WHERE ID >= 2 ORDER BY AGE;");
+        assertEquals(List.of(2L, 3L, 4L), column(result, 0), "NULL does not sort last");
+
+        result = commandProcessor.query("SELECT * FROM PEOPLE LIMIT 0;");
+        assertEquals(4, result.getColumnCount());
+        assertEquals(0, result.getRowCount());
+    }
+
+    @Test
+    void testHashAggregateGroupsRows() throws Exception {
+        HashAggregate aggregate = new HashAggregate(scan("PEOPLE"), new int[]{3}, new HashAggregate.Aggregate[]{
+                new HashAggregate.Aggregate(HashAggregate.Function.COUNT, -1),
+                new HashAggregate.Aggregate(HashAggregate.Function.SUM, 2),
+                new HashAggregate.Aggregate(HashAggregate.Function.AVG, 2),
+                new HashAggregate.Aggregate(HashAggregate.Function.MAX, 1)});
+        assertEquals("SUM(AGE)", aggregate.getColumnName(2));
+        assertEquals(ColumnType.DOUBLE, aggregate.getColumnType(3));
+
+        List<Object[]> rows = drain(aggregate);
+        assertEquals(3, rows.size());
+        assertArrayEquals(new Object[]{1L, 2L, 65L, 32.5, "CAT"}, rows.get(0));
+        assertArrayEquals(new Object[]{2L, 1L, 25L, 25.0, "BOB"}, rows.get(1));
+        assertArrayEquals(new Object[]{3L, 1L, null, null, "DAN"}, rows.get(2));
+
+        HashAggregate total = new HashAggregate(new Filter(scan("PEOPLE"), row -> false), new int[0],
+                new HashAggregate.Aggregate[]{new HashAggregate.Aggregate(HashAggregate.Function.COUNT, -1)});
+        rows = drain(total);
+        assertEquals(1, rows.size(), "An aggregate without groups returns no row for an empty input");
+        assertEquals(0L, rows.get(0)[0]);
+    }
+
+    @Test
+    void testHashJoinMatchesRows() throws Exception {
+        Operator join = new Project(new Sort(new HashJoin(scan("DEPTS"), scan("PEOPLE"), 0, 3),
+                new int[]{2}, new boolean[]{false}), new int[]{3, 1});
+        assertEquals("NAME", join.getColumnName(0));
+        assertEquals("TITLE", join.getColumnName(1));
+
+        List<Object[]> rows = drain(join);
+        assertEquals(3, rows.size(), "People without a department are joined");
+        assertArrayEquals(new Object[]{"ANN", "SALES"}, rows.get(0));
+        assertArrayEquals(new Object[]{"BOB", "STAFF"}, rows.get(1));
+        assertArrayEquals(new Object[]{"CAT", "SALES"}, rows.get(2));
+    }
+
+    @Test
+    void testLimitStopsReadingItsInput() throws Exception {
+        SeqScan scan = scan("PEOPLE");
+        scan.setBatchSize(1);
+        int[] read = new int[1];
+        Operator limit = new Limit(new Filter(scan, row -> ++read[0] > 0), 2);
+        assertEquals(2, drain(limit).size());
+        assertEquals(2, read[0], "Rows past the limit were read");
+    }
+
+    @Test
+    void testScanEvaluatesCompiledConditions() throws Exception {
+        Session session = commandProcessor.getSession();
+        TableSchema schema = Catalog.getInstance().getTable(session.getActiveDatabase(), "PEOPLE");
+        RecordPredicate range = ColumnPredicate.between(schema, TableStatistics.NONE, 2, "24.5", "30.5");
+        assertTrue(range instanceof ColumnPredicate.LongRange);
+        assertSame(RecordPredicate.NONE, ColumnPredicate.compare(schema, TableStatistics.NONE, 2, "=", "30.5"));
+
+        List<Object[]> rows = drain(new SeqScan(session, schema, range, new int[]{1, 0, 1}));
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[]{"ANN", 1L, "ANN"}, rows.get(0));
+        assertArrayEquals(new Object[]{"BOB", 2L, "BOB"}, rows.get(1));
+
+        QueryResult result = commandProcessor.query("SELECT ID FROM PEOPLE WHERE AGE > 29.5;");
+        assertEquals(List.of(1L, 3L), column(result, 0));
+        result = commandProcessor.query("SELECT ID FROM PEOPLE WHERE NAME <> 'ANN';");
+        assertEquals(List.of(2L, 3L, 4L), column(result, 0));
+        result = commandProcessor.query("SELECT ID FROM PEOPLE WHERE AGE <> 30.5;");
+        assertEquals(List.of(1L, 2L, 3L), column(result, 0), "An INT field equals a fraction");
+    }
+
+    private SeqScan scan(String tableName) throws Exception {
+        Session session = commandProcessor.getSession();
+        TableSchema schema = Catalog.getInstance().getTable(session.getActiveDatabase(), tableName);
+        int[] columns = new int[schema.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
+        }
+        return new SeqScan(session, schema, null, columns);
+    }
+
+    private List<Object[]> drain(Operator operator) throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        operator.open();
+        try {
+            Object[] row;
+            while ((row = operator.next()) != null) {
+                rows.add(row);
+            }
+        } finally {
+            operator.close();
+        }
+        return rows;
+    }
+
+    private List<Object> column(QueryResult result, int column) {
+        List<Object> values = new ArrayList<>();
+        for (Object[] row : result.getRows()) {
+            values.add(row[column]);
+        }
+        return values;
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,131 @@
+package org.example;
+
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PlanCache {
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final PlanCache INSTANCE = new PlanCache(
+            Math.max(0, Integer.getInteger("tinydb.plan.cache.size", DEFAULT_CAPACITY)));
+
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedCommand> commands;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Constructs a cache of prepared statements that keeps the most recently used ones.
+     *
+     * @param capacity The maximum number of statements kept, or 0 to cache none.
+     */
+    private PlanCache(int capacity) {
+        this.capacity = capacity;
+        this.commands = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedCommand> eldest) {
+                if (size() <= PlanCache.this.capacity) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the plan cache shared by all sessions. Its size is controlled by the system property
+     * tinydb.plan.cache.size (default 256 statements).
+     *
+     * @return The plan cache.
+     */
+    public static PlanCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the prepared form of a SELECT, INSERT, UPDATE or DELETE statement by its normalized text in the
+     * active database of a session, so that statements that only differ in their values are parsed and planned
+     * once. On a miss the normalized statement is parsed and cached.
+     *
+     * @param session The session that runs the statement.
+     * @param input The statement.
+     * @param parameters The list the values of the statement are added to, in the order of its parameter markers.
+     * @return The prepared statement, or null if the statement cannot be cached, in which case no values are
+     *         added.
+     * @throws ParseException If the statement is malformed.
+     */
+    public PreparedCommand get(Session session, String input, List<SqlStatement.Literal> parameters)
+            throws ParseException {
+        String databaseName = session.getActiveDatabase();
+        if (capacity == 0 || databaseName == null) {
+            return null;
+        }
+        String text = SqlParser.normalize(input, parameters);
+        if (text == null) {
+            return null;
+        }
+        String key = databaseName + "/" + text;
+        synchronized (this) {
+            PreparedCommand command = commands.get(key);
+            if (command != null) {
+                hits++;
+                return command;
+            }
+            misses++;
+        }
+
+        PreparedCommand command;
+        try {
+            command = new PreparedCommand(text, SqlParser.parse(text));
+        } catch (ParseException e) {
+            // Report the error at its position in the statement as written
+            parameters.clear();
+            SqlParser.parse(input);
+            throw e;
+        } catch (Exception e) {
+            parameters.clear();
+            return null;
+        }
+        synchronized (this) {
+            commands.put(key, command);
+        }
+        return command;
+    }
+
+    /**
+     * Drops the cached statements on a table whose definition changed. Prepared statements outside the cache
+     * notice the change themselves, as their plans no longer fit the catalog.
+     *
+     * @param databaseName The name of the database.
+     * @param tableName The name of the table.
+     */
+    public synchronized void invalidate(String databaseName, String tableName) {
+        String prefix = databaseName + "/";
+        Iterator<Map.Entry<String, PreparedCommand>> iterator = commands.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PreparedCommand> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix) && entry.getValue().getTableName().equalsIgnoreCase(tableName)) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Returns a summary of the cache usage counters.
+     *
+     * @return The plan cache statistics.
+     */
+    public synchronized String getStats() {
+        long requests = hits + misses;
+        double hitRatio = requests == 0 ? 0 : (double) hits * 100 / requests;
+        return "Capacity: " + capacity + " statements, cached: " + commands.size() + "\n"
+                + "Hits: " + hits + ", misses: " + misses + String.format(" (hit ratio %.1f%%)", hitRatio) + "\n"
+                + "Evictions: " + evictions + ", invalidations: " + invalidations;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PlanCacheTest {
+
+    private CommandProcessor commandProcessor;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @Test
+    void testRunsPreparedStatements() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE PEOPLE (ID INT(PK), NAME STRING, AGE INT);");
+
+        PreparedCommand insert = commandProcessor.prepare("INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (?, ?, ?);");
+        assertEquals(3, insert.getParameterCount());
+        assertEquals(1, commandProcessor.execute(insert, 1, "DOE, JOHN", 30));
+        assertEquals(1, commandProcessor.execute(insert, 2, "O'BRIEN", null));
+        assertEquals(1, commandProcessor.execute(insert, 3, "SMITH", 30));
+        assertThrows(Exception.class, () -> commandProcessor.execute(insert, 4, "LEE"));
+
+        PreparedCommand select = commandProcessor.prepare("SELECT NAME FROM PEOPLE WHERE AGE = ? ORDER BY ID;");
+        QueryResult result = commandProcessor.query(select, 30);
+        assertEquals(2, result.getRowCount());
+        assertEquals("DOE, JOHN", result.getRows().get(0)[0]);
+        assertEquals("SMITH", result.getRows().get(1)[0]);
+
+        PreparedCommand update = commandProcessor.prepare("UPDATE PEOPLE SET AGE = ? WHERE ID = ?;");
+        assertEquals(1, commandProcessor.execute(update, 41, 2));
+        assertEquals(1, commandProcessor.query(select, 41).getRowCount());
+
+        // A new index on the filtered column replaces the plan of the prepared query
+        commandProcessor.processCommand("CREATE INDEX AGE_IDX ON PEOPLE (AGE) USING BTREE;");
+        assertEquals(2, commandProcessor.query(select, 30).getRowCount());
+
+        PreparedCommand delete = commandProcessor.prepare("DELETE FROM PEOPLE WHERE NAME = ?;");
+        assertEquals(1, commandProcessor.execute(delete, "O'BRIEN"));
+        assertEquals(0, commandProcessor.query(select, 41).getRowCount());
+        assertThrows(Exception.class, () -> commandProcessor.prepare("DROP TABLE PEOPLE;"));
+    }
+
+    @Test
+    void testCachesStatementsThatDifferInValues() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE PEOPLE (ID INT(PK), NAME STRING, AGE INT);");
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (1, 'ANN', 30);");
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (2, 'BOB', -4);");
+
+        Session session = commandProcessor.getSession();
+        List<SqlStatement.Literal> parameters = new ArrayList<>();
+        PreparedCommand first = PlanCache.getInstance().get(session, "SELECT NAME FROM PEOPLE WHERE ID = 1;", parameters);
+        assertEquals(1, parameters.size());
+        assertEquals("1", parameters.get(0).getText());
+
+        parameters.clear();
+        PreparedCommand second = PlanCache.getInstance().get(session, "select NAME from PEOPLE  where ID=-2", parameters);
+        assertSame(first, second);
+        assertEquals("-2", parameters.get(0).getText());
+        assertEquals("BOB", commandProcessor.query("SELECT NAME FROM PEOPLE WHERE AGE = -4;").getRows().get(0)[0]);
+
+        // Changing the table drops its cached statements
+        commandProcessor.processCommand("CREATE INDEX NAME_IDX ON PEOPLE (NAME) USING HASH;");
+        parameters.clear();
+        assertNotSame(first, PlanCache.getInstance().get(session, "SELECT NAME FROM PEOPLE WHERE ID = 1;", parameters));
+
+        commandProcessor.processCommand("DROP TABLE PEOPLE;");
+        Exception exception = assertThrows(Exception.class,
+                () -> commandProcessor.query("SELECT NAME FROM PEOPLE WHERE ID = 1;"));
+        assertEquals("Table does not exist.", exception.getMessage());
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
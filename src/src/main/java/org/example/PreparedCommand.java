@@ -0,0 +1,129 @@
+package org.example;
+
+public class PreparedCommand {
+    private final String text;
+    private final SqlStatement statement;
+    private volatile StatementPlan plan;
+
+    /**
+     * Constructs a prepared SELECT, INSERT, UPDATE or DELETE statement. A prepared statement is parsed once and
+     * planned the first time it runs; later runs only bind the values of its parameter markers. It belongs to no
+     * session, so the plan cache shares it between all sessions.
+     *
+     * @param text The text of the statement, with ? for every value bound when it runs.
+     * @param statement The parsed statement.
+     * @throws Exception If the statement is of another kind.
+     */
+    public PreparedCommand(String text, SqlStatement statement) throws Exception {
+        if (!isPlannable(statement)) {
+            throw new Exception("Only SELECT, INSERT, UPDATE and DELETE statements can be prepared.");
+        }
+        this.text = text;
+        this.statement = statement;
+    }
+
+    /**
+     * Checks whether a statement can be prepared.
+     *
+     * @param statement The parsed statement.
+     * @return true for SELECT, INSERT, UPDATE and DELETE statements, false otherwise.
+     */
+    public static boolean isPlannable(SqlStatement statement) {
+        switch (statement.getKind()) {
+            case SELECT:
+            case INSERT:
+            case UPDATE:
+            case DELETE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the text of the statement.
+     *
+     * @return The statement text.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the parsed statement.
+     *
+     * @return The statement.
+     */
+    public SqlStatement getStatement() {
+        return statement;
+    }
+
+    /**
+     * Returns the number of values bound when the statement runs.
+     *
+     * @return The number of parameter markers.
+     */
+    public int getParameterCount() {
+        return statement.getParameterCount();
+    }
+
+    /**
+     * Returns the name of the table the statement reads or changes.
+     *
+     * @return The table name as written.
+     */
+    public String getTableName() {
+        switch (statement.getKind()) {
+            case SELECT:
+                return ((SqlStatement.Select) statement).getTableName();
+            case INSERT:
+                return ((SqlStatement.Insert) statement).getTableName();
+            case UPDATE:
+                return ((SqlStatement.Update) statement).getTableName();
+            default:
+                return ((SqlStatement.Delete) statement).getTableName();
+        }
+    }
+
+    /**
+     * Returns the plan of the statement in the active database of a session, making it if the statement has
+     * not been planned yet or its plan no longer fits the catalog. Sessions that plan the statement at the same
+     * time each make a plan; the last one is kept.
+     *
+     * @param session The session that runs the statement.
+     * @return The plan.
+     * @throws Exception If the statement does not fit the schema of its table.
+     */
+    public StatementPlan getPlan(Session session) throws Exception {
+        StatementPlan current = plan;
+        if (current == null || !current.isCurrent(session)) {
+            current = StatementPlan.create(session, statement);
+            plan = current;
+        }
+        return current;
+    }
+
+    /**
+     * Converts the values of a run to the constants bound to the parameter markers.
+     *
+     * @param values Numbers, strings or nulls, one for every parameter marker.
+     * @return The constants.
+     * @throws Exception If the number of values does not match the number of markers or a value has an
+     *                   unsupported type.
+     */
+    public SqlStatement.Literal[] bind(Object... values) throws Exception {
+        if (values.length != getParameterCount()) {
+            throw new Exception("The statement has " + getParameterCount() + " parameters but " + values.length
+                    + " values were given.");
+        }
+        SqlStatement.Literal[] parameters = new SqlStatement.Literal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                parameters[i] = SqlStatement.Literal.of(values[i]);
+            } catch (IllegalArgumentException e) {
+                throw new Exception(e.getMessage() + " for parameter " + (i + 1) + ".");
+            }
+        }
+        return parameters;
+    }
+}
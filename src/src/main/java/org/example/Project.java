@@ -0,0 +1,100 @@
+package org.example;
+
+import java.io.IOException;
+
+public class Project implements Operator {
+    private final Operator child;
+    private final int[] columns;
+
+    /**
+     * Constructs an operator that returns some columns of the rows of its input, in a given order.
+     *
+     * @param child The input.
+     * @param columns The positions of the input columns to return.
+     */
+    public Project(Operator child, int[] columns) {
+        this.child = child;
+        this.columns = columns;
+    }
+
+    /**
+     * Opens the input.
+     *
+     * @throws Exception If the input cannot be opened.
+     */
+    @Override
+    public void open() throws Exception {
+        child.open();
+    }
+
+    /**
+     * Returns the selected columns of the next row of the input.
+     *
+     * @return The row, or null after the last row.
+     * @throws Exception If the input cannot be read.
+     */
+    @Override
+    public Object[] next() throws Exception {
+        Object[] row = child.next();
+        if (row == null) {
+            return null;
+        }
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = row[columns[i]];
+        }
+        return values;
+    }
+
+    /**
+     * Closes the input.
+     *
+     * @throws IOException If a table cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        child.close();
+    }
+
+    /**
+     * Returns the number of output columns.
+     *
+     * @return The number of columns.
+     */
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the name of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        return child.getColumnName(columns[column]);
+    }
+
+    /**
+     * Returns the type of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        return child.getColumnType(columns[column]);
+    }
+
+    /**
+     * Returns the identifier of the record the last row was read from.
+     *
+     * @return The record identifier.
+     */
+    @Override
+    public long getRecordId() {
+        return child.getRecordId();
+    }
+}
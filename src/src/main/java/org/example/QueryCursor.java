@@ -0,0 +1,215 @@
+package org.example;
+
+import java.io.IOException;
+
+public class QueryCursor implements Cursor {
+    private final String tableName;
+    private final Operator plan;
+    private final TableScan[] scans;
+    private final Snapshot snapshot;
+    private boolean releaseSnapshot;
+    private boolean opened;
+    private boolean exhausted;
+    private boolean closed;
+    private Object[] row;
+    private Object[] lookahead;
+
+    /**
+     * Constructs a cursor over the rows of a query plan, reading the current snapshot. The cursor is
+     * pull-based: rows are computed as they are asked for, and the scans of the plan read their tables one
+     * batch of rows at a time, so memory stays bounded by the fetch size for plans that do not sort or group,
+     * and the first rows are available before the scans complete. Tables are only open while a batch is read,
+     * so the cursor neither keeps other statements out of its tables nor sees their changes while it is open.
+     *
+     * @param tableName The name of the table the query reads.
+     * @param plan The root operator of the plan.
+     * @param scans The scans of the plan, which read the number of rows the fetch size of the cursor asks for.
+     */
+    QueryCursor(String tableName, Operator plan, TableScan... scans) {
+        this.tableName = tableName;
+        this.plan = plan;
+        this.scans = scans;
+        this.snapshot = VersionStore.getCurrentSnapshot();
+    }
+
+    /**
+     * Returns the number of rows fetched at a time unless a caller sets its own fetch size. Controlled by the
+     * system property tinydb.fetch.size (default 1000).
+     *
+     * @return The number of rows.
+     */
+    public static int getDefaultFetchSize() {
+        return TableScan.getDefaultBatchSize();
+    }
+
+    /**
+     * Makes the cursor release its snapshot and the table locks taken under it when it is closed, for a
+     * query that reads a snapshot of its own rather than that of a transaction.
+     */
+    void releaseSnapshotOnClose() {
+        releaseSnapshot = true;
+    }
+
+    /**
+     * Returns the name of the table the cursor reads.
+     *
+     * @return The table name.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Returns the number of result columns.
+     *
+     * @return The number of columns.
+     */
+    @Override
+    public int getColumnCount() {
+        return plan.getColumnCount();
+    }
+
+    /**
+     * Returns the name of a result column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        return plan.getColumnName(column);
+    }
+
+    /**
+     * Returns the type of a result column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        return plan.getColumnType(column);
+    }
+
+    /**
+     * Advances to the next row of the plan, opening the plan on the first call.
+     *
+     * @return true if a row is available, false after the last row.
+     * @throws Exception If the cursor is closed or the plan fails.
+     */
+    @Override
+    public boolean next() throws Exception {
+        if (closed) {
+            throw new Exception("Cursor is closed.");
+        }
+        if (lookahead != null) {
+            row = lookahead;
+            lookahead = null;
+        } else {
+            row = pull();
+        }
+        return row != null;
+    }
+
+    /**
+     * Returns the current row.
+     *
+     * @return The typed values of the result columns.
+     */
+    @Override
+    public Object[] getRow() {
+        return row;
+    }
+
+    /**
+     * Sets the number of rows the scans of the plan read from their tables at a time.
+     *
+     * @param rows The number of rows, or 0 for the default.
+     */
+    @Override
+    public void setFetchSize(int rows) {
+        for (TableScan scan : scans) {
+            scan.setBatchSize(rows);
+        }
+    }
+
+    /**
+     * Returns the next rows of the cursor, and looks one row ahead so that {@link #isExhausted()} tells
+     * whether rows are left.
+     *
+     * @param maxRows The maximum number of rows.
+     * @return The next rows; fewer than maxRows only after the last row.
+     * @throws Exception If the cursor is closed or the plan fails.
+     */
+    public QueryResult fetch(int maxRows) throws Exception {
+        String[] names = new String[getColumnCount()];
+        ColumnType[] types = new ColumnType[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = getColumnName(i);
+            types[i] = getColumnType(i);
+        }
+        QueryResult result = new QueryResult(names, types);
+        while (result.getRowCount() < maxRows && next()) {
+            result.addRow(row);
+        }
+        if (lookahead == null) {
+            lookahead = pull();
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether every row of the cursor has been returned.
+     *
+     * @return true if no rows are left, false if rows may be left.
+     */
+    public boolean isExhausted() {
+        return exhausted && lookahead == null;
+    }
+
+    /**
+     * Closes the cursor and its plan, discarding the rows it has not returned.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        lookahead = null;
+        try {
+            if (opened && !exhausted) {
+                plan.close();
+            }
+        } catch (IOException e) {
+            LogManager.logEvent("CURSOR", "Error closing query plan on table " + tableName + ": " + e.getMessage());
+        } finally {
+            if (releaseSnapshot) {
+                LockManager.getInstance().releaseAll(snapshot);
+                VersionStore.getInstance().release(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Returns the next row of the plan, opening it first if needed and closing it after its last row.
+     *
+     * @return The row, or null after the last row.
+     * @throws Exception If the plan fails.
+     */
+    private Object[] pull() throws Exception {
+        if (exhausted) {
+            return null;
+        }
+        if (!opened) {
+            opened = true;
+            plan.open();
+        }
+        Object[] next = plan.next();
+        if (next == null) {
+            exhausted = true;
+            plan.close();
+        }
+        return next;
+    }
+}
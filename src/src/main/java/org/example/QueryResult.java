@@ -0,0 +1,249 @@
+package org.example;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class QueryResult {
+    private final String[] columnNames;
+    private final ColumnType[] columnTypes;
+    private final List<Object[]> rows = new ArrayList<>();
+
+    /**
+     * Constructs an empty result. A result holds the rows of a query as typed values: a Long for INT columns,
+     * a Double for DOUBLE columns, a String for STRING columns, and null for null fields.
+     *
+     * @param columnNames The names of the result columns.
+     * @param columnTypes The types of the result columns.
+     */
+    public QueryResult(String[] columnNames, ColumnType[] columnTypes) {
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+    }
+
+    /**
+     * Reads the remaining rows of a cursor into a result and closes the cursor.
+     *
+     * @param cursor The cursor.
+     * @return The columns and remaining rows of the cursor.
+     * @throws Exception If the rows cannot be fetched.
+     */
+    public static QueryResult collect(Cursor cursor) throws Exception {
+        try (Cursor closing = cursor) {
+            String[] columnNames = new String[closing.getColumnCount()];
+            ColumnType[] columnTypes = new ColumnType[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = closing.getColumnName(i);
+                columnTypes[i] = closing.getColumnType(i);
+            }
+            QueryResult result = new QueryResult(columnNames, columnTypes);
+            while (closing.next()) {
+                result.addRow(closing.getRow());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Appends a row to the result.
+     *
+     * @param row The values of the row in column order.
+     */
+    public void addRow(Object[] row) {
+        rows.add(row);
+    }
+
+    /**
+     * Returns the number of result columns.
+     *
+     * @return The number of columns.
+     */
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * Returns the name of a result column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * Returns the type of a result column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    public ColumnType getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    /**
+     * Gets the position of a result column by name.
+     *
+     * @param name The column name, in any case.
+     * @return The position of the column, or -1 if the result has no such column.
+     */
+    public int getColumnIndex(String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * Returns a row of the result.
+     *
+     * @param row The position of the row.
+     * @return The values of the row in column order.
+     */
+    public Object[] getRow(int row) {
+        return rows.get(row);
+    }
+
+    /**
+     * Returns the rows of the result.
+     *
+     * @return The rows, each holding its values in column order.
+     */
+    public List<Object[]> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Writes the result in binary form: the column names and types, then the rows. Every row starts with a
+     * null bitmap, as encoded records do, followed by its non-null values.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If the result cannot be written.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(columnNames.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            writeString(out, columnNames[i]);
+            out.writeByte(columnTypes[i].ordinal());
+        }
+        out.writeInt(rows.size());
+        byte[] bitmap = new byte[(columnNames.length + 7) / 8];
+        for (Object[] row : rows) {
+            Arrays.fill(bitmap, (byte) 0);
+            for (int i = 0; i < row.length; i++) {
+                if (row[i] == null) {
+                    bitmap[i / 8] |= (byte) (1 << (i % 8));
+                }
+            }
+            out.write(bitmap);
+            for (int i = 0; i < row.length; i++) {
+                if (row[i] == null) {
+                    continue;
+                }
+                switch (columnTypes[i]) {
+                    case INT:
+                        out.writeLong((Long) row[i]);
+                        break;
+                    case DOUBLE:
+                        out.writeDouble((Double) row[i]);
+                        break;
+                    default:
+                        writeString(out, (String) row[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a result written by {@link #write(DataOutputStream)}.
+     *
+     * @param in The stream to read from.
+     * @return The result.
+     * @throws IOException If the result is malformed or cannot be read.
+     */
+    public static QueryResult read(DataInputStream in) throws IOException {
+        int columnCount = in.readInt();
+        String[] columnNames = new String[columnCount];
+        ColumnType[] columnTypes = new ColumnType[columnCount];
+        ColumnType[] types = ColumnType.values();
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = readString(in);
+            int type = in.readUnsignedByte();
+            if (type >= types.length) {
+                throw new IOException("Invalid column type: " + type);
+            }
+            columnTypes[i] = types[type];
+        }
+        QueryResult result = new QueryResult(columnNames, columnTypes);
+        int rowCount = in.readInt();
+        byte[] bitmap = new byte[(columnCount + 7) / 8];
+        for (int r = 0; r < rowCount; r++) {
+            in.readFully(bitmap);
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                if ((bitmap[i / 8] & (1 << (i % 8))) != 0) {
+                    continue;
+                }
+                switch (columnTypes[i]) {
+                    case INT:
+                        row[i] = in.readLong();
+                        break;
+                    case DOUBLE:
+                        row[i] = in.readDouble();
+                        break;
+                    default:
+                        row[i] = readString(in);
+                }
+            }
+            result.addRow(row);
+        }
+        return result;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @param out The stream to write to.
+     * @param value The string.
+     * @throws IOException If the string cannot be written.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param in The stream to read from.
+     * @return The string.
+     * @throws IOException If the string cannot be read.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,106 @@
+package org.example;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ReadWriteSet {
+    private final Map<File, Set<Long>> reads = new ConcurrentHashMap<>();
+    private final Map<File, Set<Long>> writes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an empty read and write set for an optimistic transaction. The transaction records every
+     * record it reads and writes, and is validated against them when it commits instead of locking them.
+     * Rows read by a scan are all recorded, whether or not they matched the statement's condition, so the
+     * validation errs on the side of rolling back.
+     */
+    public ReadWriteSet() {
+    }
+
+    /**
+     * Records that the transaction has read a record.
+     *
+     * @param file The table file.
+     * @param recordId The identifier of the record.
+     */
+    public void recordRead(File file, long recordId) {
+        reads.computeIfAbsent(file.getAbsoluteFile(), f -> ConcurrentHashMap.newKeySet()).add(recordId);
+    }
+
+    /**
+     * Records that the transaction has inserted, changed or deleted a record.
+     *
+     * @param file The table file.
+     * @param recordId The identifier of the record.
+     */
+    public void recordWrite(File file, long recordId) {
+        writes.computeIfAbsent(file.getAbsoluteFile(), f -> ConcurrentHashMap.newKeySet()).add(recordId);
+    }
+
+    /**
+     * Returns the number of records the transaction has read.
+     *
+     * @return The size of the read set.
+     */
+    public int getReadCount() {
+        return count(reads);
+    }
+
+    /**
+     * Returns the number of records the transaction has written.
+     *
+     * @return The size of the write set.
+     */
+    public int getWriteCount() {
+        return count(writes);
+    }
+
+    /**
+     * Validates the transaction before it commits: none of the records it read or wrote may have been changed
+     * by a transaction that committed after its snapshot was taken. The caller must keep other optimistic
+     * transactions from committing until this transaction has committed.
+     *
+     * @param snapshot The snapshot of the transaction.
+     * @throws Exception If a record was changed by a concurrent transaction, naming the first one found.
+     */
+    public void validate(Snapshot snapshot) throws Exception {
+        validate(snapshot, reads, "read");
+        validate(snapshot, writes, "written");
+    }
+
+    /**
+     * Validates one of the sets.
+     *
+     * @param snapshot The snapshot of the transaction.
+     * @param records The records of the set, by table file.
+     * @param access How the transaction accessed the records, for the error message.
+     * @throws Exception If a record was changed by a concurrent transaction.
+     */
+    private static void validate(Snapshot snapshot, Map<File, Set<Long>> records, String access) throws Exception {
+        VersionStore versionStore = VersionStore.getInstance();
+        for (Map.Entry<File, Set<Long>> table : records.entrySet()) {
+            for (long recordId : table.getValue()) {
+                if (versionStore.isChangedSince(snapshot, table.getKey(), recordId)) {
+                    throw new Exception("Could not serialize access: record " + RecordId.toString(recordId) + " of "
+                            + table.getKey().getName() + " " + access + " by the transaction was changed by a "
+                            + "concurrent transaction. Retry the transaction.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the records of a set.
+     *
+     * @param records The records of the set, by table file.
+     * @return The number of records.
+     */
+    private static int count(Map<File, Set<Long>> records) {
+        int count = 0;
+        for (Set<Long> recordIds : records.values()) {
+            count += recordIds.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,45 @@
+package org.example;
+
+public class RecordId {
+
+    /**
+     * Packs a page number and slot number into a single record identifier.
+     *
+     * @param pageNumber The page holding the record.
+     * @param slot The slot of the record within the page.
+     * @return The record identifier.
+     */
+    public static long of(int pageNumber, int slot) {
+        return ((long) pageNumber << 16) | (slot & 0xFFFF);
+    }
+
+    /**
+     * Returns the page number of a record identifier.
+     *
+     * @param recordId The record identifier.
+     * @return The page number.
+     */
+    public static int page(long recordId) {
+        return (int) (recordId >>> 16);
+    }
+
+    /**
+     * Returns the slot number of a record identifier.
+     *
+     * @param recordId The record identifier.
+     * @return The slot number.
+     */
+    public static int slot(long recordId) {
+        return (int) (recordId & 0xFFFF);
+    }
+
+    /**
+     * Formats a record identifier for messages.
+     *
+     * @param recordId The record identifier.
+     * @return The record identifier as "(page,slot)".
+     */
+    public static String toString(long recordId) {
+        return "(" + page(recordId) + "," + slot(recordId) + ")";
+    }
+}
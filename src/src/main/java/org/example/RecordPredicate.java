@@ -0,0 +1,300 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public abstract class RecordPredicate {
+    /** The cost of testing a numeric field, which is read straight from the record bytes. */
+    static final double NUMERIC_COST = 1.0;
+    /** The cost of testing a string field, which has to be decoded first. */
+    static final double STRING_COST = 3.0;
+    /** The cost of matching a decoded field against a LIKE pattern with wildcards. */
+    static final double PATTERN_COST = 8.0;
+
+    /** The predicate of a condition that no row satisfies, such as a comparison with NULL. */
+    static final RecordPredicate NONE = new RecordPredicate() {
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) {
+            return false;
+        }
+
+        @Override
+        public double getCost() {
+            return 0;
+        }
+
+        @Override
+        public double getSelectivity() {
+            return 0;
+        }
+    };
+
+    /**
+     * Evaluates the predicate on a record in place.
+     *
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record within the buffer.
+     * @return true if the record matches, false otherwise.
+     * @throws Exception If a field cannot be compared with the value of the condition.
+     */
+    public abstract boolean matches(ByteBuffer buffer, int offset) throws Exception;
+
+    /**
+     * Returns the estimated cost of evaluating the predicate on one record, counted in tests of numeric fields.
+     *
+     * @return The cost.
+     */
+    public abstract double getCost();
+
+    /**
+     * Returns the estimated fraction of records that match the predicate.
+     *
+     * @return The selectivity, from 0 to 1.
+     */
+    public abstract double getSelectivity();
+
+    /**
+     * Prepares a WHERE condition for evaluation against encoded records, with values bound to its parameter
+     * markers. Negations are pushed down to the conditions on single columns, so that the predicate follows
+     * the rules of SQL for null fields: a condition on a null field neither holds nor fails, and neither does
+     * its negation, so such a row never matches. Conditions combined with AND or OR are ordered by their
+     * estimated cost and selectivity, so that cheap conditions that decide the outcome for most records are
+     * evaluated first.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table, or null if it has not been analyzed.
+     * @param condition The WHERE condition.
+     * @param parameters The values of the parameter markers, in order.
+     * @return The predicate.
+     * @throws Exception If a column does not exist, a parameter has no value, or a value does not fit its
+     *                   column.
+     */
+    public static RecordPredicate create(TableSchema schema, TableStatistics statistics,
+                                         SqlStatement.Condition condition, SqlStatement.Literal[] parameters)
+            throws Exception {
+        return create(schema, statistics != null ? statistics : TableStatistics.NONE, condition, parameters, false);
+    }
+
+    /**
+     * Finds a column a condition names that the table does not have.
+     *
+     * @param schema The schema of the table.
+     * @param condition The condition.
+     * @return The name of the first such column, or null if the table has every column of the condition.
+     */
+    public static String findMissingColumn(TableSchema schema, SqlStatement.Condition condition) {
+        if (condition instanceof SqlStatement.Not) {
+            return findMissingColumn(schema, ((SqlStatement.Not) condition).getOperand());
+        }
+        if (condition instanceof SqlStatement.Junction) {
+            for (SqlStatement.Condition operand : ((SqlStatement.Junction) condition).getOperands()) {
+                String column = findMissingColumn(schema, operand);
+                if (column != null) {
+                    return column;
+                }
+            }
+            return null;
+        }
+        String column = ((SqlStatement.ColumnCondition) condition).getColumn();
+        return schema.getColumnIndex(column) == -1 ? column : null;
+    }
+
+    /**
+     * Prepares a condition or its negation.
+     *
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table.
+     * @param condition The condition.
+     * @param parameters The values of the parameter markers, in order.
+     * @param negated true to prepare the negation of the condition.
+     * @return The predicate.
+     * @throws Exception If the condition does not fit the table.
+     */
+    private static RecordPredicate create(TableSchema schema, TableStatistics statistics,
+                                          SqlStatement.Condition condition, SqlStatement.Literal[] parameters,
+                                          boolean negated) throws Exception {
+        if (condition instanceof SqlStatement.Not) {
+            return create(schema, statistics, ((SqlStatement.Not) condition).getOperand(), parameters, !negated);
+        }
+        if (condition instanceof SqlStatement.Junction) {
+            // NOT (a AND b) is NOT a OR NOT b, and NOT (a OR b) is NOT a AND NOT b
+            SqlStatement.Junction junction = (SqlStatement.Junction) condition;
+            List<RecordPredicate> operands = new ArrayList<>();
+            for (SqlStatement.Condition operand : junction.getOperands()) {
+                operands.add(create(schema, statistics, operand, parameters, negated));
+            }
+            return new Junction(junction.isConjunction() != negated, operands);
+        }
+
+        String columnName = ((SqlStatement.ColumnCondition) condition).getColumn();
+        int column = schema.getColumnIndex(columnName);
+        if (column == -1) {
+            throw new Exception("Column '" + columnName + "' does not exist in table '" + schema.getTableName()
+                    + "'.");
+        }
+        if (condition instanceof SqlStatement.IsNull) {
+            return ColumnPredicate.isNull(schema, statistics, column, negated);
+        }
+        if (condition instanceof SqlStatement.Comparison) {
+            SqlStatement.Comparison comparison = (SqlStatement.Comparison) condition;
+            SqlStatement.Literal value = comparison.getValue().bind(parameters);
+            if (value.getType() == SqlStatement.Literal.Type.NULL) {
+                return NONE;
+            }
+            String operator = negated ? negate(comparison.getOperator()) : comparison.getOperator();
+            return ColumnPredicate.compare(schema, statistics, column, operator, value.getText());
+        }
+        if (condition instanceof SqlStatement.Between) {
+            SqlStatement.Between between = (SqlStatement.Between) condition;
+            SqlStatement.Literal low = between.getLow().bind(parameters);
+            SqlStatement.Literal high = between.getHigh().bind(parameters);
+            if (low.getType() == SqlStatement.Literal.Type.NULL || high.getType() == SqlStatement.Literal.Type.NULL) {
+                return NONE;
+            }
+            if (!negated) {
+                return ColumnPredicate.between(schema, statistics, column, low.getText(), high.getText());
+            }
+            // NOT BETWEEN is outside either bound
+            return new Junction(false, Arrays.asList(
+                    ColumnPredicate.compare(schema, statistics, column, "<", low.getText()),
+                    ColumnPredicate.compare(schema, statistics, column, ">", high.getText())));
+        }
+        if (condition instanceof SqlStatement.In) {
+            List<String> values = new ArrayList<>();
+            for (SqlStatement.Literal literal : ((SqlStatement.In) condition).getValues()) {
+                SqlStatement.Literal value = literal.bind(parameters);
+                if (value.getType() == SqlStatement.Literal.Type.NULL) {
+                    if (negated) {
+                        // No value is known to differ from NULL
+                        return NONE;
+                    }
+                    continue;
+                }
+                values.add(value.getText());
+            }
+            return values.isEmpty() ? NONE : ColumnPredicate.in(schema, statistics, column, values, negated);
+        }
+        SqlStatement.Literal pattern = ((SqlStatement.Like) condition).getPattern().bind(parameters);
+        if (pattern.getType() == SqlStatement.Literal.Type.NULL) {
+            return NONE;
+        }
+        return ColumnPredicate.like(schema, statistics, column, pattern.getText(), negated);
+    }
+
+    /**
+     * Returns the comparison operator that holds exactly when another one fails on a non-null field.
+     *
+     * @param operator The comparison operator.
+     * @return The negated operator.
+     */
+    private static String negate(String operator) {
+        switch (operator) {
+            case "=":
+                return "<>";
+            case "<>":
+                return "=";
+            case "<":
+                return ">=";
+            case "<=":
+                return ">";
+            case ">":
+                return "<=";
+            case ">=":
+                return "<";
+            default:
+                return operator;
+        }
+    }
+
+    /**
+     * Conditions combined with AND or OR. An AND stops at the first condition that fails, and an OR at the
+     * first one that holds, so the conditions are ordered by the expected cost of reaching that outcome: an
+     * AND evaluates first the conditions with the lowest cost per record they reject, an OR those with the
+     * lowest cost per record they accept.
+     */
+    static final class Junction extends RecordPredicate {
+        private final boolean conjunction;
+        private final RecordPredicate[] operands;
+        private final double cost;
+        private final double selectivity;
+
+        /**
+         * Constructs a combination of predicates. Nested combinations of the same kind are flattened into it.
+         *
+         * @param conjunction true to combine the predicates with AND, false to combine them with OR.
+         * @param operands The combined predicates.
+         */
+        Junction(boolean conjunction, List<RecordPredicate> operands) {
+            List<RecordPredicate> flattened = new ArrayList<>();
+            for (RecordPredicate operand : operands) {
+                if (operand instanceof Junction && ((Junction) operand).conjunction == conjunction) {
+                    flattened.addAll(Arrays.asList(((Junction) operand).operands));
+                } else {
+                    flattened.add(operand);
+                }
+            }
+            this.conjunction = conjunction;
+            flattened.sort(Comparator.comparingDouble(this::rank));
+            this.operands = flattened.toArray(new RecordPredicate[0]);
+
+            // Every predicate is only evaluated on the records the ones before it did not decide
+            double cost = 0;
+            double undecided = 1;
+            for (RecordPredicate operand : this.operands) {
+                cost += undecided * operand.getCost();
+                undecided *= conjunction ? operand.getSelectivity() : 1 - operand.getSelectivity();
+            }
+            this.cost = cost;
+            this.selectivity = conjunction ? undecided : 1 - undecided;
+        }
+
+        /**
+         * Returns the expected cost of a predicate per record whose outcome it decides for the combination.
+         *
+         * @param operand The predicate.
+         * @return The cost per rejected record for AND, per accepted record for OR.
+         */
+        private double rank(RecordPredicate operand) {
+            double decided = conjunction ? 1 - operand.getSelectivity() : operand.getSelectivity();
+            return decided <= 0 ? Double.MAX_VALUE : operand.getCost() / decided;
+        }
+
+        /**
+         * Evaluates the predicates in order until one decides the outcome.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return true if the record matches, false otherwise.
+         * @throws Exception If a predicate cannot be evaluated.
+         */
+        @Override
+        public boolean matches(ByteBuffer buffer, int offset) throws Exception {
+            for (RecordPredicate operand : operands) {
+                if (operand.matches(buffer, offset) != conjunction) {
+                    return !conjunction;
+                }
+            }
+            return conjunction;
+        }
+
+        /**
+         * Returns the expected cost of evaluating the predicates in their order on one record.
+         *
+         * @return The cost.
+         */
+        @Override
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * Returns the estimated selectivity of the combination, taking the predicates to be independent.
+         *
+         * @return The selectivity, from 0 to 1.
+         */
+        @Override
+        public double getSelectivity() {
+            return selectivity;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface RecordScan {
+
+    /**
+     * Advances to the next record.
+     *
+     * @return true if a record is available, false at the end of the table.
+     * @throws IOException If an I/O error occurs.
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Returns the identifier of the current record.
+     *
+     * @return The record identifier.
+     */
+    long getRecordId();
+
+    /**
+     * Returns the buffer holding the current record. The buffer is only valid until the next call to next().
+     *
+     * @return The buffer holding the record.
+     */
+    ByteBuffer getBuffer();
+
+    /**
+     * Returns the offset of the current record within the buffer.
+     *
+     * @return The record offset.
+     */
+    int getOffset();
+
+    /**
+     * Returns the position of the current record, from which {@link Table#scanAfter(Object)} resumes the scan.
+     * Unlike record identifiers, positions remain valid after the table is closed.
+     *
+     * @return The position of the record.
+     */
+    default Object getPosition() {
+        return getRecordId();
+    }
+}
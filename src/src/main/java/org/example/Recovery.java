@@ -0,0 +1,453 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class Recovery {
+    private static final long PROGRESS_BYTES = 4 * 1024 * 1024;
+
+    private final File logFile;
+    private final long baseLsn;
+    private final long checkpointLsn;
+    private final Map<String, FileChannel> files = new HashMap<>();
+    private final Map<String, Long> dirtyPages = new HashMap<>();
+    private final Map<Long, Long> activeTransactions = new HashMap<>();
+    private long endLsn;
+    private long maxTransactionId;
+    private String summary;
+
+    /**
+     * Reads a record of the log by LSN.
+     */
+    @FunctionalInterface
+    interface RecordReader {
+        /**
+         * Reads a record.
+         *
+         * @param lsn The LSN of the record.
+         * @return The record.
+         * @throws IOException If the record cannot be read.
+         */
+        WriteAheadLog.Record read(long lsn) throws IOException;
+    }
+
+    /**
+     * Writes the old contents of the ranges of a page change back to the page.
+     */
+    @FunctionalInterface
+    interface PageRestorer {
+        /**
+         * Restores the old contents of a page change.
+         *
+         * @param change The page change to undo.
+         * @throws IOException If the page cannot be written.
+         */
+        void restore(WriteAheadLog.PageChange change) throws IOException;
+    }
+
+    /**
+     * Constructs the recovery of a log.
+     *
+     * @param logFile The log file.
+     * @param baseLsn The LSN of the first record in the file.
+     * @param checkpointLsn The LSN of the last complete checkpoint record, or 0 if there is none.
+     */
+    Recovery(File logFile, long baseLsn, long checkpointLsn) {
+        this.logFile = logFile;
+        this.baseLsn = baseLsn;
+        this.checkpointLsn = checkpointLsn;
+    }
+
+    /**
+     * Brings the data files to the state of the last committed transaction in three passes, as in ARIES.
+     * Analysis reads the log from the last checkpoint to find the pages that may be stale on disk and the
+     * transactions that never finished. Redo repeats history from the oldest change to such a page. Undo then
+     * rolls the unfinished transactions back. The data files are forced at the end. A torn record at the end
+     * of the log ends the log.
+     *
+     * @return The LSN following the last valid record.
+     * @throws IOException If the log or a data file cannot be read or written.
+     */
+    long run() throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            long scanStart = analyze(log);
+            long analyzed = System.nanoTime();
+            long redoLsn = scanStart;
+            for (long recoveryLsn : dirtyPages.values()) {
+                redoLsn = Math.min(redoLsn, recoveryLsn);
+            }
+            if (endLsn == scanStart) {
+                return endLsn;
+            }
+
+            System.out.println("Recovering from the write-ahead log: " + (endLsn - redoLsn) / 1024 + " KB to redo, "
+                    + activeTransactions.size() + " unfinished transactions.");
+            long redone = redo(log, redoLsn, scanStart);
+            long redoneAt = System.nanoTime();
+            long undone = undo(activeTransactions,
+                    lsn -> WriteAheadLog.Record.read(log, WriteAheadLog.FILE_HEADER_SIZE + (lsn - baseLsn), lsn),
+                    this::restore);
+            long undoneAt = System.nanoTime();
+            for (FileChannel channel : files.values()) {
+                channel.force(true);
+            }
+
+            summary = "redid " + redone + " records in " + millis(analyzed, redoneAt) + " ms, undid " + undone
+                    + " changes of " + activeTransactions.size() + " unfinished transactions in "
+                    + millis(redoneAt, undoneAt) + " ms (analysis " + millis(started, analyzed) + " ms, total "
+                    + millis(started, System.nanoTime()) + " ms)";
+            System.out.println("Recovery complete: " + summary + ".");
+            LogManager.logEvent("RECOVERY", "Recovery complete: " + summary);
+            return endLsn;
+        } finally {
+            for (FileChannel channel : files.values()) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the highest transaction identifier found in the log.
+     *
+     * @return The transaction identifier, or 0.
+     */
+    long getMaxTransactionId() {
+        return maxTransactionId;
+    }
+
+    /**
+     * Returns a summary of the work done by the last run.
+     *
+     * @return The summary, or null if there was nothing to recover.
+     */
+    String getSummary() {
+        return summary;
+    }
+
+    /**
+     * Rolls back transactions by restoring the old contents of the pages they changed, newest change first
+     * across all of them. Changes to files that a rolled-back transaction created, deleted or renamed are
+     * skipped for the file versions such an operation replaced: file operations are not undone, so a file a
+     * transaction created is kept with its contents.
+     *
+     * @param transactions The last LSN of each transaction to roll back, by transaction identifier.
+     * @param reader Reads records by LSN.
+     * @param restorer Writes the old contents back.
+     * @return The number of page changes undone.
+     * @throws IOException If the log cannot be read or a page cannot be written.
+     */
+    static long undo(Map<Long, Long> transactions, RecordReader reader, PageRestorer restorer) throws IOException {
+        List<Long> pageLsns = new ArrayList<>();
+        Set<String> created = new HashSet<>();
+        Map<String, Long> replaced = new HashMap<>();
+        for (long lastLsn : transactions.values()) {
+            long lsn = lastLsn;
+            while (lsn != 0) {
+                WriteAheadLog.Record record = reader.read(lsn);
+                ByteBuffer payload = ByteBuffer.wrap(record.payload);
+                switch (record.type) {
+                    case PAGE:
+                        pageLsns.add(lsn);
+                        break;
+                    case CREATE_FILE:
+                        created.add(WriteAheadLog.readPath(payload));
+                        break;
+                    case DELETE_FILE:
+                        replaced.merge(WriteAheadLog.readPath(payload), lsn, Math::max);
+                        break;
+                    case RENAME_FILE:
+                        replaced.merge(WriteAheadLog.readPath(payload), lsn, Math::max);
+                        replaced.merge(WriteAheadLog.readPath(payload), lsn, Math::max);
+                        break;
+                    default:
+                        break;
+                }
+                lsn = record.previousLsn;
+            }
+        }
+
+        pageLsns.sort(Collections.reverseOrder());
+        long undone = 0;
+        for (long lsn : pageLsns) {
+            WriteAheadLog.PageChange change = new WriteAheadLog.PageChange(reader.read(lsn));
+            if (created.contains(change.path) || replaced.getOrDefault(change.path, 0L) > lsn) {
+                continue;
+            }
+            restorer.restore(change);
+            undone++;
+        }
+        return undone;
+    }
+
+    /**
+     * Reads the log from the last checkpoint (or its beginning) to its end, rebuilding the dirty page table
+     * and the table of unfinished transactions as of the crash.
+     *
+     * @param log The log file.
+     * @return The LSN the scan started from.
+     * @throws IOException If the log cannot be read.
+     */
+    private long analyze(FileChannel log) throws IOException {
+        long scanStart = checkpointLsn >= baseLsn ? checkpointLsn : baseLsn;
+        DataInputStream input = open(log, scanStart);
+        if (scanStart != baseLsn && WriteAheadLog.Record.read(input, scanStart) == null) {
+            // The checkpoint record is not readable, so the whole log has to be analyzed
+            scanStart = baseLsn;
+        }
+        input = open(log, scanStart);
+        long lsn = scanStart;
+        WriteAheadLog.Record record;
+        while ((record = WriteAheadLog.Record.read(input, lsn)) != null) {
+            maxTransactionId = Math.max(maxTransactionId, record.transactionId);
+            if (record.type == WriteAheadLog.RecordType.CHECKPOINT && lsn == scanStart) {
+                loadCheckpoint(record);
+            } else if (record.type == WriteAheadLog.RecordType.PAGE) {
+                ByteBuffer payload = ByteBuffer.wrap(record.payload);
+                String path = WriteAheadLog.readPath(payload);
+                dirtyPages.putIfAbsent(path + "#" + payload.getInt(), lsn);
+            }
+            if (record.transactionId != 0) {
+                if (record.type == WriteAheadLog.RecordType.COMMIT || record.type == WriteAheadLog.RecordType.ABORT) {
+                    activeTransactions.remove(record.transactionId);
+                } else {
+                    activeTransactions.put(record.transactionId, lsn);
+                }
+            }
+            lsn += record.length;
+        }
+        endLsn = lsn;
+        return scanStart;
+    }
+
+    /**
+     * Starts the analysis from the tables saved in a checkpoint record.
+     *
+     * @param record The checkpoint record.
+     */
+    private void loadCheckpoint(WriteAheadLog.Record record) {
+        ByteBuffer payload = ByteBuffer.wrap(record.payload);
+        int pageCount = payload.getInt();
+        for (int i = 0; i < pageCount; i++) {
+            String path = WriteAheadLog.readPath(payload);
+            int pageNumber = payload.getInt();
+            dirtyPages.put(path + "#" + pageNumber, payload.getLong());
+        }
+        int transactionCount = payload.getInt();
+        for (int i = 0; i < transactionCount; i++) {
+            long transactionId = payload.getLong();
+            payload.getLong();
+            activeTransactions.put(transactionId, payload.getLong());
+            maxTransactionId = Math.max(maxTransactionId, transactionId);
+        }
+    }
+
+    /**
+     * Repeats history: applies the new contents of every change to a page in the dirty page table that is at
+     * least as recent as the oldest change that may be missing from the page on disk, and every file operation
+     * logged after the checkpoint. Changes to files whose database directory no longer exists are skipped.
+     *
+     * @param log The log file.
+     * @param redoLsn The LSN to start from.
+     * @param fileRedoLsn The LSN from which file operations are repeated.
+     * @return The number of records applied.
+     * @throws IOException If the log or a data file cannot be read or written.
+     */
+    private long redo(FileChannel log, long redoLsn, long fileRedoLsn) throws IOException {
+        long applied = 0;
+        long total = endLsn - redoLsn;
+        long nextReport = total >= PROGRESS_BYTES ? total / 10 : Long.MAX_VALUE;
+        DataInputStream input = open(log, redoLsn);
+        long lsn = redoLsn;
+        WriteAheadLog.Record record;
+        while (lsn < endLsn && (record = WriteAheadLog.Record.read(input, lsn)) != null) {
+            if (record.type == WriteAheadLog.RecordType.PAGE) {
+                WriteAheadLog.PageChange change = new WriteAheadLog.PageChange(record);
+                Long recoveryLsn = dirtyPages.get(change.path + "#" + change.pageNumber);
+                if (recoveryLsn != null && lsn >= recoveryLsn && apply(change)) {
+                    applied++;
+                }
+            } else if (lsn >= fileRedoLsn && redoFileOperation(record)) {
+                applied++;
+            }
+            lsn += record.length;
+            if (lsn - redoLsn >= nextReport) {
+                System.out.println("Recovery: redo " + (lsn - redoLsn) * 100 / total + "% done.");
+                nextReport += total / 10;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Writes the new contents of a page change to its file.
+     *
+     * @param change The page change.
+     * @return true if the change was applied, false if the directory of the file no longer exists.
+     * @throws IOException If the file cannot be written.
+     */
+    private boolean apply(WriteAheadLog.PageChange change) throws IOException {
+        FileChannel channel = getChannel(change.path, true);
+        if (channel == null) {
+            return false;
+        }
+        long position = (long) change.pageNumber * HeapFile.PAGE_SIZE;
+        if (change.format) {
+            write(channel, new byte[HeapFile.PAGE_SIZE], position);
+        }
+        for (int i = 0; i < change.offsets.length; i++) {
+            write(channel, change.after[i], position + change.offsets[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the old contents of a page change back to its file, if the file still exists.
+     *
+     * @param change The page change.
+     * @throws IOException If the file cannot be written.
+     */
+    private void restore(WriteAheadLog.PageChange change) throws IOException {
+        FileChannel channel = getChannel(change.path, false);
+        if (channel != null) {
+            long position = (long) change.pageNumber * HeapFile.PAGE_SIZE;
+            for (int i = 0; i < change.offsets.length; i++) {
+                write(channel, change.before[i], position + change.offsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Repeats a file operation.
+     *
+     * @param record The record.
+     * @return true if the record was a file operation, false otherwise.
+     * @throws IOException If the file operation fails.
+     */
+    private boolean redoFileOperation(WriteAheadLog.Record record) throws IOException {
+        ByteBuffer payload = ByteBuffer.wrap(record.payload);
+        switch (record.type) {
+            case CREATE_FILE: {
+                String path = WriteAheadLog.readPath(payload);
+                closeChannel(path);
+                File file = new File(path);
+                if (file.getAbsoluteFile().getParentFile().isDirectory()) {
+                    Files.deleteIfExists(file.toPath());
+                    file.createNewFile();
+                }
+                return true;
+            }
+            case DELETE_FILE: {
+                String path = WriteAheadLog.readPath(payload);
+                closeChannel(path);
+                Files.deleteIfExists(new File(path).toPath());
+                return true;
+            }
+            case RENAME_FILE: {
+                String source = WriteAheadLog.readPath(payload);
+                String target = WriteAheadLog.readPath(payload);
+                closeChannel(source);
+                closeChannel(target);
+                File sourceFile = new File(source);
+                if (sourceFile.exists()) {
+                    Files.move(sourceFile.toPath(), new File(target).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the channel of a data file, opening it on first use.
+     *
+     * @param path The path of the file.
+     * @param create true to create the file if it does not exist.
+     * @return The channel, or null if the file cannot be used.
+     * @throws IOException If the file cannot be opened.
+     */
+    private FileChannel getChannel(String path, boolean create) throws IOException {
+        FileChannel channel = files.get(path);
+        if (channel == null) {
+            File file = new File(path);
+            if (!file.getAbsoluteFile().getParentFile().isDirectory() || (!create && !file.exists())) {
+                return null;
+            }
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            files.put(path, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * Forces and closes the channel of a data file before the file is replaced.
+     *
+     * @param path The path of the file.
+     * @throws IOException If the channel cannot be closed.
+     */
+    private void closeChannel(String path) throws IOException {
+        FileChannel channel = files.remove(path);
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    /**
+     * Opens a sequential read of the log starting at an LSN. The stream is not closed by the caller, since that
+     * would close the log channel.
+     *
+     * @param log The log file.
+     * @param lsn The LSN to start at.
+     * @return The stream.
+     * @throws IOException If the log cannot be read.
+     */
+    private DataInputStream open(FileChannel log, long lsn) throws IOException {
+        InputStream input = Channels.newInputStream(log.position(WriteAheadLog.FILE_HEADER_SIZE + (lsn - baseLsn)));
+        return new DataInputStream(new BufferedInputStream(input, 1 << 16));
+    }
+
+    /**
+     * Writes bytes to a channel at a position.
+     *
+     * @param channel The channel.
+     * @param bytes The bytes to write.
+     * @param position The file position.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void write(FileChannel channel, byte[] bytes, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Returns the milliseconds between two System.nanoTime readings.
+     *
+     * @param from The earlier reading.
+     * @param to The later reading.
+     * @return The elapsed milliseconds.
+     */
+    private static long millis(long from, long to) {
+        return TimeUnit.NANOSECONDS.toMillis(to - from);
+    }
+}
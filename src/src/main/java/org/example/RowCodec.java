@@ -0,0 +1,434 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RowCodec {
+
+    /**
+     * Encodes a row into its binary record format.
+     * A record starts with a null bitmap (one bit per column) followed by the non-null fields in column order:
+     * INT as an 8-byte long, DOUBLE as an 8-byte double and STRING as a 2-byte length followed by UTF-8 bytes.
+     *
+     * @param schema The schema of the table.
+     * @param values The column values in schema order; null or "NULL" stores a null.
+     * @return The encoded record.
+     * @throws Exception If a value does not match the type of its column.
+     */
+    public static byte[] encode(TableSchema schema, String[] values) throws Exception {
+        int columnCount = schema.getColumnCount();
+        int bitmapSize = (columnCount + 7) / 8;
+        byte[][] strings = new byte[columnCount][];
+        int size = bitmapSize;
+
+        for (int i = 0; i < columnCount; i++) {
+            String value = i < values.length ? values[i] : null;
+            if (isNull(schema.getColumnType(i), value)) {
+                continue;
+            }
+            if (schema.getColumnType(i) == ColumnType.STRING) {
+                strings[i] = value.getBytes(StandardCharsets.UTF_8);
+                if (strings[i].length > 0xFFFF) {
+                    throw new Exception("Value too long for column " + schema.getColumnName(i) + ".");
+                }
+                size += 2 + strings[i].length;
+            } else {
+                size += 8;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        byte[] bitmap = new byte[bitmapSize];
+        buffer.position(bitmapSize);
+        for (int i = 0; i < columnCount; i++) {
+            String value = i < values.length ? values[i] : null;
+            ColumnType type = schema.getColumnType(i);
+            if (isNull(type, value)) {
+                bitmap[i / 8] |= (byte) (1 << (i % 8));
+                continue;
+            }
+            try {
+                switch (type) {
+                    case INT:
+                        buffer.putLong(Long.parseLong(value.trim()));
+                        break;
+                    case DOUBLE:
+                        buffer.putDouble(Double.parseDouble(value.trim()));
+                        break;
+                    default:
+                        buffer.putShort((short) strings[i].length);
+                        buffer.put(strings[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new Exception("Invalid " + type + " value for column " + schema.getColumnName(i) + ": " + value);
+            }
+        }
+        buffer.position(0);
+        buffer.put(bitmap);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a binary record into its column values.
+     *
+     * @param schema The schema of the table.
+     * @param record The encoded record.
+     * @return The column values in schema order; null columns are returned as null.
+     */
+    public static String[] decode(TableSchema schema, byte[] record) {
+        return decode(schema, ByteBuffer.wrap(record), 0);
+    }
+
+    /**
+     * Decodes a binary record stored at the given offset of a buffer.
+     *
+     * @param schema The schema of the table.
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record within the buffer.
+     * @return The column values in schema order; null columns are returned as null.
+     */
+    public static String[] decode(TableSchema schema, ByteBuffer buffer, int offset) {
+        int columnCount = schema.getColumnCount();
+        int position = offset + (columnCount + 7) / 8;
+        String[] values = new String[columnCount];
+
+        for (int i = 0; i < columnCount; i++) {
+            if ((buffer.get(offset + i / 8) & (1 << (i % 8))) != 0) {
+                continue;
+            }
+            switch (schema.getColumnType(i)) {
+                case INT:
+                    values[i] = Long.toString(buffer.getLong(position));
+                    position += 8;
+                    break;
+                case DOUBLE:
+                    values[i] = Double.toString(buffer.getDouble(position));
+                    position += 8;
+                    break;
+                default:
+                    values[i] = readString(buffer, position);
+                    position += 2 + (buffer.getShort(position) & 0xFFFF);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Locates a single field of a record without decoding the fields before it.
+     *
+     * @param schema The schema of the table.
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record within the buffer.
+     * @param column The position of the column.
+     * @return The absolute offset of the field within the buffer, or -1 if the field is null.
+     */
+    public static int fieldOffset(TableSchema schema, ByteBuffer buffer, int offset, int column) {
+        if ((buffer.get(offset + column / 8) & (1 << (column % 8))) != 0) {
+            return -1;
+        }
+        int position = offset + (schema.getColumnCount() + 7) / 8;
+        for (int i = 0; i < column; i++) {
+            if ((buffer.get(offset + i / 8) & (1 << (i % 8))) != 0) {
+                continue;
+            }
+            if (schema.getColumnType(i) == ColumnType.STRING) {
+                position += 2 + (buffer.getShort(position) & 0xFFFF);
+            } else {
+                position += 8;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Decodes a single field of a record.
+     *
+     * @param schema The schema of the table.
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record within the buffer.
+     * @param column The position of the column.
+     * @return The value of the field, or null if the field is null.
+     */
+    public static String decodeField(TableSchema schema, ByteBuffer buffer, int offset, int column) {
+        int position = fieldOffset(schema, buffer, offset, column);
+        if (position == -1) {
+            return null;
+        }
+        switch (schema.getColumnType(column)) {
+            case INT:
+                return Long.toString(buffer.getLong(position));
+            case DOUBLE:
+                return Double.toString(buffer.getDouble(position));
+            default:
+                return readString(buffer, position);
+        }
+    }
+
+    /**
+     * Decodes a single field of a record into a typed value.
+     *
+     * @param schema The schema of the table.
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record within the buffer.
+     * @param column The position of the column.
+     * @return A Long for INT columns, a Double for DOUBLE columns, a String for STRING columns, or null if the
+     *         field is null.
+     */
+    public static Object decodeValue(TableSchema schema, ByteBuffer buffer, int offset, int column) {
+        int position = fieldOffset(schema, buffer, offset, column);
+        if (position == -1) {
+            return null;
+        }
+        switch (schema.getColumnType(column)) {
+            case INT:
+                return buffer.getLong(position);
+            case DOUBLE:
+                return buffer.getDouble(position);
+            default:
+                return readString(buffer, position);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param buffer The buffer holding the string.
+     * @param position The offset of the length prefix.
+     * @return The decoded string.
+     */
+    static String readString(ByteBuffer buffer, int position) {
+        int length = buffer.getShort(position) & 0xFFFF;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + position + 2, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        for (int b = 0; b < length; b++) {
+            bytes[b] = buffer.get(position + 2 + b);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether a value should be stored as null for a column of the given type.
+     *
+     * @param type The type of the column.
+     * @param value The value to check.
+     * @return true if the value is null, false otherwise.
+     */
+    private static boolean isNull(ColumnType type, String value) {
+        if (value == null || value.equalsIgnoreCase("NULL")) {
+            return true;
+        }
+        return type != ColumnType.STRING && value.trim().isEmpty();
+    }
+
+    /**
+     * Formats a typed value as the text the value is decoded to by {@link #decode(TableSchema, ByteBuffer, int)}.
+     *
+     * @param value A Long, Double or String value, or null.
+     * @return The text of the value, or null for null.
+     */
+    public static String toText(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Formats the typed values of a row as the text the row is decoded to by
+     * {@link #decode(TableSchema, ByteBuffer, int)}, which is what rows are written from.
+     *
+     * @param values The typed values of the row.
+     * @return The text of the values, with null for null fields.
+     */
+    public static String[] toText(Object[] values) {
+        String[] text = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            text[i] = toText(values[i]);
+        }
+        return text;
+    }
+
+    /**
+     * The position of one column within the records of a table, worked out once from the schema so that a
+     * field can be found in every record without looking at the schema again. A field that only follows
+     * numeric fields is found from the null bitmap alone: it lies eight bytes further for every non-null field
+     * before it.
+     */
+    public static final class FieldLocator {
+        private final ColumnType type;
+        private final int column;
+        private final int bitmapSize;
+        private final int nullByte;
+        private final int nullMask;
+        private final boolean[] strings;
+
+        /**
+         * Compiles the position of a column.
+         *
+         * @param schema The schema of the table.
+         * @param column The position of the column.
+         */
+        public FieldLocator(TableSchema schema, int column) {
+            this.type = schema.getColumnType(column);
+            this.column = column;
+            this.bitmapSize = (schema.getColumnCount() + 7) / 8;
+            this.nullByte = column / 8;
+            this.nullMask = 1 << (column % 8);
+            boolean[] strings = new boolean[column];
+            boolean fixed = true;
+            for (int i = 0; i < column; i++) {
+                strings[i] = schema.getColumnType(i) == ColumnType.STRING;
+                fixed &= !strings[i];
+            }
+            this.strings = fixed ? null : strings;
+        }
+
+        /**
+         * Locates the field of the column in a record.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return The absolute offset of the field within the buffer, or -1 if the field is null.
+         */
+        public int locate(ByteBuffer buffer, int offset) {
+            if ((buffer.get(offset + nullByte) & nullMask) != 0) {
+                return -1;
+            }
+            int position = offset + bitmapSize;
+            if (strings == null) {
+                // Only numeric fields come before this one
+                int nulls = 0;
+                for (int b = 0; b < nullByte; b++) {
+                    nulls += Integer.bitCount(buffer.get(offset + b) & 0xFF);
+                }
+                nulls += Integer.bitCount(buffer.get(offset + nullByte) & (nullMask - 1));
+                return position + 8 * (column - nulls);
+            }
+            for (int i = 0; i < column; i++) {
+                if ((buffer.get(offset + i / 8) & (1 << (i % 8))) == 0) {
+                    position += strings[i] ? 2 + (buffer.getShort(position) & 0xFFFF) : 8;
+                }
+            }
+            return position;
+        }
+
+        /**
+         * Decodes the field of the column in a record as text.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return The value of the field as {@link RowCodec#decodeField} returns it, or null if the field is null.
+         */
+        public String decodeText(ByteBuffer buffer, int offset) {
+            int position = locate(buffer, offset);
+            if (position == -1) {
+                return null;
+            }
+            switch (type) {
+                case INT:
+                    return Long.toString(buffer.getLong(position));
+                case DOUBLE:
+                    return Double.toString(buffer.getDouble(position));
+                default:
+                    return readString(buffer, position);
+            }
+        }
+    }
+
+    /**
+     * The decoding of some columns of the records of a table into typed values, worked out once from the schema
+     * for a scan. Every record is read in a single pass up to the last selected field, instead of the fields
+     * before every selected one being skipped again.
+     */
+    public static final class Projection {
+        private static final byte INT = 0;
+        private static final byte DOUBLE = 1;
+        private static final byte STRING = 2;
+
+        private final int width;
+        private final int bitmapSize;
+        private final byte[] kinds;
+        private final int[] slots;
+        private final int[] copies;
+
+        /**
+         * Compiles the decoding of some columns.
+         *
+         * @param schema The schema of the table.
+         * @param columns The positions of the decoded columns, in the order of the values returned; a column
+         *                may be given more than once.
+         */
+        public Projection(TableSchema schema, int[] columns) {
+            int last = -1;
+            for (int column : columns) {
+                last = Math.max(last, column);
+            }
+            this.width = columns.length;
+            this.bitmapSize = (schema.getColumnCount() + 7) / 8;
+            this.kinds = new byte[last + 1];
+            this.slots = new int[last + 1];
+            for (int i = 0; i <= last; i++) {
+                ColumnType type = schema.getColumnType(i);
+                kinds[i] = type == ColumnType.INT ? INT : type == ColumnType.DOUBLE ? DOUBLE : STRING;
+                slots[i] = -1;
+            }
+
+            // A column selected more than once is decoded once and copied to its other slots
+            List<Integer> copies = new ArrayList<>();
+            for (int i = 0; i < columns.length; i++) {
+                if (slots[columns[i]] == -1) {
+                    slots[columns[i]] = i;
+                } else {
+                    copies.add(i);
+                    copies.add(slots[columns[i]]);
+                }
+            }
+            this.copies = new int[copies.size()];
+            for (int i = 0; i < this.copies.length; i++) {
+                this.copies[i] = copies.get(i);
+            }
+        }
+
+        /**
+         * Decodes the selected columns of a record.
+         *
+         * @param buffer The buffer holding the record.
+         * @param offset The offset of the record within the buffer.
+         * @return A Long, Double or String for every selected column, or null for a null field.
+         */
+        public Object[] decode(ByteBuffer buffer, int offset) {
+            Object[] values = new Object[width];
+            int position = offset + bitmapSize;
+            for (int i = 0; i < kinds.length; i++) {
+                if ((buffer.get(offset + i / 8) & (1 << (i % 8))) != 0) {
+                    continue;
+                }
+                int slot = slots[i];
+                switch (kinds[i]) {
+                    case INT:
+                        if (slot != -1) {
+                            values[slot] = buffer.getLong(position);
+                        }
+                        position += 8;
+                        break;
+                    case DOUBLE:
+                        if (slot != -1) {
+                            values[slot] = buffer.getDouble(position);
+                        }
+                        position += 8;
+                        break;
+                    default:
+                        if (slot != -1) {
+                            values[slot] = readString(buffer, position);
+                        }
+                        position += 2 + (buffer.getShort(position) & 0xFFFF);
+                }
+            }
+            for (int i = 0; i < copies.length; i += 2) {
+                values[copies[i]] = values[copies[i + 1]];
+            }
+            return values;
+        }
+    }
+}
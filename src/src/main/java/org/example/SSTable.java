@@ -0,0 +1,477 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+public class SSTable implements Closeable {
+    private static final int MAGIC = 0x54445353; // "TDSS"
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BITS_PER_KEY = 10;
+    private static final int FOOTER_SIZE = 32;
+
+    private final File file;
+    private final long number;
+    private final ColumnType keyType;
+    private final FileChannel channel;
+    private final Object[] blockKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final BloomFilter bloomFilter;
+    private final long entryCount;
+
+    /**
+     * Constructs an SSTable from its parsed index and bloom filter.
+     * An SSTable is an immutable file of key-sorted entries. The entries are grouped into data blocks of about
+     * BLOCK_SIZE bytes, followed by a sparse index holding the first key and location of every block, the bloom
+     * filter of all keys and a fixed-size footer. An entry is a key, the length of its value (-1 for a deletion
+     * marker) and the value.
+     *
+     * @param file The table file.
+     * @param number The file number of the table.
+     * @param keyType The type of the keys.
+     * @param channel The open file channel.
+     * @param blockKeys The first key of every data block.
+     * @param blockOffsets The file offset of every data block.
+     * @param blockLengths The length of every data block.
+     * @param bloomFilter The bloom filter of all keys.
+     * @param entryCount The number of entries.
+     */
+    private SSTable(File file, long number, ColumnType keyType, FileChannel channel, Object[] blockKeys,
+                    long[] blockOffsets, int[] blockLengths, BloomFilter bloomFilter, long entryCount) {
+        this.file = file;
+        this.number = number;
+        this.keyType = keyType;
+        this.channel = channel;
+        this.blockKeys = blockKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.bloomFilter = bloomFilter;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Writes key-sorted entries to a new SSTable file and forces it to disk.
+     *
+     * @param file The file to create.
+     * @param number The file number of the table.
+     * @param keyType The type of the keys.
+     * @param entries The entries in ascending key order. Deletion markers are {@link LsmTree#TOMBSTONE}.
+     * @param expectedCount An upper bound of the number of entries, used to size the bloom filter.
+     * @return The open table, or null if there were no entries and no file was written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static SSTable write(File file, long number, ColumnType keyType, Iterator<Map.Entry<Object, byte[]>> entries,
+                                long expectedCount) throws IOException {
+        BloomFilter bloomFilter = new BloomFilter(expectedCount, BITS_PER_KEY);
+        List<Object> blockKeys = new ArrayList<>();
+        List<Long> blockOffsets = new ArrayList<>();
+        List<Integer> blockLengths = new ArrayList<>();
+        long entryCount = 0;
+        long position = 0;
+
+        FileOutputStream stream = new FileOutputStream(file);
+        try (OutputStream out = new BufferedOutputStream(stream, 64 * 1024)) {
+            int blockLength = 0;
+            while (entries.hasNext()) {
+                Map.Entry<Object, byte[]> entry = entries.next();
+                byte[] encoded = encodeEntry(keyType, entry.getKey(), entry.getValue());
+                if (blockLength == 0) {
+                    blockKeys.add(entry.getKey());
+                    blockOffsets.add(position);
+                }
+                out.write(encoded);
+                position += encoded.length;
+                blockLength += encoded.length;
+                bloomFilter.add(entry.getKey());
+                entryCount++;
+                if (blockLength >= BLOCK_SIZE) {
+                    blockLengths.add(blockLength);
+                    blockLength = 0;
+                }
+            }
+            if (blockLength > 0) {
+                blockLengths.add(blockLength);
+            }
+            if (entryCount > 0) {
+                writeTrailer(out, keyType, blockKeys, blockOffsets, blockLengths, bloomFilter, entryCount, position);
+                out.flush();
+                stream.getChannel().force(true);
+            }
+        }
+        if (entryCount == 0) {
+            file.delete();
+            return null;
+        }
+        return open(file, number);
+    }
+
+    /**
+     * Writes the sparse index, the bloom filter and the footer that follow the data blocks of a table.
+     *
+     * @param out The stream the data blocks were written to.
+     * @param keyType The type of the keys.
+     * @param blockKeys The first key of every data block.
+     * @param blockOffsets The file offset of every data block.
+     * @param blockLengths The length of every data block.
+     * @param bloomFilter The bloom filter of all keys.
+     * @param entryCount The number of entries.
+     * @param position The length of the data blocks.
+     * @throws IOException If the stream cannot be written.
+     */
+    private static void writeTrailer(OutputStream out, ColumnType keyType, List<Object> blockKeys,
+                                     List<Long> blockOffsets, List<Integer> blockLengths, BloomFilter bloomFilter,
+                                     long entryCount, long position) throws IOException {
+        long indexOffset = position;
+        int indexSize = 4;
+        for (Object key : blockKeys) {
+            indexSize += KeyCodec.size(keyType, key) + 12;
+        }
+        ByteBuffer index = ByteBuffer.allocate(indexSize);
+        index.putInt(blockKeys.size());
+        for (int i = 0; i < blockKeys.size(); i++) {
+            index.position(KeyCodec.write(keyType, index, index.position(), blockKeys.get(i)));
+            index.putLong(blockOffsets.get(i));
+            index.putInt(blockLengths.get(i));
+        }
+        out.write(index.array());
+        position += indexSize;
+
+        long bloomOffset = position;
+        ByteBuffer bloom = ByteBuffer.allocate(bloomFilter.getSerializedSize());
+        bloomFilter.write(bloom);
+        out.write(bloom.array());
+
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        footer.putLong(indexOffset);
+        footer.putLong(bloomOffset);
+        footer.putLong(entryCount);
+        footer.putInt(keyType.ordinal());
+        footer.putInt(MAGIC);
+        out.write(footer.array());
+    }
+
+    /**
+     * Opens an SSTable file, loading its sparse index and bloom filter into memory.
+     *
+     * @param file The table file.
+     * @param number The file number of the table.
+     * @return The open table.
+     * @throws IOException If the file cannot be read or is not an SSTable.
+     */
+    public static SSTable open(File file, long number) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_SIZE) {
+                throw new IOException("Not a TinyDB SSTable file: " + file.getPath());
+            }
+            ByteBuffer footer = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong(0);
+            long bloomOffset = footer.getLong(8);
+            long entryCount = footer.getLong(16);
+            int keyTypeOrdinal = footer.getInt(24);
+            if (footer.getInt(28) != MAGIC || keyTypeOrdinal < 0 || keyTypeOrdinal >= ColumnType.values().length) {
+                throw new IOException("Not a TinyDB SSTable file: " + file.getPath());
+            }
+            ColumnType keyType = ColumnType.values()[keyTypeOrdinal];
+
+            ByteBuffer index = readFully(channel, indexOffset, (int) (bloomOffset - indexOffset));
+            int blockCount = index.getInt();
+            Object[] blockKeys = new Object[blockCount];
+            long[] blockOffsets = new long[blockCount];
+            int[] blockLengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockKeys[i] = KeyCodec.read(keyType, index, index.position());
+                index.position(index.position() + KeyCodec.size(keyType, blockKeys[i]));
+                blockOffsets[i] = index.getLong();
+                blockLengths[i] = index.getInt();
+            }
+            BloomFilter bloomFilter = BloomFilter.read(
+                    readFully(channel, bloomOffset, (int) (size - FOOTER_SIZE - bloomOffset)));
+            return new SSTable(file, number, keyType, channel, blockKeys, blockOffsets, blockLengths, bloomFilter, entryCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the file backing this table.
+     *
+     * @return The table file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the file number of the table. Numbers increase with the age of the data.
+     *
+     * @return The file number.
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the number of entries, including deletion markers.
+     *
+     * @return The entry count.
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the size of the table file.
+     *
+     * @return The size in bytes.
+     */
+    public long getSize() {
+        return file.length();
+    }
+
+    /**
+     * Looks up a key. The bloom filter rules out most tables that do not hold the key without reading them.
+     *
+     * @param key The key.
+     * @return The value, {@link LsmTree#TOMBSTONE} if the key was deleted, or null if the table does not hold the key.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] get(Object key) throws IOException {
+        if (!bloomFilter.mightContain(key)) {
+            return null;
+        }
+        int block = findBlock(key);
+        if (block == -1) {
+            return null;
+        }
+        ByteBuffer buffer = readBlock(block);
+        while (buffer.hasRemaining()) {
+            Object entryKey = KeyCodec.read(keyType, buffer, buffer.position());
+            buffer.position(buffer.position() + KeyCodec.size(keyType, entryKey));
+            int length = buffer.getInt();
+            int comparison = KeyCodec.compare(entryKey, key);
+            if (comparison == 0) {
+                return readValue(buffer, length);
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            buffer.position(buffer.position() + Math.max(0, length));
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over the entries with keys at or after a lower bound, in ascending key order.
+     *
+     * @param low The lower bound, or null to start at the first entry.
+     * @param lowInclusive Whether an entry equal to the lower bound is included.
+     * @return An iterator over the entries. Deletion markers are {@link LsmTree#TOMBSTONE}.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Iterator<Map.Entry<Object, byte[]>> iterator(Object low, boolean lowInclusive) throws IOException {
+        Cursor cursor = new Cursor(low == null ? 0 : Math.max(0, findBlock(low)));
+        if (low != null) {
+            while (cursor.hasNext()) {
+                int comparison = KeyCodec.compare(cursor.peekKey(), low);
+                if (comparison > 0 || (comparison == 0 && lowInclusive)) {
+                    break;
+                }
+                cursor.next();
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Closes the file channel.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Finds the last data block whose first key is not greater than a key.
+     *
+     * @param key The key.
+     * @return The block number, or -1 if the key is before the first block.
+     */
+    private int findBlock(Object key) {
+        int low = 0;
+        int high = blockKeys.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (KeyCodec.compare(blockKeys[mid], key) <= 0) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a data block.
+     *
+     * @param block The block number.
+     * @return The block contents.
+     * @throws IOException If an I/O error occurs.
+     */
+    private ByteBuffer readBlock(int block) throws IOException {
+        return readFully(channel, blockOffsets[block], blockLengths[block]);
+    }
+
+    /**
+     * Reads the value of an entry at the current position of a block.
+     *
+     * @param buffer The block, positioned after the value length.
+     * @param length The value length, or -1 for a deletion marker.
+     * @return The value or {@link LsmTree#TOMBSTONE}.
+     */
+    private static byte[] readValue(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            return LsmTree.TOMBSTONE;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    /**
+     * Encodes an entry.
+     *
+     * @param keyType The type of the key.
+     * @param key The key.
+     * @param value The value or {@link LsmTree#TOMBSTONE}.
+     * @return The encoded entry.
+     */
+    private static byte[] encodeEntry(ColumnType keyType, Object key, byte[] value) {
+        boolean tombstone = value == LsmTree.TOMBSTONE;
+        int keySize = KeyCodec.size(keyType, key);
+        ByteBuffer buffer = ByteBuffer.allocate(keySize + 4 + (tombstone ? 0 : value.length));
+        KeyCodec.write(keyType, buffer, 0, key);
+        buffer.position(keySize);
+        buffer.putInt(tombstone ? -1 : value.length);
+        if (!tombstone) {
+            buffer.put(value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a region of a file.
+     *
+     * @param channel The file channel.
+     * @param position The file offset.
+     * @param length The number of bytes.
+     * @return The bytes, positioned at 0.
+     * @throws IOException If the file ends early or an I/O error occurs.
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of SSTable file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * An iterator over the entries of the table, reading one data block at a time.
+     */
+    private class Cursor implements Iterator<Map.Entry<Object, byte[]>> {
+        private int block;
+        private ByteBuffer buffer;
+        private Map.Entry<Object, byte[]> next;
+
+        /**
+         * Constructs a cursor positioned at the start of a data block.
+         *
+         * @param block The first block to read.
+         * @throws IOException If an I/O error occurs.
+         */
+        private Cursor(int block) throws IOException {
+            this.block = block;
+            advance();
+        }
+
+        /**
+         * Checks whether another entry is available.
+         *
+         * @return true if next() returns an entry, false at the end of the table.
+         */
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Returns the key of the next entry without consuming it.
+         *
+         * @return The key.
+         */
+        private Object peekKey() {
+            return next.getKey();
+        }
+
+        /**
+         * Returns the next entry.
+         *
+         * @return The entry.
+         */
+        @Override
+        public Map.Entry<Object, byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Object, byte[]> entry = next;
+            try {
+                advance();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read " + file.getName() + ": " + e.getMessage(), e);
+            }
+            return entry;
+        }
+
+        /**
+         * Decodes the following entry, reading the next block when the current one is exhausted.
+         *
+         * @throws IOException If an I/O error occurs.
+         */
+        private void advance() throws IOException {
+            while (buffer == null || !buffer.hasRemaining()) {
+                if (block >= blockKeys.length) {
+                    next = null;
+                    return;
+                }
+                buffer = readBlock(block++);
+            }
+            Object key = KeyCodec.read(keyType, buffer, buffer.position());
+            buffer.position(buffer.position() + KeyCodec.size(keyType, key));
+            int length = buffer.getInt();
+            next = new AbstractMap.SimpleImmutableEntry<>(key, readValue(buffer, length));
+        }
+    }
+}
@@ -1,134 +1,89 @@
 package org.example;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 
 public class SelectCommand {
 
     /**
-     * Executes the SELECT command to retrieve records from a table.
+     * Executes the SELECT command to retrieve records from a table. Rows are printed as the cursor returns
+     * them, so the first rows appear before the scan completes and memory does not grow with the table.
      *
-     * @param tokens The tokens parsed from the command input.
-     * @param input The complete command input string.
+     * @param session The session that runs the statement.
+     * @param statement The parsed SELECT statement.
      * @throws Exception If an error occurs during command execution.
      */
-    public static void execute(String[] tokens, String input) throws Exception {
-        if (CommandProcessor.activeDatabase == null) {
-            throw new Exception("No database selected.");
-        }
+    public static void execute(Session session, SqlStatement.Select statement) throws Exception {
+        plan(session, statement).execute(session, StatementPlan.NO_PARAMETERS);
+    }
 
-        // Add logging before executing the select query
-        LogManager.logQuery("SELECT command initiated", "Attempting to execute SELECT query");
+    /**
+     * Runs a SELECT query and returns all of its rows as typed values, without formatting them for the console.
+     *
+     * @param session The session that runs the statement.
+     * @param statement The parsed SELECT statement.
+     * @return The selected columns and the matching rows.
+     * @throws Exception If the query is invalid or the table cannot be read.
+     */
+    public static QueryResult query(Session session, SqlStatement.Select statement) throws Exception {
+        return QueryResult.collect(open(session, statement));
+    }
 
-        if (input.endsWith(";")) {
-            input = input.substring(0, input.length() - 1).trim();
-        }
+    /**
+     * Opens a cursor over the rows of a SELECT query.
+     *
+     * @param session The session that runs the statement.
+     * @param statement The parsed SELECT statement.
+     * @return A cursor positioned before the first matching row.
+     * @throws Exception If the query is invalid.
+     * @see Plan#open(Session, SqlStatement.Literal[])
+     */
+    public static QueryCursor open(Session session, SqlStatement.Select statement) throws Exception {
+        return plan(session, statement).open(session, StatementPlan.NO_PARAMETERS);
+    }
 
-        // Check if the last token ends with a semicolon
-        if (tokens.length > 0 && tokens[tokens.length - 1].endsWith(";")) {
-            // Remove the semicolon from the last token
-            tokens[tokens.length - 1] = tokens[tokens.length - 1].substring(0, tokens[tokens.length - 1].length() - 1);
+    /**
+     * Plans a SELECT query against the schema of its table: the selected, filtered and ordering columns are
+     * resolved to their positions, and the scan columns and the sort position are worked out. The values of the
+     * WHERE condition may be parameter markers.
+     *
+     * @param session The session whose active database the table is resolved in.
+     * @param statement The parsed SELECT statement.
+     * @return The plan.
+     * @throws Exception If the query is invalid.
+     */
+    public static Plan plan(Session session, SqlStatement.Select statement) throws Exception {
+        if (session.getActiveDatabase() == null) {
+            throw new Exception("No database selected.");
         }
 
-        // Extract columns and table name from the query
-        String columnsPart = input.substring(7, input.indexOf("FROM")).trim();
-        String tableName = tokens[3].trim(); // Extract table name
+        String tableName = statement.getTableName();
 
         // Check if the table file exists
-        File tableFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + ".txt");
+        File tableFile = new File("tinydb/databases/" + session.getActiveDatabase() + "/" + tableName + ".tbl");
         if (!tableFile.exists()) {
             throw new Exception("Table does not exist.");
         }
 
-        String[] tableColumns = null;
-        List<Map<String, String>> rows = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(tableFile))) {
-            // Read the first line to get column names
-            String firstLine = reader.readLine();
-            if (firstLine != null && !firstLine.trim().isEmpty()) {
-                tableColumns = firstLine.split(",");
-            }
-
-            // Process each subsequent line (data rows)
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) {
-                    continue; // Skip empty lines
-                }
-
-                String[] rowValues = line.split(",");
-
-                // Create a map to store values for this row
-                Map<String, String> rowMap = new LinkedHashMap<>();
-                for (int i = 0; i < tableColumns.length; i++) {
-                    String columnName = tableColumns[i].trim();
-                    if (i < rowValues.length) {
-                        String value = rowValues[i].trim().replaceAll("^'|'$", ""); // Remove surrounding single quotes
-                        rowMap.put(columnName, value);
-                    } else {
-                        rowMap.put(columnName, ""); // Handle case where row has fewer columns
-                    }
-                }
-                rows.add(rowMap);
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading table file: " + e.getMessage());
-            return;
-        }
-
-        // Parse the WHERE condition if it exists
-        String condition = null;
-        if (input.contains("WHERE")) {
-            condition = input.substring(input.indexOf("WHERE") + 5).trim(); // Extract condition part
-
-            // Split condition into column name, operator, and value
-            String[] conditionParts = condition.split(" ");
-            if (conditionParts.length != 3) {
-                throw new Exception("Invalid condition format.");
-            }
-            String columnName = conditionParts[0].trim();
-            String operator = conditionParts[1].trim();
-            String value = conditionParts[2].trim().replaceAll("^'|'$", ""); // Remove surrounding single quotes
-
-            // Validate if the column exists in the table
-            boolean columnExists = false;
-            for (String col : tableColumns) {
-                String columnNameFromFile = col.trim().split("\\s+")[0]; // Get the column name part
-                if (columnNameFromFile.equalsIgnoreCase(columnName)) {
-                    columnExists = true;
-                    break;
-                }
-            }
+        TableSchema schema = Catalog.getInstance().getTable(session.getActiveDatabase(), tableName);
+        String[] tableColumns = schema.getColumnNames().toArray(new String[0]);
 
-            if (!columnExists) {
+        // Validate the columns of the WHERE condition if it exists
+        SqlStatement.Condition condition = statement.getWhere();
+        if (condition != null) {
+            String columnName = RecordPredicate.findMissingColumn(schema, condition);
+            if (columnName != null) {
                 throw new Exception("Column '" + columnName + "' does not exist in table '" + tableName + "'.");
             }
-
-            // Filter rows based on the condition
-            List<Map<String, String>> filteredRows = new ArrayList<>();
-            for (Map<String, String> row : rows) {
-                String columnValue = row.get(columnName);
-                if (columnValue != null && compareValues(columnValue, operator, value)) {
-                    filteredRows.add(row);
-                }
-            }
-
-            rows = filteredRows; // Update rows to filteredRows
         }
 
         // Extract and validate the selected columns
         String[] selectedColumns;
-        if (columnsPart.equals("*")) {
+        if (statement.getColumns().isEmpty()) {
             selectedColumns = tableColumns; // Select all columns
         } else {
-            selectedColumns = columnsPart.split(",");
-            for (int i = 0; i < selectedColumns.length; i++) {
-                selectedColumns[i] = selectedColumns[i].trim();
-            }
+            selectedColumns = statement.getColumns().toArray(new String[0]);
 
             List<String> validColumns = new ArrayList<>();
             for (String selectedColumn : selectedColumns) {
@@ -146,66 +101,194 @@ public class SelectCommand {
             }
             selectedColumns = validColumns.toArray(new String[0]);
         }
+        int[] selectedIndexes = new int[selectedColumns.length];
+        for (int i = 0; i < selectedColumns.length; i++) {
+            selectedIndexes[i] = schema.getColumnIndex(selectedColumns[i]);
+        }
 
-        // Print the selected rows and columns
-        if (!rows.isEmpty()) {
-            printRows(rows, selectedColumns);
-            LogManager.logQuery("SELECT command executed", "Records retrieved successfully from table: " + tableName);
-        } else {
-            System.out.println("No matching records found.");
-            LogManager.logQuery("SELECT command executed", "No matching records found for the query on table: " + tableName);
+        // Scan the selected columns, and the ordering column if it is not one of them
+        int[] scanColumns = selectedIndexes;
+        int sortColumn = -1;
+        String orderColumn = statement.getOrderBy();
+        if (orderColumn != null) {
+            int orderIndex = schema.getColumnIndex(orderColumn);
+            if (orderIndex == -1) {
+                throw new Exception("Column '" + orderColumn + "' does not exist in table '" + tableName + "'.");
+            }
+            for (int i = 0; i < selectedIndexes.length && sortColumn == -1; i++) {
+                if (selectedIndexes[i] == orderIndex) {
+                    sortColumn = i;
+                }
+            }
+            if (sortColumn == -1) {
+                scanColumns = Arrays.copyOf(selectedIndexes, selectedIndexes.length + 1);
+                sortColumn = selectedIndexes.length;
+                scanColumns[sortColumn] = orderIndex;
+            }
         }
+        return new Plan(session.getActiveDatabase(), statement, schema, selectedIndexes, scanColumns, sortColumn);
     }
 
     /**
-     * Utility method to compare values based on the operator.
-     *
-     * @param columnValue The value in the column.
-     * @param operator The operator to use for comparison.
-     * @param value The target value to compare against.
-     * @return true if the comparison is successful, false otherwise.
-     * @throws Exception If an error occurs during comparison.
+     * The plan of a SELECT query, which opens its operators with the values bound when it runs.
      */
-    private static boolean compareValues(String columnValue, String operator, String value) throws Exception {
-        try {
-            double columnNumericValue = Double.parseDouble(columnValue);
-            double targetValue = Double.parseDouble(value);
-
-            switch (operator) {
-                case ">":
-                    return columnNumericValue > targetValue;
-                case ">=":
-                    return columnNumericValue >= targetValue;
-                case "<":
-                    return columnNumericValue < targetValue;
-                case "<=":
-                    return columnNumericValue <= targetValue;
-                case "=":
-                    return columnNumericValue == targetValue;
-                default:
-                    throw new Exception("Unsupported operator: " + operator);
+    public static class Plan extends StatementPlan {
+        private final int[] selectedIndexes;
+        private final int[] scanColumns;
+        private final int sortColumn;
+
+        /**
+         * Constructs the plan of a SELECT query.
+         *
+         * @param databaseName The database the table was resolved in.
+         * @param statement The parsed SELECT statement.
+         * @param schema The schema of the table.
+         * @param selectedIndexes The positions of the selected columns.
+         * @param scanColumns The positions of the scanned columns: the selected ones and the ordering one.
+         * @param sortColumn The position of the ordering column among the scanned ones, or -1 without ORDER BY.
+         */
+        private Plan(String databaseName, SqlStatement.Select statement, TableSchema schema, int[] selectedIndexes,
+                     int[] scanColumns, int sortColumn) {
+            super(statement, databaseName, schema);
+            this.selectedIndexes = selectedIndexes;
+            this.scanColumns = scanColumns;
+            this.sortColumn = sortColumn;
+        }
+
+        /**
+         * Runs the query and prints the rows it returns.
+         *
+         * @param session The session that runs the statement.
+         * @param parameters The values of the parameter markers, in order.
+         * @throws Exception If the query is invalid.
+         */
+        @Override
+        public void execute(Session session, SqlStatement.Literal[] parameters) throws Exception {
+            int rowCount = 0;
+            String tableName;
+            try (QueryCursor cursor = open(session, parameters)) {
+                tableName = cursor.getTableName();
+                // Print the selected rows and columns
+                while (cursor.next()) {
+                    if (rowCount++ == 0) {
+                        printHeader(cursor);
+                    }
+                    printRow(cursor.getRow());
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading table file: " + e.getMessage());
+                return;
+            }
+
+            if (rowCount > 0) {
+                LogManager.logQuery("SELECT command executed", "Records retrieved successfully from table: " + tableName);
+            } else {
+                System.out.println("No matching records found.");
+                LogManager.logQuery("SELECT command executed", "No matching records found for the query on table: " + tableName);
+            }
+        }
+
+        /**
+         * Opens a cursor over the rows of the query. The plan is turned into operators: a scan of the table,
+         * through an index on a column the WHERE condition compares if the cost model prefers it for the bound
+         * values, which evaluates the whole condition on the encoded records; then a sort for an ORDER BY
+         * clause, a projection that drops the columns only needed for sorting, and a limit for a LIMIT clause. The cursor reads the snapshot of the running
+         * statement and holds no table open between the batches it fetches.
+         *
+         * @param session The session that runs the statement.
+         * @param parameters The values of the parameter markers, in order.
+         * @return A cursor positioned before the first matching row.
+         * @throws Exception If the query is invalid.
+         */
+        @Override
+        public QueryCursor open(Session session, SqlStatement.Literal[] parameters) throws Exception {
+            SqlStatement.Select statement = (SqlStatement.Select) getStatement();
+            Plan current = isCurrent(session) ? this : plan(session, statement);
+
+            // Add logging before executing the select query
+            LogManager.logQuery("SELECT command initiated", "Attempting to execute SELECT query");
+
+            String tableName = statement.getTableName();
+
+            LockManager.lockTable(session, tableName, LockManager.Mode.SHARED);
+
+            // Check if the table file exists
+            File tableFile = new File("tinydb/databases/" + session.getActiveDatabase() + "/" + tableName + ".tbl");
+            if (!tableFile.exists()) {
+                throw new Exception("Table does not exist.");
+            }
+            if (!current.isCurrent(session)) {
+                // The table changed while the lock was awaited
+                current = plan(session, statement);
+            }
+            return current.build(session, parameters);
+        }
+
+        /**
+         * Builds the operators of the query.
+         *
+         * @param session The session that runs the statement.
+         * @param parameters The values of the parameter markers, in order.
+         * @return A cursor positioned before the first matching row.
+         * @throws Exception If a parameter has no value or a WHERE value does not fit its column.
+         */
+        private QueryCursor build(Session session, SqlStatement.Literal[] parameters) throws Exception {
+            SqlStatement.Select statement = (SqlStatement.Select) getStatement();
+            TableSchema schema = getSchema();
+
+            // Prepare the WHERE condition if it exists, and look the rows up through an index only if that is
+            // estimated to read fewer rows than a scan
+            TableStatistics statistics = Catalog.getInstance().getStatistics(
+                    new File("tinydb/databases/" + session.getActiveDatabase()), statement.getTableName());
+            RecordPredicate predicate = null;
+            SqlStatement.Comparison access = null;
+            if (statement.getWhere() != null) {
+                predicate = RecordPredicate.create(schema, statistics, statement.getWhere(), parameters);
+                access = CostModel.chooseIndex(schema, statistics, statement.getWhere(), parameters);
+            }
+            TableScan scan = access != null
+                    ? new IndexScan(session, schema, predicate, scanColumns, schema.getColumnIndex(access.getColumn()),
+                            access.getOperator(), access.getValue().getText())
+                    : new SeqScan(session, schema, predicate, scanColumns);
+            Operator plan = scan;
+            if (sortColumn != -1) {
+                plan = new Sort(plan, new int[]{sortColumn}, new boolean[]{statement.isDescending()});
+            }
+            if (scanColumns.length != selectedIndexes.length) {
+                int[] outputColumns = new int[selectedIndexes.length];
+                for (int i = 0; i < outputColumns.length; i++) {
+                    outputColumns[i] = i;
+                }
+                plan = new Project(plan, outputColumns);
+            }
+            if (statement.getLimit() >= 0) {
+                plan = new Limit(plan, statement.getLimit());
             }
-        } catch (NumberFormatException e) {
-            throw new Exception("Comparison value must be numeric.");
+            return new QueryCursor(statement.getTableName(), plan, scan);
         }
     }
 
     /**
-     * Utility method to print the selected rows and columns.
+     * Prints the tab-separated names of the selected columns.
      *
-     * @param rows The list of rows to print.
-     * @param columns The list of columns to print.
+     * @param cursor The cursor over the selected rows.
      */
-    private static void printRows(List<Map<String, String>> rows, String[] columns) {
-        for (String column : columns) {
-            System.out.print(column + "\t");
+    private static void printHeader(QueryCursor cursor) {
+        for (int i = 0; i < cursor.getColumnCount(); i++) {
+            System.out.print(cursor.getColumnName(i) + "\t");
         }
         System.out.println();
-        for (Map<String, String> row : rows) {
-            for (String column : columns) {
-                System.out.print(row.get(column) + "\t");
-            }
-            System.out.println();
+    }
+
+    /**
+     * Prints the tab-separated values of a selected row.
+     *
+     * @param row The values of the row.
+     */
+    private static void printRow(Object[] row) {
+        for (Object value : row) {
+            System.out.print((value == null ? "NULL" : value) + "\t");
         }
+        System.out.println();
     }
 }
@@ -21,7 +21,7 @@ class SelectCommandTest {
         // Create test database and table
         commandProcessor.processCommand("CREATE DATABASE testdb;");
         commandProcessor.processCommand("USE testdb;");
-        commandProcessor.processCommand("CREATE TABLE people (id INT, name STRING, age INT);");
+        commandProcessor.processCommand("CREATE TABLE people (id INT(PK), name STRING, age INT);");
 
         // Insert sample data
         commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (1, 'John Doe', 30);");
@@ -54,6 +54,24 @@ class SelectCommandTest {
         assertFalse(exception.getMessage().contains("Invalid column"));
     }
 
+    @Test
+    void testSelectWithCompoundCondition() throws Exception {
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (4, NULL, NULL);");
+
+        QueryResult result = commandProcessor.query(
+                "SELECT id FROM people WHERE age BETWEEN 26 AND 40 AND name LIKE '%D%';");
+        assertEquals(1, result.getRowCount());
+        assertEquals(1L, ((Number) result.getRows().get(0)[0]).longValue());
+        assertEquals(3, commandProcessor.query("SELECT id FROM people WHERE id NOT IN (1, 3) OR age > 32;")
+                .getRowCount());
+
+        // A condition on a null field does not hold, and neither does its negation
+        assertEquals(2, commandProcessor.query("SELECT id FROM people WHERE NOT age < 30;").getRowCount());
+        result = commandProcessor.query("SELECT id FROM people WHERE name IS NULL OR age = NULL;");
+        assertEquals(1, result.getRowCount());
+        assertEquals(4L, ((Number) result.getRows().get(0)[0]).longValue());
+    }
+
     @AfterEach
     void tearDown() {
         deleteDirectory(new File("tinydb/databases/testdb"));
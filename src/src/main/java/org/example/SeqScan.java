@@ -0,0 +1,62 @@
+package org.example;
+
+public class SeqScan extends TableScan {
+    private RecordScan scan;
+    private Object position;
+
+    /**
+     * Constructs a scan over all rows of a table in storage order, opening the table for every batch.
+     *
+     * @param session The session that runs the query.
+     * @param schema The schema of the table.
+     * @param predicate The condition evaluated on the encoded records, or null to return all rows.
+     * @param columns The positions of the table columns to return.
+     */
+    public SeqScan(Session session, TableSchema schema, RecordPredicate predicate, int[] columns) {
+        super(session, schema, predicate, columns);
+    }
+
+    /**
+     * Constructs a scan over all rows of a table the caller keeps open.
+     *
+     * @param table The open table.
+     * @param predicate The condition evaluated on the encoded records, or null to return all rows.
+     * @param columns The positions of the table columns to return.
+     */
+    public SeqScan(Table table, RecordPredicate predicate, int[] columns) {
+        super(table, predicate, columns);
+    }
+
+    /**
+     * Forgets the position of the scan.
+     */
+    @Override
+    void reset() {
+        scan = null;
+        position = null;
+    }
+
+    /**
+     * Reads the next batch of matching rows, resuming after the last record read.
+     *
+     * @param table The open table.
+     * @param reopened true if the table has been opened for this batch alone.
+     * @throws Exception If the table cannot be read.
+     */
+    @Override
+    void read(Table table, boolean reopened) throws Exception {
+        if (scan == null || reopened) {
+            scan = position == null ? table.scan() : table.scanAfter(position);
+        }
+        while (!isBatchFull()) {
+            if (!scan.next()) {
+                finish();
+                return;
+            }
+            if (reopened) {
+                position = scan.getPosition();
+            }
+            add(scan.getBuffer(), scan.getOffset(), keepsRecordIds() ? scan.getRecordId() : -1);
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Server implements Closeable {
+    public static final int DEFAULT_PORT = 5454;
+    static final byte AUTHENTICATE = 'A';
+    static final byte QUERY = 'Q';
+    static final byte QUERY_ROWS = 'R';
+    static final byte UPDATE = 'U';
+    static final byte FETCH = 'F';
+    static final byte CLOSE_CURSOR = 'C';
+    static final byte QUIT = 'X';
+    static final byte OK = 'K';
+    static final byte ERROR = 'E';
+    static final byte ROWS = 'D';
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final long PLATFORM_THREAD_STACK_SIZE = 256 * 1024;
+
+    private final ServerSocket serverSocket;
+    private final ThreadFactory threadFactory;
+    private final boolean virtualThreads;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong failedLogins = new AtomicLong();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a server on a bound socket.
+     * Every client connection is served by a thread of its own that reads the client's requests, runs them in
+     * a session opened for the authenticated user, and writes one reply per request in order. A client may send
+     * several requests without waiting for their replies; replies are flushed once no further request is
+     * waiting, so a pipelined batch costs one round trip. Connection threads are virtual threads where the
+     * runtime supports them, so that thousands of mostly idle clients only cost their sockets and sessions, and
+     * platform threads with small stacks otherwise.
+     *
+     * @param serverSocket The bound server socket.
+     */
+    private Server(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+        ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+        this.virtualThreads = virtualThreadFactory != null;
+        this.threadFactory = virtualThreads ? virtualThreadFactory : createPlatformThreadFactory();
+        this.acceptor = new Thread(this::acceptConnections, "tinydb-server");
+        this.acceptor.setDaemon(true);
+    }
+
+    /**
+     * Starts a server listening on a port of the loopback interface.
+     *
+     * @param port The port, or 0 for any free port.
+     * @return The running server.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static Server start(int port) throws IOException {
+        Server server = new Server(new ServerSocket(port, 128, InetAddress.getLoopbackAddress()));
+        server.acceptor.start();
+        LogManager.logEvent("SERVER", "Listening on " + server.getAddress());
+        return server;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the address the server listens on.
+     *
+     * @return The address and port.
+     */
+    public String getAddress() {
+        return serverSocket.getInetAddress().getHostAddress() + ":" + getPort();
+    }
+
+    /**
+     * Waits until the server is closed.
+     *
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Returns a summary of the server's connections.
+     *
+     * @return The listening address, the kind of connection threads, and connection and statement counts.
+     */
+    public String getStats() {
+        return "Listening on " + getAddress() + " (" + (closed ? "closed" : "open") + "), "
+                + (virtualThreads ? "virtual" : "platform") + " threads per connection\n"
+                + "Connections: " + connections.size() + " open, " + accepted.get() + " accepted, "
+                + failedLogins.get() + " failed logins\n"
+                + "Statements: " + statements.get();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. Open transactions of their sessions are rolled
+     * back.
+     *
+     * @throws IOException If the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Accepts connections until the server is closed, starting a thread for each.
+     */
+    private void acceptConnections() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    LogManager.logEvent("SERVER", "Accept failed: " + e.getMessage());
+                }
+                continue;
+            }
+            accepted.incrementAndGet();
+            Connection connection = new Connection(socket);
+            connections.add(connection);
+            if (closed) {
+                connection.close();
+            }
+            threadFactory.newThread(connection).start();
+        }
+    }
+
+    /**
+     * Creates a factory of virtual threads through reflection, as they need a newer runtime than the one the
+     * engine is built for.
+     *
+     * @return The factory, or null if the runtime has no virtual threads.
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "tinydb-connection-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a factory of daemon platform threads with small stacks.
+     *
+     * @return The factory.
+     */
+    private static ThreadFactory createPlatformThreadFactory() {
+        AtomicLong threadCount = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(null, runnable, "tinydb-connection-" + threadCount.incrementAndGet(),
+                    PLATFORM_THREAD_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Reads a frame: a four-byte length, then a type byte and the data of the frame. The length counts the
+     * type byte and the data.
+     *
+     * @param in The stream to read from.
+     * @return The frame, or null if the stream ended before it.
+     * @throws IOException If the frame is malformed, too large, or cannot be read.
+     */
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 1 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte type = in.readByte();
+        byte[] data = new byte[length - 1];
+        in.readFully(data);
+        return new Frame(type, data);
+    }
+
+    /**
+     * Writes a frame holding UTF-8 text. The stream is not flushed.
+     *
+     * @param out The stream to write to.
+     * @param type The frame type.
+     * @param text The text of the frame.
+     * @throws IOException If the frame is too large or cannot be written.
+     */
+    static void writeFrame(DataOutputStream out, byte type, String text) throws IOException {
+        writeFrame(out, type, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a frame. The stream is not flushed.
+     *
+     * @param out The stream to write to.
+     * @param type The frame type.
+     * @param data The data of the frame.
+     * @throws IOException If the frame is too large or cannot be written.
+     */
+    static void writeFrame(DataOutputStream out, byte type, byte[] data) throws IOException {
+        if (data.length + 1 > MAX_FRAME_SIZE) {
+            throw new IOException("Frame of " + data.length + " bytes is too large.");
+        }
+        out.writeInt(data.length + 1);
+        out.writeByte(type);
+        out.write(data);
+    }
+
+    /**
+     * A request or reply of the protocol.
+     */
+    static class Frame {
+        final byte type;
+        final byte[] data;
+
+        /**
+         * Constructs a frame.
+         *
+         * @param type The frame type.
+         * @param data The data of the frame.
+         */
+        Frame(byte type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+
+        /**
+         * Returns the data of the frame as text.
+         *
+         * @return The UTF-8 text of the frame.
+         */
+        String getText() {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A client connection and the session it runs its statements in.
+     */
+    private class Connection implements Runnable {
+        private final Socket socket;
+        private final Map<Integer, QueryCursor> cursors = new HashMap<>();
+        private int lastCursorId;
+        private volatile Session session;
+
+        /**
+         * Constructs a connection.
+         *
+         * @param socket The socket of the client.
+         */
+        private Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Serves the client: authenticates it with its first request, then runs its statements until it quits
+         * or disconnects. The open transaction of the session is rolled back when the connection ends.
+         */
+        @Override
+        public void run() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                socket.setTcpNoDelay(true);
+                CommandProcessor commandProcessor = authenticate(in, out);
+                if (commandProcessor == null) {
+                    return;
+                }
+                Frame request;
+                while ((request = readFrame(in)) != null && request.type != QUIT) {
+                    if (request.type == QUERY) {
+                        execute(commandProcessor, request.getText(), out);
+                    } else if (request.type == QUERY_ROWS) {
+                        query(commandProcessor, request.getText(), out);
+                    } else if (request.type == FETCH) {
+                        fetch(request.getText(), out);
+                    } else if (request.type == CLOSE_CURSOR) {
+                        closeCursor(request.getText(), out);
+                    } else if (request.type == UPDATE) {
+                        update(commandProcessor, request.getText(), out);
+                    } else {
+                        writeFrame(out, ERROR, "Unknown request type: " + (char) request.type);
+                    }
+                    // Replies to a pipelined batch are sent together
+                    if (in.available() == 0) {
+                        out.flush();
+                    }
+                }
+            } catch (SocketException | EOFException e) {
+                // The client disconnected or the server is closing
+            } catch (IOException e) {
+                LogManager.logEvent("SERVER", "Connection failed: " + e.getMessage());
+            } finally {
+                end();
+            }
+        }
+
+        /**
+         * Reads the authentication request of the client and checks its credentials with the user profiles.
+         * The request holds the user ID, the password and the answer to the security question, one per line.
+         *
+         * @param in The stream of requests.
+         * @param out The stream of replies.
+         * @return The command processor of the new session, or null if the client failed to authenticate.
+         * @throws IOException If the connection fails.
+         */
+        private CommandProcessor authenticate(DataInputStream in, DataOutputStream out) throws IOException {
+            Frame request = readFrame(in);
+            if (request == null) {
+                return null;
+            }
+            String[] credentials = request.getText().split("\n", -1);
+            if (request.type != AUTHENTICATE || credentials.length != 3
+                    || !UserProfileManager.authenticate(credentials[0], credentials[1], credentials[2])) {
+                failedLogins.incrementAndGet();
+                LogManager.logUserActivity("LOGIN_FAILED", credentials[0]);
+                writeFrame(out, ERROR, "Invalid userID, password or security answer.");
+                out.flush();
+                return null;
+            }
+            session = new Session(credentials[0]);
+            LogManager.logUserActivity("LOGIN", credentials[0]);
+            writeFrame(out, OK, "Welcome to TinyDB! Session " + session.getId() + ".");
+            out.flush();
+            return new CommandProcessor(session);
+        }
+
+        /**
+         * Runs a statement and writes its reply: the console output of the statement, or its error.
+         * Statements are upper-cased as they are on the console.
+         *
+         * @param commandProcessor The command processor of the session.
+         * @param statement The statement.
+         * @param out The stream of replies.
+         * @throws IOException If the reply cannot be written.
+         */
+        private void execute(CommandProcessor commandProcessor, String statement, DataOutputStream out)
+                throws IOException {
+            statements.incrementAndGet();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                ConsoleRedirect.run(output, () -> commandProcessor.processCommand(statement.trim().toUpperCase()));
+            } catch (Exception e) {
+                writeFrame(out, ERROR, String.valueOf(e.getMessage()));
+                return;
+            }
+            writeFrame(out, OK, output.toString(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Opens a cursor over the rows of a SELECT query and writes its first batch of rows, or its error.
+         * The request holds the number of rows per batch and the query, one per line.
+         *
+         * @param commandProcessor The command processor of the session.
+         * @param request The text of the request.
+         * @param out The stream of replies.
+         * @throws IOException If the reply cannot be written.
+         */
+        private void query(CommandProcessor commandProcessor, String request, DataOutputStream out)
+                throws IOException {
+            statements.incrementAndGet();
+            QueryCursor cursor;
+            int fetchSize;
+            try {
+                int newline = request.indexOf('\n');
+                fetchSize = Integer.parseInt(request.substring(0, newline));
+                cursor = commandProcessor.openCursor(request.substring(newline + 1).trim().toUpperCase());
+            } catch (Exception e) {
+                writeFrame(out, ERROR, String.valueOf(e.getMessage()));
+                return;
+            }
+            cursor.setFetchSize(fetchSize);
+            int cursorId = ++lastCursorId;
+            cursors.put(cursorId, cursor);
+            writeRows(cursorId, fetchSize, out);
+        }
+
+        /**
+         * Writes the next batch of rows of an open cursor. The request holds the cursor identifier and the
+         * number of rows, one per line.
+         *
+         * @param request The text of the request.
+         * @param out The stream of replies.
+         * @throws IOException If the reply cannot be written.
+         */
+        private void fetch(String request, DataOutputStream out) throws IOException {
+            String[] fields = request.split("\n");
+            int cursorId;
+            int maxRows;
+            try {
+                cursorId = Integer.parseInt(fields[0]);
+                maxRows = Integer.parseInt(fields[1]);
+            } catch (RuntimeException e) {
+                writeFrame(out, ERROR, "Invalid fetch request.");
+                return;
+            }
+            if (!cursors.containsKey(cursorId)) {
+                writeFrame(out, ERROR, "Cursor " + cursorId + " is not open.");
+                return;
+            }
+            writeRows(cursorId, maxRows, out);
+        }
+
+        /**
+         * Writes a batch of rows of a cursor: the cursor identifier, or 0 once the cursor has returned its last
+         * row and has been closed, followed by the rows in binary form. A cursor that fails is closed and its
+         * error written instead.
+         *
+         * @param cursorId The identifier of the cursor.
+         * @param maxRows The maximum number of rows, or 0 for the fetch size of the cursor.
+         * @param out The stream of replies.
+         * @throws IOException If the reply cannot be written.
+         */
+        private void writeRows(int cursorId, int maxRows, DataOutputStream out) throws IOException {
+            QueryCursor cursor = cursors.get(cursorId);
+            ByteArrayOutputStream rows = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(rows);
+            QueryResult batch;
+            try {
+                batch = cursor.fetch(maxRows > 0 ? maxRows : QueryCursor.getDefaultFetchSize());
+            } catch (Exception e) {
+                cursors.remove(cursorId).close();
+                writeFrame(out, ERROR, String.valueOf(e.getMessage()));
+                return;
+            }
+            if (cursor.isExhausted()) {
+                cursors.remove(cursorId).close();
+                cursorId = 0;
+            }
+            data.writeInt(cursorId);
+            batch.write(data);
+            writeFrame(out, ROWS, rows.toByteArray());
+        }
+
+        /**
+         * Closes an open cursor before its last row. The request holds the cursor identifier.
+         *
+         * @param request The text of the request.
+         * @param out The stream of replies.
+         * @throws IOException If the reply cannot be written.
+         */
+        private void closeCursor(String request, DataOutputStream out) throws IOException {
+            QueryCursor cursor;
+            try {
+                cursor = cursors.remove(Integer.parseInt(request));
+            } catch (NumberFormatException e) {
+                writeFrame(out, ERROR, "Invalid cursor: " + request);
+                return;
+            }
+            if (cursor != null) {
+                cursor.close();
+            }
+            writeFrame(out, OK, "");
+        }
+
+        /**
+         * Runs a statement and writes the number of rows it changed, or its error.
+         *
+         * @param commandProcessor The command processor of the session.
+         * @param statement The statement.
+         * @param out The stream of replies.
+         * @throws IOException If the reply cannot be written.
+         */
+        private void update(CommandProcessor commandProcessor, String statement, DataOutputStream out)
+                throws IOException {
+            statements.incrementAndGet();
+            long rowCount;
+            try {
+                rowCount = commandProcessor.update(statement.trim().toUpperCase());
+            } catch (Exception e) {
+                writeFrame(out, ERROR, String.valueOf(e.getMessage()));
+                return;
+            }
+            writeFrame(out, OK, Long.toString(rowCount));
+        }
+
+        /**
+         * Closes the open cursors, rolls back the open transaction of the session and forgets the connection.
+         */
+        private void end() {
+            close();
+            connections.remove(this);
+            for (QueryCursor cursor : cursors.values()) {
+                cursor.close();
+            }
+            cursors.clear();
+            Session ended = session;
+            if (ended == null) {
+                return;
+            }
+            TransactionManager transactionManager = ended.getTransactionManager();
+            synchronized (ended) {
+                if (transactionManager.isTransactionActive()) {
+                    try {
+                        ConsoleRedirect.run(OutputStream.nullOutputStream(),
+                                () -> transactionManager.executeTransactionCommand("ROLLBACK"));
+                    } catch (Exception e) {
+                        LogManager.logEvent("SERVER", "Rollback of session " + ended.getId() + " failed: "
+                                + e.getMessage());
+                    }
+                }
+            }
+            LogManager.logUserActivity("LOGOUT", ended.getUser());
+        }
+
+        /**
+         * Closes the socket, which ends the connection thread at its next read.
+         */
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The socket is being discarded
+            }
+        }
+    }
+}
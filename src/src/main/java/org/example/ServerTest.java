@@ -0,0 +1,121 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ServerTest {
+
+    private static final String USER = "servertest";
+    private static final String PASSWORD = "secret";
+    private static final String ANSWER = "blue";
+
+    private Server server;
+
+    @BeforeAll
+    void startServer() throws Exception {
+        Map<String, String[]> userProfiles = UserProfileManager.loadUserProfiles();
+        userProfiles.put(UserProfileManager.hashString(USER),
+                new String[]{UserProfileManager.hashString(PASSWORD), "Favourite colour?", ANSWER});
+        UserProfileManager.saveUserProfiles(userProfiles);
+        server = Server.start(0);
+    }
+
+    @BeforeEach
+    void createTestDatabase() throws Exception {
+        try (Client client = connect()) {
+            client.execute("create database testdb;");
+            client.execute("use testdb;");
+            client.execute("create table people (id int(pk), name string, age int);");
+        }
+    }
+
+    @Test
+    void testPipelinedStatementsAreAnsweredInOrder() throws Exception {
+        try (Client client = connect()) {
+            client.send("use testdb;");
+            for (int i = 1; i <= 20; i++) {
+                client.send("insert into people (id, name, age) values (" + i + ", 'name" + i + "', " + (20 + i) + ");");
+            }
+            client.send("select name from people where id = 7;");
+
+            assertTrue(client.receive().contains("Using database"), "USE was not answered first");
+            for (int i = 1; i <= 20; i++) {
+                assertTrue(client.receive().contains("Record inserted successfully"), "Insert " + i + " failed");
+            }
+            assertTrue(client.receive().contains("NAME7"), "Unexpected result of the select");
+        }
+    }
+
+    @Test
+    void testFailedStatementReturnsItsError() throws Exception {
+        try (Client client = connect()) {
+            client.execute("use testdb;");
+            Exception exception = assertThrows(Exception.class, () -> client.execute("commit;"));
+            assertTrue(exception.getMessage().contains("No active transaction"),
+                    "Unexpected error: " + exception.getMessage());
+            assertTrue(client.execute("show session;").contains("user: " + USER), "The connection was closed");
+        }
+    }
+
+    @Test
+    void testConnectionsHaveTheirOwnSessions() throws Exception {
+        try (Client first = connect(); Client second = connect()) {
+            first.execute("use testdb;");
+            first.execute("begin transaction;");
+            first.execute("insert into people (id, name, age) values (1, 'John', 30);");
+
+            second.execute("use testdb;");
+            assertFalse(second.execute("select name from people;").contains("JOHN"),
+                    "The uncommitted insert of another connection is visible");
+        }
+
+        // Closing the first connection rolls its transaction back and releases its row lock
+        try (Client client = connect()) {
+            client.execute("use testdb;");
+            assertTrue(client.execute("insert into people (id, name, age) values (1, 'Jim', 40);")
+                    .contains("Record inserted successfully"), "The transaction of a closed connection was committed");
+        }
+    }
+
+    @Test
+    void testInvalidCredentialsAreRejected() {
+        IOException exception = assertThrows(IOException.class,
+                () -> Client.connect("localhost", server.getPort(), USER, "wrong", ANSWER));
+        assertTrue(exception.getMessage().contains("Invalid userID"), "Unexpected error: " + exception.getMessage());
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    @AfterAll
+    void stopServer() throws Exception {
+        server.close();
+        Map<String, String[]> userProfiles = UserProfileManager.loadUserProfiles();
+        userProfiles.remove(UserProfileManager.hashString(USER));
+        UserProfileManager.saveUserProfiles(userProfiles);
+    }
+
+    private Client connect() throws IOException {
+        return Client.connect("localhost", server.getPort(), USER, PASSWORD, ANSWER);
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,186 @@
+package org.example;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Session {
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private final long id;
+    private final String user;
+    private final TransactionManager transactionManager;
+    private final Map<String, String> settings = new ConcurrentHashMap<>();
+    private volatile String activeDatabase;
+    private volatile long rowCount;
+
+    /**
+     * How the transactions of a session keep concurrent writers apart, chosen with the CONCURRENCY setting.
+     */
+    public enum Concurrency {
+        /**
+         * Writers lock every row they change, so transactions changing different rows of a table run
+         * concurrently. Tables without a primary key are locked as a whole. This is the default.
+         */
+        ROW,
+        /**
+         * Writers lock the whole table they change.
+         */
+        TABLE,
+        /**
+         * Transactions take no row locks. They record the rows they read and write and are validated when they
+         * commit: a transaction is rolled back if another transaction committed a change to one of those rows
+         * after it started, and should then be retried.
+         */
+        OPTIMISTIC
+    }
+
+    /**
+     * Constructs an anonymous session.
+     */
+    public Session() {
+        this(null);
+    }
+
+    /**
+     * Constructs a session for a user. A session holds everything a client changes with its statements: the
+     * active database, the open transaction and its settings. Sessions share the databases, the buffer pool and
+     * the write-ahead log, so any number of them can run statements on different threads at the same time,
+     * while each session runs its own statements one at a time.
+     *
+     * @param user The user who opened the session, or null if it is anonymous.
+     */
+    public Session(String user) {
+        this.id = nextId.getAndIncrement();
+        this.user = user;
+        this.transactionManager = new TransactionManager(this);
+    }
+
+    /**
+     * Returns the identifier of the session, unique within the process.
+     *
+     * @return The session identifier.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the user who opened the session.
+     *
+     * @return The user, or null if the session is anonymous.
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Returns the database the session's statements run against.
+     *
+     * @return The database name, or null if no database has been selected.
+     */
+    public String getActiveDatabase() {
+        return activeDatabase;
+    }
+
+    /**
+     * Sets the database the session's statements run against.
+     *
+     * @param activeDatabase The database name.
+     */
+    public void setActiveDatabase(String activeDatabase) {
+        this.activeDatabase = activeDatabase;
+    }
+
+    /**
+     * Returns the transaction manager that holds the session's open transaction.
+     *
+     * @return The transaction manager.
+     */
+    public TransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    /**
+     * Returns the value of a session setting.
+     *
+     * @param name The setting name, in any case.
+     * @return The value, or null if the setting has not been set.
+     */
+    public String getSetting(String name) {
+        return settings.get(name.toUpperCase());
+    }
+
+    /**
+     * Returns the value of a numeric session setting.
+     *
+     * @param name The setting name, in any case.
+     * @param defaultValue The value to return if the setting has not been set.
+     * @return The value.
+     * @throws NumberFormatException If the setting is not a number.
+     */
+    public long getSetting(String name, long defaultValue) {
+        String value = getSetting(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Sets a session setting. Settings only affect the statements of this session.
+     *
+     * @param name The setting name, in any case.
+     * @param value The value, or null to reset the setting.
+     */
+    public void setSetting(String name, String value) {
+        if (value == null) {
+            settings.remove(name.toUpperCase());
+        } else {
+            settings.put(name.toUpperCase(), value);
+        }
+    }
+
+    /**
+     * Returns how the session's transactions keep concurrent writers apart.
+     *
+     * @return The concurrency control mode of the CONCURRENCY setting, or ROW if it has not been set.
+     */
+    public Concurrency getConcurrency() {
+        String value = getSetting("CONCURRENCY");
+        return value == null ? Concurrency.ROW : Concurrency.valueOf(value.toUpperCase());
+    }
+
+    /**
+     * Returns the number of rows changed by the last statement of the session.
+     *
+     * @return The number of rows inserted, updated or deleted, or 0 if the statement changed no rows.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Sets the number of rows changed by the statement the session is running.
+     *
+     * @param rowCount The number of rows inserted, updated or deleted.
+     */
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Returns a summary of the session state.
+     *
+     * @return The session identifier, user, active database, transaction state and settings.
+     */
+    public String getStats() {
+        StringBuilder stats = new StringBuilder();
+        stats.append("Session: ").append(id).append(", user: ").append(user == null ? "(anonymous)" : user)
+                .append("\n");
+        stats.append("Database: ").append(activeDatabase == null ? "(none)" : activeDatabase)
+                .append(", transaction: ").append(transactionManager.isTransactionActive() ? "active" : "none");
+        for (Map.Entry<String, String> setting : new TreeMap<>(settings).entrySet()) {
+            stats.append("\n").append(setting.getKey()).append(" = ").append(setting.getValue());
+        }
+        return stats.toString();
+    }
+}
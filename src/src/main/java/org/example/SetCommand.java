@@ -0,0 +1,52 @@
+package org.example;
+
+public class SetCommand {
+
+    /**
+     * Executes the SET command to change a setting of the session. {@code SET <name> = <value>} sets a value
+     * and {@code SET <name> = DEFAULT} resets it.
+     *
+     * @param session The session that runs the statement.
+     * @param statement The parsed SET statement.
+     * @throws Exception If the value is not valid for the setting.
+     */
+    public static void execute(Session session, SqlStatement.Setting statement) throws Exception {
+        String name = statement.getName();
+        String value = statement.getValue();
+        if (value.equalsIgnoreCase("DEFAULT")) {
+            session.setSetting(name, null);
+            System.out.println("Setting " + name.toUpperCase() + " reset.");
+        } else {
+            validate(name.toUpperCase(), value);
+            session.setSetting(name, value);
+            System.out.println("Setting " + name.toUpperCase() + " = " + value);
+        }
+        LogManager.logGeneral("SET command executed", "Session " + session.getId() + " set " + name + " = " + value);
+    }
+
+    /**
+     * Checks the value of a setting the engine reads. Other settings are stored as they are.
+     *
+     * @param name The setting name, in upper case.
+     * @param value The value.
+     * @throws Exception If the value is not valid for the setting.
+     */
+    private static void validate(String name, String value) throws Exception {
+        switch (name) {
+            case "LOCK_TIMEOUT":
+                if (!value.matches("\\d+")) {
+                    throw new Exception("LOCK_TIMEOUT must be a number of milliseconds.");
+                }
+                break;
+            case "CONCURRENCY":
+                try {
+                    Session.Concurrency.valueOf(value.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new Exception("CONCURRENCY must be ROW, TABLE or OPTIMISTIC.");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
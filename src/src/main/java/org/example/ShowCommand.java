@@ -0,0 +1,98 @@
+package org.example;
+
+import java.io.File;
+
+public class ShowCommand {
+
+    /**
+     * Executes the SHOW command to display engine statistics.
+     *
+     * @param session The session that runs the statement.
+     * @param statement The parsed SHOW statement.
+     * @throws Exception If the SHOW target is not supported.
+     */
+    public static void execute(Session session, SqlStatement.Show statement) throws Exception {
+        String target = statement.getTarget().toUpperCase();
+        switch (target) {
+            case "BUFFERPOOL":
+                System.out.println(BufferPool.getInstance().getStats());
+                break;
+            case "WAL":
+                System.out.println(WriteAheadLog.getInstance().getStats());
+                break;
+            case "ANALYZE":
+                System.out.println(AutoAnalyze.getInstance().getStats());
+                break;
+            case "VACUUM":
+                System.out.println(Vacuum.getInstance().getStats());
+                break;
+            case "VERSIONS":
+                System.out.println(VersionStore.getInstance().getStats());
+                break;
+            case "LOCKS":
+                System.out.println(LockManager.getInstance().getStats());
+                break;
+            case "PLANCACHE":
+                System.out.println(PlanCache.getInstance().getStats());
+                break;
+            case "SESSION":
+                System.out.println(session.getStats());
+                break;
+            case "STATISTICS":
+                showStatistics(session, statement.getTableName());
+                break;
+            case "LSM":
+                showLsm(session, statement.getTableName());
+                break;
+            default:
+                throw new Exception("Unsupported SHOW target: " + target);
+        }
+    }
+
+    /**
+     * Displays the memtable and SSTables of an LSM table.
+     *
+     * @param session The session that runs the statement.
+     * @param tableName The name of the table, or null if the statement names none.
+     * @throws Exception If no database is selected or the table does not use the LSM engine.
+     */
+    private static void showLsm(Session session, String tableName) throws Exception {
+        if (tableName == null) {
+            throw new Exception("Invalid SHOW LSM command syntax.");
+        }
+        if (session.getActiveDatabase() == null) {
+            throw new Exception("No database selected.");
+        }
+        try (Table table = Table.open(session.getActiveDatabase(), tableName)) {
+            if (!(table instanceof LsmTable)) {
+                throw new Exception("Table " + tableName + " does not use the LSM engine.");
+            }
+            System.out.println(((LsmTable) table).getTree().getStats());
+        }
+    }
+
+    /**
+     * Displays the statistics ANALYZE collected for a table.
+     *
+     * @param session The session that runs the statement.
+     * @param tableName The name of the table, or null if the statement names none.
+     * @throws Exception If no database is selected or the table does not exist.
+     */
+    private static void showStatistics(Session session, String tableName) throws Exception {
+        if (tableName == null) {
+            throw new Exception("Invalid SHOW STATISTICS command syntax.");
+        }
+        if (session.getActiveDatabase() == null) {
+            throw new Exception("No database selected.");
+        }
+        File dbDir = new File("tinydb/databases/" + session.getActiveDatabase());
+        TableSchema schema = Catalog.getInstance().getTable(dbDir, tableName);
+        TableStatistics statistics = Catalog.getInstance().getStatistics(dbDir, tableName);
+        if (statistics == null) {
+            System.out.println("Table " + schema.getTableName() + " has not been analyzed.");
+            return;
+        }
+        System.out.print(statistics.describe(schema.getTableName()));
+        System.out.println("Changes since analyzed: " + statistics.getChanges());
+    }
+}
@@ -0,0 +1,476 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+public class SlottedPage {
+    public static final int HEADER_SIZE = 4;
+    public static final int SLOT_SIZE = 4;
+    public static final int MAX_RECORD_SIZE = HeapFile.PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
+    public static final int FORWARD_SIZE = 8;
+    private static final int DEAD_FLAG = 0x8000;
+    private static final int FORWARD_FLAG = 0x4000;
+    private static final int MOVED_FLAG = 0x2000;
+    private static final int LENGTH_MASK = 0x1FFF;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Wraps a page buffer laid out as a slotted page.
+     * The header holds the slot count and the start of the record area; the slot directory grows
+     * upwards after the header while records are written downwards from the end of the page.
+     * An empty slot has offset 0. The top bits of the length are flags: a deleted record keeps its space until
+     * the page is purged, a forwarding slot holds the identifier of the record it was moved to, and a moved
+     * record is only reachable through the forwarding slot of its original location.
+     *
+     * @param buffer The page buffer.
+     */
+    public SlottedPage(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Formats the buffer as an empty slotted page.
+     */
+    public void init() {
+        setSlotCount(0);
+        setFreeEnd(HeapFile.PAGE_SIZE);
+    }
+
+    /**
+     * Returns the number of slots in the directory, including empty ones.
+     *
+     * @return The slot count.
+     */
+    public int getSlotCount() {
+        return buffer.getShort(0) & 0xFFFF;
+    }
+
+    /**
+     * Returns the offset of the record in a slot.
+     *
+     * @param slot The slot number.
+     * @return The record offset, or 0 if the slot is empty.
+     */
+    public int getOffset(int slot) {
+        return buffer.getShort(HEADER_SIZE + slot * SLOT_SIZE) & 0xFFFF;
+    }
+
+    /**
+     * Returns the length of the record in a slot.
+     *
+     * @param slot The slot number.
+     * @return The record length.
+     */
+    public int getLength(int slot) {
+        return getFlags(slot) & LENGTH_MASK;
+    }
+
+    /**
+     * Checks whether a slot holds a record, live or deleted.
+     *
+     * @param slot The slot number.
+     * @return true if the slot exists and is not empty, false otherwise.
+     */
+    public boolean isUsed(int slot) {
+        return slot < getSlotCount() && getOffset(slot) != 0;
+    }
+
+    /**
+     * Checks whether a slot holds a record that has not been deleted.
+     *
+     * @param slot The slot number.
+     * @return true if the slot holds a live record, false otherwise.
+     */
+    public boolean isLive(int slot) {
+        return isUsed(slot) && !isDead(slot);
+    }
+
+    /**
+     * Checks whether a slot holds a deleted record that is waiting to be purged.
+     *
+     * @param slot The slot number.
+     * @return true if the slot holds a dead record, false otherwise.
+     */
+    public boolean isDead(int slot) {
+        return isUsed(slot) && (getFlags(slot) & DEAD_FLAG) != 0;
+    }
+
+    /**
+     * Checks whether a live slot forwards to a record that was moved to another location.
+     *
+     * @param slot The slot number.
+     * @return true if the slot holds a forwarding pointer, false otherwise.
+     */
+    public boolean isForward(int slot) {
+        return isLive(slot) && (getFlags(slot) & FORWARD_FLAG) != 0;
+    }
+
+    /**
+     * Checks whether a live slot holds a record that was moved here from another location.
+     *
+     * @param slot The slot number.
+     * @return true if the slot holds a moved record, false otherwise.
+     */
+    public boolean isMoved(int slot) {
+        return isLive(slot) && (getFlags(slot) & MOVED_FLAG) != 0;
+    }
+
+    /**
+     * Returns the identifier of the record a forwarding slot points to.
+     *
+     * @param slot The slot number.
+     * @return The record identifier.
+     */
+    public long getForward(int slot) {
+        return buffer.getLong(getOffset(slot));
+    }
+
+    /**
+     * Copies the live record stored in a slot.
+     *
+     * @param slot The slot number.
+     * @return The record bytes, or null if the slot is empty, forwards elsewhere or its record was deleted.
+     */
+    public byte[] read(int slot) {
+        if (!isLive(slot) || isForward(slot)) {
+            return null;
+        }
+        return copy(slot);
+    }
+
+    /**
+     * Copies the record stored in a slot, whether it is live or deleted.
+     *
+     * @param slot The slot number.
+     * @return The record bytes, or null if the slot is empty.
+     */
+    private byte[] copy(int slot) {
+        if (!isUsed(slot)) {
+            return null;
+        }
+        byte[] record = new byte[getLength(slot)];
+        int offset = getOffset(slot);
+        for (int i = 0; i < record.length; i++) {
+            record[i] = buffer.get(offset + i);
+        }
+        return record;
+    }
+
+    /**
+     * Inserts a record, reusing an empty slot when possible and compacting the page if the free space is fragmented.
+     *
+     * @param record The record bytes.
+     * @return The slot number of the record, or -1 if the page does not have enough space.
+     */
+    public int insert(byte[] record) {
+        int slot = findEmptySlot();
+        int needed = record.length + (slot == -1 ? SLOT_SIZE : 0);
+        if (getContiguousFreeSpace() < needed) {
+            if (getAvailableSpace() < record.length) {
+                return -1;
+            }
+            compact();
+            if (getContiguousFreeSpace() < needed) {
+                return -1;
+            }
+        }
+
+        if (slot == -1) {
+            slot = getSlotCount();
+            setSlotCount(slot + 1);
+        }
+        int offset = getFreeEnd() - record.length;
+        for (int i = 0; i < record.length; i++) {
+            buffer.put(offset + i, record[i]);
+        }
+        setFreeEnd(offset);
+        setSlot(slot, offset, record.length);
+        return slot;
+    }
+
+    /**
+     * Inserts a record that was moved here from the location of a forwarding slot.
+     *
+     * @param record The record bytes.
+     * @return The slot number of the record, or -1 if the page does not have enough space.
+     */
+    public int insertMoved(byte[] record) {
+        int slot = insert(record);
+        if (slot != -1) {
+            setSlot(slot, getOffset(slot), record.length | MOVED_FLAG);
+        }
+        return slot;
+    }
+
+    /**
+     * Overwrites a live record. The record stays in its slot: it is written over the old bytes when it is not
+     * longer, and otherwise the page is compacted to make room for it.
+     *
+     * @param slot The slot number.
+     * @param record The new record bytes.
+     * @return true if the record was replaced, false if the slot is not a live record or the page is too full.
+     */
+    public boolean update(int slot, byte[] record) {
+        if (!isLive(slot) || isForward(slot)) {
+            return false;
+        }
+        return replace(slot, record, getFlags(slot) & MOVED_FLAG);
+    }
+
+    /**
+     * Turns a live slot into a forwarding pointer to the new location of its record.
+     *
+     * @param slot The slot number.
+     * @param recordId The identifier of the moved record.
+     * @return true if the pointer was written, false if the page has no room for it.
+     */
+    public boolean setForward(int slot, long recordId) {
+        if (!isLive(slot)) {
+            return false;
+        }
+        return replace(slot, ByteBuffer.allocate(FORWARD_SIZE).putLong(0, recordId).array(), FORWARD_FLAG);
+    }
+
+    /**
+     * Replaces the contents of a used slot, keeping its slot number.
+     *
+     * @param slot The slot number.
+     * @param record The new contents.
+     * @param flags The flags to store with the length.
+     * @return true if the contents were replaced, false if the page is too full.
+     */
+    private boolean replace(int slot, byte[] record, int flags) {
+        int offset = getOffset(slot);
+        if (record.length > getLength(slot)) {
+            if (getFreeSpace() + getLength(slot) < record.length) {
+                return false;
+            }
+            // Release the old bytes and compact so that the free space becomes contiguous
+            setSlot(slot, offset, 0);
+            compact();
+            offset = getFreeEnd() - record.length;
+            setFreeEnd(offset);
+        }
+        for (int i = 0; i < record.length; i++) {
+            buffer.put(offset + i, record[i]);
+        }
+        setSlot(slot, offset, record.length | flags);
+        return true;
+    }
+
+    /**
+     * Marks the record in a slot as deleted. Its space is not reused until the page is purged.
+     *
+     * @param slot The slot number.
+     * @return true if the slot held a live record, false otherwise.
+     */
+    public boolean markDeleted(int slot) {
+        if (!isLive(slot)) {
+            return false;
+        }
+        setSlot(slot, getOffset(slot), getLength(slot) | DEAD_FLAG);
+        return true;
+    }
+
+    /**
+     * Brings a deleted record back to life with the given contents, keeping its slot number.
+     *
+     * @param slot The slot number.
+     * @param record The record bytes.
+     * @return true if the record was restored, false if the slot does not hold a deleted record or the page is
+     *         too full.
+     */
+    public boolean restore(int slot, byte[] record) {
+        if (!isDead(slot)) {
+            return false;
+        }
+        return replace(slot, record, 0);
+    }
+
+    /**
+     * Brings a deleted record back to life as a forwarding pointer to the new location of its record.
+     *
+     * @param slot The slot number.
+     * @param recordId The identifier of the moved record.
+     * @return true if the pointer was written, false if the slot does not hold a deleted record or the page has
+     *         no room for it.
+     */
+    public boolean restoreForward(int slot, long recordId) {
+        if (!isDead(slot)) {
+            return false;
+        }
+        return replace(slot, ByteBuffer.allocate(FORWARD_SIZE).putLong(0, recordId).array(), FORWARD_FLAG);
+    }
+
+    /**
+     * Empties the slots of all deleted records so that their space can be reused.
+     *
+     * @return The number of record bytes freed.
+     */
+    public int purge() {
+        int freed = 0;
+        for (int slot = getSlotCount() - 1; slot >= 0; slot--) {
+            if (isDead(slot)) {
+                freed += getLength(slot);
+                delete(slot);
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Returns the number of deleted records waiting to be purged.
+     *
+     * @return The dead record count.
+     */
+    public int getDeadCount() {
+        int deadCount = 0;
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            if (isDead(slot)) {
+                deadCount++;
+            }
+        }
+        return deadCount;
+    }
+
+    /**
+     * Empties a slot immediately, live or deleted. Trailing empty slots are removed from the directory.
+     *
+     * @param slot The slot number.
+     * @return true if the slot held a record, false otherwise.
+     */
+    public boolean delete(int slot) {
+        if (!isUsed(slot)) {
+            return false;
+        }
+        setSlot(slot, 0, 0);
+        int slotCount = getSlotCount();
+        while (slotCount > 0 && getOffset(slotCount - 1) == 0) {
+            slotCount--;
+        }
+        setSlotCount(slotCount);
+        if (slotCount == 0) {
+            setFreeEnd(HeapFile.PAGE_SIZE);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the space a new record could use after compaction, assuming it needs a new slot.
+     *
+     * @return The available space in bytes.
+     */
+    public int getAvailableSpace() {
+        return Math.max(0, getFreeSpace() - (findEmptySlot() == -1 ? SLOT_SIZE : 0));
+    }
+
+    /**
+     * Returns the space not taken by the header, the slot directory or records.
+     *
+     * @return The free space in bytes.
+     */
+    private int getFreeSpace() {
+        int used = HEADER_SIZE + getSlotCount() * SLOT_SIZE;
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            used += getLength(slot);
+        }
+        return HeapFile.PAGE_SIZE - used;
+    }
+
+    /**
+     * Moves all records to the end of the page so that the free space becomes contiguous.
+     */
+    public void compact() {
+        int slotCount = getSlotCount();
+        byte[][] records = new byte[slotCount][];
+        int[] lengths = new int[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            records[slot] = copy(slot);
+            lengths[slot] = getFlags(slot);
+        }
+        int freeEnd = HeapFile.PAGE_SIZE;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (records[slot] == null) {
+                continue;
+            }
+            freeEnd -= records[slot].length;
+            for (int i = 0; i < records[slot].length; i++) {
+                buffer.put(freeEnd + i, records[slot][i]);
+            }
+            setSlot(slot, freeEnd, lengths[slot]);
+        }
+        setFreeEnd(freeEnd);
+    }
+
+    /**
+     * Returns the length field of a slot, including its flags.
+     *
+     * @param slot The slot number.
+     * @return The length and flags.
+     */
+    private int getFlags(int slot) {
+        return buffer.getShort(HEADER_SIZE + slot * SLOT_SIZE + 2) & 0xFFFF;
+    }
+
+    /**
+     * Returns the free space between the slot directory and the record area.
+     *
+     * @return The contiguous free space in bytes.
+     */
+    private int getContiguousFreeSpace() {
+        return getFreeEnd() - HEADER_SIZE - getSlotCount() * SLOT_SIZE;
+    }
+
+    /**
+     * Finds the first empty slot in the directory.
+     *
+     * @return The slot number, or -1 if every slot is in use.
+     */
+    private int findEmptySlot() {
+        for (int slot = 0; slot < getSlotCount(); slot++) {
+            if (getOffset(slot) == 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset where the record area starts.
+     *
+     * @return The free space end offset.
+     */
+    private int getFreeEnd() {
+        return buffer.getShort(2) & 0xFFFF;
+    }
+
+    /**
+     * Sets the offset where the record area starts.
+     *
+     * @param freeEnd The free space end offset.
+     */
+    private void setFreeEnd(int freeEnd) {
+        buffer.putShort(2, (short) freeEnd);
+    }
+
+    /**
+     * Sets the number of slots in the directory.
+     *
+     * @param slotCount The slot count.
+     */
+    private void setSlotCount(int slotCount) {
+        buffer.putShort(0, (short) slotCount);
+    }
+
+    /**
+     * Writes a slot directory entry.
+     *
+     * @param slot The slot number.
+     * @param offset The record offset, or 0 for an empty slot.
+     * @param length The record length.
+     */
+    private void setSlot(int slot, int offset, int length) {
+        buffer.putShort(HEADER_SIZE + slot * SLOT_SIZE, (short) offset);
+        buffer.putShort(HEADER_SIZE + slot * SLOT_SIZE + 2, (short) length);
+    }
+}
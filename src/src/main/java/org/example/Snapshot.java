@@ -0,0 +1,103 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Snapshot {
+    private final long transactionId;
+    private final long xmax;
+    private final long[] running;
+    private volatile ReadWriteSet readWriteSet;
+    private final Map<LsmTree, LsmTree.Batch> lsmBatches = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a snapshot of the transactions that had committed when it was taken. A transaction is
+     * visible to the snapshot if it had finished before the snapshot was taken, or if it is the transaction
+     * that owns the snapshot, so a transaction reads its own writes on top of a fixed committed state.
+     *
+     * @param transactionId The transaction that owns the snapshot, or 0 for a read-only statement.
+     * @param xmax The first transaction identifier that had not been handed out when the snapshot was taken.
+     * @param running The other transactions that were running when the snapshot was taken, in ascending order.
+     */
+    Snapshot(long transactionId, long xmax, long[] running) {
+        this.transactionId = transactionId;
+        this.xmax = xmax;
+        this.running = running;
+    }
+
+    /**
+     * Returns the transaction that owns the snapshot.
+     *
+     * @return The transaction identifier, or 0 for a read-only statement.
+     */
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Returns the records an optimistic transaction has read and written.
+     *
+     * @return The read and write set, or null if the transaction does not record them.
+     */
+    public ReadWriteSet getReadWriteSet() {
+        return readWriteSet;
+    }
+
+    /**
+     * Makes the transaction record the records it reads and writes, to be validated when it commits.
+     *
+     * @param readWriteSet The read and write set.
+     */
+    void setReadWriteSet(ReadWriteSet readWriteSet) {
+        this.readWriteSet = readWriteSet;
+    }
+
+    /**
+     * Returns the uncommitted changes the transaction has made to an LSM table, starting an empty batch on
+     * first use.
+     *
+     * @param tree The tree of the table.
+     * @param tableName The name of the table.
+     * @return The changes of the transaction to the tree.
+     */
+    LsmTree.Batch getLsmBatch(LsmTree tree, String tableName) {
+        return lsmBatches.computeIfAbsent(tree, key -> new LsmTree.Batch(tree, tableName));
+    }
+
+    /**
+     * Returns the uncommitted changes the transaction has made to LSM tables, which are applied when it commits.
+     *
+     * @return One batch per tree the transaction has used.
+     */
+    Collection<LsmTree.Batch> getLsmBatches() {
+        return lsmBatches.values();
+    }
+
+    /**
+     * Returns the oldest transaction the snapshot may not see. Every older transaction that has finished is
+     * visible to it.
+     *
+     * @return The oldest transaction that was running when the snapshot was taken, or the first transaction
+     *         started after it.
+     */
+    long getXmin() {
+        return running.length > 0 ? running[0] : xmax;
+    }
+
+    /**
+     * Checks whether the changes of a transaction are visible to the snapshot. Rolled back transactions never
+     * have to be considered: their versions are discarded before they stop running.
+     *
+     * @param transactionId The transaction that wrote a version, or 0 for data that predates every
+     *                      running transaction.
+     * @return true if the version is visible, false otherwise.
+     */
+    public boolean isVisible(long transactionId) {
+        if (transactionId == 0 || transactionId == this.transactionId) {
+            return true;
+        }
+        return transactionId < xmax && Arrays.binarySearch(running, transactionId) < 0;
+    }
+}
@@ -0,0 +1,128 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class Sort implements Operator {
+    private final Operator child;
+    private final int[] columns;
+    private final boolean[] descending;
+    private final List<Object[]> rows = new ArrayList<>();
+    private Iterator<Object[]> iterator;
+
+    /**
+     * Constructs an operator that returns the rows of its input ordered by some of its columns. The rows are
+     * sorted in memory, so the input is read completely when the operator is opened. NULL values sort after
+     * every other value in ascending order and before them in descending order; rows that compare equal keep
+     * the order of the input.
+     *
+     * @param child The input.
+     * @param columns The positions of the input columns to order by, the most significant first.
+     * @param descending For every ordering column, whether it is sorted in descending order.
+     */
+    public Sort(Operator child, int[] columns, boolean[] descending) {
+        this.child = child;
+        this.columns = columns;
+        this.descending = descending;
+    }
+
+    /**
+     * Compares two values of the same column.
+     *
+     * @param a The first value, or null.
+     * @param b The second value, or null.
+     * @return A negative number, zero or a positive number if the first value sorts before, with or after the
+     *         second one; NULL sorts after every other value.
+     */
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? 1 : -1;
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    /**
+     * Reads and sorts the rows of the input.
+     *
+     * @throws Exception If the input cannot be read.
+     */
+    @Override
+    public void open() throws Exception {
+        rows.clear();
+        child.open();
+        Object[] row;
+        while ((row = child.next()) != null) {
+            rows.add(row);
+        }
+        rows.sort((a, b) -> {
+            for (int i = 0; i < columns.length; i++) {
+                int comparison = compareValues(a[columns[i]], b[columns[i]]);
+                if (comparison != 0) {
+                    return descending[i] ? -comparison : comparison;
+                }
+            }
+            return 0;
+        });
+        iterator = rows.iterator();
+    }
+
+    /**
+     * Returns the next row in sort order.
+     *
+     * @return The row, or null after the last row.
+     */
+    @Override
+    public Object[] next() {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Discards the sorted rows and closes the input.
+     *
+     * @throws IOException If a table cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        rows.clear();
+        iterator = rows.iterator();
+        child.close();
+    }
+
+    /**
+     * Returns the number of output columns, those of the input.
+     *
+     * @return The number of columns.
+     */
+    @Override
+    public int getColumnCount() {
+        return child.getColumnCount();
+    }
+
+    /**
+     * Returns the name of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        return child.getColumnName(column);
+    }
+
+    /**
+     * Returns the type of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        return child.getColumnType(column);
+    }
+}
@@ -0,0 +1,273 @@
+package org.example;
+
+import java.text.ParseException;
+
+public class SqlLexer {
+    private final String input;
+    private Kind kind;
+    private int start;
+    private int end;
+
+    /**
+     * The kinds of tokens a statement is made of.
+     */
+    public enum Kind {
+        /** A keyword or a name, such as SELECT or PEOPLE. */
+        IDENTIFIER,
+        /** An unsigned integer or decimal number, such as 42 or 2.5. */
+        NUMBER,
+        /** A string in single quotes, where two single quotes stand for one. */
+        STRING,
+        /** An operator or punctuation mark: ( ) , ; . * = &lt; &lt;= &gt; &gt;= - or the parameter marker ?. */
+        SYMBOL,
+        /** The end of the statement. */
+        END
+    }
+
+    /**
+     * Constructs a lexer positioned on the first token of a statement. The lexer reads the statement in place
+     * and holds only the bounds of the current token, so scanning a statement creates no objects; the text of a
+     * token is only copied when the parser asks for it.
+     *
+     * @param input The statement.
+     * @throws ParseException If the first token is malformed.
+     */
+    public SqlLexer(String input) throws ParseException {
+        this.input = input;
+        next();
+    }
+
+    /**
+     * Advances to the next token, skipping white space.
+     *
+     * @throws ParseException If the token is malformed, such as a string without its closing quote or a
+     *                        character that starts no token.
+     */
+    public void next() throws ParseException {
+        int position = kind == null ? 0 : end;
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+        start = position;
+        if (position == input.length()) {
+            kind = Kind.END;
+            end = position;
+            return;
+        }
+
+        char c = input.charAt(position);
+        if (Character.isLetter(c) || c == '_') {
+            kind = Kind.IDENTIFIER;
+            end = skipWord(position + 1);
+        } else if (isDigit(c)) {
+            kind = Kind.NUMBER;
+            end = skipNumber(position);
+        } else if (c == '\'') {
+            kind = Kind.STRING;
+            end = skipString(position);
+        } else {
+            kind = Kind.SYMBOL;
+            end = position + 1;
+            switch (c) {
+                case '<':
+                case '>':
+                    if (end < input.length() && (input.charAt(end) == '='
+                            || c == '<' && input.charAt(end) == '>')) {
+                        end++;
+                    }
+                    break;
+                case '!':
+                    if (end >= input.length() || input.charAt(end) != '=') {
+                        throw error(position, "unexpected character '" + c + "'");
+                    }
+                    end++;
+                    break;
+                case '(':
+                case ')':
+                case ',':
+                case ';':
+                case '.':
+                case '*':
+                case '=':
+                case '-':
+                case '?':
+                    break;
+                default:
+                    throw error(position, "unexpected character '" + c + "'");
+            }
+        }
+    }
+
+    /**
+     * Returns the kind of the current token.
+     *
+     * @return The token kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the position of the first character of the current token.
+     *
+     * @return The offset of the token within the statement.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the current token as it is written in the statement, quotes included.
+     *
+     * @return The token text, or an empty string at the end of the statement.
+     */
+    public String getText() {
+        return input.substring(start, end);
+    }
+
+    /**
+     * Appends the current token as it is written in the statement, without copying it first.
+     *
+     * @param builder The builder to append to.
+     */
+    public void appendTo(StringBuilder builder) {
+        builder.append(input, start, end);
+    }
+
+    /**
+     * Returns the value of the current string token, without its quotes and with doubled quotes made single.
+     *
+     * @return The string value.
+     */
+    public String getStringValue() {
+        String value = input.substring(start + 1, end - 1);
+        return value.indexOf('\'') == -1 ? value : value.replace("''", "'");
+    }
+
+    /**
+     * Checks whether the current token is a keyword, ignoring case, without copying its text.
+     *
+     * @param keyword The keyword in upper case.
+     * @return true if the current token is the keyword, false otherwise.
+     */
+    public boolean isKeyword(String keyword) {
+        return kind == Kind.IDENTIFIER && end - start == keyword.length()
+                && input.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    /**
+     * Checks whether the current token is a symbol, without copying its text.
+     *
+     * @param symbol The symbol.
+     * @return true if the current token is the symbol, false otherwise.
+     */
+    public boolean isSymbol(String symbol) {
+        return kind == Kind.SYMBOL && end - start == symbol.length()
+                && input.regionMatches(start, symbol, 0, symbol.length());
+    }
+
+    /**
+     * Describes the current token for an error message.
+     *
+     * @return The quoted token text, or "end of input".
+     */
+    public String describe() {
+        return kind == Kind.END ? "end of input" : "'" + getText() + "'";
+    }
+
+    /**
+     * Creates the error reported for a statement that is malformed at a position.
+     *
+     * @param position The offset of the malformed token within the statement.
+     * @param message What is wrong with the statement there.
+     * @return The error, whose message gives the position counting from 1 and whose error offset counts from 0.
+     */
+    public static ParseException error(int position, String message) {
+        return new ParseException("Syntax error at position " + (position + 1) + ": " + message, position);
+    }
+
+    /**
+     * Skips the rest of a keyword or name.
+     *
+     * @param position The offset after its first character.
+     * @return The offset after its last character.
+     */
+    private int skipWord(int position) {
+        while (position < input.length()
+                && (Character.isLetterOrDigit(input.charAt(position)) || input.charAt(position) == '_')) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Skips a number: digits, optionally followed by a fraction and an exponent.
+     *
+     * @param position The offset of its first digit.
+     * @return The offset after its last character.
+     * @throws ParseException If the exponent has no digits.
+     */
+    private int skipNumber(int position) throws ParseException {
+        position = skipDigits(position);
+        if (position + 1 < input.length() && input.charAt(position) == '.' && isDigit(input.charAt(position + 1))) {
+            position = skipDigits(position + 1);
+        }
+        if (position < input.length() && (input.charAt(position) == 'e' || input.charAt(position) == 'E')) {
+            int exponent = position + 1;
+            if (exponent < input.length() && (input.charAt(exponent) == '+' || input.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            if (exponent == input.length() || !isDigit(input.charAt(exponent))) {
+                throw error(position, "malformed number exponent");
+            }
+            position = skipDigits(exponent);
+        }
+        return position;
+    }
+
+    /**
+     * Skips a run of digits.
+     *
+     * @param position The offset of the first character to check.
+     * @return The offset after the last digit.
+     */
+    private int skipDigits(int position) {
+        while (position < input.length() && isDigit(input.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Skips a string in single quotes. A quote inside the string is written twice.
+     *
+     * @param position The offset of its opening quote.
+     * @return The offset after its closing quote.
+     * @throws ParseException If the string has no closing quote.
+     */
+    private int skipString(int position) throws ParseException {
+        int quote = position;
+        position++;
+        while (position < input.length()) {
+            if (input.charAt(position) == '\'') {
+                if (position + 1 < input.length() && input.charAt(position + 1) == '\'') {
+                    position += 2;
+                    continue;
+                }
+                return position + 1;
+            }
+            position++;
+        }
+        throw error(quote, "unterminated string");
+    }
+
+    /**
+     * Checks whether a character is an ASCII digit.
+     *
+     * @param c The character.
+     * @return true for 0 to 9, false otherwise.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,568 @@
+package org.example;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SqlParser {
+    private static final String[] RESERVED = {"SELECT", "FROM", "WHERE", "ORDER", "LIMIT", "VALUES", "SET", "NULL",
+            "AND", "OR", "NOT", "IN", "IS", "LIKE", "BETWEEN"};
+
+    private final SqlLexer lexer;
+    private int parameterCount;
+
+    /**
+     * Constructs a parser positioned on the first token of a statement.
+     *
+     * @param input The statement.
+     * @throws ParseException If the first token is malformed.
+     */
+    private SqlParser(String input) throws ParseException {
+        this.lexer = new SqlLexer(input);
+    }
+
+    /**
+     * Parses a statement into its syntax tree. The statement is read once from left to right by a recursive
+     * descent parser that looks one token ahead, so parsing takes time linear in the length of the statement.
+     * Keywords are matched regardless of case; names are kept as they are written. A trailing semicolon is
+     * optional. Values may be given as parameter markers (?), which are numbered from left to right.
+     *
+     * @param input The statement.
+     * @return The syntax tree of the statement.
+     * @throws ParseException If the statement is malformed. The message names the position, counting from 1,
+     *                        and what was expected there; the error offset is the same position counting from 0.
+     */
+    public static SqlStatement parse(String input) throws ParseException {
+        SqlParser parser = new SqlParser(input);
+        SqlStatement statement = parser.statement();
+        parser.acceptSymbol(";");
+        if (parser.lexer.getKind() != SqlLexer.Kind.END) {
+            throw parser.expected("end of statement");
+        }
+        statement.setParameterCount(parser.parameterCount);
+        return statement;
+    }
+
+    /**
+     * Normalizes the text of a SELECT, INSERT, UPDATE or DELETE statement, so that statements that differ only in
+     * their values, spacing and the case of their keywords share one plan. Tokens are separated by single spaces,
+     * the leading keyword and the keywords that cannot be names are written in upper case, names are kept as
+     * written, a trailing semicolon is dropped, and every number or string that stands for a value is replaced by
+     * a parameter marker, its value being added to the list of parameters. The row count of a LIMIT clause is
+     * kept. The statement is only scanned, not parsed.
+     *
+     * @param input The statement.
+     * @param parameters The list the values taken out of the statement are added to, in order.
+     * @return The normalized text, or null if the statement is of another kind, already has parameter markers or
+     *         contains a malformed token.
+     */
+    public static String normalize(String input, List<SqlStatement.Literal> parameters) {
+        try {
+            SqlLexer lexer = new SqlLexer(input);
+            if (!lexer.isKeyword("SELECT") && !lexer.isKeyword("INSERT") && !lexer.isKeyword("UPDATE")
+                    && !lexer.isKeyword("DELETE")) {
+                return null;
+            }
+            StringBuilder text = new StringBuilder(input.length());
+            boolean limit = false;
+            boolean negative = false;
+            while (lexer.getKind() != SqlLexer.Kind.END) {
+                if (lexer.isSymbol("?")) {
+                    return null;
+                }
+                if (lexer.isSymbol(";") || lexer.isSymbol("-")) {
+                    // Keep a semicolon unless it ends the statement, and a minus sign unless a number follows
+                    String symbol = lexer.getText();
+                    lexer.next();
+                    negative = symbol.equals("-") && lexer.getKind() == SqlLexer.Kind.NUMBER && !limit;
+                    if (!negative && !(symbol.equals(";") && lexer.getKind() == SqlLexer.Kind.END)) {
+                        text.append(text.length() > 0 ? " " : "").append(symbol);
+                    }
+                    continue;
+                }
+                text.append(text.length() > 0 ? " " : "");
+                if (lexer.getKind() == SqlLexer.Kind.STRING) {
+                    parameters.add(new SqlStatement.Literal(SqlStatement.Literal.Type.STRING, lexer.getStringValue()));
+                    text.append('?');
+                } else if (lexer.getKind() == SqlLexer.Kind.NUMBER && !limit) {
+                    parameters.add(new SqlStatement.Literal(SqlStatement.Literal.Type.NUMBER,
+                            negative ? "-" + lexer.getText() : lexer.getText()));
+                    text.append('?');
+                } else if (text.length() == 0 || isReserved(lexer)) {
+                    text.append(lexer.getText().toUpperCase());
+                } else {
+                    lexer.appendTo(text);
+                }
+                limit = lexer.isKeyword("LIMIT");
+                negative = false;
+                lexer.next();
+            }
+            return text.toString();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a statement, choosing the rule by its first keyword.
+     *
+     * @return The statement.
+     * @throws ParseException If the statement is malformed.
+     */
+    private SqlStatement statement() throws ParseException {
+        if (acceptKeyword("BEGIN")) {
+            expectKeyword("TRANSACTION");
+            return new SqlStatement.Simple(SqlStatement.Kind.BEGIN);
+        } else if (acceptKeyword("COMMIT")) {
+            return new SqlStatement.Simple(SqlStatement.Kind.COMMIT);
+        } else if (acceptKeyword("ROLLBACK")) {
+            return new SqlStatement.Simple(SqlStatement.Kind.ROLLBACK);
+        } else if (acceptKeyword("CHECKPOINT")) {
+            return new SqlStatement.Simple(SqlStatement.Kind.CHECKPOINT);
+        } else if (acceptKeyword("CREATE")) {
+            return create();
+        } else if (acceptKeyword("USE")) {
+            return new SqlStatement.Named(SqlStatement.Kind.USE, identifier("database name"));
+        } else if (acceptKeyword("INSERT")) {
+            return insert();
+        } else if (acceptKeyword("SELECT")) {
+            return select();
+        } else if (acceptKeyword("UPDATE")) {
+            return update();
+        } else if (acceptKeyword("DELETE")) {
+            expectKeyword("FROM");
+            String tableName = identifier("table name");
+            return new SqlStatement.Delete(tableName, where());
+        } else if (acceptKeyword("DROP")) {
+            expectKeyword("TABLE");
+            return new SqlStatement.Named(SqlStatement.Kind.DROP_TABLE, identifier("table name"));
+        } else if (acceptKeyword("ANALYZE")) {
+            return new SqlStatement.Named(SqlStatement.Kind.ANALYZE, identifier("table name"));
+        } else if (acceptKeyword("SHOW")) {
+            String target = identifier("SHOW target");
+            String tableName = lexer.getKind() == SqlLexer.Kind.IDENTIFIER ? identifier("table name") : null;
+            return new SqlStatement.Show(target, tableName);
+        } else if (acceptKeyword("SET")) {
+            return set();
+        }
+        throw expected("a statement");
+    }
+
+    /**
+     * Parses the rest of a CREATE DATABASE, CREATE TABLE or CREATE INDEX statement.
+     *
+     * @return The statement.
+     * @throws ParseException If the statement is malformed.
+     */
+    private SqlStatement create() throws ParseException {
+        if (acceptKeyword("DATABASE")) {
+            return new SqlStatement.CreateDatabase(identifier("database name"));
+        } else if (acceptKeyword("TABLE")) {
+            String tableName = identifier("table name");
+            expectSymbol("(");
+            List<SqlStatement.ColumnDefinition> columns = new ArrayList<>();
+            do {
+                columns.add(columnDefinition());
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+            String engine = null;
+            if (acceptKeyword("ENGINE")) {
+                acceptSymbol("=");
+                engine = identifier("engine name");
+            }
+            return new SqlStatement.CreateTable(tableName, columns, engine);
+        } else if (acceptKeyword("INDEX")) {
+            String indexName = identifier("index name");
+            expectKeyword("ON");
+            String tableName = identifier("table name");
+            expectSymbol("(");
+            String columnName = identifier("column name");
+            expectSymbol(")");
+            IndexDefinition.Type type = IndexDefinition.Type.HASH;
+            if (acceptKeyword("USING")) {
+                if (acceptKeyword("BTREE")) {
+                    type = IndexDefinition.Type.BTREE;
+                } else if (!acceptKeyword("HASH")) {
+                    throw expected("HASH or BTREE");
+                }
+            }
+            return new SqlStatement.CreateIndex(indexName, tableName, columnName, type);
+        }
+        throw expected("DATABASE, TABLE or INDEX");
+    }
+
+    /**
+     * Parses a column of CREATE TABLE: its name and type, where the type may be followed by (PK) to mark the
+     * primary key or by its size in parentheses.
+     *
+     * @return The column definition.
+     * @throws ParseException If the column definition is malformed.
+     */
+    private SqlStatement.ColumnDefinition columnDefinition() throws ParseException {
+        String name = identifier("column name");
+        String type = identifier("column type");
+        boolean primaryKey = false;
+        if (acceptSymbol("(")) {
+            if (acceptKeyword("PK")) {
+                primaryKey = true;
+            } else if (lexer.getKind() == SqlLexer.Kind.NUMBER) {
+                type += "(" + lexer.getText() + ")";
+                lexer.next();
+            } else {
+                throw expected("PK or a type size");
+            }
+            expectSymbol(")");
+        }
+        return new SqlStatement.ColumnDefinition(name, type, primaryKey);
+    }
+
+    /**
+     * Parses the rest of an INSERT statement.
+     *
+     * @return The statement.
+     * @throws ParseException If the statement is malformed.
+     */
+    private SqlStatement insert() throws ParseException {
+        expectKeyword("INTO");
+        String tableName = identifier("table name");
+        expectSymbol("(");
+        List<String> columns = new ArrayList<>();
+        do {
+            columns.add(identifier("column name"));
+        } while (acceptSymbol(","));
+        expectSymbol(")");
+        expectKeyword("VALUES");
+        expectSymbol("(");
+        List<SqlStatement.Literal> values = new ArrayList<>();
+        do {
+            values.add(literal());
+        } while (acceptSymbol(","));
+        expectSymbol(")");
+        return new SqlStatement.Insert(tableName, columns, values);
+    }
+
+    /**
+     * Parses the rest of a SELECT statement.
+     *
+     * @return The statement.
+     * @throws ParseException If the statement is malformed.
+     */
+    private SqlStatement select() throws ParseException {
+        List<String> columns;
+        if (acceptSymbol("*")) {
+            columns = Collections.emptyList();
+        } else {
+            columns = new ArrayList<>();
+            do {
+                columns.add(identifier("column name"));
+            } while (acceptSymbol(","));
+        }
+        expectKeyword("FROM");
+        String tableName = identifier("table name");
+        SqlStatement.Condition where = where();
+
+        String orderBy = null;
+        boolean descending = false;
+        if (acceptKeyword("ORDER")) {
+            expectKeyword("BY");
+            orderBy = identifier("column name");
+            if (acceptKeyword("DESC")) {
+                descending = true;
+            } else {
+                acceptKeyword("ASC");
+            }
+        }
+
+        long limit = -1;
+        if (acceptKeyword("LIMIT")) {
+            int start = lexer.getStart();
+            if (lexer.getKind() != SqlLexer.Kind.NUMBER) {
+                throw expected("a row count");
+            }
+            try {
+                limit = Long.parseLong(lexer.getText());
+            } catch (NumberFormatException e) {
+                throw SqlLexer.error(start, "invalid row count " + lexer.describe());
+            }
+            lexer.next();
+        }
+        return new SqlStatement.Select(tableName, columns, where, orderBy, descending, limit);
+    }
+
+    /**
+     * Parses the rest of an UPDATE statement.
+     *
+     * @return The statement.
+     * @throws ParseException If the statement is malformed.
+     */
+    private SqlStatement update() throws ParseException {
+        String tableName = identifier("table name");
+        expectKeyword("SET");
+        String column = identifier("column name");
+        expectSymbol("=");
+        SqlStatement.Literal value = literal();
+        return new SqlStatement.Update(tableName, column, value, where());
+    }
+
+    /**
+     * Parses the rest of a SET statement. The value may be a keyword such as DEFAULT, a number or a string.
+     *
+     * @return The statement.
+     * @throws ParseException If the statement is malformed.
+     */
+    private SqlStatement set() throws ParseException {
+        StringBuilder name = new StringBuilder(identifier("setting name"));
+        while (acceptSymbol(".")) {
+            name.append('.').append(identifier("setting name"));
+        }
+        expectSymbol("=");
+        String value;
+        if (lexer.getKind() == SqlLexer.Kind.IDENTIFIER) {
+            value = lexer.getText();
+            lexer.next();
+        } else {
+            value = literal().getText();
+        }
+        return new SqlStatement.Setting(name.toString(), value);
+    }
+
+    /**
+     * Parses an optional WHERE clause. NOT binds tighter than AND, and AND tighter than OR; parentheses group
+     * conditions.
+     *
+     * @return The condition, or null if there is no WHERE clause.
+     * @throws ParseException If the condition is malformed.
+     */
+    private SqlStatement.Condition where() throws ParseException {
+        if (!acceptKeyword("WHERE")) {
+            return null;
+        }
+        return disjunction();
+    }
+
+    /**
+     * Parses conditions separated by OR.
+     *
+     * @return The condition, or the combination of the conditions if there are several.
+     * @throws ParseException If a condition is malformed.
+     */
+    private SqlStatement.Condition disjunction() throws ParseException {
+        SqlStatement.Condition condition = conjunction();
+        if (!lexer.isKeyword("OR")) {
+            return condition;
+        }
+        List<SqlStatement.Condition> operands = new ArrayList<>();
+        operands.add(condition);
+        while (acceptKeyword("OR")) {
+            operands.add(conjunction());
+        }
+        return new SqlStatement.Junction(false, operands);
+    }
+
+    /**
+     * Parses conditions separated by AND.
+     *
+     * @return The condition, or the combination of the conditions if there are several.
+     * @throws ParseException If a condition is malformed.
+     */
+    private SqlStatement.Condition conjunction() throws ParseException {
+        SqlStatement.Condition condition = negation();
+        if (!lexer.isKeyword("AND")) {
+            return condition;
+        }
+        List<SqlStatement.Condition> operands = new ArrayList<>();
+        operands.add(condition);
+        while (acceptKeyword("AND")) {
+            operands.add(negation());
+        }
+        return new SqlStatement.Junction(true, operands);
+    }
+
+    /**
+     * Parses a condition with any number of NOT keywords in front of it.
+     *
+     * @return The condition.
+     * @throws ParseException If the condition is malformed.
+     */
+    private SqlStatement.Condition negation() throws ParseException {
+        if (acceptKeyword("NOT")) {
+            return new SqlStatement.Not(negation());
+        }
+        if (acceptSymbol("(")) {
+            SqlStatement.Condition condition = disjunction();
+            expectSymbol(")");
+            return condition;
+        }
+        return predicate();
+    }
+
+    /**
+     * Parses a condition on a column: a comparison, [NOT] IN, [NOT] BETWEEN, [NOT] LIKE or IS [NOT] NULL.
+     *
+     * @return The condition, wrapped in a negation for the NOT forms.
+     * @throws ParseException If the condition is malformed.
+     */
+    private SqlStatement.Condition predicate() throws ParseException {
+        String column = identifier("column name");
+        if (acceptKeyword("IS")) {
+            boolean negated = acceptKeyword("NOT");
+            expectKeyword("NULL");
+            SqlStatement.Condition condition = new SqlStatement.IsNull(column);
+            return negated ? new SqlStatement.Not(condition) : condition;
+        }
+
+        boolean negated = acceptKeyword("NOT");
+        SqlStatement.Condition condition;
+        if (acceptKeyword("IN")) {
+            expectSymbol("(");
+            List<SqlStatement.Literal> values = new ArrayList<>();
+            do {
+                values.add(literal());
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+            condition = new SqlStatement.In(column, values);
+        } else if (acceptKeyword("BETWEEN")) {
+            SqlStatement.Literal low = literal();
+            expectKeyword("AND");
+            condition = new SqlStatement.Between(column, low, literal());
+        } else if (acceptKeyword("LIKE")) {
+            condition = new SqlStatement.Like(column, literal());
+        } else if (negated) {
+            throw expected("IN, BETWEEN or LIKE");
+        } else if (lexer.isSymbol("=") || lexer.isSymbol("<>") || lexer.isSymbol("!=") || lexer.isSymbol("<")
+                || lexer.isSymbol("<=") || lexer.isSymbol(">") || lexer.isSymbol(">=")) {
+            String operator = lexer.isSymbol("!=") ? "<>" : lexer.getText();
+            lexer.next();
+            condition = new SqlStatement.Comparison(column, operator, literal());
+        } else {
+            throw expected("a comparison operator");
+        }
+        return negated ? new SqlStatement.Not(condition) : condition;
+    }
+
+    /**
+     * Parses a constant: a number with an optional minus sign, a string, NULL or a parameter marker.
+     *
+     * @return The constant.
+     * @throws ParseException If the next token is not a constant.
+     */
+    private SqlStatement.Literal literal() throws ParseException {
+        SqlStatement.Literal literal;
+        if (lexer.getKind() == SqlLexer.Kind.STRING) {
+            literal = new SqlStatement.Literal(SqlStatement.Literal.Type.STRING, lexer.getStringValue());
+        } else if (lexer.isKeyword("NULL")) {
+            literal = SqlStatement.Literal.NULL;
+        } else if (lexer.isSymbol("?")) {
+            literal = SqlStatement.Literal.parameter(parameterCount++);
+        } else {
+            boolean negative = acceptSymbol("-");
+            if (lexer.getKind() != SqlLexer.Kind.NUMBER) {
+                throw expected(negative ? "a number" : "a value");
+            }
+            literal = new SqlStatement.Literal(SqlStatement.Literal.Type.NUMBER,
+                    negative ? "-" + lexer.getText() : lexer.getText());
+        }
+        lexer.next();
+        return literal;
+    }
+
+    /**
+     * Reads a name. Keywords that start clauses or combine conditions cannot be used as names.
+     *
+     * @param what What the name stands for, for the error message.
+     * @return The name as written.
+     * @throws ParseException If the next token is not a name.
+     */
+    private String identifier(String what) throws ParseException {
+        if (lexer.getKind() != SqlLexer.Kind.IDENTIFIER) {
+            throw expected(what);
+        }
+        if (isReserved(lexer)) {
+            throw expected(what);
+        }
+        String name = lexer.getText();
+        lexer.next();
+        return name;
+    }
+
+    /**
+     * Checks whether the current token is a keyword that starts a clause or a condition operator, and so cannot
+     * be used as a name.
+     *
+     * @param lexer The lexer.
+     * @return true if the token is a reserved keyword, false otherwise.
+     */
+    private static boolean isReserved(SqlLexer lexer) {
+        for (String keyword : RESERVED) {
+            if (lexer.isKeyword(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips a keyword if it is the next token.
+     *
+     * @param keyword The keyword in upper case.
+     * @return true if the keyword was skipped, false otherwise.
+     * @throws ParseException If the token after the keyword is malformed.
+     */
+    private boolean acceptKeyword(String keyword) throws ParseException {
+        if (!lexer.isKeyword(keyword)) {
+            return false;
+        }
+        lexer.next();
+        return true;
+    }
+
+    /**
+     * Skips a keyword that has to be the next token.
+     *
+     * @param keyword The keyword in upper case.
+     * @throws ParseException If the next token is not the keyword.
+     */
+    private void expectKeyword(String keyword) throws ParseException {
+        if (!acceptKeyword(keyword)) {
+            throw expected(keyword);
+        }
+    }
+
+    /**
+     * Skips a symbol if it is the next token.
+     *
+     * @param symbol The symbol.
+     * @return true if the symbol was skipped, false otherwise.
+     * @throws ParseException If the token after the symbol is malformed.
+     */
+    private boolean acceptSymbol(String symbol) throws ParseException {
+        if (!lexer.isSymbol(symbol)) {
+            return false;
+        }
+        lexer.next();
+        return true;
+    }
+
+    /**
+     * Skips a symbol that has to be the next token.
+     *
+     * @param symbol The symbol.
+     * @throws ParseException If the next token is not the symbol.
+     */
+    private void expectSymbol(String symbol) throws ParseException {
+        if (!acceptSymbol(symbol)) {
+            throw expected("'" + symbol + "'");
+        }
+    }
+
+    /**
+     * Creates the error reported when the next token is not what the statement needs there.
+     *
+     * @param what What was expected.
+     * @return The error, positioned on the next token.
+     */
+    private ParseException expected(String what) {
+        return SqlLexer.error(lexer.getStart(), "expected " + what + " but found " + lexer.describe());
+    }
+}
@@ -0,0 +1,116 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.text.ParseException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SqlParserTest {
+
+    private CommandProcessor commandProcessor;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+    }
+
+    @Test
+    void testParsesSelect() throws Exception {
+        SqlStatement.Select select = (SqlStatement.Select) SqlParser.parse(
+                "select NAME,AGE from PEOPLE where AGE>=-2.5e1 order by NAME desc limit 10;");
+        assertEquals("PEOPLE", select.getTableName());
+        assertEquals(List.of("NAME", "AGE"), select.getColumns());
+        SqlStatement.Comparison where = (SqlStatement.Comparison) select.getWhere();
+        assertEquals("AGE", where.getColumn());
+        assertEquals(">=", where.getOperator());
+        assertEquals("-2.5e1", where.getValue().getText());
+        assertEquals("NAME", select.getOrderBy());
+        assertTrue(select.isDescending());
+        assertEquals(10, select.getLimit());
+
+        select = (SqlStatement.Select) SqlParser.parse("SELECT * FROM PEOPLE");
+        assertTrue(select.getColumns().isEmpty());
+        assertNull(select.getWhere());
+        assertEquals(-1, select.getLimit());
+    }
+
+    @Test
+    void testParsesCompoundConditions() throws Exception {
+        SqlStatement.Select select = (SqlStatement.Select) SqlParser.parse("SELECT * FROM PEOPLE WHERE AGE BETWEEN 20 "
+                + "AND 30 AND NOT (NAME LIKE 'J%' OR ID IN (1, ?, 3)) OR NAME IS NOT NULL AND AGE != 5");
+        assertEquals("((AGE BETWEEN 20 AND 30 AND NOT (NAME LIKE 'J%' OR ID IN (1, ?, 3))) "
+                + "OR (NOT NAME IS NULL AND AGE <> 5))", select.getWhere().toString());
+        assertEquals(1, select.getParameterCount());
+
+        SqlStatement.Delete delete = (SqlStatement.Delete) SqlParser.parse("DELETE FROM PEOPLE WHERE ID NOT IN (1)");
+        SqlStatement.Not not = (SqlStatement.Not) delete.getWhere();
+        assertEquals("ID IN (1)", not.getOperand().toString());
+
+        ParseException exception = assertThrows(ParseException.class,
+                () -> SqlParser.parse("SELECT * FROM PEOPLE WHERE AGE NOT = 1"));
+        assertTrue(exception.getMessage().contains("expected IN, BETWEEN or LIKE"), exception.getMessage());
+    }
+
+    @Test
+    void testParsesQuotedValues() throws Exception {
+        SqlStatement.Insert insert = (SqlStatement.Insert) SqlParser.parse(
+                "INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (1, 'DOE, JOHN ''JD''', NULL);");
+        assertEquals(List.of("ID", "NAME", "AGE"), insert.getColumns());
+        assertEquals("DOE, JOHN 'JD'", insert.getValues().get(1).getText());
+        assertEquals(SqlStatement.Literal.Type.NULL, insert.getValues().get(2).getType());
+    }
+
+    @Test
+    void testReportsErrorPositions() {
+        ParseException exception = assertThrows(ParseException.class,
+                () -> SqlParser.parse("SELECT NAME PEOPLE WHERE ID = 1"));
+        assertEquals(12, exception.getErrorOffset());
+        assertEquals("Syntax error at position 13: expected FROM but found 'PEOPLE'", exception.getMessage());
+
+        exception = assertThrows(ParseException.class, () -> SqlParser.parse("DELETE FROM PEOPLE WHERE NAME = 'JIM"));
+        assertEquals(32, exception.getErrorOffset());
+        assertTrue(exception.getMessage().contains("unterminated string"), exception.getMessage());
+
+        exception = assertThrows(ParseException.class, () -> SqlParser.parse("SELECT * FROM PEOPLE LIMIT 5 5"));
+        assertEquals(29, exception.getErrorOffset());
+        assertTrue(exception.getMessage().contains("expected end of statement"), exception.getMessage());
+    }
+
+    @Test
+    void testStoresValuesWithCommasAndSpaces() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE PEOPLE (ID INT(PK), NAME STRING, AGE INT);");
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (1, 'DOE, JOHN', 30);");
+        commandProcessor.processCommand("INSERT INTO PEOPLE (ID, NAME, AGE) VALUES (2, 'O''BRIEN', 40);");
+        commandProcessor.processCommand("COMMIT;");
+        commandProcessor.processCommand("UPDATE PEOPLE SET NAME = 'DOE, JANE' WHERE NAME = 'DOE, JOHN';");
+
+        QueryResult result = commandProcessor.query("SELECT NAME FROM PEOPLE ORDER BY ID;");
+        assertEquals(2, result.getRowCount());
+        assertEquals("DOE, JANE", result.getRows().get(0)[0]);
+        assertEquals("O'BRIEN", result.getRows().get(1)[0]);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
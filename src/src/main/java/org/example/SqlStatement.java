@@ -0,0 +1,1093 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public abstract class SqlStatement {
+    private final Kind kind;
+    private int parameterCount;
+
+    /**
+     * The statements the engine runs.
+     */
+    public enum Kind {
+        BEGIN("BEGIN"),
+        COMMIT("COMMIT"),
+        ROLLBACK("ROLLBACK"),
+        CHECKPOINT("CHECKPOINT"),
+        CREATE_DATABASE("CREATE"),
+        CREATE_TABLE("CREATE"),
+        CREATE_INDEX("CREATE"),
+        USE("USE"),
+        INSERT("INSERT"),
+        SELECT("SELECT"),
+        UPDATE("UPDATE"),
+        DELETE("DELETE"),
+        DROP_TABLE("DROP"),
+        ANALYZE("ANALYZE"),
+        SHOW("SHOW"),
+        SET("SET");
+
+        private final String command;
+
+        Kind(String command) {
+            this.command = command;
+        }
+
+        /**
+         * Returns the keyword the statement starts with.
+         *
+         * @return The keyword, such as CREATE for CREATE_TABLE.
+         */
+        public String getCommand() {
+            return command;
+        }
+    }
+
+    /**
+     * Constructs a statement.
+     *
+     * @param kind The kind of the statement.
+     */
+    SqlStatement(Kind kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Returns the kind of the statement.
+     *
+     * @return The statement kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the number of parameter markers (?) in the statement, whose values are bound when it runs.
+     *
+     * @return The number of parameters.
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * Sets the number of parameter markers found by the parser.
+     *
+     * @param parameterCount The number of parameters.
+     */
+    void setParameterCount(int parameterCount) {
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * A statement that consists of its keywords alone: BEGIN TRANSACTION, COMMIT, ROLLBACK or CHECKPOINT.
+     */
+    public static final class Simple extends SqlStatement {
+        /**
+         * Constructs a statement without operands.
+         *
+         * @param kind The kind of the statement.
+         */
+        public Simple(Kind kind) {
+            super(kind);
+        }
+    }
+
+    /**
+     * {@code CREATE DATABASE <name>}.
+     */
+    public static final class CreateDatabase extends SqlStatement {
+        private final String databaseName;
+
+        /**
+         * Constructs a CREATE DATABASE statement.
+         *
+         * @param databaseName The name of the database.
+         */
+        public CreateDatabase(String databaseName) {
+            super(Kind.CREATE_DATABASE);
+            this.databaseName = databaseName;
+        }
+
+        /**
+         * Returns the name of the database to create.
+         *
+         * @return The database name.
+         */
+        public String getDatabaseName() {
+            return databaseName;
+        }
+    }
+
+    /**
+     * {@code CREATE TABLE <name> (<column> <type>[(PK)], ...) [ENGINE [=] <engine>]}.
+     */
+    public static final class CreateTable extends SqlStatement {
+        private final String tableName;
+        private final List<ColumnDefinition> columns;
+        private final String engine;
+
+        /**
+         * Constructs a CREATE TABLE statement.
+         *
+         * @param tableName The name of the table.
+         * @param columns The column definitions in table order.
+         * @param engine The name of the storage engine, or null for the default.
+         */
+        public CreateTable(String tableName, List<ColumnDefinition> columns, String engine) {
+            super(Kind.CREATE_TABLE);
+            this.tableName = tableName;
+            this.columns = columns;
+            this.engine = engine;
+        }
+
+        /**
+         * Returns the name of the table to create.
+         *
+         * @return The table name.
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Returns the column definitions.
+         *
+         * @return The columns in table order.
+         */
+        public List<ColumnDefinition> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Returns the storage engine named by the ENGINE clause.
+         *
+         * @return The engine name as written, or null if the statement has no ENGINE clause.
+         */
+        public String getEngine() {
+            return engine;
+        }
+    }
+
+    /**
+     * A column of a CREATE TABLE statement.
+     */
+    public static final class ColumnDefinition {
+        private final String name;
+        private final String type;
+        private final boolean primaryKey;
+
+        /**
+         * Constructs a column definition.
+         *
+         * @param name The column name.
+         * @param type The declared type, with its size if one is given, such as INT or VARCHAR(50).
+         * @param primaryKey true if the column is marked (PK).
+         */
+        public ColumnDefinition(String name, String type, boolean primaryKey) {
+            this.name = name;
+            this.type = type;
+            this.primaryKey = primaryKey;
+        }
+
+        /**
+         * Returns the column name.
+         *
+         * @return The column name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the declared type.
+         *
+         * @return The type, with its size if one is given.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Checks whether the column is the primary key.
+         *
+         * @return true if the column is marked (PK), false otherwise.
+         */
+        public boolean isPrimaryKey() {
+            return primaryKey;
+        }
+
+        /**
+         * Returns the definition as it is written in the Structure line of a metadata file.
+         *
+         * @return The name and type, followed by (PK) for the primary key.
+         */
+        @Override
+        public String toString() {
+            return name + " " + type + (primaryKey ? "(PK)" : "");
+        }
+    }
+
+    /**
+     * {@code CREATE INDEX <name> ON <table>(<column>) [USING HASH | BTREE]}.
+     */
+    public static final class CreateIndex extends SqlStatement {
+        private final String indexName;
+        private final String tableName;
+        private final String columnName;
+        private final IndexDefinition.Type type;
+
+        /**
+         * Constructs a CREATE INDEX statement.
+         *
+         * @param indexName The name of the index.
+         * @param tableName The name of the indexed table.
+         * @param columnName The name of the indexed column.
+         * @param type The storage structure of the index.
+         */
+        public CreateIndex(String indexName, String tableName, String columnName, IndexDefinition.Type type) {
+            super(Kind.CREATE_INDEX);
+            this.indexName = indexName;
+            this.tableName = tableName;
+            this.columnName = columnName;
+            this.type = type;
+        }
+
+        /**
+         * Returns the name of the index to create.
+         *
+         * @return The index name.
+         */
+        public String getIndexName() {
+            return indexName;
+        }
+
+        /**
+         * Returns the name of the indexed table.
+         *
+         * @return The table name.
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Returns the name of the indexed column.
+         *
+         * @return The column name.
+         */
+        public String getColumnName() {
+            return columnName;
+        }
+
+        /**
+         * Returns the storage structure of the index.
+         *
+         * @return HASH unless the statement asks for a BTREE index.
+         */
+        public IndexDefinition.Type getType() {
+            return type;
+        }
+    }
+
+    /**
+     * A statement that names one database or table: {@code USE <database>} or {@code DROP TABLE <table>}.
+     */
+    public static final class Named extends SqlStatement {
+        private final String name;
+
+        /**
+         * Constructs a statement on a named object.
+         *
+         * @param kind The kind of the statement.
+         * @param name The name of the database or table.
+         */
+        public Named(Kind kind, String name) {
+            super(kind);
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of the database or table.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * {@code INSERT INTO <table> (<column>, ...) VALUES (<value>, ...)}.
+     */
+    public static final class Insert extends SqlStatement {
+        private final String tableName;
+        private final List<String> columns;
+        private final List<Literal> values;
+
+        /**
+         * Constructs an INSERT statement.
+         *
+         * @param tableName The name of the table.
+         * @param columns The names of the listed columns.
+         * @param values The values, in the order of the columns.
+         */
+        public Insert(String tableName, List<String> columns, List<Literal> values) {
+            super(Kind.INSERT);
+            this.tableName = tableName;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        /**
+         * Returns the name of the table.
+         *
+         * @return The table name.
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Returns the names of the listed columns.
+         *
+         * @return The column names.
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Returns the inserted values.
+         *
+         * @return The values, in the order of the columns.
+         */
+        public List<Literal> getValues() {
+            return values;
+        }
+    }
+
+    /**
+     * {@code SELECT * | <column>, ... FROM <table> [WHERE <condition>] [ORDER BY <column> [ASC | DESC]]
+     * [LIMIT <count>]}.
+     */
+    public static final class Select extends SqlStatement {
+        private final String tableName;
+        private final List<String> columns;
+        private final Condition where;
+        private final String orderBy;
+        private final boolean descending;
+        private final long limit;
+
+        /**
+         * Constructs a SELECT statement.
+         *
+         * @param tableName The name of the table.
+         * @param columns The names of the selected columns, or an empty list for all columns.
+         * @param where The WHERE condition, or null.
+         * @param orderBy The name of the ORDER BY column, or null.
+         * @param descending true if the rows are ordered from the largest value.
+         * @param limit The maximum number of rows, or -1 without a LIMIT clause.
+         */
+        public Select(String tableName, List<String> columns, Condition where, String orderBy, boolean descending,
+                      long limit) {
+            super(Kind.SELECT);
+            this.tableName = tableName;
+            this.columns = columns;
+            this.where = where;
+            this.orderBy = orderBy;
+            this.descending = descending;
+            this.limit = limit;
+        }
+
+        /**
+         * Returns the name of the table.
+         *
+         * @return The table name.
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Returns the names of the selected columns.
+         *
+         * @return The column names, or an empty list for SELECT *.
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Returns the WHERE condition.
+         *
+         * @return The condition, or null if every row is selected.
+         */
+        public Condition getWhere() {
+            return where;
+        }
+
+        /**
+         * Returns the column the rows are ordered by.
+         *
+         * @return The column name, or null without an ORDER BY clause.
+         */
+        public String getOrderBy() {
+            return orderBy;
+        }
+
+        /**
+         * Checks whether the rows are ordered from the largest value.
+         *
+         * @return true for ORDER BY ... DESC, false otherwise.
+         */
+        public boolean isDescending() {
+            return descending;
+        }
+
+        /**
+         * Returns the maximum number of rows.
+         *
+         * @return The LIMIT count, or -1 without a LIMIT clause.
+         */
+        public long getLimit() {
+            return limit;
+        }
+    }
+
+    /**
+     * {@code UPDATE <table> SET <column> = <value> WHERE <condition>}.
+     */
+    public static final class Update extends SqlStatement {
+        private final String tableName;
+        private final String column;
+        private final Literal value;
+        private final Condition where;
+
+        /**
+         * Constructs an UPDATE statement.
+         *
+         * @param tableName The name of the table.
+         * @param column The name of the changed column.
+         * @param value The new value of the column.
+         * @param where The WHERE condition, or null.
+         */
+        public Update(String tableName, String column, Literal value, Condition where) {
+            super(Kind.UPDATE);
+            this.tableName = tableName;
+            this.column = column;
+            this.value = value;
+            this.where = where;
+        }
+
+        /**
+         * Returns the name of the table.
+         *
+         * @return The table name.
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Returns the name of the changed column.
+         *
+         * @return The column name.
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * Returns the new value of the column.
+         *
+         * @return The value.
+         */
+        public Literal getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the WHERE condition.
+         *
+         * @return The condition, or null if the statement has no WHERE clause.
+         */
+        public Condition getWhere() {
+            return where;
+        }
+    }
+
+    /**
+     * {@code DELETE FROM <table> WHERE <condition>}.
+     */
+    public static final class Delete extends SqlStatement {
+        private final String tableName;
+        private final Condition where;
+
+        /**
+         * Constructs a DELETE statement.
+         *
+         * @param tableName The name of the table.
+         * @param where The WHERE condition, or null.
+         */
+        public Delete(String tableName, Condition where) {
+            super(Kind.DELETE);
+            this.tableName = tableName;
+            this.where = where;
+        }
+
+        /**
+         * Returns the name of the table.
+         *
+         * @return The table name.
+         */
+        public String getTableName() {
+            return tableName;
+        }
+
+        /**
+         * Returns the WHERE condition.
+         *
+         * @return The condition, or null if the statement has no WHERE clause.
+         */
+        public Condition getWhere() {
+            return where;
+        }
+    }
+
+    /**
+     * {@code SHOW <target> [<table>]}.
+     */
+    public static final class Show extends SqlStatement {
+        private final String target;
+        private final String tableName;
+
+        /**
+         * Constructs a SHOW statement.
+         *
+         * @param target The statistics to show, such as BUFFERPOOL or LSM.
+         * @param tableName The table the statistics are about, or null.
+         */
+        public Show(String target, String tableName) {
+            super(Kind.SHOW);
+            this.target = target;
+            this.tableName = tableName;
+        }
+
+        /**
+         * Returns the statistics to show.
+         *
+         * @return The target as written.
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the table the statistics are about.
+         *
+         * @return The table name, or null if the statement names no table.
+         */
+        public String getTableName() {
+            return tableName;
+        }
+    }
+
+    /**
+     * {@code SET <name> = <value> | DEFAULT}.
+     */
+    public static final class Setting extends SqlStatement {
+        private final String name;
+        private final String value;
+
+        /**
+         * Constructs a SET statement.
+         *
+         * @param name The name of the setting, whose parts may be separated by dots.
+         * @param value The value as a keyword, a number or the contents of a string.
+         */
+        public Setting(String name, String value) {
+            super(Kind.SET);
+            this.name = name;
+            this.value = value;
+        }
+
+        /**
+         * Returns the name of the setting.
+         *
+         * @return The setting name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the value of the setting.
+         *
+         * @return The value, which is DEFAULT to reset the setting.
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A condition of a WHERE clause: a comparison, a test of one column, or a combination of conditions with
+     * AND, OR and NOT.
+     */
+    public abstract static class Condition {
+
+        /**
+         * Constructs a condition.
+         */
+        Condition() {
+        }
+
+        /**
+         * Returns the condition as SQL.
+         *
+         * @return The condition, with parentheses around the conditions it combines.
+         */
+        @Override
+        public abstract String toString();
+    }
+
+    /**
+     * A condition on a single column.
+     */
+    public abstract static class ColumnCondition extends Condition {
+        private final String column;
+
+        /**
+         * Constructs a condition on a column.
+         *
+         * @param column The name of the column.
+         */
+        ColumnCondition(String column) {
+            this.column = column;
+        }
+
+        /**
+         * Returns the name of the column the condition tests.
+         *
+         * @return The column name.
+         */
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    /**
+     * A condition that compares a column with a value: {@code <column> <operator> <value>}.
+     */
+    public static final class Comparison extends ColumnCondition {
+        private final String operator;
+        private final Literal value;
+
+        /**
+         * Constructs a comparison.
+         *
+         * @param column The name of the compared column.
+         * @param operator The comparison operator (=, &lt;&gt;, &lt;, &lt;=, &gt; or &gt;=).
+         * @param value The value to compare against.
+         */
+        public Comparison(String column, String operator, Literal value) {
+            super(column);
+            this.operator = operator;
+            this.value = value;
+        }
+
+        /**
+         * Returns the comparison operator.
+         *
+         * @return The operator.
+         */
+        public String getOperator() {
+            return operator;
+        }
+
+        /**
+         * Returns the value the column is compared against.
+         *
+         * @return The value.
+         */
+        public Literal getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the comparison as SQL.
+         *
+         * @return The column, operator and value.
+         */
+        @Override
+        public String toString() {
+            return getColumn() + " " + operator + " " + value;
+        }
+    }
+
+    /**
+     * {@code <column> IN (<value>, ...)}.
+     */
+    public static final class In extends ColumnCondition {
+        private final List<Literal> values;
+
+        /**
+         * Constructs an IN condition.
+         *
+         * @param column The name of the tested column.
+         * @param values The values the column may hold.
+         */
+        public In(String column, List<Literal> values) {
+            super(column);
+            this.values = values;
+        }
+
+        /**
+         * Returns the values the column may hold.
+         *
+         * @return The values, in the order written.
+         */
+        public List<Literal> getValues() {
+            return values;
+        }
+
+        /**
+         * Returns the condition as SQL.
+         *
+         * @return The column and the list of values.
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(getColumn()).append(" IN (");
+            for (int i = 0; i < values.size(); i++) {
+                text.append(i > 0 ? ", " : "").append(values.get(i));
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    /**
+     * {@code <column> BETWEEN <low> AND <high>}, which includes both bounds.
+     */
+    public static final class Between extends ColumnCondition {
+        private final Literal low;
+        private final Literal high;
+
+        /**
+         * Constructs a BETWEEN condition.
+         *
+         * @param column The name of the tested column.
+         * @param low The lower bound.
+         * @param high The upper bound.
+         */
+        public Between(String column, Literal low, Literal high) {
+            super(column);
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * Returns the lower bound.
+         *
+         * @return The value the column may not be below.
+         */
+        public Literal getLow() {
+            return low;
+        }
+
+        /**
+         * Returns the upper bound.
+         *
+         * @return The value the column may not be above.
+         */
+        public Literal getHigh() {
+            return high;
+        }
+
+        /**
+         * Returns the condition as SQL.
+         *
+         * @return The column and both bounds.
+         */
+        @Override
+        public String toString() {
+            return getColumn() + " BETWEEN " + low + " AND " + high;
+        }
+    }
+
+    /**
+     * {@code <column> IS NULL}.
+     */
+    public static final class IsNull extends ColumnCondition {
+
+        /**
+         * Constructs an IS NULL condition.
+         *
+         * @param column The name of the tested column.
+         */
+        public IsNull(String column) {
+            super(column);
+        }
+
+        /**
+         * Returns the condition as SQL.
+         *
+         * @return The column and IS NULL.
+         */
+        @Override
+        public String toString() {
+            return getColumn() + " IS NULL";
+        }
+    }
+
+    /**
+     * {@code <column> LIKE <pattern>}, where % in the pattern stands for any number of characters and _ for
+     * exactly one.
+     */
+    public static final class Like extends ColumnCondition {
+        private final Literal pattern;
+
+        /**
+         * Constructs a LIKE condition.
+         *
+         * @param column The name of the tested column.
+         * @param pattern The pattern the value of the column has to match.
+         */
+        public Like(String column, Literal pattern) {
+            super(column);
+            this.pattern = pattern;
+        }
+
+        /**
+         * Returns the pattern.
+         *
+         * @return The pattern as a string or a parameter marker.
+         */
+        public Literal getPattern() {
+            return pattern;
+        }
+
+        /**
+         * Returns the condition as SQL.
+         *
+         * @return The column and the pattern.
+         */
+        @Override
+        public String toString() {
+            return getColumn() + " LIKE " + pattern;
+        }
+    }
+
+    /**
+     * Conditions combined with AND, all of which have to hold, or with OR, one of which has to hold.
+     */
+    public static final class Junction extends Condition {
+        private final boolean conjunction;
+        private final List<Condition> operands;
+
+        /**
+         * Constructs a combination of conditions.
+         *
+         * @param conjunction true to combine the conditions with AND, false to combine them with OR.
+         * @param operands The combined conditions, at least two.
+         */
+        public Junction(boolean conjunction, List<Condition> operands) {
+            this.conjunction = conjunction;
+            this.operands = operands;
+        }
+
+        /**
+         * Checks whether the conditions are combined with AND.
+         *
+         * @return true for AND, false for OR.
+         */
+        public boolean isConjunction() {
+            return conjunction;
+        }
+
+        /**
+         * Returns the combined conditions.
+         *
+         * @return The conditions, in the order written.
+         */
+        public List<Condition> getOperands() {
+            return operands;
+        }
+
+        /**
+         * Returns the combination as SQL.
+         *
+         * @return The conditions in parentheses, separated by AND or OR.
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("(");
+            for (int i = 0; i < operands.size(); i++) {
+                text.append(i > 0 ? (conjunction ? " AND " : " OR ") : "").append(operands.get(i));
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    /**
+     * {@code NOT <condition>}.
+     */
+    public static final class Not extends Condition {
+        private final Condition operand;
+
+        /**
+         * Constructs the negation of a condition.
+         *
+         * @param operand The negated condition.
+         */
+        public Not(Condition operand) {
+            this.operand = operand;
+        }
+
+        /**
+         * Returns the negated condition.
+         *
+         * @return The condition.
+         */
+        public Condition getOperand() {
+            return operand;
+        }
+
+        /**
+         * Returns the negation as SQL.
+         *
+         * @return NOT and the negated condition.
+         */
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+
+    /**
+     * A constant value of a statement, or a parameter marker whose value is bound when the statement runs.
+     */
+    public static final class Literal {
+        /**
+         * The NULL constant.
+         */
+        public static final Literal NULL = new Literal(Type.NULL, "NULL");
+
+        private final Type type;
+        private final String text;
+        private final int parameter;
+
+        /**
+         * The kinds of constants.
+         */
+        public enum Type {
+            NUMBER,
+            STRING,
+            NULL,
+            PARAMETER
+        }
+
+        /**
+         * Constructs a constant.
+         *
+         * @param type The kind of the constant.
+         * @param text The value as text: the number with its sign, the contents of the string, or NULL.
+         */
+        public Literal(Type type, String text) {
+            this(type, text, -1);
+        }
+
+        /**
+         * Constructs a constant or a parameter marker.
+         *
+         * @param type The kind of the constant.
+         * @param text The value as text.
+         * @param parameter The position of a parameter marker among the markers of its statement, from 0.
+         */
+        private Literal(Type type, String text, int parameter) {
+            this.type = type;
+            this.text = text;
+            this.parameter = parameter;
+        }
+
+        /**
+         * Creates a parameter marker.
+         *
+         * @param parameter The position of the marker among the markers of its statement, from 0.
+         * @return The marker.
+         */
+        public static Literal parameter(int parameter) {
+            return new Literal(Type.PARAMETER, "?", parameter);
+        }
+
+        /**
+         * Creates the constant of a value bound to a parameter.
+         *
+         * @param value A number, a string, or null for NULL.
+         * @return The constant.
+         * @throws IllegalArgumentException If the value is neither a number nor a string.
+         */
+        public static Literal of(Object value) {
+            if (value == null) {
+                return NULL;
+            }
+            if (value instanceof BigDecimal) {
+                return new Literal(Type.NUMBER, ((BigDecimal) value).toPlainString());
+            }
+            if (value instanceof Number) {
+                return new Literal(Type.NUMBER, value.toString());
+            }
+            if (value instanceof String) {
+                return new Literal(Type.STRING, (String) value);
+            }
+            throw new IllegalArgumentException("Unsupported parameter type: " + value.getClass().getSimpleName());
+        }
+
+        /**
+         * Returns the value of the constant when its statement runs with the given parameter values.
+         *
+         * @param parameters The values bound to the parameter markers of the statement, in order.
+         * @return The bound value for a parameter marker, or this constant otherwise.
+         * @throws Exception If no value is bound to the parameter.
+         */
+        public Literal bind(Literal[] parameters) throws Exception {
+            if (type != Type.PARAMETER) {
+                return this;
+            }
+            if (parameter >= parameters.length || parameters[parameter] == null) {
+                throw new Exception("No value bound for parameter " + (parameter + 1) + ".");
+            }
+            return parameters[parameter];
+        }
+
+        /**
+         * Returns the kind of the constant.
+         *
+         * @return The constant type.
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Returns the value as the text rows are stored from, where NULL stands for a null field.
+         *
+         * @return The number with its sign, the contents of the string, NULL, or ? for a parameter marker.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the constant as SQL.
+         *
+         * @return The number, the string in quotes, or NULL.
+         */
+        @Override
+        public String toString() {
+            return type == Type.STRING ? "'" + text.replace("'", "''") + "'" : text;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example;
+
+import java.io.File;
+
+public abstract class StatementPlan {
+    /** The values bound to a statement without parameter markers. */
+    static final SqlStatement.Literal[] NO_PARAMETERS = new SqlStatement.Literal[0];
+
+    private final SqlStatement statement;
+    private final String databaseName;
+    private final TableSchema schema;
+
+    /**
+     * Constructs the plan of a statement on one table.
+     *
+     * @param statement The statement, whose values may be parameter markers.
+     * @param databaseName The database the table was resolved in.
+     * @param schema The schema of the table the plan was made for.
+     */
+    StatementPlan(SqlStatement statement, String databaseName, TableSchema schema) {
+        this.statement = statement;
+        this.databaseName = databaseName;
+        this.schema = schema;
+    }
+
+    /**
+     * Plans a SELECT, INSERT, UPDATE or DELETE statement against the schema of its table: the table and
+     * columns are resolved and checked. Only the values of the statement are left to be bound when the plan
+     * runs, together with the access path, which depends on them; so a plan can run any number of times with
+     * different values.
+     *
+     * @param session The session whose active database the table is resolved in.
+     * @param statement The statement.
+     * @return The plan.
+     * @throws Exception If the statement is of another kind or does not fit the schema of its table.
+     */
+    public static StatementPlan create(Session session, SqlStatement statement) throws Exception {
+        switch (statement.getKind()) {
+            case SELECT:
+                return SelectCommand.plan(session, (SqlStatement.Select) statement);
+            case INSERT:
+                return InsertCommand.plan(session, (SqlStatement.Insert) statement);
+            case UPDATE:
+                return UpdateCommand.plan(session, (SqlStatement.Update) statement);
+            case DELETE:
+                return DeleteCommand.plan(session, (SqlStatement.Delete) statement);
+            default:
+                throw new Exception("Only SELECT, INSERT, UPDATE and DELETE statements can be planned.");
+        }
+    }
+
+    /**
+     * Returns the planned statement.
+     *
+     * @return The statement.
+     */
+    public SqlStatement getStatement() {
+        return statement;
+    }
+
+    /**
+     * Returns the schema of the table the plan was made for.
+     *
+     * @return The table schema.
+     */
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Checks whether the plan still fits the catalog. A plan is made for one schema of its table; once the table
+     * is created again, dropped, indexed or reloaded, the catalog holds another schema and the plan has to be
+     * made again.
+     *
+     * @param session The session that runs the plan.
+     * @return true if the plan can run in the active database of the session, false otherwise.
+     */
+    public boolean isCurrent(Session session) {
+        return databaseName.equals(session.getActiveDatabase()) && Catalog.getInstance()
+                .findTable(new File("tinydb/databases/" + databaseName), schema.getTableName()) == schema;
+    }
+
+    /**
+     * Counts the rows a statement changed in its table towards the refresh of the table statistics, and queues
+     * the table for analyzing once its statistics are stale. Tables that have never been analyzed are left
+     * alone.
+     *
+     * @param tableName The name of the table as written in the statement.
+     * @param count The number of rows inserted, updated or deleted.
+     */
+    void recordChanges(String tableName, long count) {
+        TableStatistics statistics = Catalog.getInstance().getStatistics(
+                new File("tinydb/databases/" + databaseName), tableName);
+        if (statistics != null && statistics.recordChanges(count)) {
+            AutoAnalyze.schedule(databaseName, tableName);
+        }
+    }
+
+    /**
+     * Runs the statement with values bound to its parameter markers, printing its outcome like the command
+     * does. The table is locked first and the plan made again if it no longer fits the catalog.
+     *
+     * @param session The session that runs the statement.
+     * @param parameters The values of the parameter markers, in order.
+     * @throws Exception If the statement fails.
+     */
+    public abstract void execute(Session session, SqlStatement.Literal[] parameters) throws Exception;
+
+    /**
+     * Opens a cursor over the rows of the statement with values bound to its parameter markers.
+     *
+     * @param session The session that runs the statement.
+     * @param parameters The values of the parameter markers, in order.
+     * @return A cursor positioned before the first row.
+     * @throws Exception If the statement returns no rows or is invalid.
+     */
+    public QueryCursor open(Session session, SqlStatement.Literal[] parameters) throws Exception {
+        throw new Exception("Only SELECT statements return rows.");
+    }
+}
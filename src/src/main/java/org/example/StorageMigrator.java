@@ -0,0 +1,93 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+public class StorageMigrator {
+
+    /**
+     * Converts every comma-separated table file of a database into the binary page format.
+     * Tables are recognised by their metadata files; other text files such as ERD.txt are left alone.
+     *
+     * @param dbDir The directory of the database.
+     */
+    public static void migrateDatabase(File dbDir) {
+        File[] metaFiles = dbDir.listFiles((dir, name) -> name.endsWith("_meta.txt"));
+        if (metaFiles == null) {
+            return;
+        }
+        for (File metaFile : metaFiles) {
+            String tableName = metaFile.getName().replace("_meta.txt", "");
+            try {
+                migrateTable(dbDir, tableName);
+            } catch (Exception e) {
+                System.out.println("Error migrating table " + tableName + ": " + e.getMessage());
+                LogManager.logEvent("MIGRATE TABLE", "Migration failed for table " + tableName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Converts a comma-separated table file into the binary page format if it has not been converted yet.
+     * The rows are written to a temporary file that replaces nothing until it is complete, and the
+     * original file is kept as {@code <TABLE>.csv.bak}.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return true if the table was migrated, false if there was nothing to migrate.
+     * @throws Exception If the table cannot be read or a row does not match the table structure.
+     */
+    public static boolean migrateTable(File dbDir, String tableName) throws Exception {
+        File csvFile = new File(dbDir, tableName + ".txt");
+        File tableFile = new File(dbDir, tableName + ".tbl");
+        File metaFile = new File(dbDir, tableName + "_meta.txt");
+        if (!csvFile.exists() || tableFile.exists() || !metaFile.exists()) {
+            return false;
+        }
+
+        TableSchema schema = TableSchema.load(metaFile);
+        File tempFile = new File(dbDir, tableName + ".tbl.tmp");
+        BufferPool.getInstance().deleteFile(tempFile);
+
+        int rowCount = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile));
+             HeapFile heapFile = HeapFile.create(tempFile)) {
+            String header = reader.readLine();
+            if (header == null) {
+                header = String.join(",", schema.getColumnNames());
+            }
+            String[] headers = header.split(",");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue; // Skip empty lines
+                }
+                String[] columns = line.split(",");
+                String[] values = new String[schema.getColumnCount()];
+                for (int i = 0; i < headers.length && i < columns.length; i++) {
+                    int columnIndex = schema.getColumnIndex(headers[i]);
+                    if (columnIndex != -1) {
+                        values[columnIndex] = columns[i].trim().replaceAll("^'|'$", "");
+                    }
+                }
+                heapFile.insert(RowCodec.encode(schema, values));
+                rowCount++;
+            }
+        } catch (Exception e) {
+            BufferPool.getInstance().deleteFile(tempFile);
+            throw e;
+        }
+
+        BufferPool.getInstance().renameFile(tempFile, tableFile);
+        if (!csvFile.renameTo(new File(dbDir, tableName + ".csv.bak"))) {
+            throw new IOException("Failed to rename the original table file.");
+        }
+
+        System.out.println("Migrated table " + tableName + " (" + rowCount + " rows) to binary storage.");
+        LogManager.logEvent("MIGRATE TABLE", "Table " + tableName + " migrated to binary storage with " + rowCount + " rows");
+        return true;
+    }
+}
@@ -0,0 +1,198 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public interface Table extends Closeable {
+
+    /**
+     * Opens a table of a database with the storage engine recorded in its metadata.
+     *
+     * @param databaseName The name of the database.
+     * @param tableName The name of the table.
+     * @return The open table.
+     * @throws Exception If the table or its metadata does not exist, or the table cannot be opened.
+     */
+    static Table open(String databaseName, String tableName) throws Exception {
+        return open(new File("tinydb/databases/" + databaseName), tableName);
+    }
+
+    /**
+     * Opens a table in a database directory with the storage engine recorded in its metadata.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @return The open table.
+     * @throws Exception If the table or its metadata does not exist, or the table cannot be opened.
+     */
+    static Table open(File dbDir, String tableName) throws Exception {
+        File tableFile = new File(dbDir, tableName + ".tbl");
+        if (!tableFile.exists()) {
+            throw new Exception("Table does not exist.");
+        }
+        TableSchema schema = Catalog.getInstance().getTable(dbDir, tableName);
+        if (schema.getEngine() == TableSchema.Engine.LSM) {
+            return LsmTable.open(dbDir, schema);
+        }
+        return HeapTable.open(dbDir, schema);
+    }
+
+    /**
+     * Creates the empty storage of a new table.
+     *
+     * @param dbDir The directory of the database.
+     * @param tableName The name of the table.
+     * @param engine The storage engine of the table.
+     * @throws IOException If the table already exists or its files cannot be written.
+     */
+    static void create(File dbDir, String tableName, TableSchema.Engine engine) throws IOException {
+        File tableFile = new File(dbDir, tableName + ".tbl");
+        if (engine == TableSchema.Engine.LSM) {
+            LsmTree.create(tableFile);
+        } else {
+            HeapFile.create(tableFile).close();
+        }
+    }
+
+    /**
+     * Converts the value of a range comparison into the bound of a key range. INT bounds are widened to whole
+     * numbers, so the range may include rows that callers still have to check against the comparison.
+     *
+     * @param columnType The type of the compared column.
+     * @param operator The comparison operator (&lt;, &lt;=, &gt; or &gt;=).
+     * @param value The numeric value to compare against.
+     * @return The inclusive bound, or null if the value is not a number.
+     */
+    static Object toRangeKey(ColumnType columnType, String operator, String value) {
+        double bound;
+        try {
+            bound = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (columnType == ColumnType.INT) {
+            return (long) (operator.startsWith(">") ? Math.floor(bound) : Math.ceil(bound));
+        }
+        return bound;
+    }
+
+    /**
+     * Returns the schema of the table.
+     *
+     * @return The table schema.
+     */
+    TableSchema getSchema();
+
+    /**
+     * Inserts a row, rejecting it if its primary key value is missing or already present.
+     *
+     * @param row The row values in schema order.
+     * @return The identifier of the new record.
+     * @throws Exception If the primary key is missing or not unique, or the row cannot be encoded or written.
+     */
+    long insert(String[] row) throws Exception;
+
+    /**
+     * Reads the encoded record of a row.
+     *
+     * @param recordId The identifier of the record.
+     * @return The record bytes, or null if the record does not exist.
+     * @throws IOException If an I/O error occurs.
+     */
+    byte[] readRecord(long recordId) throws IOException;
+
+    /**
+     * Reads and decodes a row.
+     *
+     * @param recordId The identifier of the record.
+     * @return The row values in schema order, or null if the record does not exist.
+     * @throws IOException If an I/O error occurs.
+     */
+    String[] read(long recordId) throws IOException;
+
+    /**
+     * Deletes a row.
+     *
+     * @param recordId The identifier of the record.
+     * @return true if the record existed, false otherwise.
+     * @throws Exception If an I/O error occurs.
+     */
+    boolean delete(long recordId) throws Exception;
+
+    /**
+     * Replaces a row with new values. The primary key value must not change.
+     *
+     * @param recordId The identifier of the record.
+     * @param row The new row values in schema order.
+     * @return The identifier of the record after the update.
+     * @throws Exception If the row does not exist, cannot be encoded or cannot be written.
+     */
+    long update(long recordId, String[] row) throws Exception;
+
+    /**
+     * Looks up the record holding a primary key value.
+     *
+     * @param value The primary key value.
+     * @return The matching record identifiers, empty if there is no such row.
+     * @throws Exception If the table has no primary key or the value does not match the key type.
+     */
+    List<Long> findByPrimaryKey(String value) throws Exception;
+
+    /**
+     * Finds the records whose column equals a value without scanning the table. Callers still have to check
+     * each row against the value.
+     *
+     * @param columnIndex The position of the column.
+     * @param value The value to look up.
+     * @return The candidate record identifiers, or null if the column cannot be searched directly or the value
+     *         does not match the column type, in which case the caller has to scan the table.
+     * @throws IOException If an I/O error occurs.
+     */
+    List<Long> findEqual(int columnIndex, String value) throws IOException;
+
+    /**
+     * Finds the records whose numeric column value satisfies a range comparison without scanning the table.
+     * Callers still have to check each row against the comparison.
+     *
+     * @param columnIndex The position of the column.
+     * @param operator The comparison operator (&lt;, &lt;=, &gt; or &gt;=).
+     * @param value The numeric value to compare against.
+     * @return The candidate record identifiers in key order, or null if the column is not ordered on disk,
+     *         in which case the caller has to scan the table.
+     * @throws IOException If an I/O error occurs.
+     */
+    List<Long> findRange(int columnIndex, String operator, String value) throws IOException;
+
+    /**
+     * Starts a scan over all rows.
+     *
+     * @return A scan positioned before the first row.
+     * @throws IOException If an I/O error occurs.
+     */
+    RecordScan scan() throws IOException;
+
+    /**
+     * Starts a scan that resumes after a row returned by an earlier scan, which may have been made by another
+     * open instance of the table. A query can thereby read a table in batches without keeping it open between
+     * them.
+     *
+     * @param position The position of the row to resume after, as returned by {@link RecordScan#getPosition()}.
+     * @return A scan positioned after the row.
+     * @throws IOException If an I/O error occurs.
+     */
+    RecordScan scanAfter(Object position) throws IOException;
+
+    /**
+     * Creates the file of a new secondary index and fills it from the rows of the table. The index is not
+     * registered in the metadata file; the caller records it once the index is complete.
+     *
+     * @param definition The index definition.
+     * @param indexFile The index file to create.
+     * @param columnIndex The position of the indexed column.
+     * @return The open index.
+     * @throws Exception If the table does not support secondary indexes or the index cannot be written.
+     */
+    Index buildIndex(IndexDefinition definition, File indexFile, int columnIndex) throws Exception;
+}
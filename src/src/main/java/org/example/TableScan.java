@@ -0,0 +1,258 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+public abstract class TableScan implements Operator {
+    private final TableSchema schema;
+    private final RecordPredicate predicate;
+    private final int[] columns;
+    private final RowCodec.Projection projection;
+    private final Session session;
+    private final String databaseName;
+    private final Snapshot snapshot;
+    private final Table table;
+    private final ArrayDeque<Object[]> rows = new ArrayDeque<>();
+    private final ArrayDeque<Long> recordIds = new ArrayDeque<>();
+    private int batchSize = getDefaultBatchSize();
+    private boolean exhausted;
+    private long recordId = -1;
+
+    /**
+     * Constructs a scan that opens the table itself for every batch of rows it reads, under the snapshot that
+     * is current now. The table is only open while a batch is read, and every batch resumes after the last
+     * record the previous one read, so a scan that is read slowly neither keeps other statements out of the
+     * table nor sees their changes.
+     *
+     * @param session The session that runs the query.
+     * @param schema The schema of the table.
+     * @param predicate The condition evaluated on the encoded records, so that only matching rows are decoded,
+     *                  or null to return all rows.
+     * @param columns The positions of the table columns to return.
+     */
+    TableScan(Session session, TableSchema schema, RecordPredicate predicate, int[] columns) {
+        this.schema = schema;
+        this.predicate = predicate;
+        this.columns = columns;
+        this.projection = new RowCodec.Projection(schema, columns);
+        this.session = session;
+        this.databaseName = session.getActiveDatabase();
+        this.snapshot = VersionStore.getCurrentSnapshot();
+        this.table = null;
+    }
+
+    /**
+     * Constructs a scan over a table the caller keeps open while the scan is read, for statements that change
+     * the rows they select through the same open table. The rows of such a scan carry their record identifiers.
+     *
+     * @param table The open table.
+     * @param predicate The condition evaluated on the encoded records, or null to return all rows.
+     * @param columns The positions of the table columns to return.
+     */
+    TableScan(Table table, RecordPredicate predicate, int[] columns) {
+        this.schema = table.getSchema();
+        this.predicate = predicate;
+        this.columns = columns;
+        this.projection = new RowCodec.Projection(schema, columns);
+        this.session = null;
+        this.databaseName = null;
+        this.snapshot = null;
+        this.table = table;
+    }
+
+    /**
+     * Returns the number of rows a scan reads from its table at a time unless its consumer sets its own.
+     * Controlled by the system property tinydb.fetch.size (default 1000).
+     *
+     * @return The number of rows.
+     */
+    public static int getDefaultBatchSize() {
+        return Math.max(Integer.getInteger("tinydb.fetch.size", 1000), 1);
+    }
+
+    /**
+     * Sets the number of rows read from the table at a time. Only one batch of rows is held in memory.
+     *
+     * @param rows The number of rows, or 0 for the default.
+     */
+    public void setBatchSize(int rows) {
+        batchSize = rows > 0 ? rows : getDefaultBatchSize();
+    }
+
+    /**
+     * Returns the schema of the scanned table.
+     *
+     * @return The table schema.
+     */
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Positions the scan before the first row of the table.
+     */
+    @Override
+    public void open() {
+        rows.clear();
+        recordIds.clear();
+        exhausted = false;
+        recordId = -1;
+        reset();
+    }
+
+    /**
+     * Returns the next matching row, reading the next batch from the table when the current batch is used up.
+     *
+     * @return The values of the selected columns, or null after the last row.
+     * @throws Exception If the table cannot be read.
+     */
+    @Override
+    public Object[] next() throws Exception {
+        if (rows.isEmpty() && !exhausted) {
+            if (table != null) {
+                read(table, false);
+            } else {
+                readBatch();
+            }
+        }
+        Object[] row = rows.poll();
+        if (row != null && table != null) {
+            recordId = recordIds.poll();
+        }
+        return row;
+    }
+
+    /**
+     * Discards the rows of the current batch. A scan over a table held by the caller leaves the table open.
+     */
+    @Override
+    public void close() {
+        rows.clear();
+        recordIds.clear();
+        exhausted = true;
+    }
+
+    /**
+     * Returns the number of output columns.
+     *
+     * @return The number of columns.
+     */
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the name of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column name.
+     */
+    @Override
+    public String getColumnName(int column) {
+        return schema.getColumnName(columns[column]);
+    }
+
+    /**
+     * Returns the type of an output column.
+     *
+     * @param column The position of the column.
+     * @return The column type.
+     */
+    @Override
+    public ColumnType getColumnType(int column) {
+        return schema.getColumnType(columns[column]);
+    }
+
+    /**
+     * Returns the identifier of the record the last row was read from.
+     *
+     * @return The record identifier.
+     * @throws UnsupportedOperationException If the scan opens the table itself, as the record identifiers of
+     *                                       LSM tables only live as long as the open table.
+     */
+    @Override
+    public long getRecordId() {
+        if (table == null) {
+            throw new UnsupportedOperationException("Record identifiers are only kept by scans of a held table.");
+        }
+        return recordId;
+    }
+
+    /**
+     * Forgets the position of the scan, so that the next batch starts from the first record.
+     */
+    abstract void reset();
+
+    /**
+     * Reads the next batch of matching rows through {@link #add}, and calls {@link #finish} after the last one.
+     *
+     * @param table The open table.
+     * @param reopened true if the table has been opened for this batch alone, so that the batch has to resume
+     *                 after the last record the previous batch read; false if the table stays open between
+     *                 batches.
+     * @throws Exception If the table cannot be read.
+     */
+    abstract void read(Table table, boolean reopened) throws Exception;
+
+    /**
+     * Adds a record to the current batch if it matches the condition of the scan, decoding only the selected
+     * columns through the projection compiled for the scan.
+     *
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record within the buffer.
+     * @param recordId The identifier of the record, kept for scans of a held table.
+     * @throws Exception If the condition cannot be evaluated on the record.
+     */
+    void add(ByteBuffer buffer, int offset, long recordId) throws Exception {
+        if (predicate != null && !predicate.matches(buffer, offset)) {
+            return;
+        }
+        rows.add(projection.decode(buffer, offset));
+        if (table != null) {
+            recordIds.add(recordId);
+        }
+    }
+
+    /**
+     * Checks whether the current batch holds as many rows as the scan reads at a time.
+     *
+     * @return true if the batch is full, false otherwise.
+     */
+    boolean isBatchFull() {
+        return rows.size() >= batchSize;
+    }
+
+    /**
+     * Checks whether the scan keeps the record identifiers of its rows.
+     *
+     * @return true for a scan of a held table, false otherwise.
+     */
+    boolean keepsRecordIds() {
+        return table != null;
+    }
+
+    /**
+     * Marks the last batch as read.
+     */
+    void finish() {
+        exhausted = true;
+    }
+
+    /**
+     * Opens the table under the snapshot of the scan and reads the next batch from it.
+     *
+     * @throws Exception If the table cannot be read.
+     */
+    private void readBatch() throws Exception {
+        synchronized (session) {
+            Snapshot previous = VersionStore.getCurrentSnapshot();
+            VersionStore.setCurrentSnapshot(snapshot);
+            try (Table reopened = Table.open(databaseName, schema.getTableName())) {
+                read(reopened, true);
+            } finally {
+                VersionStore.setCurrentSnapshot(previous);
+            }
+        }
+    }
+}
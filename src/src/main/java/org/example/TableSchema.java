@@ -0,0 +1,297 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TableSchema {
+    private final String tableName;
+    private final List<String> columnNames;
+    private final List<ColumnType> columnTypes;
+    private final String primaryKey;
+    private final List<IndexDefinition> indexes;
+    private final Engine engine;
+    private final List<CreateCommand.Relationship> relationships;
+    private final Map<String, Integer> columnPositions = new HashMap<>();
+
+    /**
+     * The storage engines a table can be created with.
+     */
+    public enum Engine {
+        HEAP,
+        LSM
+    }
+
+    /**
+     * Constructs a TableSchema with the given columns and no secondary indexes.
+     *
+     * @param tableName The name of the table.
+     * @param columnNames The column names in storage order.
+     * @param columnTypes The storage types of the columns.
+     * @param primaryKey The primary key column, or null if the table has none.
+     */
+    public TableSchema(String tableName, List<String> columnNames, List<ColumnType> columnTypes, String primaryKey) {
+        this(tableName, columnNames, columnTypes, primaryKey, Collections.emptyList());
+    }
+
+    /**
+     * Constructs a TableSchema with the given columns and secondary indexes.
+     *
+     * @param tableName The name of the table.
+     * @param columnNames The column names in storage order.
+     * @param columnTypes The storage types of the columns.
+     * @param primaryKey The primary key column, or null if the table has none.
+     * @param indexes The secondary indexes of the table.
+     */
+    public TableSchema(String tableName, List<String> columnNames, List<ColumnType> columnTypes, String primaryKey,
+                       List<IndexDefinition> indexes) {
+        this(tableName, columnNames, columnTypes, primaryKey, indexes, Engine.HEAP);
+    }
+
+    /**
+     * Constructs a TableSchema with the given columns, secondary indexes and storage engine.
+     *
+     * @param tableName The name of the table.
+     * @param columnNames The column names in storage order.
+     * @param columnTypes The storage types of the columns.
+     * @param primaryKey The primary key column, or null if the table has none.
+     * @param indexes The secondary indexes of the table.
+     * @param engine The storage engine of the table.
+     */
+    public TableSchema(String tableName, List<String> columnNames, List<ColumnType> columnTypes, String primaryKey,
+                       List<IndexDefinition> indexes, Engine engine) {
+        this(tableName, columnNames, columnTypes, primaryKey, indexes, engine, Collections.emptyList());
+    }
+
+    /**
+     * Constructs a TableSchema with the given columns, secondary indexes, storage engine and relationships.
+     *
+     * @param tableName The name of the table.
+     * @param columnNames The column names in storage order.
+     * @param columnTypes The storage types of the columns.
+     * @param primaryKey The primary key column, or null if the table has none.
+     * @param indexes The secondary indexes of the table.
+     * @param engine The storage engine of the table.
+     * @param relationships The relationships from columns of this table to other tables.
+     */
+    public TableSchema(String tableName, List<String> columnNames, List<ColumnType> columnTypes, String primaryKey,
+                       List<IndexDefinition> indexes, Engine engine, List<CreateCommand.Relationship> relationships) {
+        this.tableName = tableName;
+        this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+        this.columnTypes = Collections.unmodifiableList(new ArrayList<>(columnTypes));
+        this.primaryKey = primaryKey;
+        this.indexes = Collections.unmodifiableList(new ArrayList<>(indexes));
+        this.engine = engine;
+        this.relationships = Collections.unmodifiableList(new ArrayList<>(relationships));
+        for (int i = columnNames.size() - 1; i >= 0; i--) {
+            columnPositions.put(columnNames.get(i).toUpperCase(), i);
+        }
+    }
+
+    /**
+     * Loads a table schema from the Table, Structure, Primary Key, Index, Engine and Relationship lines of a
+     * metadata file. Tables without an Engine line use the heap engine.
+     *
+     * @param metaFile The metadata file.
+     * @return The schema described by the file.
+     * @throws IOException If an I/O error occurs or the file has no Structure line.
+     */
+    public static TableSchema load(File metaFile) throws IOException {
+        String tableName = metaFile.getName().replace("_meta.txt", "");
+        String structure = null;
+        String primaryKey = null;
+        List<IndexDefinition> indexes = new ArrayList<>();
+        Engine engine = Engine.HEAP;
+        List<String> relationshipLines = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(metaFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("Table:")) {
+                    tableName = line.substring("Table:".length()).trim();
+                } else if (line.startsWith("Structure:")) {
+                    structure = line.substring("Structure:".length()).trim();
+                } else if (line.startsWith("Primary Key:") && primaryKey == null) {
+                    primaryKey = line.substring("Primary Key:".length()).trim().toUpperCase();
+                } else if (line.startsWith("Index:")) {
+                    try {
+                        indexes.add(IndexDefinition.parse(line.substring("Index:".length())));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(e.getMessage() + " in " + metaFile.getPath());
+                    }
+                } else if (line.startsWith("Engine:")) {
+                    try {
+                        engine = Engine.valueOf(line.substring("Engine:".length()).trim().toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Unknown table engine in " + metaFile.getPath());
+                    }
+                } else if (line.startsWith("Relationship:")) {
+                    relationshipLines.add(line.substring("Relationship:".length()));
+                }
+            }
+        }
+
+        if (structure == null) {
+            throw new IOException("Metadata file does not contain table structure: " + metaFile.getPath());
+        }
+
+        List<String> columnNames = new ArrayList<>();
+        List<ColumnType> columnTypes = new ArrayList<>();
+        for (String column : structure.split(",")) {
+            String[] parts = column.trim().split("\\s+");
+            String columnName = parts[0].trim().toUpperCase();
+            String declaration = parts.length > 1 ? parts[1] : "STRING";
+            columnNames.add(columnName);
+            columnTypes.add(ColumnType.fromDeclaration(declaration));
+            if (primaryKey == null && column.toLowerCase().contains("(pk)")) {
+                primaryKey = columnName;
+            }
+        }
+
+        List<CreateCommand.Relationship> relationships = new ArrayList<>();
+        for (String relationship : relationshipLines) {
+            try {
+                relationships.add(CreateCommand.Relationship.parse(relationship));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage() + " in " + metaFile.getPath());
+            }
+        }
+
+        return new TableSchema(tableName.toUpperCase(), columnNames, columnTypes, primaryKey, indexes, engine,
+                relationships);
+    }
+
+    /**
+     * Returns the name of the table.
+     *
+     * @return The name of the table.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Returns the column names in storage order.
+     *
+     * @return The column names.
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Returns the number of columns in the table.
+     *
+     * @return The number of columns.
+     */
+    public int getColumnCount() {
+        return columnNames.size();
+    }
+
+    /**
+     * Returns the name of the column at the given position.
+     *
+     * @param index The position of the column.
+     * @return The column name.
+     */
+    public String getColumnName(int index) {
+        return columnNames.get(index);
+    }
+
+    /**
+     * Returns the storage type of the column at the given position.
+     *
+     * @param index The position of the column.
+     * @return The column type.
+     */
+    public ColumnType getColumnType(int index) {
+        return columnTypes.get(index);
+    }
+
+    /**
+     * Finds the position of a column by name, ignoring case.
+     *
+     * @param columnName The column name to find.
+     * @return The position of the column, or -1 if not found.
+     */
+    public int getColumnIndex(String columnName) {
+        Integer position = columnPositions.get(columnName.trim().toUpperCase());
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Returns the primary key column.
+     *
+     * @return The primary key column name, or null if the table has none.
+     */
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    /**
+     * Checks whether a column is the primary key of the table, ignoring case.
+     *
+     * @param columnName The column name to check.
+     * @return true if the column is the primary key, false otherwise.
+     */
+    public boolean isPrimaryKey(String columnName) {
+        return primaryKey != null && primaryKey.equalsIgnoreCase(columnName.trim());
+    }
+
+    /**
+     * Returns the position of the primary key column.
+     *
+     * @return The position of the primary key column, or -1 if the table has none.
+     */
+    public int getPrimaryKeyIndex() {
+        return primaryKey == null ? -1 : getColumnIndex(primaryKey);
+    }
+
+    /**
+     * Returns the secondary indexes of the table.
+     *
+     * @return The index definitions.
+     */
+    public List<IndexDefinition> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Returns the storage engine of the table.
+     *
+     * @return The table engine.
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the relationships from columns of this table to other tables.
+     *
+     * @return The relationships.
+     */
+    public List<CreateCommand.Relationship> getRelationships() {
+        return relationships;
+    }
+
+    /**
+     * Finds a secondary index by name, ignoring case.
+     *
+     * @param indexName The index name to find.
+     * @return The index definition, or null if not found.
+     */
+    public IndexDefinition getIndex(String indexName) {
+        for (IndexDefinition index : indexes) {
+            if (index.getName().equalsIgnoreCase(indexName)) {
+                return index;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,577 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TableStatistics {
+    private static final int DEFAULT_BUCKETS = 32;
+    private static final int DEFAULT_SAMPLE_ROWS = 30000;
+    private static final double DEFAULT_REFRESH_THRESHOLD = 0.1;
+    private static final long DEFAULT_REFRESH_MIN_CHANGES = 50;
+    /** The selectivity assumed for an equality on a column without statistics. */
+    private static final double DEFAULT_EQUALITY_SELECTIVITY = 0.005;
+    /** The selectivity assumed for a range on a column without a histogram. */
+    private static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+    /** The fraction of nulls assumed in a column without statistics. */
+    private static final double DEFAULT_NULL_FRACTION = 0.05;
+    /** The fraction of the values of a column assumed to match a LIKE pattern with wildcards. */
+    private static final double DEFAULT_PATTERN_SELECTIVITY = 0.1;
+
+    /** The statistics of a table that has not been analyzed, whose estimates are the defaults. */
+    static final TableStatistics NONE = new TableStatistics(0, new ColumnStatistics[0]);
+
+    private final long rowCount;
+    private final ColumnStatistics[] columns;
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * The statistics of one column.
+     */
+    public static class ColumnStatistics {
+        private final String name;
+        private final double nullFraction;
+        private final long distinctCount;
+        private final double min;
+        private final double max;
+        private final double[] histogram;
+
+        /**
+         * Constructs the statistics of a column.
+         *
+         * @param name The column name.
+         * @param nullFraction The fraction of rows whose value is NULL.
+         * @param distinctCount The estimated number of distinct values other than NULL.
+         * @param min The smallest value of a numeric column, or NaN.
+         * @param max The largest value of a numeric column, or NaN.
+         * @param histogram The bounds of the equi-depth histogram of a numeric column, in ascending order; every
+         *                  bucket between two bounds holds about the same number of rows. Empty for string columns.
+         */
+        public ColumnStatistics(String name, double nullFraction, long distinctCount, double min, double max,
+                                double[] histogram) {
+            this.name = name;
+            this.nullFraction = nullFraction;
+            this.distinctCount = distinctCount;
+            this.min = min;
+            this.max = max;
+            this.histogram = histogram;
+        }
+
+        /**
+         * Returns the column name.
+         *
+         * @return The column name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the fraction of rows whose value is NULL.
+         *
+         * @return The null fraction, from 0 to 1.
+         */
+        public double getNullFraction() {
+            return nullFraction;
+        }
+
+        /**
+         * Returns the estimated number of distinct values other than NULL.
+         *
+         * @return The distinct count.
+         */
+        public long getDistinctCount() {
+            return distinctCount;
+        }
+
+        /**
+         * Returns the smallest value of a numeric column.
+         *
+         * @return The minimum, or NaN for a string column or a column of NULLs only.
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * Returns the largest value of a numeric column.
+         *
+         * @return The maximum, or NaN for a string column or a column of NULLs only.
+         */
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the bounds of the equi-depth histogram of a numeric column.
+         *
+         * @return The bucket bounds in ascending order, or an empty array.
+         */
+        public double[] getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * Estimates the fraction of rows whose value equals a constant: the rows that are not NULL, spread evenly
+         * over the distinct values. A number outside the range of the column matches no rows.
+         *
+         * @param value The constant, or NaN if it is not a number.
+         * @return The selectivity, from 0 to 1.
+         */
+        double estimateEquality(double value) {
+            if (!Double.isNaN(value) && !Double.isNaN(min) && (value < min || value > max)) {
+                return 0;
+            }
+            return (1 - nullFraction) / Math.max(1, distinctCount);
+        }
+
+        /**
+         * Estimates the fraction of rows whose numeric value is below a constant, interpolating linearly within
+         * the histogram bucket the constant falls in. Whether the constant itself is included is not told apart.
+         *
+         * @param value The constant.
+         * @return The selectivity, from 0 to 1.
+         */
+        double estimateBelow(double value) {
+            if (histogram.length == 0) {
+                // The column holds NULLs only
+                return 0;
+            }
+            int buckets = histogram.length - 1;
+            double fraction;
+            if (value < histogram[0]) {
+                fraction = 0;
+            } else if (value >= histogram[buckets]) {
+                fraction = 1;
+            } else {
+                // Find the last bound at or below the value
+                int low = 0;
+                int high = buckets;
+                while (high - low > 1) {
+                    int middle = (low + high) >>> 1;
+                    if (histogram[middle] <= value) {
+                        low = middle;
+                    } else {
+                        high = middle;
+                    }
+                }
+                double width = histogram[low + 1] - histogram[low];
+                double within = width > 0 ? (value - histogram[low]) / width : 0;
+                fraction = (low + within) / buckets;
+            }
+            return fraction * (1 - nullFraction);
+        }
+    }
+
+    /**
+     * Constructs the statistics of a table.
+     *
+     * @param rowCount The number of rows when the statistics were collected.
+     * @param columns The statistics of the columns, in storage order.
+     */
+    public TableStatistics(long rowCount, ColumnStatistics[] columns) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    /**
+     * Collects the statistics of a table from the rows of a scan. The row count, null fractions and numeric
+     * minimums and maximums are exact. Distinct counts and histograms come from a uniform sample of
+     * tinydb.analyze.sample.rows rows (default 30000), drawn by reservoir sampling in the same pass, so the
+     * memory used does not grow with the table; histograms have tinydb.analyze.buckets buckets (default 32).
+     * String columns are only compared for equality by the planner and get no range statistics.
+     *
+     * @param schema The schema of the table.
+     * @param scan A scan that returns every column of every row, in storage order.
+     * @return The statistics.
+     * @throws Exception If the table cannot be read.
+     */
+    public static TableStatistics collect(TableSchema schema, Operator scan) throws Exception {
+        int sampleSize = Math.max(1, Integer.getInteger("tinydb.analyze.sample.rows", DEFAULT_SAMPLE_ROWS));
+        int columnCount = schema.getColumnCount();
+        long[] nullCounts = new long[columnCount];
+        double[] mins = new double[columnCount];
+        double[] maxes = new double[columnCount];
+        Arrays.fill(mins, Double.NaN);
+        Arrays.fill(maxes, Double.NaN);
+        List<Object[]> sample = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long rowCount = 0;
+        scan.open();
+        try {
+            Object[] row;
+            while ((row = scan.next()) != null) {
+                for (int i = 0; i < columnCount; i++) {
+                    Object value = row[i];
+                    if (value == null) {
+                        nullCounts[i]++;
+                    } else if (value instanceof Number) {
+                        double number = ((Number) value).doubleValue();
+                        if (Double.isNaN(mins[i]) || number < mins[i]) {
+                            mins[i] = number;
+                        }
+                        if (Double.isNaN(maxes[i]) || number > maxes[i]) {
+                            maxes[i] = number;
+                        }
+                    }
+                }
+                if (sample.size() < sampleSize) {
+                    sample.add(row.clone());
+                } else {
+                    long slot = random.nextLong(rowCount + 1);
+                    if (slot < sampleSize) {
+                        sample.set((int) slot, row.clone());
+                    }
+                }
+                rowCount++;
+            }
+        } finally {
+            scan.close();
+        }
+
+        ColumnStatistics[] columns = new ColumnStatistics[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            double nullFraction = rowCount == 0 ? 0 : (double) nullCounts[i] / rowCount;
+            long distinctCount = estimateDistinct(sample, i, rowCount - nullCounts[i]);
+            double[] histogram = schema.getColumnType(i) == ColumnType.STRING || Double.isNaN(mins[i])
+                    ? new double[0] : buildHistogram(sample, i, mins[i], maxes[i]);
+            columns[i] = new ColumnStatistics(schema.getColumnName(i), nullFraction, distinctCount, mins[i],
+                    maxes[i], histogram);
+        }
+        return new TableStatistics(rowCount, columns);
+    }
+
+    /**
+     * Estimates the number of distinct values of a column from a sample with the estimator of Haas and Stokes,
+     * which scales the distinct values of the sample up by how many of them were seen only once. A sample that
+     * holds every row gives the exact count.
+     *
+     * @param sample The sampled rows.
+     * @param column The position of the column.
+     * @param valueCount The number of rows of the table whose value is not NULL.
+     * @return The estimated distinct count.
+     */
+    private static long estimateDistinct(List<Object[]> sample, int column, long valueCount) {
+        Map<Object, Integer> counts = new HashMap<>();
+        long sampled = 0;
+        for (Object[] row : sample) {
+            if (row[column] != null) {
+                counts.merge(row[column], 1, Integer::sum);
+                sampled++;
+            }
+        }
+        long distinct = counts.size();
+        if (sampled == 0 || sampled >= valueCount) {
+            return distinct;
+        }
+        long singletons = 0;
+        for (int count : counts.values()) {
+            if (count == 1) {
+                singletons++;
+            }
+        }
+        double estimate = sampled * distinct / (sampled - singletons + (double) singletons * sampled / valueCount);
+        return Math.max(distinct, Math.min(valueCount, Math.round(estimate)));
+    }
+
+    /**
+     * Builds the equi-depth histogram of a numeric column from a sample: the sampled values are sorted and
+     * split into buckets of equal size, whose bounds are kept. The outer bounds are the exact minimum and
+     * maximum of the column.
+     *
+     * @param sample The sampled rows.
+     * @param column The position of the column.
+     * @param min The smallest value of the column.
+     * @param max The largest value of the column.
+     * @return The bucket bounds in ascending order.
+     */
+    private static double[] buildHistogram(List<Object[]> sample, int column, double min, double max) {
+        double[] values = new double[sample.size()];
+        int count = 0;
+        for (Object[] row : sample) {
+            if (row[column] != null) {
+                values[count++] = ((Number) row[column]).doubleValue();
+            }
+        }
+        if (count == 0) {
+            return new double[]{min, max};
+        }
+        Arrays.sort(values, 0, count);
+        int buckets = Math.max(1, Math.min(Integer.getInteger("tinydb.analyze.buckets", DEFAULT_BUCKETS), count - 1));
+        double[] histogram = new double[buckets + 1];
+        for (int i = 0; i <= buckets; i++) {
+            histogram[i] = values[(int) ((long) i * (count - 1) / buckets)];
+        }
+        histogram[0] = min;
+        histogram[buckets] = max;
+        return histogram;
+    }
+
+    /**
+     * Returns the number of rows when the statistics were collected.
+     *
+     * @return The row count.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the statistics of a column.
+     *
+     * @param column The position of the column.
+     * @return The column statistics, or null if the column was not analyzed.
+     */
+    public ColumnStatistics getColumn(int column) {
+        return column < columns.length ? columns[column] : null;
+    }
+
+    /**
+     * Estimates the fraction of rows that match a "column operator value" condition.
+     *
+     * @param schema The schema of the table.
+     * @param column The position of the column.
+     * @param operator The comparison operator (=, &lt;&gt;, &lt;, &lt;=, &gt; or &gt;=).
+     * @param value The value to compare against.
+     * @return The selectivity, from 0 to 1.
+     */
+    public double estimateSelectivity(TableSchema schema, int column, String operator, String value) {
+        ColumnStatistics statistics = getColumn(column);
+        boolean numeric = schema.getColumnType(column) != ColumnType.STRING;
+        double number = Double.NaN;
+        if (numeric) {
+            try {
+                number = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        if (operator.equals("=")) {
+            return statistics == null ? DEFAULT_EQUALITY_SELECTIVITY : statistics.estimateEquality(number);
+        }
+        if (operator.equals("<>")) {
+            return statistics == null ? 1 - DEFAULT_NULL_FRACTION - DEFAULT_EQUALITY_SELECTIVITY
+                    : 1 - statistics.getNullFraction() - statistics.estimateEquality(number);
+        }
+        if (statistics == null || !numeric) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        double below = statistics.estimateBelow(number);
+        return operator.startsWith("<") ? below : (1 - statistics.getNullFraction()) - below;
+    }
+
+    /**
+     * Estimates the fraction of rows whose value in a column is null.
+     *
+     * @param column The position of the column.
+     * @return The null fraction, from 0 to 1.
+     */
+    public double estimateNullFraction(int column) {
+        ColumnStatistics statistics = getColumn(column);
+        return statistics == null ? DEFAULT_NULL_FRACTION : statistics.getNullFraction();
+    }
+
+    /**
+     * Estimates the fraction of rows whose value in a column matches a LIKE pattern. A pattern without
+     * wildcards is an equality; other patterns are assumed to match a fixed share of the values.
+     *
+     * @param schema The schema of the table.
+     * @param column The position of the column.
+     * @param pattern The pattern.
+     * @return The selectivity, from 0 to 1.
+     */
+    public double estimatePattern(TableSchema schema, int column, String pattern) {
+        if (pattern.indexOf('%') == -1 && pattern.indexOf('_') == -1) {
+            return estimateSelectivity(schema, column, "=", pattern);
+        }
+        return (1 - estimateNullFraction(column)) * DEFAULT_PATTERN_SELECTIVITY;
+    }
+
+    /**
+     * Counts rows changed since the statistics were collected and tells whether they are now stale: when at
+     * least tinydb.analyze.min.changes rows (default 50) and more than tinydb.analyze.threshold of the analyzed
+     * rows (default 0.1) have changed. The count is kept in memory only and starts over when the statistics are
+     * loaded again.
+     *
+     * @param count The number of rows inserted, updated or deleted.
+     * @return true the first time the statistics become stale, false otherwise.
+     */
+    public boolean recordChanges(long count) {
+        double threshold = Double.parseDouble(System.getProperty("tinydb.analyze.threshold",
+                String.valueOf(DEFAULT_REFRESH_THRESHOLD)));
+        long minChanges = Long.getLong("tinydb.analyze.min.changes", DEFAULT_REFRESH_MIN_CHANGES);
+        long limit = Math.max(minChanges, (long) Math.floor(threshold * rowCount) + 1);
+        long after = changes.addAndGet(count);
+        return after >= limit && after - count < limit;
+    }
+
+    /**
+     * Returns the number of rows changed since the statistics were collected or loaded.
+     *
+     * @return The change count.
+     */
+    public long getChanges() {
+        return changes.get();
+    }
+
+    /**
+     * Reads statistics from a statistics file.
+     *
+     * @param statsFile The statistics file.
+     * @param schema The schema of the table; columns the table no longer has are skipped.
+     * @return The statistics.
+     * @throws IOException If an I/O error occurs or the file is malformed.
+     */
+    public static TableStatistics load(File statsFile, TableSchema schema) throws IOException {
+        long rowCount = 0;
+        ColumnStatistics[] columns = new ColumnStatistics[schema.getColumnCount()];
+        try (BufferedReader reader = new BufferedReader(new FileReader(statsFile))) {
+            String name = null;
+            double nullFraction = 0;
+            long distinctCount = 0;
+            double min = Double.NaN;
+            double max = Double.NaN;
+            double[] histogram = new double[0];
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon == -1) {
+                    continue;
+                }
+                String key = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                switch (key) {
+                    case "Rows":
+                        rowCount = Long.parseLong(value);
+                        break;
+                    case "Column":
+                        add(schema, columns, name, nullFraction, distinctCount, min, max, histogram);
+                        name = value;
+                        nullFraction = 0;
+                        distinctCount = 0;
+                        min = Double.NaN;
+                        max = Double.NaN;
+                        histogram = new double[0];
+                        break;
+                    case "Null Fraction":
+                        nullFraction = Double.parseDouble(value);
+                        break;
+                    case "Distinct":
+                        distinctCount = Long.parseLong(value);
+                        break;
+                    case "Min":
+                        min = Double.parseDouble(value);
+                        break;
+                    case "Max":
+                        max = Double.parseDouble(value);
+                        break;
+                    case "Histogram":
+                        String[] bounds = value.split(",");
+                        histogram = new double[bounds.length];
+                        for (int i = 0; i < bounds.length; i++) {
+                            histogram[i] = Double.parseDouble(bounds[i]);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            add(schema, columns, name, nullFraction, distinctCount, min, max, histogram);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed statistics file: " + statsFile.getPath());
+        }
+        return new TableStatistics(rowCount, columns);
+    }
+
+    /**
+     * Adds the statistics of a column read from a statistics file at the position of the column.
+     *
+     * @param schema The schema of the table.
+     * @param columns The column statistics by position.
+     * @param name The column name, or null before the first column.
+     * @param nullFraction The null fraction.
+     * @param distinctCount The distinct count.
+     * @param min The minimum, or NaN.
+     * @param max The maximum, or NaN.
+     * @param histogram The histogram bounds.
+     */
+    private static void add(TableSchema schema, ColumnStatistics[] columns, String name, double nullFraction,
+                            long distinctCount, double min, double max, double[] histogram) {
+        if (name == null) {
+            return;
+        }
+        int position = schema.getColumnIndex(name);
+        if (position != -1) {
+            columns[position] = new ColumnStatistics(schema.getColumnName(position), nullFraction, distinctCount,
+                    min, max, histogram);
+        }
+    }
+
+    /**
+     * Writes the statistics to a statistics file, replacing its contents.
+     *
+     * @param statsFile The statistics file.
+     * @param tableName The name of the table.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void save(File statsFile, String tableName) throws IOException {
+        try (FileWriter writer = new FileWriter(statsFile)) {
+            writer.write(describe(tableName));
+        }
+    }
+
+    /**
+     * Describes the statistics in the format of a statistics file.
+     *
+     * @param tableName The name of the table.
+     * @return One "Key: value" line for the table and for every statistic of every column.
+     */
+    public String describe(String tableName) {
+        StringBuilder text = new StringBuilder();
+        text.append("Table: ").append(tableName).append("\n");
+        text.append("Rows: ").append(rowCount).append("\n");
+        for (ColumnStatistics column : columns) {
+            if (column == null) {
+                continue;
+            }
+            text.append("Column: ").append(column.getName()).append("\n");
+            text.append("Null Fraction: ").append(column.getNullFraction()).append("\n");
+            text.append("Distinct: ").append(column.getDistinctCount()).append("\n");
+            if (!Double.isNaN(column.getMin())) {
+                text.append("Min: ").append(format(column.getMin())).append("\n");
+                text.append("Max: ").append(format(column.getMax())).append("\n");
+            }
+            if (column.getHistogram().length > 0) {
+                text.append("Histogram: ");
+                for (int i = 0; i < column.getHistogram().length; i++) {
+                    text.append(i > 0 ? "," : "").append(format(column.getHistogram()[i]));
+                }
+                text.append("\n");
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Formats a number of a statistics file, without a fraction if it is a whole number.
+     *
+     * @param value The number.
+     * @return The number as text.
+     */
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+}
@@ -1,50 +1,32 @@
 package org.example;
 
 import java.io.*;
-import java.nio.file.*;
 import java.util.*;
 
 public class TinyDBExporter {
 
     /**
-     * Retrieves column names, data types, and primary key info from the metadata file.
+     * Retrieves column names and data types, marking the primary key column.
      *
-     * @param metaFilePath The path to the metadata file.
+     * @param schema The schema of the table.
      * @return A map containing column names and their data types.
-     * @throws IOException If an I/O error occurs while reading the metadata file.
      */
-    public static Map<String, String> getColumnNamesAndTypes(String metaFilePath) throws IOException {
-        Path metaPath = Paths.get(metaFilePath);
-        Path tempMetaPath = Paths.get(metaFilePath.replace("_meta.txt", "_temp_meta.txt"));
-
-        // Check if the metadata file exists, if not check for the temp metadata file
-        if (!Files.exists(metaPath)) {
-            if (Files.exists(tempMetaPath)) {
-                metaPath = tempMetaPath;
-            } else {
-                throw new IOException("Metadata file not found: " + metaFilePath);
-            }
-        }
-
+    public static Map<String, String> getColumnNamesAndTypes(TableSchema schema) {
         Map<String, String> columnDetails = new LinkedHashMap<>();
-        List<String> lines = Files.readAllLines(metaPath);
-        if (lines.size() > 1) {
-            String[] columns = lines.get(1).split(":")[1].split(",");
-            for (String column : columns) {
-                String[] parts = column.trim().split(" ");
-                // Handle primary key
-                if (parts[1].equals("(pk)")) {
-                    columnDetails.put(parts[0].toLowerCase(), "INT PRIMARY KEY"); // Use lowercase for consistency
-                } else {
-                    columnDetails.put(parts[0].toLowerCase(), parts[1]);
-                }
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            String columnName = schema.getColumnName(i);
+            String type = schema.getColumnType(i).name();
+            // Handle primary key
+            if (schema.isPrimaryKey(columnName)) {
+                type += " PRIMARY KEY";
             }
+            columnDetails.put(columnName.toLowerCase(), type); // Use lowercase for consistency
         }
         return columnDetails;
     }
 
     /**
-     * Retrieves all data from the table file, excluding the first line (column names).
+     * Retrieves all rows from the binary table file.
      *
      * @param tableFilePath The path to the table file.
      * @return A list of string arrays, each representing a row in the table.
@@ -52,74 +34,32 @@ public class TinyDBExporter {
      */
     public static List<String[]> getTableData(String tableFilePath) throws IOException {
         List<String[]> data = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(tableFilePath))) {
-            String line;
-            boolean firstLine = true;
-            while ((line = reader.readLine()) != null) {
-                if (firstLine) {
-                    // Skip the first line containing column names
-                    firstLine = false;
-                    continue;
-                }
-                String[] row = line.split(",");
-                if (row.length > 0 && !row[0].trim().isEmpty()) {
-                    data.add(row);
-                }
+        File tableFile = new File(tableFilePath);
+        try (Table table = Table.open(tableFile.getParentFile(), tableFile.getName().replace(".tbl", ""))) {
+            RecordScan scan = table.scan();
+            while (scan.next()) {
+                data.add(RowCodec.decode(table.getSchema(), scan.getBuffer(), scan.getOffset()));
             }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
         }
         return data;
     }
 
     /**
-     * Retrieves foreign key relationships from the metadata file.
+     * Retrieves foreign key relationships of a table.
      *
-     * @param metaFilePath The path to the metadata file.
+     * @param schema The schema of the table.
      * @return A map containing foreign key relationships.
-     * @throws IOException If an I/O error occurs while reading the metadata file.
      */
-    public static Map<String, String> getForeignKeys(String metaFilePath) throws IOException {
-        Path metaPath = Paths.get(metaFilePath);
-        Path tempMetaPath = Paths.get(metaFilePath.replace("_meta.txt", "_temp_meta.txt"));
-
-        // Check if the metadata file exists, if not check for the temp metadata file
-        if (!Files.exists(metaPath)) {
-            if (Files.exists(tempMetaPath)) {
-                metaPath = tempMetaPath;
-            } else {
-                throw new IOException("Metadata file not found: " + metaFilePath);
-            }
-        }
-
+    public static Map<String, String> getForeignKeys(TableSchema schema) {
         Map<String, String> foreignKeys = new LinkedHashMap<>();
-        List<String> lines = Files.readAllLines(metaPath);
-        if (lines.size() > 3) { // Ensure the metadata file contains enough lines
-            String relationshipLine = lines.get(3); // Extract the line containing relationships
-            if (relationshipLine.startsWith("Relationship:")) {
-                String[] relationships = relationshipLine.split(":")[1].split(",");
-                for (String relationship : relationships) {
-                    String[] parts = relationship.trim().split(" ");
-                    if (parts.length == 4 && parts[0].equals("From") && parts[2].equals("to")) {
-                        // Extract source table and column
-                        String[] sourceParts = parts[1].split("\\(");
-                        String sourceTable = sourceParts[0].trim();
-                        String sourceColumn = sourceParts[1].replace(")", "").trim();
-
-                        // Extract target table and column
-                        String[] targetParts = parts[3].split("\\(");
-                        String targetTable = targetParts[0].trim();
-                        String targetColumn = targetParts[1].replace(")", "").trim();
-
-                        // Format foreign key relationship
-                        foreignKeys.put(sourceColumn.toLowerCase(), sourceColumn + " REFERENCES " + targetTable + "(" + targetColumn + ")");
-                    } else {
-                        throw new IllegalArgumentException("Invalid foreign key format in metadata file: " + relationship);
-                    }
-                }
-            } else {
-                System.out.println("No foreign key relationships found in metadata file.");
-            }
-        } else {
-            System.out.println("Metadata file does not contain relationship information.");
+        for (CreateCommand.Relationship relationship : schema.getRelationships()) {
+            // Format foreign key relationship
+            foreignKeys.put(relationship.getColumn().toLowerCase(), relationship.getColumn() + " REFERENCES "
+                    + relationship.getRelatedTable() + "(" + relationship.getRelatedColumn() + ")");
         }
         return foreignKeys;
     }
@@ -144,24 +84,21 @@ public class TinyDBExporter {
                 throw new IllegalArgumentException("Database directory not found: " + databaseDir.getPath());
             }
 
-            File[] tableFiles = databaseDir.listFiles((dir, name) -> name.endsWith(".txt") && !name.endsWith("_meta.txt"));
-            if (tableFiles == null) {
-                throw new IllegalArgumentException("No table files found in database directory: " + databaseDir.getPath());
-            }
+            StorageMigrator.migrateDatabase(databaseDir);
+            List<TableSchema> tables = Catalog.getInstance().getTableSchemas(databaseDir);
 
             // Add logging before exporting data
             LogManager.logGeneral("EXPORT command initiated", "Attempting to export database: " + databaseName);
 
-            for (File tableFile : tableFiles) {
-                String tableName = tableFile.getName().replace(".txt", "");
-                String metaFilePath = tableFile.getPath().replace(".txt", "_meta.txt");
+            for (TableSchema schema : tables) {
+                String tableName = schema.getTableName();
+                File tableFile = new File(databaseDir, tableName + ".tbl");
 
                 System.out.println("Processing table: " + tableName);
-                System.out.println("Meta file path: " + metaFilePath);
 
                 try {
-                    Map<String, String> columnDetails = getColumnNamesAndTypes(metaFilePath);
-                    Map<String, String> foreignKeys = getForeignKeys(metaFilePath);
+                    Map<String, String> columnDetails = getColumnNamesAndTypes(schema);
+                    Map<String, String> foreignKeys = getForeignKeys(schema);
                     List<String[]> tableData = getTableData(tableFile.getPath());
 
                     // Generate CREATE TABLE statement
@@ -204,7 +141,7 @@ public class TinyDBExporter {
                                 if (!firstValue) {
                                     writer.write(", ");
                                 }
-                                writer.write("'" + value.trim() + "'");
+                                writer.write(value == null ? "NULL" : "'" + value.trim() + "'");
                                 firstValue = false;
                             }
                             writer.write(")");
@@ -1,12 +1,37 @@
 package org.example;
 
-import java.io.*;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 public class TransactionManager {
-    private boolean isTransactionActive = false;
-    private static final String BUFFER_FILE = "transaction_buffer.txt";
+    private static final Object validation = new Object();
+
+    private final Session session;
+    private volatile Snapshot transaction;
+
+    /**
+     * A statement that runs inside a transaction.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Runs the statement.
+         *
+         * @throws Exception If the statement fails.
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Constructs the transaction manager of a session.
+     *
+     * @param session The session whose transactions are managed.
+     */
+    TransactionManager(Session session) {
+        this.session = session;
+    }
 
     /**
      * Checks if a transaction is active.
@@ -14,16 +39,66 @@ public class TransactionManager {
      * @return True if a transaction is active, false otherwise.
      */
     public boolean isTransactionActive() {
-        return isTransactionActive;
+        return transaction != null;
+    }
+
+    /**
+     * Runs a statement issued outside BEGIN TRANSACTION as a transaction of its own. The statement reads a
+     * snapshot taken when it starts, and its changes are logged under a new transaction that commits when the
+     * statement succeeds and is rolled back when it fails.
+     *
+     * @param operation The statement.
+     * @throws Exception If the statement fails or its commit cannot be logged.
+     */
+    public static void autocommit(Operation operation) throws Exception {
+        if (WriteAheadLog.getCurrentTransaction() != 0) {
+            operation.run();
+            return;
+        }
+        Snapshot snapshot = VersionStore.getInstance().begin();
+        try {
+            run(snapshot, operation);
+            commit(snapshot);
+        } catch (Exception e) {
+            rollback(snapshot, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a statement that only reads against a snapshot of the committed data, taken when the statement
+     * starts. The statement neither waits for nor sees transactions that commit while it runs.
+     *
+     * @param operation The statement.
+     * @throws Exception If the statement fails.
+     */
+    public static void read(Operation operation) throws Exception {
+        if (VersionStore.getCurrentSnapshot() != null) {
+            operation.run();
+            return;
+        }
+        VersionStore versionStore = VersionStore.getInstance();
+        Snapshot snapshot = versionStore.snapshot();
+        VersionStore.setCurrentSnapshot(snapshot);
+        try {
+            operation.run();
+        } finally {
+            VersionStore.setCurrentSnapshot(null);
+            LockManager.getInstance().releaseAll(snapshot);
+            versionStore.release(snapshot);
+        }
     }
 
     /**
-     * Begins a new transaction.
+     * Begins a new transaction. All statements of the transaction read the snapshot taken here, together with
+     * the transaction's own changes.
      */
     public void beginTransaction() {
-        if (!isTransactionActive) {
-            isTransactionActive = true;
-            clearBufferFile();
+        if (transaction == null) {
+            transaction = VersionStore.getInstance().begin();
+            if (session.getConcurrency() == Session.Concurrency.OPTIMISTIC) {
+                transaction.setReadWriteSet(new ReadWriteSet());
+            }
             System.out.println("Transaction started.");
             LogManager.logTransaction("BEGIN", "Transaction started.");
         } else {
@@ -32,31 +107,81 @@ public class TransactionManager {
     }
 
     /**
-     * Executes a command as part of a transaction.
+     * Executes a command as part of a transaction. Changes to heap tables are applied immediately but stay
+     * invisible to other snapshots until the transaction commits; changes to LSM tables are held in the
+     * transaction until then. If a change fails, the whole transaction is rolled back.
+     *
+     * @param statement The parsed statement.
+     * @param input The complete command input string.
+     * @throws Exception If an error occurs during command execution or the command is not allowed in a
+     *                   transaction.
+     */
+    public void execute(SqlStatement statement, String input) throws Exception {
+        if (PreparedCommand.isPlannable(statement)) {
+            execute(new PreparedCommand(input, statement), StatementPlan.NO_PARAMETERS, input);
+            return;
+        }
+        if (statement.getKind() == SqlStatement.Kind.SHOW) {
+            ShowCommand.execute(session, (SqlStatement.Show) statement);
+            return;
+        }
+        // File operations and metadata changes cannot be rolled back
+        throw new Exception(statement.getKind().getCommand()
+                + " is not allowed inside a transaction. COMMIT or ROLLBACK first.");
+    }
+
+    /**
+     * Executes a prepared SELECT, INSERT, UPDATE or DELETE statement as part of a transaction. The statement is
+     * planned inside the transaction, so that a failing INSERT, UPDATE or DELETE rolls the whole transaction
+     * back whether it fails while planned or while run.
      *
-     * @param tokens The tokens parsed from the command input.
+     * @param command The prepared statement.
+     * @param parameters The values of its parameter markers, in order.
      * @param input The complete command input string.
      * @throws Exception If an error occurs during command execution.
      */
-    public void execute(String[] tokens, String input) throws Exception {
-        String command = tokens[0].toUpperCase();
-
-        if (command.equals("SELECT")) {
-            // Allow SELECT operations to execute immediately
-            SelectCommand.execute(tokens, input);
-        } else if (command.equals("INSERT") || command.equals("DELETE") || command.equals("UPDATE")) {
-            // Validate the command before adding to the buffer
-            if (validateCommand(tokens, input)) {
-                appendToBufferFile(input);
-                System.out.println("Operation added to transaction: " + input);
-                LogManager.logTransaction("EXECUTE", "Operation added to transaction: " + input);
-            } else {
-                System.out.println("Error: Invalid " + command + " statement format: " + input);
-            }
-        } else {
-            appendToBufferFile(input);
-            System.out.println("Operation added to transaction: " + input);
-            LogManager.logTransaction("EXECUTE", "Operation added to transaction: " + input);
+    public void execute(PreparedCommand command, SqlStatement.Literal[] parameters, String input) throws Exception {
+        if (command.getStatement().getKind() == SqlStatement.Kind.SELECT) {
+            run(transaction, () -> command.getPlan(session).execute(session, parameters));
+            return;
+        }
+        try {
+            run(transaction, () -> command.getPlan(session).execute(session, parameters));
+        } catch (Exception e) {
+            throw abortTransaction(e);
+        }
+        LogManager.logTransaction("EXECUTE", "Operation executed in transaction: " + input);
+    }
+
+    /**
+     * Opens a cursor over the rows of a SELECT query of the session. Inside a transaction the cursor reads the
+     * transaction's snapshot and its own changes; otherwise it reads a snapshot of its own, taken here and
+     * released with its table lock when the cursor is closed.
+     *
+     * @param query The prepared query.
+     * @param parameters The values of its parameter markers, in order.
+     * @return A cursor positioned before the first matching row.
+     * @throws Exception If the query is invalid.
+     */
+    public QueryCursor openCursor(PreparedCommand query, SqlStatement.Literal[] parameters) throws Exception {
+        QueryCursor[] cursor = new QueryCursor[1];
+        if (transaction != null) {
+            run(transaction, () -> cursor[0] = query.getPlan(session).open(session, parameters));
+            return cursor[0];
+        }
+        VersionStore versionStore = VersionStore.getInstance();
+        Snapshot snapshot = versionStore.snapshot();
+        VersionStore.setCurrentSnapshot(snapshot);
+        try {
+            cursor[0] = query.getPlan(session).open(session, parameters);
+            cursor[0].releaseSnapshotOnClose();
+            return cursor[0];
+        } catch (Exception e) {
+            LockManager.getInstance().releaseAll(snapshot);
+            versionStore.release(snapshot);
+            throw e;
+        } finally {
+            VersionStore.setCurrentSnapshot(null);
         }
     }
 
@@ -67,7 +192,7 @@ public class TransactionManager {
      * @throws Exception If an error occurs during command execution or if no active transaction exists.
      */
     public void executeTransactionCommand(String command) throws Exception {
-        if (!isTransactionActive) {
+        if (transaction == null) {
             throw new Exception("No active transaction.");
         }
 
@@ -81,129 +206,166 @@ public class TransactionManager {
     }
 
     /**
-     * Commits the current transaction by executing all buffered operations.
+     * Commits the current transaction. The commit is durable once its COMMIT record has been forced to disk,
+     * which concurrent commits share, and its changes are visible to every snapshot taken afterwards. An
+     * optimistic transaction is validated first; optimistic transactions validate and commit one at a time, so
+     * that none of them commits a change another one is validating against.
      *
-     * @throws Exception If an error occurs during transaction commit.
+     * @throws Exception If the commit cannot be logged or an optimistic transaction fails validation, in which
+     *                   case the transaction is rolled back.
      */
     private void commitTransaction() throws Exception {
+        ReadWriteSet readWriteSet = transaction.getReadWriteSet();
         try {
-            List<String> operations = readBufferFile();
-            for (String operation : operations) {
-                executeOperation(operation);
+            if (readWriteSet == null) {
+                commit(transaction);
+            } else {
+                synchronized (validation) {
+                    try {
+                        readWriteSet.validate(transaction);
+                    } catch (Exception e) {
+                        LockManager.getInstance().recordValidation(false);
+                        throw e;
+                    }
+                    commit(transaction);
+                }
+                LockManager.getInstance().recordValidation(true);
             }
-            isTransactionActive = false;
-            clearBufferFile();
-            System.out.println("Transaction committed.");
-            LogManager.logTransaction("COMMIT", "Transaction committed.");
         } catch (Exception e) {
-            rollbackTransaction();
-            throw new Exception("Transaction failed, rolled back. Error: " + e.getMessage());
+            throw abortTransaction(e);
         }
+        transaction = null;
+        System.out.println("Transaction committed.");
+        LogManager.logTransaction("COMMIT", "Transaction committed.");
     }
 
     /**
-     * Executes an individual operation as part of a transaction.
+     * Rolls back the current transaction, undoing all of its changes.
      *
-     * @param operation The operation to execute.
-     * @throws Exception If an error occurs during operation execution.
+     * @throws Exception If the changes cannot be undone.
      */
-    private void executeOperation(String operation) throws Exception {
-        String[] tokens = operation.split("\\s+");
-        String command = tokens[0].toUpperCase();
-
-        switch (command) {
-            case "CREATE":
-                CreateCommand.execute(tokens, operation);
-                break;
-            case "INSERT":
-                InsertCommand.execute(tokens, operation);
-                break;
-            case "UPDATE":
-                UpdateCommand.execute(operation);
-                break;
-            case "DELETE":
-                DeleteCommand.execute(tokens);
-                break;
-            case "DROP":
-                DropCommand.execute(tokens);
-                break;
-            default:
-                throw new Exception("Invalid operation in transaction: " + operation);
-        }
+    private void rollbackTransaction() throws Exception {
+        Snapshot snapshot = transaction;
+        transaction = null;
+        rollback(snapshot);
+        System.out.println("Transaction rolled back.");
+        LogManager.logTransaction("ROLLBACK", "Transaction rolled back.");
     }
 
     /**
-     * Rolls back the current transaction, discarding all buffered operations.
+     * Rolls back the current transaction after one of its statements or its commit failed.
+     *
+     * @param cause The error that made the transaction fail.
+     * @return The error to report.
      */
-    private void rollbackTransaction() {
-        isTransactionActive = false;
-        clearBufferFile();
+    private Exception abortTransaction(Exception cause) {
+        Snapshot snapshot = transaction;
+        transaction = null;
+        rollback(snapshot, cause);
         System.out.println("Transaction rolled back.");
         LogManager.logTransaction("ROLLBACK", "Transaction rolled back.");
+        return new Exception("Transaction failed, rolled back. Error: " + cause.getMessage(), cause);
     }
 
     /**
-     * Validates a command before adding it to the transaction buffer.
+     * Runs a statement on the current thread as part of a transaction, reading its snapshot and logging its
+     * changes under its identifier.
      *
-     * @param tokens The tokens parsed from the command input.
-     * @param input The complete command input string.
-     * @return True if the command is valid, false otherwise.
+     * @param snapshot The snapshot of the transaction.
+     * @param operation The statement.
+     * @throws Exception If the statement fails.
      */
-    private boolean validateCommand(String[] tokens, String input) {
-        String command = tokens[0].toUpperCase();
-        switch (command) {
-            case "INSERT":
-                return input.matches("INSERT INTO [a-zA-Z0-9_]+\\s*\\([a-zA-Z0-9_,\\s]*\\)\\s*VALUES\\s*\\([a-zA-Z0-9_,\\s\"']*\\);?");
-            case "DELETE":
-                return input.matches("DELETE FROM [a-zA-Z0-9_]+\\s*WHERE\\s*[a-zA-Z0-9_\\s=]*;?");
-            case "UPDATE":
-                return input.matches("UPDATE [a-zA-Z0-9_]+\\s*SET\\s*[a-zA-Z0-9_\\s=,\"]+\\s*WHERE\\s*[a-zA-Z0-9_\\s=]*;?");
-            default:
-                return true; // Allow other commands without validation
+    private static void run(Snapshot snapshot, Operation operation) throws Exception {
+        WriteAheadLog.setCurrentTransaction(snapshot.getTransactionId());
+        VersionStore.setCurrentSnapshot(snapshot);
+        try {
+            operation.run();
+        } finally {
+            WriteAheadLog.setCurrentTransaction(0);
+            VersionStore.setCurrentSnapshot(null);
         }
     }
 
     /**
-     * Appends an operation to the transaction buffer file.
+     * Applies the changes the transaction made to LSM tables, logs its commit, makes its changes visible and
+     * releases its table locks.
      *
-     * @param operation The operation to append.
+     * @param snapshot The snapshot of the transaction.
+     * @throws Exception If a change to an LSM table conflicts with a committed one, or the commit cannot be
+     *                   logged.
      */
-    private void appendToBufferFile(String operation) {
-        try (FileWriter fw = new FileWriter(BUFFER_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            out.println(operation);
-        } catch (IOException e) {
-            System.err.println("Error writing to buffer file: " + e.getMessage());
-        }
+    private static void commit(Snapshot snapshot) throws Exception {
+        LsmTree.commit(snapshot.getLsmBatches());
+        WriteAheadLog.getInstance().commit(snapshot.getTransactionId());
+        VersionStore.getInstance().commit(snapshot);
+        LockManager.getInstance().releaseAll(snapshot);
     }
 
     /**
-     * Reads all operations from the transaction buffer file.
+     * Undoes the changes of a transaction, discards the record versions it wrote and releases its locks. The
+     * tables the transaction changed are latched meanwhile, so that no statement reads a page while it is being
+     * restored. Rows of those tables are restored one by one from the versions the transaction replaced, as
+     * transactions holding row locks may have changed other rows on the same pages since; the changes of a
+     * transaction that wrote no rows are undone from the log.
      *
-     * @return A list of operations.
+     * @param snapshot The snapshot of the transaction.
+     * @throws Exception If the changes cannot be undone.
      */
-    private List<String> readBufferFile() {
-        List<String> operations = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(BUFFER_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                operations.add(line);
+    private static void rollback(Snapshot snapshot) throws Exception {
+        VersionStore versionStore = VersionStore.getInstance();
+        List<File> tables = versionStore.getChangedTables(snapshot);
+        List<Lock> latches = new ArrayList<>();
+        try {
+            for (File file : tables) {
+                latches.add(HeapFile.lock(file));
+            }
+            run(snapshot, () -> {
+                WriteAheadLog log = WriteAheadLog.getInstance();
+                if (tables.isEmpty()) {
+                    log.rollback(snapshot.getTransactionId());
+                    return;
+                }
+                for (File file : tables) {
+                    undo(snapshot, file);
+                }
+                log.abort(snapshot.getTransactionId());
+            });
+        } finally {
+            versionStore.abort(snapshot);
+            for (Lock latch : latches) {
+                latch.unlock();
             }
-        } catch (IOException e) {
-            System.err.println("Error reading from buffer file: " + e.getMessage());
+            LockManager.getInstance().releaseAll(snapshot);
         }
-        return operations;
     }
 
     /**
-     * Clears the transaction buffer file.
+     * Restores the rows a transaction changed in one table.
+     *
+     * @param snapshot The snapshot of the transaction.
+     * @param file The table file.
+     * @throws Exception If the table has no metadata or its rows cannot be restored.
+     */
+    private static void undo(Snapshot snapshot, File file) throws Exception {
+        File dbDir = file.getParentFile();
+        String tableName = file.getName().substring(0, file.getName().length() - ".tbl".length());
+        try (HeapTable table = HeapTable.open(dbDir, Catalog.getInstance().getTable(dbDir, tableName))) {
+            table.undo(snapshot);
+        }
+    }
+
+    /**
+     * Undoes the logged changes of a failed transaction. An error during the rollback is attached to the
+     * error that caused it.
+     *
+     * @param snapshot The snapshot of the transaction.
+     * @param cause The error that made the transaction fail.
      */
-    private void clearBufferFile() {
+    private static void rollback(Snapshot snapshot, Exception cause) {
         try {
-            new FileWriter(BUFFER_FILE, false).close();
-        } catch (IOException e) {
-            System.err.println("Error clearing buffer file: " + e.getMessage());
+            rollback(snapshot);
+        } catch (Exception e) {
+            cause.addSuppressed(e);
         }
     }
 }
@@ -0,0 +1,285 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TransactionTest {
+
+    private CommandProcessor commandProcessor;
+    private CommandProcessor otherProcessor;
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @BeforeAll
+    void setUp() {
+        commandProcessor = new CommandProcessor();
+        otherProcessor = new CommandProcessor();
+    }
+
+    @BeforeEach
+    void createTestDatabaseAndTable() throws Exception {
+        commandProcessor.processCommand("CREATE DATABASE testdb;");
+        commandProcessor.processCommand("USE testdb;");
+        commandProcessor.processCommand("CREATE TABLE people (id INT(PK), name STRING, age INT);");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (1, 'John', 30);");
+        otherProcessor.processCommand("USE testdb;");
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @Test
+    void testAutocommitWritesAreLogged() throws Exception {
+        WriteAheadLog log = WriteAheadLog.getInstance();
+        long before = log.getNextLsn();
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        assertTrue(log.getNextLsn() > before, "The insert was not logged");
+    }
+
+    @Test
+    void testTransactionReadsItsOwnWrites() throws Exception {
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (3, 'Jim', 40);");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JANE") && output.contains("JIM"), "Own inserts are not visible: " + output);
+        output = selectInOtherThread("SELECT name FROM people");
+        assertTrue(output.contains("JOHN") && !output.contains("JANE"), "Uncommitted insert is visible: " + output);
+
+        commandProcessor.processCommand("COMMIT;");
+        output = selectInOtherThread("SELECT name FROM people");
+        assertTrue(output.contains("JANE") && output.contains("JIM"), "Unexpected rows: " + output);
+        assertEquals(0, VersionStore.getInstance().getVersionCount(), "Versions were not pruned");
+    }
+
+    @Test
+    void testSnapshotIgnoresLaterCommits() throws Exception {
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("SELECT name FROM people;");
+        updateInOtherThread("UPDATE people SET name = 'Johnny' WHERE id = 1");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOHN\t") && !output.contains("JOHNNY"), "Snapshot sees a later commit: " + output);
+
+        Exception exception = assertThrows(Exception.class, () -> {
+            commandProcessor.processCommand("UPDATE people SET age = 31 WHERE id = 1;");
+        });
+        assertTrue(exception.getMessage().contains("concurrent transaction"));
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people;");
+        output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOHNNY"), "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testRollbackDiscardsPendingOperations() throws Exception {
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        commandProcessor.processCommand("DELETE FROM people WHERE id = 1;");
+        commandProcessor.processCommand("ROLLBACK;");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOHN") && !output.contains("JANE"), "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testRollbackDiscardsLsmTableChanges() throws Exception {
+        commandProcessor.processCommand("CREATE TABLE ledger (id INT(PK), name STRING) ENGINE = LSM;");
+        commandProcessor.processCommand("INSERT INTO ledger (id, name) VALUES (1, 'Ann');");
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("INSERT INTO ledger (id, name) VALUES (2, 'Bob');");
+        commandProcessor.processCommand("UPDATE ledger SET name = 'Zed' WHERE id = 1;");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM ledger;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("BOB") && output.contains("ZED"), "Own changes are not visible: " + output);
+        output = selectInOtherThread("SELECT name FROM ledger");
+        assertTrue(output.contains("ANN") && !output.contains("BOB") && !output.contains("ZED"),
+                "Uncommitted changes are visible: " + output);
+
+        commandProcessor.processCommand("ROLLBACK;");
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM ledger;");
+        output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("ANN") && !output.contains("BOB") && !output.contains("ZED"),
+                "Unexpected rows: " + output);
+
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("INSERT INTO ledger (id, name) VALUES (3, 'Cid');");
+        Exception exception = assertThrows(Exception.class, () -> {
+            commandProcessor.processCommand("INSERT INTO ledger (id, name) VALUES (1, 'Dee');");
+        });
+        assertTrue(exception.getMessage().contains("rolled back"));
+        commandProcessor.processCommand("INSERT INTO ledger (id, name) VALUES (4, 'Eve');");
+        output = selectInOtherThread("SELECT name FROM ledger");
+        assertTrue(output.contains("ANN") && output.contains("EVE") && !output.contains("CID"),
+                "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testFailedStatementRollsBackTransaction() throws Exception {
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        Exception exception = assertThrows(Exception.class, () -> {
+            commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (1, 'Jim', 40);");
+        });
+        assertTrue(exception.getMessage().contains("rolled back"));
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOHN") && !output.contains("JANE") && !output.contains("JIM"), "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testDeadlockRollsBackOneTransaction() throws Exception {
+        commandProcessor.processCommand("CREATE TABLE pets (id INT(PK), name STRING);");
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("UPDATE people SET age = 31 WHERE id = 1;");
+        otherProcessor.processCommand("BEGIN TRANSACTION;");
+        otherProcessor.processCommand("INSERT INTO pets (id, name) VALUES (1, 'Rex');");
+
+        Exception[] otherFailure = new Exception[1];
+        Thread other = new Thread(() -> {
+            try {
+                otherProcessor.processCommand("UPDATE people SET age = 32 WHERE id = 1;");
+            } catch (Exception e) {
+                otherFailure[0] = e;
+            }
+        });
+        other.start();
+        while (LockManager.getInstance().getWaitingCount() == 0) {
+            Thread.sleep(5);
+        }
+        Exception failure = null;
+        try {
+            commandProcessor.processCommand("INSERT INTO pets (id, name) VALUES (1, 'Max');");
+        } catch (Exception e) {
+            failure = e;
+        }
+        other.join();
+
+        assertTrue(failure == null ^ otherFailure[0] == null, "Expected exactly one deadlock victim");
+        Exception victim = failure != null ? failure : otherFailure[0];
+        assertTrue(victim.getMessage().contains("Deadlock"), "Unexpected error: " + victim.getMessage());
+    }
+
+    @Test
+    void testRowLocksOnlyBlockWritersOfTheSameRow() throws Exception {
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        commandProcessor.processCommand("BEGIN TRANSACTION;");
+        commandProcessor.processCommand("UPDATE people SET age = 31 WHERE id = 1;");
+
+        otherProcessor.processCommand("SET LOCK_TIMEOUT = 200;");
+        try {
+            updateInOtherThread("UPDATE people SET age = 26 WHERE id = 2");
+            Exception exception = assertThrows(Exception.class, () -> {
+                updateInOtherThread("UPDATE people SET age = 32 WHERE id = 1");
+            });
+            assertTrue(exception.getMessage().contains("Lock timeout"), "Unexpected error: " + exception.getMessage());
+        } finally {
+            otherProcessor.processCommand("SET LOCK_TIMEOUT = DEFAULT;");
+        }
+        commandProcessor.processCommand("COMMIT;");
+    }
+
+    @Test
+    void testOptimisticTransactionFailsValidation() throws Exception {
+        CommandProcessor optimisticProcessor = new CommandProcessor();
+        optimisticProcessor.processCommand("USE testdb;");
+        optimisticProcessor.processCommand("SET CONCURRENCY = OPTIMISTIC;");
+        optimisticProcessor.processCommand("BEGIN TRANSACTION;");
+        optimisticProcessor.processCommand("SELECT name FROM people WHERE id = 1;");
+        optimisticProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        updateInOtherThread("UPDATE people SET name = 'Johnny' WHERE id = 1");
+
+        Exception exception = assertThrows(Exception.class, () -> {
+            optimisticProcessor.processCommand("COMMIT;");
+        });
+        assertTrue(exception.getMessage().contains("Retry the transaction"), "Unexpected error: " + exception.getMessage());
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOHNNY") && !output.contains("JANE"), "Unexpected rows: " + output);
+    }
+
+    @Test
+    void testCheckpointKeepsCommittedRows() throws Exception {
+        commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (2, 'Jane', 25);");
+        commandProcessor.processCommand("CHECKPOINT;");
+
+        outContent.reset();
+        commandProcessor.processCommand("SELECT name FROM people;");
+        String output = outContent.toString().toUpperCase();
+        assertTrue(output.contains("JOHN") && output.contains("JANE"), "Unexpected rows: " + output);
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            // Leave no transaction open if a test failed inside one
+            commandProcessor.processCommand("ROLLBACK;");
+        } catch (Exception e) {
+            // No transaction was open
+        }
+        try {
+            otherProcessor.processCommand("ROLLBACK;");
+        } catch (Exception e) {
+            // No transaction was open
+        }
+        System.setOut(originalOut);
+        deleteDirectory(new File("tinydb/databases/testdb"));
+    }
+
+    private String selectInOtherThread(String query) throws Exception {
+        outContent.reset();
+        runInOtherThread(() -> otherProcessor.processCommand(query));
+        return outContent.toString().toUpperCase();
+    }
+
+    private void updateInOtherThread(String statement) throws Exception {
+        runInOtherThread(() -> otherProcessor.processCommand(statement));
+    }
+
+    private void runInOtherThread(TransactionManager.Operation operation) throws Exception {
+        Exception[] failure = new Exception[1];
+        Thread thread = new Thread(() -> {
+            try {
+                operation.run();
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private void deleteDirectory(File file) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    deleteDirectory(f);
+                }
+            }
+        }
+        file.delete();
+    }
+}
@@ -1,133 +1,218 @@
 package org.example;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class UpdateCommand {
 
     /**
      * Executes the UPDATE command to modify records in a table.
      *
-     * @param input The complete command input string.
+     * @param session The session that runs the statement.
+     * @param statement The parsed UPDATE statement.
      * @throws Exception If an error occurs during command execution.
      */
-    public static void execute(String input) throws Exception {
-        if (CommandProcessor.activeDatabase == null) {
-            throw new Exception("No database selected.");
-        }
-
-        // Add logging before updating the record
-        LogManager.logQuery("UPDATE command initiated", "Attempting to update record");
+    public static void execute(Session session, SqlStatement.Update statement) throws Exception {
+        plan(session, statement).execute(session, StatementPlan.NO_PARAMETERS);
+    }
 
-        if (input.endsWith(";")) {
-            input = input.substring(0, input.length() - 1).trim();
+    /**
+     * Plans an UPDATE statement against the schema of its table: the SET and WHERE columns are resolved to
+     * their positions and checked. The new value and the values of the WHERE condition may be parameter markers.
+     *
+     * @param session The session whose active database the table is resolved in.
+     * @param statement The parsed UPDATE statement.
+     * @return The plan.
+     * @throws Exception If the statement is invalid or does not fit the table.
+     */
+    public static Plan plan(Session session, SqlStatement.Update statement) throws Exception {
+        if (session.getActiveDatabase() == null) {
+            throw new Exception("No database selected.");
         }
 
-        // Extract table name, SET clause, and WHERE condition from the query
-        String[] tokens = input.split("\\s+");
-        String tableName = tokens[1].trim(); // Extract table name
-
-        // Extract SET clause
-        int setIndex = input.indexOf("SET");
-        int whereIndex = input.indexOf("WHERE");
-        if (setIndex == -1 || whereIndex == -1 || whereIndex < setIndex) {
+        String tableName = statement.getTableName();
+        SqlStatement.Condition condition = statement.getWhere();
+        if (condition == null) {
             throw new Exception("Invalid update query format.");
         }
-        String setClause = input.substring(setIndex + 3, whereIndex).trim();
 
-        // Extract WHERE condition
-        String condition = input.substring(whereIndex + 5).trim();
+        String setColumn = statement.getColumn();
 
-        // Split SET and WHERE conditions into column and value parts
-        String[] setParts = setClause.split("=");
-        String[] conditionParts = condition.split("=");
-
-        if (setParts.length != 2 || conditionParts.length != 2) {
-            throw new Exception("Invalid SET or WHERE clause format.");
-        }
+        checkTableFile(session, tableName);
 
-        String setColumn = setParts[0].trim();
-        String setValue = setParts[1].trim().replaceAll("'", "");
-        String conditionColumn = conditionParts[0].trim();
-        String conditionValue = conditionParts[1].replaceAll("'", "").trim(); // Remove surrounding single quotes
-
-        // Check if the table file exists
-        File tableFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + ".txt");
-        if (!tableFile.exists()) {
-            throw new Exception("Table file does not exist for table: " + tableName);
-        }
+        TableSchema schema = Catalog.getInstance().getTable(session.getActiveDatabase(), tableName);
 
         // Validate primary key update
-        validatePrimaryKeyUpdate(tableName, setColumn);
-
-        File tempFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + "_temp.txt");
-
-        boolean updated = false; // Flag to check if any record was updated
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(tableFile));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
-
-            String header = reader.readLine(); // Read header line
-            if (header != null) {
-                writer.write(header); // Write header to temp file
-                writer.newLine();
-            }
+        validatePrimaryKeyUpdate(schema, setColumn);
+        String[] headers = schema.getColumnNames().toArray(new String[0]);
+        if (RecordPredicate.findMissingColumn(schema, condition) != null) {
+            throw new Exception("Invalid column name in WHERE clause.");
+        }
+        int setColumnIndex = getColumnIndex(headers, setColumn);
+        if (setColumnIndex == -1) {
+            throw new Exception("Invalid column name in SET clause.");
+        }
+        return new Plan(session.getActiveDatabase(), statement, schema, setColumnIndex);
+    }
 
-            String[] headers = header.split(",");
-            int conditionColumnIndex = getColumnIndex(headers, conditionColumn);
+    /**
+     * The plan of an UPDATE statement, which changes the rows matching the values bound when it runs.
+     */
+    public static class Plan extends StatementPlan {
+        private final int setColumnIndex;
+
+        /**
+         * Constructs the plan of an UPDATE statement.
+         *
+         * @param databaseName The database the table was resolved in.
+         * @param statement The parsed UPDATE statement.
+         * @param schema The schema of the table.
+         * @param setColumnIndex The position of the SET column.
+         */
+        private Plan(String databaseName, SqlStatement.Update statement, TableSchema schema, int setColumnIndex) {
+            super(statement, databaseName, schema);
+            this.setColumnIndex = setColumnIndex;
+        }
 
-            if (conditionColumnIndex == -1) {
-                throw new Exception("Invalid column name in WHERE clause.");
+        /**
+         * Updates the rows matching the WHERE condition.
+         *
+         * @param session The session that runs the statement.
+         * @param parameters The values of the parameter markers, in order.
+         * @throws Exception If the rows cannot be updated.
+         */
+        @Override
+        public void execute(Session session, SqlStatement.Literal[] parameters) throws Exception {
+            SqlStatement.Update statement = (SqlStatement.Update) getStatement();
+            Plan current = isCurrent(session) ? this : plan(session, statement);
+
+            // Add logging before updating the record
+            LogManager.logQuery("UPDATE command initiated", "Attempting to update record");
+
+            String tableName = statement.getTableName();
+            String setValue = statement.getValue().bind(parameters).getText();
+
+            LockManager.lockTableForWrite(session, tableName);
+
+            checkTableFile(session, tableName);
+            if (!current.isCurrent(session)) {
+                // The table changed while the lock was awaited
+                current = plan(session, statement);
             }
+            current.update(session, setValue, parameters);
+        }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Skip empty lines
-                if (line.trim().isEmpty()) continue;
-
-                // Split the line into columns
-                String[] columns = line.split(",");
-
-                // Check if the line matches the WHERE condition
-                if (columns[conditionColumnIndex].trim().equals(conditionValue)) {
-                    int setColumnIndex = getColumnIndex(headers, setColumn);
-                    if (setColumnIndex != -1) {
-                        // Validate primary key update before updating
-                        validatePrimaryKeyUpdate(tableName, headers[setColumnIndex].trim());
-
+        /**
+         * Updates the rows that match the WHERE condition.
+         *
+         * @param session The session that runs the statement.
+         * @param setValue The new value of the SET column.
+         * @param parameters The values of the parameter markers, in order.
+         * @throws Exception If a WHERE value does not fit its column, or the rows cannot be locked or written.
+         */
+        private void update(Session session, String setValue, SqlStatement.Literal[] parameters) throws Exception {
+            SqlStatement.Condition condition = ((SqlStatement.Update) getStatement()).getWhere();
+            String tableName = ((SqlStatement.Update) getStatement()).getTableName();
+            TableSchema schema = getSchema();
+            int updatedCount = 0;
+
+            Table table = Table.open(session.getActiveDatabase(), tableName);
+            try {
+                // Collect the matching records first so that rewritten rows are not visited again by the scan
+                List<Long> recordIds = new ArrayList<>();
+                List<String[]> rows = new ArrayList<>();
+                TableStatistics statistics = Catalog.getInstance().getStatistics(
+                        new File("tinydb/databases/" + session.getActiveDatabase()), tableName);
+                TableScan plan = scan(table, schema, statistics, condition, parameters);
+                plan.open();
+                try {
+                    Object[] row;
+                    while ((row = plan.next()) != null) {
+                        String[] columns = RowCodec.toText(row);
                         columns[setColumnIndex] = setValue;
-                        updated = true; // Mark as updated
-                    } else {
-                        throw new Exception("Invalid column name in SET clause.");
+                        recordIds.add(plan.getRecordId());
+                        rows.add(columns);
                     }
+                } finally {
+                    plan.close();
+                }
+
+                if (!rows.isEmpty() && LockManager.isRowLocking(session, schema)) {
+                    // Lock the rows with the table closed, so that no scan of it still holds the table latch meanwhile
+                    table.close();
+                    for (String[] row : rows) {
+                        LockManager.lockRow(session, schema, row);
+                    }
+                    table = Table.open(session.getActiveDatabase(), tableName);
+                }
+
+                for (int i = 0; i < recordIds.size(); i++) {
+                    table.update(recordIds.get(i), rows.get(i));
+                    updatedCount++;
                 }
+            } catch (IOException e) {
+                System.out.println("Error processing table file: " + e.getMessage());
+                return;
+            } finally {
+                table.close();
+            }
 
-                // Write the updated line (or original if not updated) to the temp file
-                writer.write(String.join(",", columns));
-                writer.newLine(); // Move to next line
+            // Check if any record was updated
+            if (updatedCount == 0) {
+                System.out.println("No matching records found for the update condition.");
+                LogManager.logQuery("UPDATE command executed", "No matching records found for the update condition on table: " + tableName);
+                return;
             }
-        } catch (IOException e) {
-            System.out.println("Error processing table file: " + e.getMessage());
-            return;
+
+            session.setRowCount(updatedCount);
+            recordChanges(tableName, updatedCount);
+            System.out.println("Record updated successfully.");
+            LogManager.logQuery("UPDATE command executed", "Record updated successfully in table: " + tableName);
         }
+    }
 
-        // Check if any record was updated
-        if (!updated) {
-            System.out.println("No matching records found for the update condition.");
-            tempFile.delete(); // Delete temp file if no update was performed
-            LogManager.logQuery("UPDATE command executed", "No matching records found for the update condition on table: " + tableName);
-            return;
+    /**
+     * Checks that the file of a table exists.
+     *
+     * @param session The session whose active database holds the table.
+     * @param tableName The name of the table.
+     * @throws Exception If the table file does not exist.
+     */
+    private static void checkTableFile(Session session, String tableName) throws Exception {
+        File tableFile = new File("tinydb/databases/" + session.getActiveDatabase() + "/" + tableName + ".tbl");
+        if (!tableFile.exists()) {
+            throw new Exception("Table file does not exist for table: " + tableName);
         }
+    }
 
-        // Replace the original table file with the updated temp file
-        if (!tableFile.delete()) {
-            throw new Exception("Failed to delete the original table file.");
+    /**
+     * Creates the scan that reads the rows of an UPDATE from its open table and evaluates the WHERE condition
+     * on their encoded records: a lookup through an index on a column the condition compares if the cost model
+     * prefers it, and a scan of the whole table otherwise.
+     *
+     * @param table The open table.
+     * @param schema The schema of the table.
+     * @param statistics The statistics of the table, or null if it has not been analyzed.
+     * @param condition The WHERE condition.
+     * @param parameters The values of the parameter markers, in order.
+     * @return The scan, which returns every column of the matching rows.
+     * @throws Exception If a parameter has no value or a WHERE value does not fit its column.
+     */
+    private static TableScan scan(Table table, TableSchema schema, TableStatistics statistics,
+                                  SqlStatement.Condition condition, SqlStatement.Literal[] parameters)
+            throws Exception {
+        int[] columns = new int[schema.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i;
         }
-        if (!tempFile.renameTo(tableFile)) {
-            throw new Exception("Failed to rename the temporary table file.");
+        RecordPredicate predicate = RecordPredicate.create(schema, statistics, condition, parameters);
+        SqlStatement.Comparison access = CostModel.chooseIndex(schema, statistics, condition, parameters);
+        if (access != null) {
+            return new IndexScan(table, predicate, columns, schema.getColumnIndex(access.getColumn()),
+                    access.getOperator(), access.getValue().getText());
         }
-
-        System.out.println("Record updated successfully.");
-        LogManager.logQuery("UPDATE command executed", "Record updated successfully in table: " + tableName);
+        return new SeqScan(table, predicate, columns);
     }
 
     /**
@@ -149,30 +234,13 @@ public class UpdateCommand {
     /**
      * Validates if the primary key is being updated.
      *
-     * @param tableName The table name.
+     * @param schema The schema of the table.
      * @param columnName The column name to check.
-     * @throws Exception If an error occurs during validation or if the primary key is being updated.
+     * @throws Exception If the primary key is being updated.
      */
-    private static void validatePrimaryKeyUpdate(String tableName, String columnName) throws Exception {
-        // Check if the table metadata file exists
-        File metaFile = new File("tinydb/databases/" + CommandProcessor.activeDatabase + "/" + tableName + "_meta.txt");
-        if (!metaFile.exists()) {
-            throw new Exception("Metadata file for table " + tableName + " does not exist.");
-        }
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(metaFile))) {
-            String line;
-
-            // Read table structure from metadata file
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().startsWith("Primary Key: ")) {
-                    String primaryKeyColumnName = line.substring("Primary Key: ".length()).trim();
-                    if (columnName.equalsIgnoreCase(primaryKeyColumnName)) {
-                        throw new Exception("Updating primary key column " + columnName + " is not allowed.");
-                    }
-                    break;
-                }
-            }
+    private static void validatePrimaryKeyUpdate(TableSchema schema, String columnName) throws Exception {
+        if (schema.isPrimaryKey(columnName)) {
+            throw new Exception("Updating primary key column " + columnName + " is not allowed.");
         }
     }
 }
@@ -21,7 +21,7 @@ class UpdateCommandTest {
         // Create test database and table
         commandProcessor.processCommand("CREATE DATABASE testdb;");
         commandProcessor.processCommand("USE testdb;");
-        commandProcessor.processCommand("CREATE TABLE people (id INT, name STRING, age INT);");
+        commandProcessor.processCommand("CREATE TABLE people (id INT(PK), name STRING, age INT);");
 
         // Insert sample data
         commandProcessor.processCommand("INSERT INTO people (id, name, age) VALUES (1, 'John Doe', 30);");
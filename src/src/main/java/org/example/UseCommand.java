@@ -7,20 +7,18 @@ public class UseCommand {
 
     /**
      * Executes the USE command to set the active database.
-     * Validates the command syntax and checks if the database exists.
+     * Checks if the database exists and loads its tables into the catalog.
      *
-     * @param tokens The tokens parsed from the command input.
+     * @param session The session that runs the statement.
+     * @param dbName The name of the database.
      * @throws IOException If an I/O error occurs.
      */
-    public static void execute(String[] tokens) throws IOException {
-        if (tokens.length < 2) {
-            System.out.println("Invalid USE command syntax.");
-            return;
-        }
-        String dbName = tokens[1].replace(";", "").trim();
+    public static void execute(Session session, String dbName) throws IOException {
         File dbDir = new File("tinydb/databases/" + dbName);
         if (dbDir.exists() && dbDir.isDirectory()) {
-            CommandProcessor.activeDatabase = dbName;
+            StorageMigrator.migrateDatabase(dbDir);
+            Catalog.getInstance().load(dbDir);
+            session.setActiveDatabase(dbName);
             System.out.println("Using database: " + dbName);
         } else {
             System.out.println("Database " + dbName + " does not exist.");
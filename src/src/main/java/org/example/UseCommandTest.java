@@ -44,6 +44,15 @@ class UseCommandTest {
         assertFalse(outContent.toString().contains(expectedMessage), "Expected message not found in output.");
     }
 
+    @Test
+    void testUseOnlyAffectsItsOwnSession() throws Exception {
+        CommandProcessor otherProcessor = new CommandProcessor();
+        commandProcessor.processCommand("USE testdb;");
+        assertNotNull(commandProcessor.getSession().getActiveDatabase(), "The database was not selected.");
+        assertNull(otherProcessor.getSession().getActiveDatabase(), "The other session selected a database.");
+        assertThrows(Exception.class, () -> otherProcessor.processCommand("DROP TABLE people;"));
+    }
+
     @AfterEach
     void tearDown() {
         deleteDirectory(new File("tinydb/databases/testdb"));
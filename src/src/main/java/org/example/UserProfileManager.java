@@ -71,6 +71,20 @@ public class UserProfileManager {
         }
     }
 
+    /**
+     * Checks the credentials of a user the way the login menu does: the password and the answer to the user's
+     * security question must both match.
+     *
+     * @param userID The user ID.
+     * @param password The password.
+     * @param securityAnswer The answer to the security question.
+     * @return true if the user exists and the credentials match, false otherwise.
+     */
+    public static boolean authenticate(String userID, String password, String securityAnswer) {
+        String[] profile = loadUserProfiles().get(hashString(userID));
+        return profile != null && profile[0].equals(hashString(password)) && profile[2].equals(securityAnswer);
+    }
+
     /**
      * Logs user activity.
      *
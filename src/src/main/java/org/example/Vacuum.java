@@ -0,0 +1,257 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+public class Vacuum implements Runnable {
+    private static final double DEFAULT_THRESHOLD = 0.2;
+    private static final long DEFAULT_MIN_DEAD = 50;
+    private static final int DEFAULT_BATCH_PAGES = 64;
+    private static final long DEFAULT_THROTTLE_MS = 10;
+    private static final long MIN_RETRY_MS = 100;
+    private static final long MAX_RETRY_MS = 10_000;
+    private static final int FIRST_DATA_PAGE = 2;
+    private static final Vacuum INSTANCE = new Vacuum();
+
+    private final Map<File, Task> queue = new LinkedHashMap<>();
+    private Thread worker;
+
+    private long runs = 0;
+    private long recordsPurged = 0;
+    private long bytesReclaimed = 0;
+    private long timeSpentMs = 0;
+    private String lastRun = "never";
+
+    /**
+     * Returns the process-wide vacuum.
+     *
+     * @return The shared vacuum.
+     */
+    public static Vacuum getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Checks whether a table has enough deleted records to be vacuumed. A table qualifies when it holds at least
+     * tinydb.vacuum.min.dead dead records (default 50) and dead records make up more than tinydb.vacuum.threshold
+     * of all records (default 0.2).
+     *
+     * @param liveCount The number of live records.
+     * @param deadCount The number of deleted records that have not been purged.
+     * @return true if the table should be vacuumed, false otherwise.
+     */
+    public static boolean isNeeded(long liveCount, long deadCount) {
+        double threshold = Double.parseDouble(System.getProperty("tinydb.vacuum.threshold", String.valueOf(DEFAULT_THRESHOLD)));
+        long minDead = Long.getLong("tinydb.vacuum.min.dead", DEFAULT_MIN_DEAD);
+        return deadCount >= minDead && deadCount > threshold * (liveCount + deadCount);
+    }
+
+    /**
+     * Queues a table file for vacuuming by the background thread, starting the thread on first use.
+     * A file already waiting in the queue is not added twice.
+     *
+     * @param tableFile The table file.
+     */
+    public static void schedule(File tableFile) {
+        INSTANCE.enqueue(new Task(tableFile.getAbsoluteFile()));
+    }
+
+    /**
+     * Adds a table to the queue.
+     *
+     * @param task The table and the page to start at.
+     */
+    private synchronized void enqueue(Task task) {
+        if (queue.putIfAbsent(task.tableFile, task) == null) {
+            if (worker == null) {
+                worker = new Thread(this, "tinydb-vacuum");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until a queued table is due. Tables are taken in the order they were queued, skipping tables that
+     * were put back to wait for a retry.
+     *
+     * @return The table.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private synchronized Task take() throws InterruptedException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            long waitMs = 0;
+            Iterator<Task> iterator = queue.values().iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (task.dueMs <= now) {
+                    iterator.remove();
+                    return task;
+                }
+                waitMs = waitMs == 0 ? task.dueMs - now : Math.min(waitMs, task.dueMs - now);
+            }
+            wait(waitMs);
+        }
+    }
+
+    /**
+     * Vacuums queued tables until the process exits. A table that cannot be vacuumed yet is put back at the
+     * end of the queue and retried after a delay that doubles, up to ten seconds, until it makes progress.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            Task task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                int firstPage = task.nextPage;
+                vacuum(task);
+                if (task.nextPage != -1) {
+                    task.backoffMs = task.nextPage > firstPage ? MIN_RETRY_MS
+                            : Math.min(MAX_RETRY_MS, Math.max(MIN_RETRY_MS, task.backoffMs * 2));
+                    task.dueMs = System.currentTimeMillis() + task.backoffMs;
+                    enqueue(task);
+                }
+            } catch (IOException e) {
+                LogManager.logEvent("VACUUM", "Vacuum of " + task.tableFile.getName() + " failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Purges the deleted records of a table as far as it can right now. Pages are processed in batches of
+     * tinydb.vacuum.batch.pages (default 64); the table latch is only held for a batch, and the thread sleeps for
+     * tinydb.vacuum.throttle.ms (default 10 ms) between batches so that statements on the table are not held
+     * up.
+     *
+     * @param tableFile The table file.
+     * @return A summary of the work done.
+     * @throws IOException If an I/O error occurs.
+     * @throws InterruptedException If the thread is interrupted while throttling.
+     */
+    public String vacuum(File tableFile) throws IOException, InterruptedException {
+        return vacuum(new Task(tableFile.getAbsoluteFile()));
+    }
+
+    /**
+     * Purges the deleted records of a table from the page the task has reached. The vacuum stops early while
+     * the table has record versions: a running transaction that deleted a record restores it into its slot if
+     * it rolls back, and open snapshots still read deleted records by their identifiers. Versions are checked
+     * before the table is opened, so a table that must wait costs nothing but the check, and again once the
+     * exclusive side of its latch is held for a batch.
+     *
+     * @param task The table and the page to continue at, which is advanced past the purged pages, or set to -1
+     *             once the whole table has been vacuumed.
+     * @return A summary of the work done.
+     * @throws IOException If an I/O error occurs.
+     * @throws InterruptedException If the thread is interrupted while throttling.
+     */
+    private String vacuum(Task task) throws IOException, InterruptedException {
+        int batchPages = Math.max(1, Integer.getInteger("tinydb.vacuum.batch.pages", DEFAULT_BATCH_PAGES));
+        long throttleMs = Long.getLong("tinydb.vacuum.throttle.ms", DEFAULT_THROTTLE_MS);
+        File tableFile = task.tableFile;
+        VersionStore versionStore = VersionStore.getInstance();
+        int firstPage = task.nextPage;
+        long start = System.nanoTime();
+        long sleptMs = 0;
+        long purged = 0;
+        long reclaimed = 0;
+
+        while (true) {
+            if (!tableFile.exists()) {
+                task.nextPage = -1;
+                break;
+            }
+            if (versionStore.hasVersions(tableFile)) {
+                break;
+            }
+            long[] result = null;
+            try (HeapFile heapFile = HeapFile.open(tableFile)) {
+                if (task.nextPage >= heapFile.getPageCount()) {
+                    task.nextPage = -1;
+                    break;
+                }
+                // Deletes record their versions under the exclusive latch, so none slips in before the purge
+                Lock exclusive = heapFile.lockExclusive();
+                try {
+                    if (!versionStore.hasVersions(tableFile)) {
+                        result = heapFile.vacuum(task.nextPage, batchPages);
+                    }
+                } finally {
+                    exclusive.unlock();
+                }
+            }
+            if (result == null) {
+                break;
+            }
+            purged += result[0];
+            reclaimed += result[1];
+            task.nextPage += batchPages;
+            if (throttleMs > 0) {
+                Thread.sleep(throttleMs);
+                sleptMs += throttleMs;
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        String summary = "Vacuumed " + tableFile.getName() + ": purged " + purged + " records, reclaimed "
+                + reclaimed + " bytes in " + elapsedMs + " ms (" + sleptMs + " ms throttled)"
+                + (task.nextPage == -1 ? "" : ", deferred at page " + task.nextPage);
+        if (task.nextPage == firstPage) {
+            // Nothing was done, so the attempt is not worth recording
+            return summary;
+        }
+        synchronized (this) {
+            runs++;
+            recordsPurged += purged;
+            bytesReclaimed += reclaimed;
+            timeSpentMs += elapsedMs;
+            lastRun = summary;
+        }
+        LogManager.logEvent("VACUUM", summary);
+        return summary;
+    }
+
+    /**
+     * Returns a summary of the vacuum counters.
+     *
+     * @return The vacuum statistics.
+     */
+    public synchronized String getStats() {
+        return "Runs: " + runs + ", queued tables: " + queue.size() + "\n"
+                + "Records purged: " + recordsPurged + ", bytes reclaimed: " + bytesReclaimed + "\n"
+                + "Time spent: " + timeSpentMs + " ms\n"
+                + "Last run: " + lastRun;
+    }
+
+    /**
+     * A table waiting to be vacuumed, with the page the vacuum continues at and when it may be retried.
+     */
+    private static final class Task {
+        private final File tableFile;
+        private int nextPage = FIRST_DATA_PAGE;
+        private long dueMs;
+        private long backoffMs;
+
+        /**
+         * Constructs a task that vacuums a whole table as soon as possible.
+         *
+         * @param tableFile The absolute path of the table file.
+         */
+        private Task(File tableFile) {
+            this.tableFile = tableFile;
+        }
+    }
+}
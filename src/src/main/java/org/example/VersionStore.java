@@ -0,0 +1,459 @@
+package org.example;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class VersionStore {
+    private static final VersionStore INSTANCE = new VersionStore();
+    private static final ThreadLocal<Snapshot> currentSnapshot = new ThreadLocal<>();
+
+    private final Map<String, Map<Long, Version>> tables = new ConcurrentHashMap<>();
+    private final TreeSet<Long> running = new TreeSet<>();
+    private final TreeMap<Long, Integer> snapshots = new TreeMap<>();
+    private long lastTransactionId;
+    private long pruneHorizon;
+    private long versionsCreated;
+    private long versionsPruned;
+    private long conflicts;
+
+    /**
+     * Constructs the process-wide version store.
+     * Heap files always hold the newest version of every record, committed or not. When a transaction
+     * changes a record, the store keeps the version it replaced, stamped with the transaction that wrote it,
+     * so that snapshots taken before the change still read the old version. Versions are pruned once every
+     * open snapshot can see the change that replaced them, so the store only holds the records that running
+     * transactions and open snapshots disagree on.
+     */
+    private VersionStore() {
+    }
+
+    /**
+     * Returns the process-wide version store.
+     *
+     * @return The version store.
+     */
+    public static VersionStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the snapshot the current thread reads.
+     *
+     * @return The snapshot, or null if the thread reads the newest version of every record.
+     */
+    public static Snapshot getCurrentSnapshot() {
+        return currentSnapshot.get();
+    }
+
+    /**
+     * Sets the snapshot the current thread reads.
+     *
+     * @param snapshot The snapshot, or null to read the newest version of every record.
+     */
+    public static void setCurrentSnapshot(Snapshot snapshot) {
+        if (snapshot == null) {
+            currentSnapshot.remove();
+        } else {
+            currentSnapshot.set(snapshot);
+        }
+    }
+
+    /**
+     * Starts a transaction and takes the snapshot it reads for its whole lifetime.
+     *
+     * @return The snapshot, owned by the new transaction.
+     */
+    public synchronized Snapshot begin() {
+        long transactionId = WriteAheadLog.getInstance().begin();
+        lastTransactionId = Math.max(lastTransactionId, transactionId);
+        Snapshot snapshot = take(transactionId);
+        running.add(transactionId);
+        return snapshot;
+    }
+
+    /**
+     * Takes a snapshot for a statement that only reads. The snapshot must be released when the statement ends.
+     *
+     * @return The snapshot.
+     */
+    public synchronized Snapshot snapshot() {
+        return take(0);
+    }
+
+    /**
+     * Ends a committed transaction. Its versions become visible to every snapshot taken from now on.
+     *
+     * @param snapshot The snapshot of the transaction.
+     */
+    public void commit(Snapshot snapshot) {
+        finish(snapshot);
+    }
+
+    /**
+     * Ends a rolled back transaction after its changes have been undone in the heap files, discarding the
+     * versions it wrote.
+     *
+     * @param snapshot The snapshot of the transaction.
+     */
+    public void abort(Snapshot snapshot) {
+        long transactionId = snapshot.getTransactionId();
+        synchronized (this) {
+            for (Map<Long, Version> versions : tables.values()) {
+                for (Map.Entry<Long, Version> entry : versions.entrySet()) {
+                    Version head = entry.getValue();
+                    if (head.begin == transactionId) {
+                        // The heap holds the previous version again
+                        Version previous = head.previous;
+                        versions.replace(entry.getKey(), head,
+                                new Version(previous.begin, null, previous.deleted, previous.previous));
+                    }
+                }
+            }
+        }
+        finish(snapshot);
+    }
+
+    /**
+     * Returns the tables a running transaction has changed.
+     *
+     * @param snapshot The snapshot of the transaction.
+     * @return The table files, ordered by path.
+     */
+    public List<File> getChangedTables(Snapshot snapshot) {
+        long transactionId = snapshot.getTransactionId();
+        List<File> files = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, Version>> table : new TreeMap<>(tables).entrySet()) {
+            for (Version head : table.getValue().values()) {
+                if (head.begin == transactionId) {
+                    files.add(new File(table.getKey()));
+                    break;
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the records a running transaction has written in a table.
+     *
+     * @param snapshot The snapshot of the transaction.
+     * @param file The table file.
+     * @return The versions written by the transaction, keyed by record identifier. Each one is chained to the
+     *         version it replaced.
+     */
+    public Map<Long, Version> getWrites(Snapshot snapshot, File file) {
+        long transactionId = snapshot.getTransactionId();
+        Map<Long, Version> writes = new TreeMap<>();
+        for (Map.Entry<Long, Version> entry : getVersions(file).entrySet()) {
+            if (entry.getValue().begin == transactionId) {
+                writes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * Releases the snapshot of a statement that only reads.
+     *
+     * @param snapshot The snapshot.
+     */
+    public void release(Snapshot snapshot) {
+        finish(snapshot);
+    }
+
+    /**
+     * Returns the versions of the records of a table, keyed by record identifier. The map is updated as
+     * transactions change the table, so callers can keep it for as long as they have the table open.
+     *
+     * @param file The table file.
+     * @return The newest version of every record that has older versions.
+     */
+    public Map<Long, Version> getVersions(File file) {
+        return tables.computeIfAbsent(file.getAbsolutePath(), path -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Returns whether a table has records whose old versions are still needed. Their deleted records must not be
+     * purged, as their record identifiers are still in use.
+     *
+     * @param file The table file.
+     * @return true if the table has record versions, false otherwise.
+     */
+    public boolean hasVersions(File file) {
+        Map<Long, Version> versions = tables.get(file.getAbsolutePath());
+        return versions != null && !versions.isEmpty();
+    }
+
+    /**
+     * Forgets the versions of a table that is being dropped.
+     *
+     * @param file The table file.
+     */
+    public void discard(File file) {
+        tables.remove(file.getAbsolutePath());
+    }
+
+    /**
+     * Checks that the current transaction may change a record: a record whose newest version was written by a
+     * transaction the snapshot cannot see, because it is still running or committed after the snapshot was
+     * taken, must not be overwritten (first writer wins).
+     *
+     * @param file The table file.
+     * @param recordId The identifier of the record.
+     * @throws Exception If a concurrent transaction has changed the record.
+     */
+    public void checkWrite(File file, long recordId) throws Exception {
+        Snapshot snapshot = getCurrentSnapshot();
+        if (snapshot == null) {
+            return;
+        }
+        Version head = getVersions(file).get(recordId);
+        if (head != null && !snapshot.isVisible(head.begin)) {
+            synchronized (this) {
+                conflicts++;
+            }
+            throw new Exception("Could not serialize access: record " + RecordId.toString(recordId) + " of "
+                    + file.getName() + " was changed by a concurrent transaction.");
+        }
+    }
+
+    /**
+     * Records that the current transaction has changed a record in the heap. The version it replaced is kept,
+     * unless the transaction wrote that version itself.
+     *
+     * @param file The table file.
+     * @param recordId The identifier of the record.
+     * @param before The encoded record before the change, or null if the record was inserted.
+     * @param deleted true if the change deleted the record, false otherwise.
+     */
+    public synchronized void recordWrite(File file, long recordId, byte[] before, boolean deleted) {
+        Snapshot snapshot = getCurrentSnapshot();
+        if (snapshot == null || snapshot.getTransactionId() == 0) {
+            return;
+        }
+        long transactionId = snapshot.getTransactionId();
+        Map<Long, Version> versions = getVersions(file);
+        Version head = versions.get(recordId);
+        Version previous;
+        if (head != null && head.begin == transactionId) {
+            previous = head.previous;
+        } else {
+            previous = new Version(head == null ? 0 : head.begin, before, before == null,
+                    head == null ? null : head.previous);
+            versionsCreated++;
+        }
+        versions.put(recordId, new Version(transactionId, null, deleted, previous));
+        if (snapshot.getReadWriteSet() != null) {
+            snapshot.getReadWriteSet().recordWrite(file, recordId);
+        }
+    }
+
+    /**
+     * Checks whether a record was changed by a transaction that committed after a snapshot was taken. Versions
+     * written by such transactions are kept for as long as the snapshot is open.
+     *
+     * @param snapshot The snapshot.
+     * @param file The table file.
+     * @param recordId The identifier of the record.
+     * @return true if a committed transaction the snapshot cannot see has changed the record, false otherwise.
+     */
+    public synchronized boolean isChangedSince(Snapshot snapshot, File file, long recordId) {
+        for (Version version = getVersions(file).get(recordId); version != null && !snapshot.isVisible(version.begin);
+             version = version.previous) {
+            if (!running.contains(version.begin)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of record versions kept for open snapshots.
+     *
+     * @return The version count, not counting the newest versions held by the heap files.
+     */
+    public long getVersionCount() {
+        long count = 0;
+        for (Map<Long, Version> versions : tables.values()) {
+            for (Version head : versions.values()) {
+                for (Version version = head.previous; version != null; version = version.previous) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a summary of the running transactions, open snapshots and kept versions.
+     *
+     * @return The version store statistics.
+     */
+    public synchronized String getStats() {
+        int records = 0;
+        int tableCount = 0;
+        for (Map<Long, Version> versions : tables.values()) {
+            records += versions.size();
+            tableCount += versions.isEmpty() ? 0 : 1;
+        }
+        int openSnapshots = 0;
+        for (int count : snapshots.values()) {
+            openSnapshots += count;
+        }
+        return "Running transactions: " + running.size() + ", open snapshots: " + openSnapshots + "\n"
+                + "Versioned records: " + records + " in " + tableCount + " tables, old versions kept: "
+                + getVersionCount() + "\n"
+                + "Versions created: " + versionsCreated + ", pruned: " + versionsPruned + "\n"
+                + "Write conflicts: " + conflicts + ", prune horizon: transaction " + pruneHorizon;
+    }
+
+    /**
+     * Takes a snapshot and registers it as open.
+     *
+     * @param transactionId The transaction that owns the snapshot, or 0 for a read-only statement.
+     * @return The snapshot.
+     */
+    private Snapshot take(long transactionId) {
+        long[] others = new long[running.size()];
+        int count = 0;
+        for (long id : running) {
+            others[count++] = id;
+        }
+        Snapshot snapshot = new Snapshot(transactionId, lastTransactionId + 1, others);
+        snapshots.merge(snapshot.getXmin(), 1, Integer::sum);
+        return snapshot;
+    }
+
+    /**
+     * Ends a transaction or read-only statement and prunes the versions that no open snapshot needs anymore.
+     *
+     * @param snapshot The snapshot of the transaction or statement.
+     */
+    private synchronized void finish(Snapshot snapshot) {
+        running.remove(snapshot.getTransactionId());
+        long xmin = snapshot.getXmin();
+        Integer count = snapshots.get(xmin);
+        if (count != null) {
+            if (count == 1) {
+                snapshots.remove(xmin);
+            } else {
+                snapshots.put(xmin, count - 1);
+            }
+        }
+        long horizon = lastTransactionId + 1;
+        if (!running.isEmpty()) {
+            horizon = Math.min(horizon, running.first());
+        }
+        if (!snapshots.isEmpty()) {
+            horizon = Math.min(horizon, snapshots.firstKey());
+        }
+        if (horizon > pruneHorizon) {
+            pruneHorizon = horizon;
+            prune();
+        }
+    }
+
+    /**
+     * Drops the versions hidden by a newer version that every open and future snapshot can see. A record whose
+     * newest version is visible to everyone leaves the store, after which the heap alone describes it.
+     */
+    private void prune() {
+        for (Map<Long, Version> versions : tables.values()) {
+            Iterator<Map.Entry<Long, Version>> entries = versions.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Long, Version> entry = entries.next();
+                Version head = entry.getValue();
+                Version version = head;
+                while (version != null && version.begin >= pruneHorizon) {
+                    version = version.previous;
+                }
+                if (version == head) {
+                    for (Version old = head.previous; old != null; old = old.previous) {
+                        versionsPruned++;
+                    }
+                    entries.remove();
+                } else if (version != null && version.previous != null) {
+                    for (Version old = version.previous; old != null; old = old.previous) {
+                        versionsPruned++;
+                    }
+                    version.previous = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A version of a record, stamped with the transaction that wrote it. Versions are chained from the newest to
+     * the oldest; a version ends where the next newer one begins.
+     */
+    public static class Version {
+        private final long begin;
+        private final byte[] record;
+        private final boolean deleted;
+        private volatile Version previous;
+
+        /**
+         * Constructs a version.
+         *
+         * @param begin The transaction that wrote the version, or 0 if it predates every running transaction.
+         * @param record The encoded record, or null for the newest version, which is held by the heap file,
+         *               and for versions in which the record does not exist.
+         * @param deleted true if the record does not exist in this version, false otherwise.
+         * @param previous The next older version, or null if no snapshot needs it.
+         */
+        private Version(long begin, byte[] record, boolean deleted, Version previous) {
+            this.begin = begin;
+            this.record = record;
+            this.deleted = deleted;
+            this.previous = previous;
+        }
+
+        /**
+         * Finds the newest version in the chain that is visible to a snapshot.
+         *
+         * @param snapshot The snapshot.
+         * @return The visible version, or null if the record had not been inserted when the snapshot was taken.
+         */
+        public Version find(Snapshot snapshot) {
+            for (Version version = this; version != null; version = version.previous) {
+                if (snapshot.isVisible(version.begin)) {
+                    return version;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns whether the record does not exist in this version.
+         *
+         * @return true if the record was deleted or not yet inserted, false otherwise.
+         */
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Returns the encoded record of an older version.
+         *
+         * @return The record bytes, or null for the newest version, whose record is read from the heap file.
+         */
+        public byte[] getRecord() {
+            return record;
+        }
+
+        /**
+         * Returns the version this version replaced.
+         *
+         * @return The next older version, or null if no snapshot needs it.
+         */
+        public Version getPrevious() {
+            return previous;
+        }
+    }
+}
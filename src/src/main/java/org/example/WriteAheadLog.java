@@ -0,0 +1,974 @@
+package org.example;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+public class WriteAheadLog {
+    public static final String LOG_FILE = "tinydb/wal.log";
+    static final int FILE_HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 33;
+    private static final int MAGIC = 0x5444424C;
+    private static final int FORMAT_VERSION = 2;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_CHECKPOINT_MB = 16;
+    private static final long DEFAULT_CHECKPOINT_INTERVAL_S = 60;
+    private static WriteAheadLog instance;
+    private static final ThreadLocal<Long> currentTransaction = ThreadLocal.withInitial(() -> 0L);
+
+    private final File file;
+    private final long commitDelayNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("tinydb.wal.commit.delay.us", 0));
+    private final int groupSize = Math.max(1, Integer.getInteger("tinydb.wal.group.size", 32));
+    private final long checkpointBytes = Long.getLong("tinydb.wal.checkpoint.mb", DEFAULT_CHECKPOINT_MB) * 1024 * 1024;
+    private final long checkpointIntervalNanos = TimeUnit.SECONDS.toNanos(
+            Long.getLong("tinydb.wal.checkpoint.interval.s", DEFAULT_CHECKPOINT_INTERVAL_S));
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final Condition joined = lock.newCondition();
+    private final Condition checkpointDue = lock.newCondition();
+    private final Object checkpointLock = new Object();
+    private final Map<Long, Long> firstLsns = new HashMap<>();
+    private final Map<Long, Long> lastLsns = new HashMap<>();
+
+    private FileChannel channel;
+    private byte[] pending = new byte[64 * 1024];
+    private byte[] spare = new byte[64 * 1024];
+    private int pendingSize;
+    private long baseLsn;
+    private long nextLsn;
+    private long durableLsn;
+    private long checkpointLsn;
+    private long nextTransactionId;
+    private boolean flushing;
+    private int waiting;
+    private IOException failure;
+    private Thread checkpointer;
+
+    private long records;
+    private long commits;
+    private long rollbacks;
+    private long syncs;
+    private long syncedCommits;
+    private long checkpoints;
+    private String lastCheckpoint = "never";
+    private String lastRecovery = "not needed";
+
+    /**
+     * The kinds of log records. Page records carry the old and new bytes of the changed ranges of a page, for
+     * physical redo and undo; file records carry logical redo of the creation, deletion and renaming of files.
+     * Checkpoint records hold the dirty page and active transaction tables at the time they were written.
+     */
+    public enum RecordType {
+        BEGIN,
+        COMMIT,
+        ABORT,
+        PAGE,
+        CREATE_FILE,
+        DELETE_FILE,
+        RENAME_FILE,
+        CHECKPOINT
+    }
+
+    /**
+     * Opens the log, creating it if needed.
+     *
+     * @param file The log file.
+     * @throws IOException If the log cannot be read or created.
+     */
+    private WriteAheadLog(File file) throws IOException {
+        this.file = file;
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory.getPath());
+        }
+        boolean exists = file.exists() && file.length() >= FILE_HEADER_SIZE;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (exists) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) != -1) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            int magic = header.getInt();
+            int version = header.getInt();
+            // An empty log of the first format (which had no undo information) can be taken over as it is
+            boolean empty = version == 1 && file.length() == FILE_HEADER_SIZE;
+            if (magic != MAGIC || (version != FORMAT_VERSION && !empty)) {
+                channel.close();
+                throw new IOException("Not a TinyDB write-ahead log of version " + FORMAT_VERSION + ": "
+                        + file.getPath());
+            }
+            baseLsn = header.getLong();
+            nextTransactionId = header.getLong();
+            checkpointLsn = header.getLong();
+        } else {
+            baseLsn = 1;
+            nextTransactionId = 1;
+            writeHeader();
+        }
+        nextLsn = baseLsn;
+        durableLsn = baseLsn;
+    }
+
+    /**
+     * Returns the process-wide log, opening it and recovering the data files from it on first use. This
+     * happens before the buffer pool reads any page.
+     *
+     * @return The log.
+     * @throws UncheckedIOException If the log cannot be opened or recovery fails.
+     */
+    public static synchronized WriteAheadLog getInstance() {
+        if (instance == null) {
+            try {
+                WriteAheadLog log = new WriteAheadLog(new File(LOG_FILE));
+                log.recover();
+                instance = log;
+                Runtime.getRuntime().addShutdownHook(new Thread(WriteAheadLog::shutdown, "tinydb-wal-shutdown"));
+                log.checkpointer = new Thread(log::runCheckpoints, "tinydb-checkpoint");
+                log.checkpointer.setDaemon(true);
+                log.checkpointer.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the transaction the current thread is running, whose changes are logged under its identifier.
+     *
+     * @return The transaction identifier, or 0 outside a transaction.
+     */
+    public static long getCurrentTransaction() {
+        return currentTransaction.get();
+    }
+
+    /**
+     * Sets the transaction the current thread is running.
+     *
+     * @param transactionId The transaction identifier, or 0 to leave the transaction.
+     */
+    public static void setCurrentTransaction(long transactionId) {
+        currentTransaction.set(transactionId);
+    }
+
+    /**
+     * Starts a transaction. Its BEGIN record is written together with its first change, so transactions that
+     * change nothing never touch the log.
+     *
+     * @return The identifier of the new transaction.
+     */
+    public long begin() {
+        lock.lock();
+        try {
+            return nextTransactionId++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Logs the COMMIT record of a transaction and waits until it is on disk. Transactions that commit at the
+     * same time share one force of the log (group commit).
+     *
+     * @param transactionId The transaction identifier.
+     * @throws IOException If the log cannot be written.
+     */
+    public void commit(long transactionId) throws IOException {
+        if (!isLogged(transactionId)) {
+            return;
+        }
+        flush(append(RecordType.COMMIT, transactionId, new byte[0]));
+        lock.lock();
+        try {
+            commits++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rolls back a transaction: restores the old contents of every page range it changed, newest change
+     * first, and logs its ABORT record. The restored pages are logged as changes of the transaction itself,
+     * so a crash during the rollback is recovered like any other unfinished transaction. Must be called by
+     * the thread running the transaction.
+     *
+     * @param transactionId The transaction identifier.
+     * @throws IOException If the log cannot be read or the pages cannot be restored.
+     */
+    public void rollback(long transactionId) throws IOException {
+        Long lastLsn;
+        lock.lock();
+        try {
+            lastLsn = lastLsns.get(transactionId);
+        } finally {
+            lock.unlock();
+        }
+        if (lastLsn == null) {
+            return;
+        }
+        flush(lastLsn);
+        BufferPool bufferPool = BufferPool.getInstance();
+        Recovery.undo(Collections.singletonMap(transactionId, lastLsn), this::readRecord, bufferPool::restore);
+        abort(transactionId);
+    }
+
+    /**
+     * Logs the ABORT record of a transaction whose changes its caller has already undone, record by record, with
+     * changes logged under the transaction itself. Until the ABORT record is written, a crash rolls back both the
+     * changes and their undoing like any other unfinished transaction.
+     *
+     * @param transactionId The transaction identifier.
+     * @throws IOException If the record cannot be logged.
+     */
+    public void abort(long transactionId) throws IOException {
+        append(RecordType.ABORT, transactionId, new byte[0]);
+        lock.lock();
+        try {
+            rollbacks++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether any transaction has changes in the log that are not yet committed or rolled back.
+     *
+     * @return true if a transaction is in progress, false otherwise.
+     */
+    public boolean hasActiveTransactions() {
+        lock.lock();
+        try {
+            return !lastLsns.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Logs the old and new contents of the changed ranges of a page.
+     *
+     * @param path The path of the file.
+     * @param pageNumber The page number.
+     * @param format true if the page was zero-filled before the ranges were written.
+     * @param page The new page contents.
+     * @param image The page contents as of its previous log record.
+     * @param ranges Pairs of offset and length of the changed ranges.
+     * @param rangeCount The number of ranges.
+     * @return The LSN of the record.
+     * @throws IOException If the log has failed.
+     */
+    public long logPage(String path, int pageNumber, boolean format, byte[] page, byte[] image, int[] ranges,
+                        int rangeCount) throws IOException {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        int size = 2 + pathBytes.length + 4 + 1 + 2;
+        for (int i = 0; i < rangeCount; i++) {
+            size += 4 + ranges[i * 2 + 1] * 2;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putShort((short) pathBytes.length).put(pathBytes);
+        payload.putInt(pageNumber);
+        payload.put((byte) (format ? 1 : 0));
+        payload.putShort((short) rangeCount);
+        for (int i = 0; i < rangeCount; i++) {
+            int offset = ranges[i * 2];
+            int length = ranges[i * 2 + 1];
+            payload.putShort((short) offset).putShort((short) length);
+            payload.put(page, offset, length).put(image, offset, length);
+        }
+        return append(RecordType.PAGE, getCurrentTransaction(), payload.array());
+    }
+
+    /**
+     * Logs that a file is being created.
+     *
+     * @param path The path of the file.
+     * @throws IOException If the log has failed.
+     */
+    public void logCreate(String path) throws IOException {
+        append(RecordType.CREATE_FILE, getCurrentTransaction(), encodePaths(path));
+    }
+
+    /**
+     * Logs that a file is being deleted.
+     *
+     * @param path The path of the file.
+     * @throws IOException If the log has failed.
+     */
+    public void logDelete(String path) throws IOException {
+        append(RecordType.DELETE_FILE, getCurrentTransaction(), encodePaths(path));
+    }
+
+    /**
+     * Logs that a file is being renamed, replacing the target.
+     *
+     * @param source The path of the file.
+     * @param target The new path of the file.
+     * @throws IOException If the log has failed.
+     */
+    public void logRename(String source, String target) throws IOException {
+        append(RecordType.RENAME_FILE, getCurrentTransaction(), encodePaths(source, target));
+    }
+
+    /**
+     * Logs a checkpoint record holding the given dirty page table and the current active transaction table.
+     * The caller must prevent page changes from being logged until the record is appended.
+     *
+     * @param dirtyPages The encoded dirty page table: a count followed by path, page number and recovery
+     *                   LSN of each page.
+     * @return The LSN of the record.
+     * @throws IOException If the log has failed.
+     */
+    long logCheckpoint(byte[] dirtyPages) throws IOException {
+        lock.lock();
+        try {
+            ByteBuffer payload = ByteBuffer.allocate(dirtyPages.length + 4 + lastLsns.size() * 24);
+            payload.put(dirtyPages);
+            payload.putInt(lastLsns.size());
+            for (Map.Entry<Long, Long> entry : lastLsns.entrySet()) {
+                payload.putLong(entry.getKey()).putLong(firstLsns.get(entry.getKey())).putLong(entry.getValue());
+            }
+            return append(RecordType.CHECKPOINT, 0, payload.array());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a record to the log buffer. The record reaches the disk with the next flush.
+     *
+     * @param type The record type.
+     * @param transactionId The transaction the record belongs to, or 0 for changes made outside transactions.
+     * @param payload The record body.
+     * @return The LSN of the record, which is its position in the log.
+     * @throws IOException If the log has failed.
+     */
+    public long append(RecordType type, long transactionId, byte[] payload) throws IOException {
+        int length = RECORD_HEADER_SIZE + payload.length;
+        if (length > MAX_RECORD_SIZE) {
+            throw new IOException("Log record too large: " + length + " bytes");
+        }
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new IOException("The write-ahead log has failed: " + failure.getMessage(), failure);
+            }
+            if (transactionId != 0 && type != RecordType.BEGIN && !lastLsns.containsKey(transactionId)) {
+                appendRecord(RecordType.BEGIN, transactionId, new byte[0], RECORD_HEADER_SIZE);
+            }
+            long lsn = appendRecord(type, transactionId, payload, length);
+            if (nextLsn - Math.max(checkpointLsn, baseLsn) >= checkpointBytes) {
+                checkpointDue.signal();
+            }
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encodes a record into the log buffer. Must be called with the lock held.
+     *
+     * @param type The record type.
+     * @param transactionId The transaction the record belongs to, or 0.
+     * @param payload The record body.
+     * @param length The size of the encoded record.
+     * @return The LSN of the record.
+     */
+    private long appendRecord(RecordType type, long transactionId, byte[] payload, int length) {
+        long lsn = nextLsn;
+        Long previous = transactionId == 0 ? null : lastLsns.get(transactionId);
+        if (pendingSize + length > pending.length) {
+            byte[] grown = new byte[Math.max(pending.length * 2, pendingSize + length)];
+            System.arraycopy(pending, 0, grown, 0, pendingSize);
+            pending = grown;
+        }
+        ByteBuffer record = ByteBuffer.wrap(pending, pendingSize, length);
+        record.putInt(length);
+        record.putInt(0);
+        record.putLong(lsn);
+        record.putLong(transactionId);
+        record.putLong(previous == null ? 0 : previous);
+        record.put((byte) type.ordinal());
+        record.put(payload);
+        CRC32C crc = new CRC32C();
+        crc.update(pending, pendingSize + 8, length - 8);
+        ByteBuffer.wrap(pending, pendingSize + 4, 4).putInt((int) crc.getValue());
+        pendingSize += length;
+        nextLsn += length;
+        records++;
+        if (transactionId != 0) {
+            if (type == RecordType.COMMIT || type == RecordType.ABORT) {
+                firstLsns.remove(transactionId);
+                lastLsns.remove(transactionId);
+            } else {
+                firstLsns.putIfAbsent(transactionId, lsn);
+                lastLsns.put(transactionId, lsn);
+            }
+        }
+        return lsn;
+    }
+
+    /**
+     * Returns whether a transaction has written any records that are not yet followed by its outcome.
+     *
+     * @param transactionId The transaction identifier.
+     * @return true if the transaction has records in the log, false otherwise.
+     */
+    private boolean isLogged(long transactionId) {
+        lock.lock();
+        try {
+            return lastLsns.containsKey(transactionId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record at the given LSN and everything before it is on disk. One caller at a time writes
+     * and forces the log on behalf of everyone waiting; with a commit delay configured
+     * (tinydb.wal.commit.delay.us) it first waits for up to tinydb.wal.group.size callers to join the group.
+     *
+     * @param lsn The LSN of the record.
+     * @throws IOException If the log cannot be written.
+     */
+    public void flush(long lsn) throws IOException {
+        lock.lock();
+        try {
+            waiting++;
+            joined.signal();
+            try {
+                while (durableLsn <= lsn) {
+                    if (failure != null) {
+                        throw new IOException("The write-ahead log has failed: " + failure.getMessage(), failure);
+                    }
+                    if (flushing) {
+                        flushed.awaitUninterruptibly();
+                        continue;
+                    }
+                    flushing = true;
+                    try {
+                        awaitGroup();
+                        writeGroup();
+                    } finally {
+                        flushing = false;
+                        flushed.signalAll();
+                    }
+                }
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a fuzzy checkpoint. Statements keep running while it is taken: pages that have been dirty since
+     * before the previous checkpoint are written back, the dirty page and active transaction tables are
+     * logged, the data files are forced and the log header is pointed at the new checkpoint record. The log
+     * is then truncated in front of the oldest record recovery could still need.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            long started = System.nanoTime();
+            long previousCheckpointLsn;
+            lock.lock();
+            try {
+                previousCheckpointLsn = checkpointLsn;
+            } finally {
+                lock.unlock();
+            }
+            long[] checkpoint = BufferPool.getInstance().checkpoint(this, previousCheckpointLsn);
+            flush(checkpoint[0]);
+            long truncateLsn;
+            lock.lock();
+            try {
+                checkpointLsn = checkpoint[0];
+                writeHeader();
+                truncateLsn = checkpoint[1];
+                for (long firstLsn : firstLsns.values()) {
+                    truncateLsn = Math.min(truncateLsn, firstLsn);
+                }
+                truncate(truncateLsn);
+                checkpoints++;
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                lastCheckpoint = "LSN " + checkpointLsn + ", log kept from LSN " + baseLsn + ", took " + elapsed
+                        + " ms";
+            } finally {
+                lock.unlock();
+            }
+            LogManager.logEvent("CHECKPOINT", "Checkpoint at " + lastCheckpoint);
+        }
+    }
+
+    /**
+     * Returns the LSN the next record will get.
+     *
+     * @return The next LSN.
+     */
+    public long getNextLsn() {
+        lock.lock();
+        try {
+            return nextLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a summary of the log counters.
+     *
+     * @return The log statistics.
+     */
+    public String getStats() {
+        lock.lock();
+        try {
+            double groupSize = syncs == 0 ? 0 : (double) syncedCommits / syncs;
+            return "Log: " + file.getPath() + ", " + (nextLsn - baseLsn) / 1024 + " KB since LSN " + baseLsn + "\n"
+                    + "LSN: next " + nextLsn + ", durable " + durableLsn + "\n"
+                    + "Records: " + records + ", commits: " + commits + ", rollbacks: " + rollbacks
+                    + ", active transactions: " + lastLsns.size() + "\n"
+                    + "Syncs: " + syncs + String.format(" (%.1f callers per sync)", groupSize) + "\n"
+                    + "Checkpoints: " + checkpoints + ", last: " + lastCheckpoint + "\n"
+                    + "Last recovery: " + lastRecovery;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the record at an LSN from the log file. The record must already be on disk.
+     *
+     * @param lsn The LSN of the record.
+     * @return The record.
+     * @throws IOException If the record cannot be read or is damaged.
+     */
+    Record readRecord(long lsn) throws IOException {
+        lock.lock();
+        try {
+            if (lsn < baseLsn || lsn >= durableLsn) {
+                throw new IOException("Log record " + lsn + " is not in the log.");
+            }
+            return Record.read(channel, FILE_HEADER_SIZE + (lsn - baseLsn), lsn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the flushing caller wait for more callers to join its group, up to the commit delay.
+     * Must be called with the lock held.
+     */
+    private void awaitGroup() {
+        long remaining = commitDelayNanos;
+        while (remaining > 0 && waiting < groupSize) {
+            try {
+                remaining = joined.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records and forces them to disk. The lock is released during the I/O so that other
+     * threads can keep appending. Must be called with the lock held.
+     *
+     * @throws IOException If the log cannot be written.
+     */
+    private void writeGroup() throws IOException {
+        byte[] data = pending;
+        int size = pendingSize;
+        long start = nextLsn - size;
+        long end = nextLsn;
+        int group = waiting;
+        long position = FILE_HEADER_SIZE + (start - baseLsn);
+        FileChannel target = channel;
+        pending = spare;
+        pendingSize = 0;
+        lock.unlock();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, size);
+            while (buffer.hasRemaining()) {
+                position += target.write(buffer, position);
+            }
+            target.force(false);
+        } catch (IOException e) {
+            lock.lock();
+            failure = e;
+            throw e;
+        }
+        lock.lock();
+        spare = data;
+        durableLsn = end;
+        syncs++;
+        syncedCommits += group;
+    }
+
+    /**
+     * Drops the records in front of an LSN by copying the rest of the log to a new file that replaces the
+     * current one. Flushes wait until the copy is done. Must be called with the lock held.
+     *
+     * @param lsn The LSN of the first record to keep.
+     * @throws IOException If the log cannot be rewritten.
+     */
+    private void truncate(long lsn) throws IOException {
+        while (flushing) {
+            flushed.awaitUninterruptibly();
+        }
+        if (lsn <= baseLsn) {
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileChannel target = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = encodeHeader(lsn);
+            while (header.hasRemaining()) {
+                target.write(header);
+            }
+            long position = FILE_HEADER_SIZE + (lsn - baseLsn);
+            long end = FILE_HEADER_SIZE + (durableLsn - baseLsn);
+            while (position < end) {
+                position += channel.transferTo(position, end - position, target);
+            }
+            target.force(true);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        baseLsn = lsn;
+    }
+
+    /**
+     * Writes the file header holding the first LSN of the log, the next transaction identifier and the LSN of
+     * the last complete checkpoint.
+     *
+     * @throws IOException If the header cannot be written.
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = encodeHeader(baseLsn);
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Encodes the file header.
+     *
+     * @param firstLsn The LSN of the first record in the file.
+     * @return The header, ready to be written.
+     */
+    private ByteBuffer encodeHeader(long firstLsn) {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(firstLsn).putLong(nextTransactionId).putLong(checkpointLsn);
+        header.clear();
+        return header;
+    }
+
+    /**
+     * Recovers the data files from the log and empties it. Once recovery has forced the data files, nothing
+     * in the log is needed any more.
+     *
+     * @throws IOException If the log or a data file cannot be read or written.
+     */
+    private void recover() throws IOException {
+        Recovery recovery = new Recovery(file, baseLsn, checkpointLsn);
+        long endLsn = recovery.run();
+        nextTransactionId = Math.max(nextTransactionId, recovery.getMaxTransactionId() + 1);
+        if (recovery.getSummary() != null) {
+            lastRecovery = recovery.getSummary();
+        }
+        reset(endLsn);
+    }
+
+    /**
+     * Empties the log, continuing the LSN sequence at the given LSN.
+     *
+     * @param lsn The LSN of the next record.
+     * @throws IOException If the log cannot be written.
+     */
+    private void reset(long lsn) throws IOException {
+        baseLsn = lsn;
+        nextLsn = lsn;
+        durableLsn = lsn;
+        checkpointLsn = 0;
+        pendingSize = 0;
+        writeHeader();
+        channel.truncate(FILE_HEADER_SIZE);
+        channel.force(true);
+    }
+
+    /**
+     * Takes a checkpoint whenever tinydb.wal.checkpoint.mb (default 16 MB) of log has been written since the
+     * last one, and at least every tinydb.wal.checkpoint.interval.s seconds (default 60) while the log is
+     * growing. This bounds the work recovery has to do after a crash.
+     */
+    private void runCheckpoints() {
+        while (true) {
+            lock.lock();
+            try {
+                long since = Math.max(checkpointLsn, baseLsn);
+                long remaining = checkpointIntervalNanos;
+                while (nextLsn - since < checkpointBytes && remaining > 0) {
+                    remaining = checkpointDue.awaitNanos(remaining);
+                }
+                if (nextLsn == since || failure != null) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                LogManager.logEvent("CHECKPOINT", "Checkpoint failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes every dirty page to disk and empties the log when the process exits normally, so that the next
+     * start has nothing to recover. The log is kept if a transaction is still running.
+     */
+    private static void shutdown() {
+        WriteAheadLog log;
+        synchronized (WriteAheadLog.class) {
+            log = instance;
+        }
+        if (log == null) {
+            return;
+        }
+        BufferPool bufferPool = BufferPool.getInstance();
+        synchronized (bufferPool) {
+            try {
+                bufferPool.sync();
+                log.lock.lock();
+                try {
+                    if (log.lastLsns.isEmpty() && !log.flushing && log.failure == null) {
+                        log.reset(log.nextLsn);
+                    }
+                } finally {
+                    log.lock.unlock();
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing back the buffer pool: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Encodes file paths as the payload of a file record.
+     *
+     * @param paths The paths.
+     * @return The payload.
+     */
+    static byte[] encodePaths(String... paths) {
+        int size = 0;
+        byte[][] encoded = new byte[paths.length][];
+        for (int i = 0; i < paths.length; i++) {
+            encoded[i] = paths[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + encoded[i].length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        for (byte[] path : encoded) {
+            payload.putShort((short) path.length).put(path);
+        }
+        return payload.array();
+    }
+
+    /**
+     * Reads a file path from a record payload.
+     *
+     * @param payload The payload, positioned at the path.
+     * @return The path.
+     */
+    static String readPath(ByteBuffer payload) {
+        byte[] path = new byte[payload.getShort() & 0xFFFF];
+        payload.get(path);
+        return new String(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A record read back from the log.
+     */
+    static class Record {
+        final int length;
+        final long lsn;
+        final long transactionId;
+        final long previousLsn;
+        final RecordType type;
+        final byte[] payload;
+
+        /**
+         * Constructs a record.
+         *
+         * @param length The size of the record in the log.
+         * @param lsn The LSN of the record.
+         * @param transactionId The transaction the record belongs to.
+         * @param previousLsn The LSN of the previous record of the transaction, or 0.
+         * @param type The record type.
+         * @param payload The record body.
+         */
+        private Record(int length, long lsn, long transactionId, long previousLsn, RecordType type, byte[] payload) {
+            this.length = length;
+            this.lsn = lsn;
+            this.transactionId = transactionId;
+            this.previousLsn = previousLsn;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        /**
+         * Reads the next record from a sequential read of the log.
+         *
+         * @param input The log contents, positioned at a record.
+         * @param expectedLsn The LSN the record must have.
+         * @return The record, or null at the end of the log or at a torn or stale record.
+         * @throws IOException If the log cannot be read.
+         */
+        static Record read(DataInputStream input, long expectedLsn) throws IOException {
+            byte[] data;
+            try {
+                int length = input.readInt();
+                if (length < RECORD_HEADER_SIZE || length > MAX_RECORD_SIZE) {
+                    return null;
+                }
+                data = new byte[length];
+                ByteBuffer.wrap(data).putInt(length);
+                input.readFully(data, 4, length - 4);
+            } catch (EOFException e) {
+                return null;
+            }
+            return decode(data, expectedLsn);
+        }
+
+        /**
+         * Reads the record at a position of the log file.
+         *
+         * @param channel The log file.
+         * @param position The file position of the record.
+         * @param expectedLsn The LSN the record must have.
+         * @return The record.
+         * @throws IOException If the record cannot be read or is damaged.
+         */
+        static Record read(FileChannel channel, long position, long expectedLsn) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(channel, length, position);
+            int size = length.getInt(0);
+            if (size < RECORD_HEADER_SIZE || size > MAX_RECORD_SIZE) {
+                throw new IOException("Damaged log record at LSN " + expectedLsn);
+            }
+            ByteBuffer data = ByteBuffer.allocate(size);
+            readFully(channel, data, position);
+            Record record = decode(data.array(), expectedLsn);
+            if (record == null) {
+                throw new IOException("Damaged log record at LSN " + expectedLsn);
+            }
+            return record;
+        }
+
+        /**
+         * Checks and decodes an encoded record.
+         *
+         * @param data The encoded record.
+         * @param expectedLsn The LSN the record must have.
+         * @return The record, or null if the checksum, LSN or type does not match.
+         */
+        private static Record decode(byte[] data, long expectedLsn) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            CRC32C crc = new CRC32C();
+            crc.update(data, 8, length - 8);
+            long lsn = buffer.getLong();
+            if ((int) crc.getValue() != checksum || lsn != expectedLsn) {
+                return null;
+            }
+            long transactionId = buffer.getLong();
+            long previousLsn = buffer.getLong();
+            int type = buffer.get();
+            if (type < 0 || type >= RecordType.values().length) {
+                return null;
+            }
+            byte[] payload = new byte[length - RECORD_HEADER_SIZE];
+            buffer.get(payload);
+            return new Record(length, lsn, transactionId, previousLsn, RecordType.values()[type], payload);
+        }
+
+        /**
+         * Fills a buffer from a channel.
+         *
+         * @param channel The channel.
+         * @param buffer The buffer to fill.
+         * @param position The file position to read from.
+         * @throws IOException If the end of the file is reached first.
+         */
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1) {
+                    throw new EOFException("Unexpected end of the log at position " + position);
+                }
+            }
+        }
+    }
+
+    /**
+     * The changed ranges of a page, decoded from a page record.
+     */
+    static class PageChange {
+        final String path;
+        final int pageNumber;
+        final boolean format;
+        final int[] offsets;
+        final byte[][] after;
+        final byte[][] before;
+
+        /**
+         * Decodes a page record.
+         *
+         * @param record The page record.
+         */
+        PageChange(Record record) {
+            ByteBuffer payload = ByteBuffer.wrap(record.payload);
+            path = readPath(payload);
+            pageNumber = payload.getInt();
+            format = payload.get() == 1;
+            int rangeCount = payload.getShort() & 0xFFFF;
+            offsets = new int[rangeCount];
+            after = new byte[rangeCount][];
+            before = new byte[rangeCount][];
+            for (int i = 0; i < rangeCount; i++) {
+                offsets[i] = payload.getShort() & 0xFFFF;
+                int length = payload.getShort() & 0xFFFF;
+                after[i] = new byte[length];
+                before[i] = new byte[length];
+                payload.get(after[i]).get(before[i]);
+            }
+        }
+    }
+}